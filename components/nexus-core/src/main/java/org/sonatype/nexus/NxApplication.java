@@ -38,6 +38,7 @@ import org.sonatype.sisu.goodies.eventbus.EventBus;
 import org.sonatype.sisu.goodies.lifecycle.LifecycleSupport;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Stopwatch;
 import com.google.common.base.Throwables;
 
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -111,18 +112,25 @@ public class NxApplication
     eventBus.post(new NexusInitializedEvent(this));
 
     applicationStatusSource.getSystemStatus().setState(SystemState.STARTING);
+    final Stopwatch total = Stopwatch.createStarted();
+    final Stopwatch phase = Stopwatch.createStarted();
     try {
       // force configuration load, validation and probable upgrade if needed
       // applies configuration and notifies listeners
       nexusConfiguration.loadConfiguration(true);
+      logPhase("Configuration load", phase);
       // essential services
       securitySystem.start();
       securitySystem.getAnonymousUsername();
+      logPhase("Security start", phase);
       nexusConfiguration.createInternals();
+      logPhase("Repository creation", phase);
       nexusScheduler.initializeTasks();
+      logPhase("Task initialization", phase);
 
       // notify about start other components participating in configuration framework
       eventBus.post(new ConfigurationChangeEvent(nexusConfiguration, null, null));
+      logPhase("Configuration change notification", phase);
 
       applicationStatusSource.getSystemStatus().setLastConfigChange(new Date());
       applicationStatusSource.getSystemStatus().setFirstStart(nexusConfiguration.isConfigurationDefaulted());
@@ -139,6 +147,7 @@ public class NxApplication
       applicationStatusSource.getSystemStatus().setStartedAt(new Date());
 
       synchronizeShadowsAtStartup();
+      logPhase("Shadow synchronization scheduling", phase);
 
       if (log.isInfoEnabled()) {
         final File workDir = nexusConfiguration.getWorkingDirectory();
@@ -155,6 +164,8 @@ public class NxApplication
         log.info("Started {}", getNexusNameForLogs());
       }
       eventBus.post(new NexusStartedEvent(this));
+      logPhase("Started notification", phase);
+      log.info("Startup took {}", total);
     }
     catch (IOException e) {
       applicationStatusSource.getSystemStatus().setState(SystemState.BROKEN_IO);
@@ -185,6 +196,14 @@ public class NxApplication
     log.info("Stopped {}", getNexusNameForLogs());
   }
 
+  /**
+   * Logs the time elapsed in a startup phase and restarts the stopwatch for the next phase.
+   */
+  private void logPhase(final String name, final Stopwatch phase) {
+    log.info("Startup phase '{}' took {}", name, phase);
+    phase.reset().start();
+  }
+
   private void synchronizeShadowsAtStartup() {
     final Collection<ShadowRepository> shadows = repositoryRegistry.getRepositoriesWithFacet(ShadowRepository.class);
     for (ShadowRepository shadow : shadows) {
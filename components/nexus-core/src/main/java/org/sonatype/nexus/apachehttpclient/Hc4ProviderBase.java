@@ -39,6 +39,7 @@ import org.apache.http.auth.Credentials;
 import org.apache.http.auth.NTCredentials;
 import org.apache.http.auth.UsernamePasswordCredentials;
 import org.apache.http.client.CredentialsProvider;
+import org.apache.http.client.HttpRequestRetryHandler;
 import org.apache.http.client.config.AuthSchemes;
 import org.apache.http.client.config.CookieSpecs;
 import org.apache.http.client.protocol.ResponseContentEncoding;
@@ -95,12 +96,7 @@ public class Hc4ProviderBase
     applyConfig(builder, context);
     applyAuthenticationConfig(builder, context.getRemoteAuthenticationSettings(), null);
     applyProxyConfig(builder, context.getRemoteProxySettings());
-    // obey the given retries count and apply it to client.
-    final int retries =
-        context.getRemoteConnectionSettings() != null
-            ? context.getRemoteConnectionSettings().getRetrievalRetryCount()
-            : 0;
-    builder.getHttpClientBuilder().setRetryHandler(new StandardHttpRequestRetryHandler(retries, false));
+    builder.getHttpClientBuilder().setRetryHandler(createRetryHandler(context));
     builder.getHttpClientBuilder().setKeepAliveStrategy(new NexusConnectionKeepAliveStrategy(getKeepAliveMaxDuration()));
     return builder;
   }
@@ -119,6 +115,19 @@ public class Hc4ProviderBase
     builder.getHttpClientBuilder().setUserAgent(userAgentBuilder.formatUserAgentString(context));
   }
 
+  /**
+   * Creates the retry handler obeying the retries count of given context.
+   *
+   * @since 3.0
+   */
+  protected HttpRequestRetryHandler createRetryHandler(final RemoteStorageContext context) {
+    final int retries =
+        context.getRemoteConnectionSettings() != null
+            ? context.getRemoteConnectionSettings().getRetrievalRetryCount()
+            : 0;
+    return new StandardHttpRequestRetryHandler(retries, false);
+  }
+
   /**
    * Returns the maximum Keep-Alive duration in milliseconds.
    */
@@ -12,7 +12,13 @@
  */
 package org.sonatype.nexus.apachehttpclient;
 
+import java.io.IOException;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
@@ -28,17 +34,27 @@ import org.sonatype.nexus.util.SystemPropertiesHelper;
 import org.sonatype.sisu.goodies.eventbus.EventBus;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.MapMaker;
+import com.google.common.collect.Sets;
 import com.google.common.eventbus.Subscribe;
 import com.google.common.primitives.Ints;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpHost;
 import org.apache.http.client.HttpClient;
+import org.apache.http.client.HttpRequestRetryHandler;
 import org.apache.http.config.Registry;
 import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.routing.HttpRoute;
 import org.apache.http.conn.socket.ConnectionSocketFactory;
 import org.apache.http.conn.socket.PlainConnectionSocketFactory;
 import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
 import org.apache.http.impl.NoConnectionReuseStrategy;
 import org.apache.http.impl.conn.PoolingClientConnectionManager;
 import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpCoreContext;
 
 /**
  * Default implementation of {@link Hc4Provider}.
@@ -100,6 +116,59 @@ public class Hc4ProviderImpl
    */
   private static final long CONNECTION_POOL_TIMEOUT_DEFAULT = TimeUnit.SECONDS.toMillis(30);
 
+  /**
+   * Key for enabling adaptive per remote host concurrency limits. When enabled, concurrent requests to each remote
+   * host are limited by an AIMD limit (starting from, and never exceeding {@link #CONNECTION_POOL_SIZE_KEY}), that is
+   * halved when remote responds slowly or with 429/503, and slowly grows back when remote is healthy. Requests over
+   * the limit are queued in order of arrival, for at most {@link #CONNECTION_POOL_TIMEOUT_KEY} time.
+   *
+   * @since 3.0
+   */
+  private static final String ADAPTIVE_LIMITS_ENABLED_KEY = "nexus.apacheHttpClient4x.adaptiveLimits";
+
+  /**
+   * Default adaptive limits: enabled.
+   */
+  private static final boolean ADAPTIVE_LIMITS_ENABLED_DEFAULT = true;
+
+  /**
+   * Key for customizing the minimal adaptive per remote host limit. Value should be integer greater than 0.
+   *
+   * @since 3.0
+   */
+  private static final String ADAPTIVE_LIMITS_MIN_KEY = "nexus.apacheHttpClient4x.adaptiveLimits.min";
+
+  /**
+   * Default minimal adaptive limit: 2.
+   */
+  private static final int ADAPTIVE_LIMITS_MIN_DEFAULT = 2;
+
+  /**
+   * Key for customizing the latency tolerance: responses slower than this multiple of observed baseline latency of
+   * the remote host are considered a congestion signal. Value is a float greater than 1.
+   *
+   * @since 3.0
+   */
+  private static final String ADAPTIVE_LIMITS_LATENCY_TOLERANCE_KEY =
+      "nexus.apacheHttpClient4x.adaptiveLimits.latencyTolerance";
+
+  /**
+   * Default latency tolerance: 4 times the baseline.
+   */
+  private static final String ADAPTIVE_LIMITS_LATENCY_TOLERANCE_DEFAULT = "4.0";
+
+  /**
+   * Key for customizing the minimal period between two decreases of a limit. Value is milliseconds.
+   *
+   * @since 3.0
+   */
+  private static final String ADAPTIVE_LIMITS_COOLDOWN_KEY = "nexus.apacheHttpClient4x.adaptiveLimits.cooldown";
+
+  /**
+   * Default cooldown: 1 second.
+   */
+  private static final long ADAPTIVE_LIMITS_COOLDOWN_DEFAULT = TimeUnit.SECONDS.toMillis(1);
+
   // ==
 
   /**
@@ -117,6 +186,11 @@ public class Hc4ProviderImpl
    */
   private final ManagedClientConnectionManager sharedConnectionManager;
 
+  /**
+   * Adaptive per remote host limits, {@code null} if disabled.
+   */
+  private final RemoteHostLimiters remoteHostLimiters;
+
   /**
    * Thread evicting idle open connections from {@link #sharedConnectionManager}.
    */
@@ -143,6 +217,7 @@ public class Hc4ProviderImpl
     super(userAgentBuilder);
     this.applicationConfiguration = Preconditions.checkNotNull(applicationConfiguration);
     this.jmxInstaller = Preconditions.checkNotNull(jmxInstaller);
+    this.remoteHostLimiters = isAdaptiveLimitsEnabled() ? createRemoteHostLimiters() : null;
     this.sharedConnectionManager = createClientConnectionManager(selectors);
     this.evictingThread = new EvictingThread(sharedConnectionManager, getConnectionPoolIdleTime());
     this.evictingThread.start();
@@ -150,12 +225,14 @@ public class Hc4ProviderImpl
     this.eventBus.register(this);
     this.jmxInstaller.register(sharedConnectionManager);
     log.info(
-        "Started (connectionPoolMaxSize {}, connectionPoolSize {}, connectionPoolIdleTime {} ms, connectionPoolTimeout {} ms, keepAliveMaxDuration {} ms)",
+        "Started (connectionPoolMaxSize {}, connectionPoolSize {}, connectionPoolIdleTime {} ms, "
+            + "connectionPoolTimeout {} ms, keepAliveMaxDuration {} ms, adaptiveLimits {})",
         getConnectionPoolMaxSize(),
         getConnectionPoolSize(),
         getConnectionPoolIdleTime(),
         getConnectionPoolTimeout(),
-        getKeepAliveMaxDuration()
+        getKeepAliveMaxDuration(),
+        remoteHostLimiters != null
     );
   }
 
@@ -189,6 +266,35 @@ public class Hc4ProviderImpl
     return SystemPropertiesHelper.getLong(CONNECTION_POOL_TIMEOUT_KEY, CONNECTION_POOL_TIMEOUT_DEFAULT);
   }
 
+  /**
+   * Returns {@code true} if adaptive per remote host limits are enabled.
+   */
+  protected boolean isAdaptiveLimitsEnabled() {
+    return SystemPropertiesHelper.getBoolean(ADAPTIVE_LIMITS_ENABLED_KEY, ADAPTIVE_LIMITS_ENABLED_DEFAULT);
+  }
+
+  /**
+   * Returns the minimal adaptive per remote host limit.
+   */
+  protected int getAdaptiveLimitsMin() {
+    return SystemPropertiesHelper.getInteger(ADAPTIVE_LIMITS_MIN_KEY, ADAPTIVE_LIMITS_MIN_DEFAULT);
+  }
+
+  /**
+   * Returns the latency tolerance multiplier of adaptive limits.
+   */
+  protected double getAdaptiveLimitsLatencyTolerance() {
+    return Double.parseDouble(SystemPropertiesHelper.getString(ADAPTIVE_LIMITS_LATENCY_TOLERANCE_KEY,
+        ADAPTIVE_LIMITS_LATENCY_TOLERANCE_DEFAULT));
+  }
+
+  /**
+   * Returns the minimal period between two decreases of adaptive limit in milliseconds.
+   */
+  protected long getAdaptiveLimitsCooldown() {
+    return SystemPropertiesHelper.getLong(ADAPTIVE_LIMITS_COOLDOWN_KEY, ADAPTIVE_LIMITS_COOLDOWN_DEFAULT);
+  }
+
   // ==
 
   /**
@@ -259,7 +365,12 @@ public class Hc4ProviderImpl
 
   @Override
   public Builder prepareHttpClient(final RemoteStorageContext context) {
-    return prepareHttpClient(context, sharedConnectionManager);
+    final Builder builder = prepareHttpClient(context, sharedConnectionManager);
+    if (remoteHostLimiters != null) {
+      builder.getHttpClientBuilder().addInterceptorLast(remoteHostLimiters.requestInterceptor());
+      builder.getHttpClientBuilder().addInterceptorFirst(remoteHostLimiters.responseInterceptor());
+    }
+    return builder;
   }
 
   // ==
@@ -270,6 +381,33 @@ public class Hc4ProviderImpl
     builder.getRequestConfigBuilder().setConnectionRequestTimeout(Ints.checkedCast(getConnectionPoolTimeout()));
   }
 
+  @Override
+  protected HttpRequestRetryHandler createRetryHandler(final RemoteStorageContext context) {
+    final HttpRequestRetryHandler retryHandler = super.createRetryHandler(context);
+    if (remoteHostLimiters == null) {
+      return retryHandler;
+    }
+    // transport errors never reach response interceptors, they are seen by retry handler only
+    return new HttpRequestRetryHandler()
+    {
+      @Override
+      public boolean retryRequest(final IOException exception, final int executionCount, final HttpContext context) {
+        final HttpHost target = (HttpHost) context.getAttribute(HttpCoreContext.HTTP_TARGET_HOST);
+        if (target != null) {
+          remoteHostLimiters.get(target).onFailure();
+        }
+        return retryHandler.retryRequest(exception, executionCount, context);
+      }
+    };
+  }
+
+  protected RemoteHostLimiters createRemoteHostLimiters() {
+    final int perRouteConnectionCount = Math.min(getConnectionPoolSize(), getConnectionPoolMaxSize());
+    return new RemoteHostLimiters(jmxInstaller, perRouteConnectionCount,
+        Math.max(1, Math.min(getAdaptiveLimitsMin(), perRouteConnectionCount)), perRouteConnectionCount,
+        getAdaptiveLimitsLatencyTolerance(), getAdaptiveLimitsCooldown());
+  }
+
   protected ManagedClientConnectionManager createClientConnectionManager(
       final List<SSLContextSelector> selectors)
       throws IllegalStateException
@@ -290,21 +428,156 @@ public class Hc4ProviderImpl
     return connManager;
   }
 
+  /**
+   * Shared connection manager, that when adaptive limits are enabled, leases connections to a remote host only
+   * within the current limit of the host. Leased connections are tracked to release the limiter permit once
+   * connection is returned to pool. Permits of connections dropped without being returned to pool are reclaimed
+   * through a reference queue, polled when connections are requested and expired connections are closed, and all
+   * permits are released on shutdown.
+   */
   private class ManagedClientConnectionManager
       extends PoolingHttpClientConnectionManager
   {
+    private final Map<HttpClientConnection, Lease> leased = new MapMaker().weakKeys().makeMap();
+
+    /**
+     * Keeps leases reachable until their connection is released or dropped.
+     */
+    private final Set<Lease> leases = Sets.newConcurrentHashSet();
+
+    private final ReferenceQueue<HttpClientConnection> dropped = new ReferenceQueue<HttpClientConnection>();
 
     public ManagedClientConnectionManager(final Registry<ConnectionSocketFactory> schemeRegistry) {
       super(schemeRegistry);
     }
 
+    @Override
+    public ConnectionRequest requestConnection(final HttpRoute route, final Object state) {
+      final ConnectionRequest connectionRequest = super.requestConnection(route, state);
+      if (remoteHostLimiters == null) {
+        return connectionRequest;
+      }
+      reclaimDropped();
+      final RemoteHostLimiter limiter = remoteHostLimiters.get(route.getTargetHost());
+      return new ConnectionRequest()
+      {
+        @Override
+        public HttpClientConnection get(final long timeout, final TimeUnit tunit)
+            throws InterruptedException, ExecutionException, ConnectionPoolTimeoutException
+        {
+          final long start = System.nanoTime();
+          // zero timeout means "wait forever" in HC4
+          if (!limiter.acquire(timeout > 0 ? timeout : Long.MAX_VALUE, timeout > 0 ? tunit : TimeUnit.NANOSECONDS)) {
+            connectionRequest.cancel();
+            throw new ConnectionPoolTimeoutException(
+                "Timeout waiting for connection to " + limiter.getHost() + " (limit " + limiter.getLimit() + ")");
+          }
+          boolean success = false;
+          try {
+            final long remaining = timeout > 0
+                ? Math.max(1, tunit.toNanos(timeout) - (System.nanoTime() - start))
+                : 0;
+            final HttpClientConnection conn = connectionRequest.get(remaining, TimeUnit.NANOSECONDS);
+            final Lease lease = new Lease(conn, limiter, dropped);
+            leases.add(lease);
+            leased.put(conn, lease);
+            success = true;
+            return conn;
+          }
+          finally {
+            if (!success) {
+              limiter.release();
+            }
+          }
+        }
+
+        @Override
+        public boolean cancel() {
+          return connectionRequest.cancel();
+        }
+      };
+    }
+
+    @Override
+    public void releaseConnection(final HttpClientConnection managedConn, final Object state, final long keepalive,
+                                  final TimeUnit tunit)
+    {
+      try {
+        super.releaseConnection(managedConn, state, keepalive, tunit);
+      }
+      finally {
+        final Lease lease = leased.remove(managedConn);
+        if (lease != null) {
+          lease.clear();
+          release(lease);
+        }
+      }
+    }
+
+    @Override
+    public void closeExpiredConnections() {
+      try {
+        super.closeExpiredConnections();
+      }
+      finally {
+        reclaimDropped();
+      }
+    }
+
+    /**
+     * Releases permits of connections that were garbage collected without being returned to pool.
+     */
+    private void reclaimDropped() {
+      Lease lease;
+      while ((lease = (Lease) dropped.poll()) != null) {
+        if (release(lease)) {
+          log.warn("Connection to {} was not released, reclaimed its permit", lease.limiter.getHost());
+        }
+      }
+    }
+
+    /**
+     * Releases the permit of lease, returns {@code false} if it was released already.
+     */
+    private boolean release(final Lease lease) {
+      if (leases.remove(lease)) {
+        lease.limiter.release();
+        return true;
+      }
+      return false;
+    }
+
     @Override
     public void shutdown() {
       // do nothing in order to avoid unwanted shutdown of shared connection manager
     }
 
     private void _shutdown() {
-      super.shutdown();
+      try {
+        super.shutdown();
+      }
+      finally {
+        for (Lease lease : leases) {
+          release(lease);
+        }
+        leased.clear();
+      }
+    }
+  }
+
+  /**
+   * Limiter permit held by a leased connection, enqueued once the connection is garbage collected.
+   */
+  private static class Lease
+      extends WeakReference<HttpClientConnection>
+  {
+    private final RemoteHostLimiter limiter;
+
+    private Lease(final HttpClientConnection conn, final RemoteHostLimiter limiter,
+                  final ReferenceQueue<HttpClientConnection> queue)
+    {
+      super(conn, queue);
+      this.limiter = limiter;
     }
   }
 
@@ -13,12 +13,14 @@
 package org.sonatype.nexus.apachehttpclient;
 
 import java.lang.management.ManagementFactory;
+import java.util.List;
 
 import javax.inject.Named;
 import javax.inject.Singleton;
 import javax.management.MBeanServer;
 import javax.management.ObjectName;
 
+import com.google.common.collect.Lists;
 import org.apache.http.client.HttpClient;
 import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.slf4j.Logger;
@@ -41,6 +43,8 @@ public class PoolingClientConnectionManagerMBeanInstaller
 
   private ObjectName jmxName;
 
+  private final List<ObjectName> remoteHostJmxNames = Lists.newArrayList();
+
   /**
    * Registers the connection manager to JMX.
    */
@@ -65,9 +69,38 @@ public class PoolingClientConnectionManagerMBeanInstaller
   }
 
   /**
-   * Unregisters the connection manager from JMX.
+   * Registers the per remote host limiter to JMX, next to the connection manager.
+   *
+   * @since 3.0
+   */
+  public synchronized void register(final RemoteHostLimiter limiter) {
+    ObjectName name = null;
+    try {
+      name = ObjectName.getInstance(JMX_DOMAIN + ":type=RemoteHost,name=" + ObjectName.quote(limiter.getHost()));
+      final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      server.registerMBean(new RemoteHostLimiterMBeanImpl(limiter), name);
+      remoteHostJmxNames.add(name);
+    }
+    catch (final Exception e) {
+      LOGGER.warn("Failed to register mbean {} due to {}:{}",
+          name, e.getClass(), e.getMessage());
+    }
+  }
+
+  /**
+   * Unregisters the connection manager and all the remote host limiters from JMX.
    */
   public synchronized void unregister() {
+    for (ObjectName name : remoteHostJmxNames) {
+      try {
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+      }
+      catch (final Exception e) {
+        LOGGER.warn("Failed to unregister mbean {} due to {}:{}",
+            name, e.getClass(), e.getMessage());
+      }
+    }
+    remoteHostJmxNames.clear();
     if (jmxName != null) {
       try {
         final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
@@ -0,0 +1,288 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.apachehttpclient;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Adaptive concurrency limiter for one remote host. The limit follows AIMD (additive increase, multiplicative
+ * decrease): every healthy response grows the limit by {@code 1/limit}, while a throttling response (HTTP 429 or
+ * 503), a transport error or a response slower than {@code latencyTolerance} times the observed baseline latency
+ * halves it, at most once per {@code decreaseCooldownMillis}. Requests exceeding the limit are queued in FIFO order
+ * and time out individually.
+ *
+ * @since 3.0
+ */
+class RemoteHostLimiter
+{
+  /**
+   * Count of latency samples kept to calculate percentiles.
+   */
+  private static final int LATENCY_SAMPLES = 256;
+
+  /**
+   * Smoothing factor of baseline latency, when samples are above it.
+   */
+  private static final double BASELINE_ALPHA = 0.01;
+
+  private final String host;
+
+  private final int minLimit;
+
+  private final int maxLimit;
+
+  private final double latencyTolerance;
+
+  private final long decreaseCooldownMillis;
+
+  /**
+   * Fair lock, waiters are signalled in arrival order.
+   */
+  private final ReentrantLock lock = new ReentrantLock(true);
+
+  private final Condition permitAvailable = lock.newCondition();
+
+  // guarded by lock
+
+  private double limit;
+
+  private int inFlight;
+
+  private int queued;
+
+  private long lastDecrease;
+
+  private double baselineLatency;
+
+  private final long[] latencies = new long[LATENCY_SAMPLES];
+
+  private int latencyCount;
+
+  // counters
+
+  private final AtomicLong requests = new AtomicLong();
+
+  private final AtomicLong throttled = new AtomicLong();
+
+  private final AtomicLong errors = new AtomicLong();
+
+  private final AtomicLong timeouts = new AtomicLong();
+
+  RemoteHostLimiter(final String host, final int initialLimit, final int minLimit, final int maxLimit,
+                    final double latencyTolerance, final long decreaseCooldownMillis)
+  {
+    checkArgument(minLimit > 0 && minLimit <= maxLimit, "Invalid limits: min %s, max %s", minLimit, maxLimit);
+    checkArgument(latencyTolerance > 1, "Latency tolerance must be greater than 1");
+    this.host = checkNotNull(host);
+    this.minLimit = minLimit;
+    this.maxLimit = maxLimit;
+    this.latencyTolerance = latencyTolerance;
+    this.decreaseCooldownMillis = decreaseCooldownMillis;
+    this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+  }
+
+  public String getHost() {
+    return host;
+  }
+
+  /**
+   * Acquires a permit to execute a request against this host, waiting at most given time in queue.
+   *
+   * @return {@code true} if permit acquired, {@code false} if timed out while queued.
+   */
+  public boolean acquire(final long timeout, final TimeUnit unit) throws InterruptedException {
+    long nanos = unit.toNanos(timeout);
+    lock.lockInterruptibly();
+    try {
+      // do not barge in front of queued requests
+      if (queued == 0 && inFlight < (int) limit) {
+        inFlight++;
+        return true;
+      }
+      queued++;
+      try {
+        while (inFlight >= (int) limit) {
+          if (nanos <= 0) {
+            timeouts.incrementAndGet();
+            return false;
+          }
+          nanos = permitAvailable.awaitNanos(nanos);
+        }
+        inFlight++;
+        return true;
+      }
+      finally {
+        queued--;
+      }
+    }
+    finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Releases a permit acquired by {@link #acquire(long, TimeUnit)}.
+   */
+  public void release() {
+    lock.lock();
+    try {
+      inFlight--;
+      permitAvailable.signal();
+    }
+    finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Records a response received from the remote host.
+   *
+   * @param latencyMillis time until response headers were received.
+   * @param statusCode    the HTTP status code of response.
+   */
+  public void onResponse(final long latencyMillis, final int statusCode) {
+    requests.incrementAndGet();
+    final boolean throttling = statusCode == 429 || statusCode == 503;
+    if (throttling) {
+      throttled.incrementAndGet();
+    }
+    else if (statusCode >= 500) {
+      errors.incrementAndGet();
+    }
+    lock.lock();
+    try {
+      latencies[latencyCount++ % LATENCY_SAMPLES] = latencyMillis;
+      final boolean slow = baselineLatency > 0 && latencyMillis > baselineLatency * latencyTolerance;
+      if (baselineLatency == 0 || latencyMillis < baselineLatency) {
+        baselineLatency = latencyMillis;
+      }
+      else {
+        baselineLatency += BASELINE_ALPHA * (latencyMillis - baselineLatency);
+      }
+      if (throttling || slow) {
+        decrease();
+      }
+      else {
+        increase();
+      }
+    }
+    finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Records a transport failure (no response received) against the remote host.
+   */
+  public void onFailure() {
+    requests.incrementAndGet();
+    errors.incrementAndGet();
+    lock.lock();
+    try {
+      decrease();
+    }
+    finally {
+      lock.unlock();
+    }
+  }
+
+  private void increase() {
+    final int before = (int) limit;
+    limit = Math.min(maxLimit, limit + 1 / limit);
+    if ((int) limit > before) {
+      permitAvailable.signal();
+    }
+  }
+
+  private void decrease() {
+    final long now = System.currentTimeMillis();
+    if (now - lastDecrease >= decreaseCooldownMillis) {
+      lastDecrease = now;
+      limit = Math.max(minLimit, limit / 2);
+    }
+  }
+
+  // stats
+
+  public int getLimit() {
+    lock.lock();
+    try {
+      return (int) limit;
+    }
+    finally {
+      lock.unlock();
+    }
+  }
+
+  public int getInFlight() {
+    lock.lock();
+    try {
+      return inFlight;
+    }
+    finally {
+      lock.unlock();
+    }
+  }
+
+  public int getQueued() {
+    lock.lock();
+    try {
+      return queued;
+    }
+    finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Returns the 99th percentile of recent response latencies in milliseconds, or 0 if no response seen yet.
+   */
+  public long getP99Latency() {
+    final long[] samples;
+    lock.lock();
+    try {
+      samples = Arrays.copyOf(latencies, Math.min(latencyCount, LATENCY_SAMPLES));
+    }
+    finally {
+      lock.unlock();
+    }
+    if (samples.length == 0) {
+      return 0;
+    }
+    Arrays.sort(samples);
+    return samples[(int) Math.ceil(samples.length * 0.99) - 1];
+  }
+
+  public long getRequestCount() {
+    return requests.get();
+  }
+
+  public long getThrottledCount() {
+    return throttled.get();
+  }
+
+  public long getErrorCount() {
+    return errors.get();
+  }
+
+  public long getQueueTimeoutCount() {
+    return timeouts.get();
+  }
+}
@@ -0,0 +1,82 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.apachehttpclient;
+
+import javax.management.StandardMBean;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Default {@link RemoteHostLimiterMBean} implementation.
+ *
+ * @since 3.0
+ */
+class RemoteHostLimiterMBeanImpl
+    extends StandardMBean
+    implements RemoteHostLimiterMBean
+{
+
+  private final RemoteHostLimiter limiter;
+
+  RemoteHostLimiterMBeanImpl(final RemoteHostLimiter limiter) {
+    super(RemoteHostLimiterMBean.class, false);
+
+    this.limiter = Preconditions.checkNotNull(limiter);
+  }
+
+  @Override
+  public String getHost() {
+    return limiter.getHost();
+  }
+
+  @Override
+  public int getLimit() {
+    return limiter.getLimit();
+  }
+
+  @Override
+  public int getInFlight() {
+    return limiter.getInFlight();
+  }
+
+  @Override
+  public int getQueued() {
+    return limiter.getQueued();
+  }
+
+  @Override
+  public long getP99Latency() {
+    return limiter.getP99Latency();
+  }
+
+  @Override
+  public long getRequestCount() {
+    return limiter.getRequestCount();
+  }
+
+  @Override
+  public long getThrottledCount() {
+    return limiter.getThrottledCount();
+  }
+
+  @Override
+  public long getErrorCount() {
+    return limiter.getErrorCount();
+  }
+
+  @Override
+  public long getQueueTimeoutCount() {
+    return limiter.getQueueTimeoutCount();
+  }
+
+}
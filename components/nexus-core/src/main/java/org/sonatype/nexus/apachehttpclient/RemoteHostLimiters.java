@@ -0,0 +1,125 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.apachehttpclient;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.common.collect.Maps;
+import org.apache.http.HttpException;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpCoreContext;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Registry of {@link RemoteHostLimiter}s keyed by remote host, and HC4 interceptors feeding them with observed
+ * latencies and status codes.
+ *
+ * @since 3.0
+ */
+class RemoteHostLimiters
+{
+  /**
+   * Context key of request start timestamp (nanoseconds).
+   */
+  private static final String CTX_KEY_REQUEST_START = RemoteHostLimiters.class.getName() + ".requestStart";
+
+  private final ConcurrentMap<String, RemoteHostLimiter> limiters = Maps.newConcurrentMap();
+
+  private final PoolingClientConnectionManagerMBeanInstaller jmxInstaller;
+
+  private final int initialLimit;
+
+  private final int minLimit;
+
+  private final int maxLimit;
+
+  private final double latencyTolerance;
+
+  private final long decreaseCooldownMillis;
+
+  RemoteHostLimiters(final PoolingClientConnectionManagerMBeanInstaller jmxInstaller, final int initialLimit,
+                     final int minLimit, final int maxLimit, final double latencyTolerance,
+                     final long decreaseCooldownMillis)
+  {
+    this.jmxInstaller = checkNotNull(jmxInstaller);
+    this.initialLimit = initialLimit;
+    this.minLimit = minLimit;
+    this.maxLimit = maxLimit;
+    this.latencyTolerance = latencyTolerance;
+    this.decreaseCooldownMillis = decreaseCooldownMillis;
+  }
+
+  /**
+   * Returns the limiter of given host, creating (and registering into JMX) one if needed.
+   */
+  RemoteHostLimiter get(final HttpHost host) {
+    final String key = host.toHostString();
+    RemoteHostLimiter limiter = limiters.get(key);
+    if (limiter == null) {
+      final RemoteHostLimiter newLimiter = new RemoteHostLimiter(key, initialLimit, minLimit, maxLimit,
+          latencyTolerance, decreaseCooldownMillis);
+      limiter = limiters.putIfAbsent(key, newLimiter);
+      if (limiter == null) {
+        limiter = newLimiter;
+        jmxInstaller.register(limiter);
+      }
+    }
+    return limiter;
+  }
+
+  Collection<RemoteHostLimiter> getAll() {
+    return limiters.values();
+  }
+
+  /**
+   * Interceptor marking the time when request is sent out.
+   */
+  HttpRequestInterceptor requestInterceptor() {
+    return new HttpRequestInterceptor()
+    {
+      @Override
+      public void process(final HttpRequest request, final HttpContext context)
+          throws HttpException, IOException
+      {
+        context.setAttribute(CTX_KEY_REQUEST_START, System.nanoTime());
+      }
+    };
+  }
+
+  /**
+   * Interceptor feeding the limiter of target host with latency and status code of response.
+   */
+  HttpResponseInterceptor responseInterceptor() {
+    return new HttpResponseInterceptor()
+    {
+      @Override
+      public void process(final HttpResponse response, final HttpContext context)
+          throws HttpException, IOException
+      {
+        final Long start = (Long) context.getAttribute(CTX_KEY_REQUEST_START);
+        final HttpHost target = (HttpHost) context.getAttribute(HttpCoreContext.HTTP_TARGET_HOST);
+        if (start != null && target != null) {
+          get(target).onResponse((System.nanoTime() - start) / 1000000L, response.getStatusLine().getStatusCode());
+        }
+      }
+    };
+  }
+}
@@ -22,7 +22,14 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.annotation.Nullable;
 import javax.inject.Inject;
@@ -68,6 +75,8 @@ import org.sonatype.nexus.proxy.storage.local.LocalStorageContext;
 import org.sonatype.nexus.proxy.storage.remote.DefaultRemoteStorageContext;
 import org.sonatype.nexus.proxy.storage.remote.RemoteStorageContext;
 import org.sonatype.nexus.tasks.descriptors.ScheduledTaskDescriptor;
+import org.sonatype.nexus.threads.NexusThreadFactory;
+import org.sonatype.nexus.util.SystemPropertiesHelper;
 import org.sonatype.security.SecuritySystem;
 import org.sonatype.security.authentication.AuthenticationException;
 import org.sonatype.security.usermanagement.NoSuchUserManagerException;
@@ -79,8 +88,10 @@ import org.sonatype.sisu.goodies.common.ComponentSupport;
 import org.sonatype.sisu.goodies.eventbus.EventBus;
 
 import com.google.common.base.Function;
+import com.google.common.base.Stopwatch;
 import com.google.common.base.Strings;
 import com.google.common.collect.Collections2;
+import com.google.common.collect.Lists;
 import org.apache.shiro.SecurityUtils;
 import org.apache.shiro.authc.UsernamePasswordToken;
 import org.apache.shiro.subject.Subject;
@@ -134,6 +145,8 @@ public class DefaultNexusConfiguration
 
   private final ApplicationDirectories applicationDirectories;
 
+  private final int repositoryCreationThreads;
+
   // ===
 
   /**
@@ -201,6 +214,9 @@ public class DefaultNexusConfiguration
     this.uberClassLoader = checkNotNull(uberClassLoader);
     this.applicationDirectories = checkNotNull(applicationDirectories);
 
+    this.repositoryCreationThreads = SystemPropertiesHelper.getInteger(
+        "nexus.configuration.repositoryCreationThreads", Math.min(8, Runtime.getRuntime().availableProcessors()));
+
     this.configurationDirectory = applicationDirectories.getWorkDirectory("conf");
   }
 
@@ -625,22 +641,151 @@ public class DefaultNexusConfiguration
     dropRepositories();
   }
 
+  /**
+   * Creates repositories. Repositories not depending on other repositories (all except shadows and groups) are
+   * created and configured in parallel using {@code nexus.configuration.repositoryCreationThreads} threads, but are
+   * registered in configuration order. Shadows and groups are created afterwards, one by one.
+   */
   protected void createRepositories()
       throws ConfigurationException
   {
-    List<CRepository> reposes = getConfigurationModel().getRepositories();
+    final Stopwatch stopwatch = Stopwatch.createStarted();
 
+    final List<CRepository> reposes = getConfigurationModel().getRepositories();
+    final List<CRepository> plain = Lists.newArrayList();
+    final List<CRepository> shadows = Lists.newArrayList();
+    final List<CRepository> groups = Lists.newArrayList();
     for (CRepository repo : reposes) {
+      if (repo.getProviderRole().equals(GroupRepository.class.getName())) {
+        groups.add(repo);
+      }
+      else if (repo.getProviderRole().equals(ShadowRepository.class.getName())) {
+        shadows.add(repo);
+      }
+      else {
+        plain.add(repo);
+      }
+    }
 
-      if (!repo.getProviderRole().equals(GroupRepository.class.getName())) {
+    if (repositoryCreationThreads > 1 && plain.size() > 1) {
+      instantiateRepositoriesInParallel(getConfigurationModel(), plain);
+    }
+    else {
+      for (CRepository repo : plain) {
         instantiateRepository(getConfigurationModel(), repo);
       }
     }
+    log.info("Created {} repositories in {}", plain.size(), stopwatch);
 
-    for (CRepository repo : reposes) {
-      if (repo.getProviderRole().equals(GroupRepository.class.getName())) {
-        instantiateRepository(getConfigurationModel(), repo);
+    for (CRepository repo : shadows) {
+      instantiateRepository(getConfigurationModel(), repo);
+    }
+
+    for (CRepository repo : groups) {
+      instantiateRepository(getConfigurationModel(), repo);
+    }
+    log.info("Created {} shadow and {} group repositories in {}", shadows.size(), groups.size(), stopwatch);
+  }
+
+  /**
+   * Creates and configures repositories in parallel, then registers them in order given.
+   */
+  private void instantiateRepositoriesInParallel(final Configuration configuration,
+                                                 final List<CRepository> repositoryModels)
+      throws ConfigurationException
+  {
+    final ExecutorService executor = Executors.newFixedThreadPool(repositoryCreationThreads,
+        new NexusThreadFactory("repocreate", "Repository creation"));
+    final List<Future<Repository>> futures = Lists.newArrayList();
+    final AtomicBoolean aborted = new AtomicBoolean();
+    try {
+      for (final CRepository repositoryModel : repositoryModels) {
+        final Class<Repository> klazz = loadRepositoryClass(repositoryModel);
+        futures.add(executor.submit(new Callable<Repository>()
+        {
+          @Override
+          public Repository call() throws ConfigurationException {
+            if (aborted.get()) {
+              return null;
+            }
+            return createRepository(klazz, repositoryModel.getProviderHint(), repositoryModel);
+          }
+        }));
+      }
+
+      for (int i = 0; i < repositoryModels.size(); i++) {
+        final CRepository repositoryModel = repositoryModels.get(i);
+        final Repository repository = getCreatedRepository(futures.get(i), repositoryModel);
+        futures.set(i, null);
+        try {
+          checkRepositoryMaxInstanceCountForCreation(loadRepositoryClass(repositoryModel),
+              repositoryModel.getProviderHint(), repositoryModel);
+        }
+        catch (ConfigurationException e) {
+          releaseRepository(repository, configuration, repositoryModel);
+          throw e;
+        }
+        repositoryRegistry.addRepository(repository);
+      }
+    }
+    finally {
+      // on failure, creations not yet started are skipped, but those in progress are let to finish (not interrupted)
+      aborted.set(true);
+      executor.shutdown();
+      awaitTermination(executor);
+      // release those created but not registered due to a failure
+      for (int i = 0; i < futures.size(); i++) {
+        final Future<Repository> future = futures.get(i);
+        if (future != null) {
+          try {
+            final Repository repository = future.get();
+            if (repository != null) {
+              releaseRepository(repository, configuration, repositoryModels.get(i));
+            }
+          }
+          catch (Exception e) {
+            log.debug("Could not release repository {}", repositoryModels.get(i).getId(), e);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Waits for all tasks of given executor to finish, even if interrupted, as created repositories must be released.
+   */
+  private void awaitTermination(final ExecutorService executor) {
+    boolean interrupted = false;
+    while (true) {
+      try {
+        if (executor.awaitTermination(1, TimeUnit.SECONDS)) {
+          break;
+        }
+      }
+      catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private Repository getCreatedRepository(final Future<Repository> future, final CRepository repositoryModel)
+      throws ConfigurationException
+  {
+    try {
+      return future.get();
+    }
+    catch (InterruptedException e) {
+      throw new ConfigurationException("Interrupted while creating repository " + repositoryModel.getId(), e);
+    }
+    catch (ExecutionException e) {
+      if (e.getCause() instanceof ConfigurationException) {
+        throw (ConfigurationException) e.getCause();
       }
+      throw new ConfigurationException("Cannot instantiate repository " + repositoryModel.getProviderRole() + ":"
+          + repositoryModel.getProviderHint(), e.getCause());
     }
   }
 
@@ -657,11 +802,17 @@ public class DefaultNexusConfiguration
 
   protected Repository instantiateRepository(final Configuration configuration, final CRepository repositoryModel)
       throws ConfigurationException
+  {
+    return instantiateRepository(configuration, loadRepositoryClass(repositoryModel),
+        repositoryModel.getProviderHint(), repositoryModel);
+  }
+
+  private Class<Repository> loadRepositoryClass(final CRepository repositoryModel)
+      throws ConfigurationException
   {
     try {
       // core realm will search child/plugin realms too
-      final Class<Repository> klazz = (Class<Repository>) uberClassLoader.loadClass(repositoryModel.getProviderRole());
-      return instantiateRepository(configuration, klazz, repositoryModel.getProviderHint(), repositoryModel);
+      return (Class<Repository>) uberClassLoader.loadClass(repositoryModel.getProviderRole());
     }
     catch (Exception e) {
       throw new ConfigurationException("Cannot instantiate repository " + repositoryModel.getProviderRole() + ":"
@@ -675,11 +826,7 @@ public class DefaultNexusConfiguration
   {
     checkRepositoryMaxInstanceCountForCreation(klazz, name, repositoryModel);
 
-    // create it, will do runtime validation
-    Repository repository = runtimeConfigurationBuilder.createRepository(klazz, name);
-    if (repository instanceof Configurable) {
-      ((Configurable) repository).configure(repositoryModel);
-    }
+    Repository repository = createRepository(klazz, name, repositoryModel);
 
     // register with repoRegistry
     repositoryRegistry.addRepository(repository);
@@ -688,6 +835,21 @@ public class DefaultNexusConfiguration
     return repository;
   }
 
+  /**
+   * Creates and configures the repository, without registering it.
+   */
+  private Repository createRepository(final Class<? extends Repository> klazz, final String name,
+                                      final CRepository repositoryModel)
+      throws ConfigurationException
+  {
+    // create it, will do runtime validation
+    Repository repository = runtimeConfigurationBuilder.createRepository(klazz, name);
+    if (repository instanceof Configurable) {
+      ((Configurable) repository).configure(repositoryModel);
+    }
+    return repository;
+  }
+
   protected void releaseRepository(final Repository repository, final Configuration configuration,
                                    final CRepository repositoryModel)
       throws ConfigurationException
@@ -20,6 +20,12 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor.CallerRunsPolicy;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -51,13 +57,16 @@ import org.sonatype.nexus.proxy.repository.ProxyRepository;
 import org.sonatype.nexus.proxy.repository.Repository;
 import org.sonatype.nexus.proxy.walker.DefaultWalkerContext;
 import org.sonatype.nexus.proxy.walker.DottedStoreWalkerFilter;
-import org.sonatype.nexus.proxy.walker.ParentOMatic;
 import org.sonatype.nexus.proxy.walker.Walker;
 import org.sonatype.nexus.proxy.walker.WalkerContext;
 import org.sonatype.nexus.proxy.walker.WalkerContext.TraversalType;
 import org.sonatype.nexus.proxy.walker.WalkerException;
 import org.sonatype.nexus.proxy.wastebasket.DeleteOperation;
+import org.sonatype.nexus.threads.NexusExecutorService;
+import org.sonatype.nexus.threads.NexusThreadFactory;
 import org.sonatype.nexus.util.PathUtils;
+import org.sonatype.nexus.util.SystemPropertiesHelper;
+import org.sonatype.scheduling.ProgressListener;
 import org.sonatype.scheduling.TaskUtil;
 import org.sonatype.sisu.goodies.common.ComponentSupport;
 
@@ -72,6 +81,8 @@ import static com.google.common.base.Preconditions.checkNotNull;
  * minCountOfSnapshotsToKeep (but maybe more) snapshots per one snapshot collection by removing all older from
  * removeSnapshotsOlderThanDays. If should remove snaps if their release counterpart exists, the whole GAV will be
  * removed.
+ * <p>
+ * Artifacts are processed in parallel by {@code nexus.snapshotRemover.threads} threads (at most 4 by default).
  *
  * @author cstamas
  */
@@ -81,7 +92,6 @@ public class DefaultSnapshotRemover
     extends ComponentSupport
     implements SnapshotRemover
 {
-
   private RepositoryRegistry repositoryRegistry;
 
   private Walker walker;
@@ -90,6 +100,8 @@ public class DefaultSnapshotRemover
 
   private VersionScheme versionScheme = new GenericVersionScheme();
 
+  private final int threads;
+
   @Inject
   public DefaultSnapshotRemover(final RepositoryRegistry repositoryRegistry,
                                 final Walker walker,
@@ -98,6 +110,8 @@ public class DefaultSnapshotRemover
     this.repositoryRegistry = checkNotNull(repositoryRegistry);
     this.walker = checkNotNull(walker);
     this.maven2ContentClass = checkNotNull(maven2ContentClass);
+    this.threads = Math.max(1, SystemPropertiesHelper.getInteger("nexus.snapshotRemover.threads",
+        Math.min(4, Runtime.getRuntime().availableProcessors())));
   }
 
   protected RepositoryRegistry getRepositoryRegistry() {
@@ -163,7 +177,10 @@ public class DefaultSnapshotRemover
   }
 
   /**
-   * Removes the snapshots from maven repository.
+   * Removes the snapshots from maven repository. The repository is walked only once, and every artifact directory
+   * containing snapshot version directories is handed over to a bounded pool of workers as soon as the walker leaves
+   * it. The worker prunes snapshot versions of the artifact and, in case of hosted repositories, rebuilds the
+   * artifact metadata right away, so memory use does not depend on repository size.
    *
    * @param repository the repository
    * @throws Exception the exception
@@ -193,26 +210,36 @@ public class DefaultSnapshotRemover
 
     if (log.isDebugEnabled()) {
       log.debug(
-          "Collecting deletable snapshots on repository " + repository.getId() + " from storage directory "
-              + repository.getLocalUrl()
+          "Removing deletable snapshots on repository " + repository.getId() + " from storage directory "
+              + repository.getLocalUrl() + " using " + threads + " threads"
       );
     }
 
-    final ParentOMatic parentOMatic = new ParentOMatic();
+    // if we are processing a hosted-snapshot repository, we need to rebuild maven metadata
+    // without this flag, metadata would be recreated in proxy repositories too, but doing nothing!
+    final boolean rebuildMetadata = repository.getRepositoryKind().isFacetAvailable(HostedRepository.class);
+
+    if (rebuildMetadata) {
+      // expire NFC since we might create new maven metadata files
+      repository.expireNotFoundCaches(new ResourceStoreRequest(RepositoryItemUid.PATH_ROOT));
+    }
 
-    // create a walker to collect deletables and let it loose on collections only
     final SnapshotRemoverWalkerProcessor snapshotRemoveProcessor =
-        new SnapshotRemoverWalkerProcessor(repository, request, parentOMatic);
+        new SnapshotRemoverWalkerProcessor(repository, request, rebuildMetadata);
 
     final DefaultWalkerContext ctxMain =
         new DefaultWalkerContext(repository,
             new ResourceStoreRequest("/"),
-            new DottedStoreWalkerFilter(),
-            TraversalType.BREADTH_FIRST,
+            new SnapshotRemoverWalkerFilter(),
+            TraversalType.DEPTH_FIRST,
             false);
-    ctxMain.getContext().put(DeleteOperation.DELETE_OPERATION_CTX_KEY, getDeleteOperation(request));
     ctxMain.getProcessors().add(snapshotRemoveProcessor);
-    walker.walk(ctxMain);
+    try {
+      walker.walk(ctxMain);
+    }
+    finally {
+      snapshotRemoveProcessor.awaitWorkers();
+    }
 
     if (ctxMain.getStopCause() != null) {
       result.setSuccessful(false);
@@ -222,44 +249,15 @@ public class DefaultSnapshotRemover
     result.setDeletedSnapshots(snapshotRemoveProcessor.getDeletedSnapshots());
     result.setDeletedFiles(snapshotRemoveProcessor.getDeletedFiles());
 
-    if (log.isDebugEnabled()) {
-      log.debug(
-          "Collected and deleted " + snapshotRemoveProcessor.getDeletedSnapshots()
-              + " snapshots with alltogether " + snapshotRemoveProcessor.getDeletedFiles()
-              + " files on repository " + repository.getId()
-      );
-    }
+    snapshotRemoveProcessor.logProgress(true);
 
-    // if we are processing a hosted-snapshot repository, we need to rebuild maven metadata
-    // without this if below, the walk would happen against proxy repositories too, but doing nothing!
-    if (repository.getRepositoryKind().isFacetAvailable(HostedRepository.class)) {
-      // expire NFC since we might create new maven metadata files
+    if (rebuildMetadata) {
+      // expire NFC again, metadata might have been requested while being recreated
       repository.expireNotFoundCaches(new ResourceStoreRequest(RepositoryItemUid.PATH_ROOT));
-
-      RecreateMavenMetadataWalkerProcessor metadataRebuildProcessor =
-          new RecreateMavenMetadataWalkerProcessor(log, getDeleteOperation(request));
-
-      for (String path : parentOMatic.getMarkedPaths()) {
-        TaskUtil.checkInterruption();
-
-        DefaultWalkerContext ctxMd =
-            new DefaultWalkerContext(repository, new ResourceStoreRequest(path),
-                new DottedStoreWalkerFilter());
-
-        ctxMd.getProcessors().add(metadataRebuildProcessor);
-
-        try {
-          walker.walk(ctxMd);
-        }
-        catch (WalkerException e) {
-          if (!(e.getCause() instanceof ItemNotFoundException)) {
-            // do not ignore it
-            throw e;
-          }
-        }
-      }
     }
 
+    TaskUtil.checkInterruption();
+
     return result;
   }
 
@@ -285,21 +283,47 @@ public class DefaultSnapshotRemover
     }
   }
 
+  /**
+   * Walker filter that does not descend into snapshot version directories, those are listed by the workers.
+   */
+  private static class SnapshotRemoverWalkerFilter
+      extends DottedStoreWalkerFilter
+  {
+    @Override
+    public boolean shouldProcessRecursively(final WalkerContext ctx, final StorageCollectionItem coll) {
+      return super.shouldProcessRecursively(ctx, coll) && !coll.getPath().endsWith("SNAPSHOT");
+    }
+  }
+
+  /**
+   * Collects snapshot version directories of the artifact directory being walked, and submits them as one unit of
+   * work once the walker exits the artifact directory. The walk is throttled by the bounded work queue: when it is
+   * full, the walker thread processes the artifact itself.
+   */
   private class SnapshotRemoverWalkerProcessor
       extends AbstractFileDeletingWalkerProcessor
   {
 
     private static final long MILLIS_IN_A_DAY = 86400000L;
 
+    private static final long PROGRESS_INTERVAL_MILLIS = 10000L;
+
     private final MavenRepository repository;
 
     private final SnapshotRemovalRequest request;
 
-    private final Map<Version, List<StorageFileItem>> remainingSnapshotsAndFiles = Maps.newHashMap();
+    private final boolean rebuildMetadata;
+
+    private final DeleteOperation deleteOperation;
+
+    private final ProgressListener progressListener;
 
-    private final Map<Version, List<StorageFileItem>> deletableSnapshotsAndFiles = Maps.newHashMap();
+    private final ExecutorService executor;
 
-    private final ParentOMatic collectionNodes;
+    /**
+     * Snapshot version directories per artifact directory path, only touched by walker thread.
+     */
+    private final Map<String, List<StorageCollectionItem>> pendingCollections = Maps.newHashMap();
 
     private final long dateThreshold;
 
@@ -307,25 +331,26 @@ public class DefaultSnapshotRemover
 
     private final long gracePeriodInMillis;
 
-    private final List<StorageItem> items;
+    private final AtomicInteger deletedSnapshots = new AtomicInteger();
 
-    private boolean shouldProcessCollection;
+    private final AtomicInteger deletedFiles = new AtomicInteger();
 
-    private boolean removeWholeGAV;
+    private final AtomicInteger processedArtifacts = new AtomicInteger();
 
-    private int deletedSnapshots = 0;
-
-    private int deletedFiles = 0;
+    private long lastProgress;
 
     public SnapshotRemoverWalkerProcessor(final MavenRepository repository,
                                           final SnapshotRemovalRequest request,
-                                          final ParentOMatic collectionNodes)
+                                          final boolean rebuildMetadata)
     {
       this.repository = repository;
       this.request = request;
-      this.collectionNodes = collectionNodes;
+      this.rebuildMetadata = rebuildMetadata;
+      this.deleteOperation = getDeleteOperation(request);
+      this.progressListener = TaskUtil.getCurrentProgressListener();
 
       this.startTime = System.currentTimeMillis();
+      this.lastProgress = startTime;
 
       int days = request.getRemoveSnapshotsOlderThanDays();
 
@@ -337,7 +362,12 @@ public class DefaultSnapshotRemover
       }
 
       gracePeriodInMillis = Math.max(0, request.getGraceDaysAfterRelease()) * MILLIS_IN_A_DAY;
-      items = Lists.newArrayList();
+
+      this.executor = NexusExecutorService.forCurrentSubject(
+          new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+              new ArrayBlockingQueue<Runnable>(threads * 2),
+              new NexusThreadFactory("snapshot-remover", "Snapshot remover " + repository.getId()),
+              new CallerRunsPolicy()));
     }
 
     protected void addStorageFileItemToMap(Map<Version, List<StorageFileItem>> map, Gav gav, StorageFileItem item) {
@@ -363,50 +393,163 @@ public class DefaultSnapshotRemover
 
     @Override
     public void onCollectionEnter(WalkerContext context, StorageCollectionItem coll) {
-      items.clear();
-      deletableSnapshotsAndFiles.clear();
-      remainingSnapshotsAndFiles.clear();
-      shouldProcessCollection = coll.getPath().endsWith("SNAPSHOT");
+      if (coll.getPath().endsWith("SNAPSHOT")) {
+        final String parentPath = PathUtils.getParentPath(coll.getPath());
+        List<StorageCollectionItem> collections = pendingCollections.get(parentPath);
+        if (collections == null) {
+          collections = Lists.newArrayList();
+          pendingCollections.put(parentPath, collections);
+        }
+        collections.add(coll);
+      }
     }
 
     @Override
     public void processItem(WalkerContext context, StorageItem item)
         throws Exception
     {
-      if (!shouldProcessCollection) {
+      // nothing, snapshot version directories are listed by the workers
+    }
+
+    @Override
+    public void onCollectionExit(WalkerContext context, final StorageCollectionItem coll) {
+      final List<StorageCollectionItem> collections = pendingCollections.remove(coll.getPath());
+      if (collections == null) {
         return;
       }
-      items.add(item);
+
+      TaskUtil.checkInterruption();
+
+      executor.execute(new Runnable()
+      {
+        @Override
+        public void run() {
+          if (!progressListener.isCanceled()) {
+            processArtifact(coll, collections);
+          }
+        }
+      });
+
+      logProgress(false);
     }
 
-    @Override
-    public void onCollectionExit(WalkerContext context, StorageCollectionItem coll) {
-      if (!shouldProcessCollection) {
+    /**
+     * Waits for submitted artifacts to be processed. Pending work is dropped if the task was canceled.
+     */
+    public void awaitWorkers() {
+      executor.shutdown();
+      try {
+        while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+          if (progressListener.isCanceled()) {
+            executor.shutdownNow();
+          }
+        }
+      }
+      catch (InterruptedException e) {
+        executor.shutdownNow();
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    public void logProgress(final boolean done) {
+      final long now = System.currentTimeMillis();
+      if (!done && now - lastProgress < PROGRESS_INTERVAL_MILLIS) {
         return;
       }
+      lastProgress = now;
+      final long seconds = Math.max(1, (now - startTime) / 1000);
+      final String message = String.format(
+          "%s %s: %s artifacts processed, %s snapshots (%s files) removed, %s artifacts/s",
+          done ? "Finished" : "Removing snapshots on", repository.getId(), processedArtifacts.get(),
+          deletedSnapshots.get(), deletedFiles.get(), processedArtifacts.get() / seconds);
+      log.info(message);
+      progressListener.working(message);
+    }
+
+    /**
+     * Prunes the snapshot versions of one artifact, and recreates metadata of every processed version, just as the
+     * former separate metadata pass did. If a version was removed entirely, metadata of the whole artifact is
+     * recreated instead.
+     */
+    private void processArtifact(final StorageCollectionItem artifactColl,
+                                 final List<StorageCollectionItem> versionColls)
+    {
+      final List<String> metadataPaths = Lists.newArrayList();
+      boolean versionRemoved = false;
+      for (StorageCollectionItem coll : versionColls) {
+        if (progressListener.isCanceled()) {
+          return;
+        }
+        try {
+          if (processVersion(coll)) {
+            versionRemoved = true;
+          }
+          else {
+            metadataPaths.add(coll.getPath());
+          }
+        }
+        catch (Exception e) {
+          // we always simply log the exception and continue
+          log.warn("SnapshotRemover is failed to process path: '" + coll.getPath() + "'.", e);
+        }
+      }
+
+      if (rebuildMetadata) {
+        if (versionRemoved) {
+          metadataPaths.clear();
+          metadataPaths.add(artifactColl.getPath());
+        }
+        for (String path : metadataPaths) {
+          try {
+            recreateMetadata(path);
+          }
+          catch (Exception e) {
+            log.warn("SnapshotRemover is failed to recreate metadata of path: '" + path + "'.", e);
+          }
+        }
+      }
+
+      processedArtifacts.incrementAndGet();
+    }
+
+    private void recreateMetadata(final String path) {
+      final DefaultWalkerContext ctxMd =
+          new DefaultWalkerContext(repository, new ResourceStoreRequest(path),
+              new DottedStoreWalkerFilter());
+
+      ctxMd.getProcessors().add(new RecreateMavenMetadataWalkerProcessor(log, deleteOperation));
+
       try {
-        doOnCollectionExit(context, coll);
+        walker.walk(ctxMd);
       }
-      catch (Exception e) {
-        // we always simply log the exception and continue
-        log.warn("SnapshotRemover is failed to process path: '" + coll.getPath() + "'.", e);
+      catch (WalkerException e) {
+        if (!(e.getCause() instanceof ItemNotFoundException)) {
+          // do not ignore it
+          throw e;
+        }
       }
     }
 
-    public void doOnCollectionExit(WalkerContext context, StorageCollectionItem coll)
+    /**
+     * Prunes one snapshot version directory.
+     *
+     * @return {@code true} if the whole version was removed.
+     */
+    private boolean processVersion(final StorageCollectionItem coll)
         throws Exception
     {
       if (log.isDebugEnabled()) {
-        log.debug("onCollectionExit() :: " + coll.getRepositoryItemUid().toString());
+        log.debug("processVersion() :: " + coll.getRepositoryItemUid().toString());
       }
-      removeWholeGAV = false;
+      final Collection<StorageItem> items = repository.list(false, coll);
+      final Map<Version, List<StorageFileItem>> remainingSnapshotsAndFiles = Maps.newHashMap();
+      final Map<Version, List<StorageFileItem>> deletableSnapshotsAndFiles = Maps.newHashMap();
+      boolean removeWholeGAV = false;
       final HashSet<Long> versionsToRemove = Sets.newHashSet();
       // gathering the facts
       for (StorageItem item : items) {
         if (!item.isVirtual() && !StorageCollectionItem.class.isAssignableFrom(item.getClass())) {
-          final Gav gav =
-              ((MavenRepository) coll.getRepositoryItemUid().getRepository()).getGavCalculator().pathToGav(
-                  item.getPath());
+          final Gav gav = repository.getGavCalculator().pathToGav(item.getPath());
 
           if (gav != null) {
             // if we find a pom, check for delete on release
@@ -470,7 +613,7 @@ public class DefaultSnapshotRemover
             try {
               // preserve possible subdirs
               if (!(item instanceof StorageCollectionItem)) {
-                repository.deleteItem(false, createResourceStoreRequest(item, context));
+                repository.deleteItem(false, createResourceStoreRequest(item));
               }
             }
             catch (ItemNotFoundException e) {
@@ -523,7 +666,7 @@ public class DefaultSnapshotRemover
         for (Version key : deletableSnapshotsAndFiles.keySet()) {
 
           List<StorageFileItem> files = deletableSnapshotsAndFiles.get(key);
-          deletedSnapshots++;
+          deletedSnapshots.incrementAndGet();
 
           for (StorageFileItem file : files) {
             try {
@@ -532,8 +675,8 @@ public class DefaultSnapshotRemover
               if (gavHasMoreTimestampedSnapshots) {
                 file.getItemContext().put(MORE_TS_SNAPSHOTS_EXISTS_FOR_GAV, Boolean.TRUE);
               }
-              repository.deleteItem(false, createResourceStoreRequest(file, context));
-              deletedFiles++;
+              repository.deleteItem(false, createResourceStoreRequest(file));
+              deletedFiles.incrementAndGet();
             }
             catch (ItemNotFoundException e) {
               // NEXUS-5682 Since checksum files are no longer physically represented on the file system,
@@ -552,7 +695,14 @@ public class DefaultSnapshotRemover
       }
 
       removeDirectoryIfEmpty(repository, coll);
-      updateMetadataIfNecessary(context, coll);
+
+      return removeWholeGAV || (!deletableSnapshotsAndFiles.isEmpty() && remainingSnapshotsAndFiles.isEmpty());
+    }
+
+    private ResourceStoreRequest createResourceStoreRequest(final StorageItem item) {
+      ResourceStoreRequest request = new ResourceStoreRequest(item);
+      request.getRequestContext().put(DeleteOperation.DELETE_OPERATION_CTX_KEY, deleteOperation);
+      return request;
     }
 
     /**
@@ -610,18 +760,6 @@ public class DefaultSnapshotRemover
       return lastRequested;
     }
 
-    private void updateMetadataIfNecessary(WalkerContext context, StorageCollectionItem coll)
-        throws Exception
-    {
-      // all snapshot files are deleted
-      if (!deletableSnapshotsAndFiles.isEmpty() && remainingSnapshotsAndFiles.isEmpty()) {
-        collectionNodes.addAndMarkPath(PathUtils.getParentPath(coll.getPath()));
-      }
-      else {
-        collectionNodes.addAndMarkPath(coll.getPath());
-      }
-    }
-
     public boolean releaseExistsForSnapshot(Gav snapshotGav, RequestContext context) {
       long releaseTimestamp = -1;
 
@@ -690,11 +828,11 @@ public class DefaultSnapshotRemover
     }
 
     public int getDeletedSnapshots() {
-      return deletedSnapshots;
+      return deletedSnapshots.get();
     }
 
     public int getDeletedFiles() {
-      return deletedFiles;
+      return deletedFiles.get();
     }
 
   }
@@ -17,6 +17,7 @@ import java.util.HashSet;
 import java.util.Map;
 import java.util.Stack;
 
+import org.sonatype.nexus.proxy.events.RepositoryItemBatchEventImported;
 import org.sonatype.nexus.proxy.item.StorageItem;
 import org.sonatype.nexus.proxy.repository.GroupRepository;
 import org.sonatype.nexus.proxy.repository.ProxyRepository;
@@ -87,6 +88,15 @@ public class RequestContext
    */
   public static final String CTX_AUTH_CHECK_ONLY = "request.auth.check.only";
 
+  /**
+   * Context flag to mark a request as part of a bulk import. Item events caused by such requests are followed by a
+   * single {@link RepositoryItemBatchEventImported} covering the whole import, so subscribers doing costly work per
+   * item (like indexing) may skip them and process the batch event instead.
+   *
+   * @since 3.0
+   */
+  public static final String CTX_BULK_IMPORT_FLAG = "request.bulkImport";
+
   private RequestContext parent;
 
   private final HashMap<String, Object> delegate;
@@ -20,7 +20,6 @@ import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
 
-import org.sonatype.nexus.proxy.NoSuchRepositoryException;
 import org.sonatype.nexus.proxy.ResourceStoreRequest;
 import org.sonatype.nexus.proxy.registry.RepositoryRegistry;
 import org.sonatype.nexus.proxy.repository.GroupRepository;
@@ -66,9 +65,11 @@ public class DefaultNexusItemAuthorizer
   private boolean authorizePathCascade(final Repository repository, final ResourceStoreRequest request,
                                        final Action action)
   {
-    final List<GroupRepository> groups = repoRegistry.getGroupsOfRepository(repository);
+    // groups of groups are resolved by registry, no need to recurse
+    final List<GroupRepository> groups = repoRegistry.getTransitiveGroupsOfRepository(repository);
     for (GroupRepository group : groups) {
-      if (authorizePath(group, request, action)) {
+      final TargetSet matched = group.getTargetsForRequest(request);
+      if (matched != null && authorizePath(matched, action)) {
         return true;
       }
     }
@@ -83,15 +84,9 @@ public class DefaultNexusItemAuthorizer
 
   public TargetSet getGroupsTargetSet(final Repository repository, final ResourceStoreRequest request) {
     final TargetSet targetSet = new TargetSet();
-    for (Repository group : getListOfGroups(repository.getId())) {
-      // are the perms transitively inherited from the groups where it is member?
-      // !group.isExposed()
-      if (true) {
-        final TargetSet groupMatched = group.getTargetsForRequest(request);
-        targetSet.addTargetSet(groupMatched);
-        // now that we have groups of groups, this needs to be a recursive check
-        targetSet.addTargetSet(getGroupsTargetSet(group, request));
-      }
+    // perms are transitively inherited from the groups where it is member, even from groups of groups
+    for (GroupRepository group : repoRegistry.getTransitiveGroupsOfRepository(repository)) {
+      targetSet.addTargetSet(group.getTargetsForRequest(request));
     }
     return targetSet;
   }
@@ -115,20 +110,6 @@ public class DefaultNexusItemAuthorizer
 
   // ==
 
-  protected List<Repository> getListOfGroups(final String repositoryId) {
-    final List<Repository> groups = new ArrayList<Repository>();
-    final List<String> groupIds = repoRegistry.getGroupsOfRepository(repositoryId);
-    for (String groupId : groupIds) {
-      try {
-        groups.add(repoRegistry.getRepository(groupId));
-      }
-      catch (NoSuchRepositoryException e) {
-        // ignored
-      }
-    }
-    return groups;
-  }
-
   protected List<String> getTargetPerms(final TargetSet matched, final Action action) {
     final List<String> perms = new ArrayList<String>(matched.getMatches().size());
     // nexus : 'target' + targetId : repoId : read
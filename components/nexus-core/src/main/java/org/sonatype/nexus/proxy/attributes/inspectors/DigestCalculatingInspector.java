@@ -12,23 +12,27 @@
  */
 package org.sonatype.nexus.proxy.attributes.inspectors;
 
+import java.io.File;
 import java.io.InputStream;
-import java.security.MessageDigest;
+import java.util.Map;
 
 import javax.inject.Named;
 import javax.inject.Singleton;
 
 import org.sonatype.nexus.proxy.attributes.AbstractStorageItemInspector;
-import org.sonatype.nexus.proxy.item.ChecksummingContentLocator;
+import org.sonatype.nexus.proxy.attributes.Attributes;
+import org.sonatype.nexus.proxy.item.ContentLocator;
+import org.sonatype.nexus.proxy.item.FileContentLocator;
 import org.sonatype.nexus.proxy.item.StorageFileItem;
 import org.sonatype.nexus.proxy.item.StorageItem;
-import org.sonatype.nexus.util.io.StreamSupport;
-
-import static com.google.common.io.ByteStreams.nullOutputStream;
+import org.sonatype.nexus.util.SystemPropertiesHelper;
+import org.sonatype.nexus.util.io.DigestSupport;
 
 /**
- * The Class DigestCalculatingInspector calculates MD5 and SHA1 digests of a file and stores them into extended
- * attributes.
+ * The Class DigestCalculatingInspector calculates MD5 and SHA1 (and if enabled with
+ * {@code nexus.attributes.digest.sha256}, SHA-256) digests of a file and stores them into extended attributes. All
+ * digests are calculated with one single read of the content. Size and modification time of the content digested is
+ * recorded too, see {@link #isDigestUpToDate(StorageFileItem)}.
  *
  * @author cstamas
  */
@@ -51,6 +55,30 @@ public class DigestCalculatingInspector
    */
   public static String DIGEST_SHA1_KEY = StorageFileItem.DIGEST_SHA1_KEY;
 
+  /**
+   * The digest sha256 key, present only if SHA-256 calculation is enabled.
+   *
+   * @since 3.0
+   */
+  public static final String DIGEST_SHA256_KEY = "digest.sha256";
+
+  /**
+   * The key of content length the digests were calculated from.
+   *
+   * @since 3.0
+   */
+  public static final String DIGEST_LENGTH_KEY = "digest.length";
+
+  /**
+   * The key of content modification timestamp the digests were calculated from.
+   *
+   * @since 3.0
+   */
+  public static final String DIGEST_MODIFIED_KEY = "digest.modified";
+
+  private static final boolean SHA256_ENABLED = SystemPropertiesHelper.getBoolean(
+      "nexus.attributes.digest.sha256", false);
+
   @Override
   public boolean isHandled(final StorageItem item) {
     if (item instanceof StorageFileItem) {
@@ -73,23 +101,66 @@ public class DigestCalculatingInspector
   {
     if (item instanceof StorageFileItem) {
       final StorageFileItem file = (StorageFileItem) item;
-      final ChecksummingContentLocator sha1cl =
-          new ChecksummingContentLocator(file.getContentLocator(), MessageDigest.getInstance("SHA1"),
-              StorageFileItem.DIGEST_SHA1_KEY, item.getItemContext());
+      final Map<String, String> digests = calculateDigests(file.getContentLocator());
+      item.getItemContext().put(StorageFileItem.DIGEST_SHA1_KEY, digests.get("SHA1"));
       // md5 is deprecated but still calculated
-      ChecksummingContentLocator md5cl =
-          new ChecksummingContentLocator(sha1cl, MessageDigest.getInstance("MD5"),
-              StorageFileItem.DIGEST_MD5_KEY, item.getItemContext());
-      try (final InputStream is = md5cl.getContent()) {
-        StreamSupport.copy(is, nullOutputStream(), StreamSupport.BUFFER_SIZE);
+      item.getItemContext().put(StorageFileItem.DIGEST_MD5_KEY, digests.get("MD5"));
+      if (SHA256_ENABLED) {
+        item.getRepositoryItemAttributes().put(DIGEST_SHA256_KEY, digests.get("SHA-256"));
       }
       // we made sure that above operations will make values into context
       maybeGetFromContext(item);
     }
   }
 
+  /**
+   * Returns {@code true} if the digests in attributes of given item were calculated by this inspector from content
+   * having the same length and modification timestamp as the item currently has, hence there is no need to calculate
+   * them again.
+   *
+   * @since 3.0
+   */
+  public static boolean isDigestUpToDate(final StorageFileItem item) {
+    final Attributes attributes = item.getRepositoryItemAttributes();
+    return attributes.containsKey(DIGEST_SHA1_KEY)
+        && attributes.containsKey(DIGEST_MD5_KEY)
+        && (!SHA256_ENABLED || attributes.containsKey(DIGEST_SHA256_KEY))
+        && String.valueOf(item.getLength()).equals(attributes.get(DIGEST_LENGTH_KEY))
+        && String.valueOf(item.getModified()).equals(attributes.get(DIGEST_MODIFIED_KEY));
+  }
+
   // ==
 
+  protected Map<String, String> calculateDigests(final ContentLocator content)
+      throws Exception
+  {
+    final String[] algorithms = SHA256_ENABLED ? new String[]{"SHA1", "MD5", "SHA-256"} : new String[]{"SHA1", "MD5"};
+    if (content instanceof FileContentLocator) {
+      // plain file, read it through a direct buffer
+      return DigestSupport.digest(((FileContentLocator) content).getFile().toPath(), algorithms);
+    }
+    try (final InputStream is = content.getContent()) {
+      return DigestSupport.digest(is, algorithms);
+    }
+  }
+
+  /**
+   * Records length and modification timestamp of the content digests are calculated from, be they calculated by this
+   * inspector or while content was stored. Values are taken from the file if content is a file, as stored file might
+   * have coarser timestamp than item had.
+   */
+  protected void recordDigestedContent(final StorageFileItem item) {
+    long length = item.getLength();
+    long modified = item.getModified();
+    if (item.getContentLocator() instanceof FileContentLocator) {
+      final File file = ((FileContentLocator) item.getContentLocator()).getFile();
+      length = file.length();
+      modified = file.lastModified();
+    }
+    item.getRepositoryItemAttributes().put(DIGEST_LENGTH_KEY, String.valueOf(length));
+    item.getRepositoryItemAttributes().put(DIGEST_MODIFIED_KEY, String.valueOf(modified));
+  }
+
   protected boolean maybeGetFromContext(final StorageItem item) {
     if (item.getItemContext().containsKey(StorageFileItem.DIGEST_SHA1_KEY)) {
       item.getRepositoryItemAttributes().put(DIGEST_SHA1_KEY,
@@ -97,6 +168,9 @@ public class DigestCalculatingInspector
       // do this one "blindly"
       item.getRepositoryItemAttributes().put(DIGEST_MD5_KEY,
           String.valueOf(item.getItemContext().get(StorageFileItem.DIGEST_MD5_KEY)));
+      if (item instanceof StorageFileItem) {
+        recordDigestedContent((StorageFileItem) item);
+      }
       // we did our job, those were in context
       return true;
     }
@@ -15,11 +15,11 @@ package org.sonatype.nexus.proxy.mapping;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.Set;
 import java.util.regex.Pattern;
 
 import javax.inject.Inject;
@@ -39,9 +39,12 @@ import org.sonatype.nexus.configuration.validator.ApplicationConfigurationValida
 import org.sonatype.nexus.proxy.NoSuchRepositoryException;
 import org.sonatype.nexus.proxy.ResourceStore;
 import org.sonatype.nexus.proxy.ResourceStoreRequest;
+import org.sonatype.nexus.proxy.events.RepositoryConfigurationUpdatedEvent;
 import org.sonatype.nexus.proxy.events.RepositoryRegistryEventRemove;
+import org.sonatype.nexus.proxy.events.RepositoryRegistryRepositoryEvent;
 import org.sonatype.nexus.proxy.mapping.RepositoryPathMapping.MappingType;
 import org.sonatype.nexus.proxy.registry.RepositoryRegistry;
+import org.sonatype.nexus.proxy.repository.GroupRepository;
 import org.sonatype.nexus.proxy.repository.Repository;
 import org.sonatype.sisu.goodies.eventbus.EventBus;
 
@@ -78,15 +81,9 @@ public class DefaultRequestRepositoryMapper
   private final ApplicationConfigurationValidator validator;
 
   /**
-   * The compiled flag.
+   * The compiled mappings, {@code null} if not compiled (or changed since compiled).
    */
-  private volatile boolean compiled = false;
-
-  private volatile List<RepositoryPathMapping> blockings = new CopyOnWriteArrayList<RepositoryPathMapping>();
-
-  private volatile List<RepositoryPathMapping> inclusions = new CopyOnWriteArrayList<RepositoryPathMapping>();
-
-  private volatile List<RepositoryPathMapping> exclusions = new CopyOnWriteArrayList<RepositoryPathMapping>();
+  private volatile CompiledMappings compiledMappings;
 
   @Inject
   public DefaultRequestRepositoryMapper(EventBus eventBus, ApplicationConfiguration applicationConfiguration,
@@ -128,7 +125,7 @@ public class DefaultRequestRepositoryMapper
   {
     boolean wasDirty = super.commitChanges();
     if (wasDirty) {
-      compiled = false;
+      recompile();
     }
     return wasDirty;
   }
@@ -140,104 +137,33 @@ public class DefaultRequestRepositoryMapper
                                                 List<Repository> resolvedRepositories)
       throws NoSuchRepositoryException
   {
-    if (!compiled) {
-      compile();
-    }
-
-    // NEXUS-2852: to make our life easier, we will work with repository IDs,
-    // and will fill the result with Repositories at the end
-    LinkedHashSet<String> reposIdSet = new LinkedHashSet<String>(resolvedRepositories.size());
-
-    for (Repository resolvedRepositorty : resolvedRepositories) {
-      reposIdSet.add(resolvedRepositorty.getId());
-    }
-
-    // if include found, add it to the list.
-    boolean firstAdd = true;
-
-    for (RepositoryPathMapping mapping : blockings) {
-      if (mapping.matches(repository, request)) {
-        if (log.isDebugEnabled()) {
-          log.debug(
-              "The request path [" + request.toString() + "] is blocked by rule " + mapping.toString());
-        }
-
-        request.addAppliedMappingsList(repository, Collections.singletonList(mapping.toString()));
-
-        return Collections.emptyList();
-      }
-    }
-
-    // for tracking what is applied
-    ArrayList<RepositoryPathMapping> appliedMappings = new ArrayList<RepositoryPathMapping>();
-
-    // include, if found a match
-    // NEXUS-2852: watch to not add multiple times same repository
-    // ie. you have different inclusive rules that are triggered by same request
-    // and contains some repositories. This is now solved using LinkedHashSet and using repo IDs.
-    for (RepositoryPathMapping mapping : inclusions) {
-      if (mapping.matches(repository, request)) {
-        appliedMappings.add(mapping);
-
-        if (firstAdd) {
-          reposIdSet.clear();
-
-          firstAdd = false;
-        }
-
-        // add only those that are in initial resolvedRepositories list and that are non-user managed
-        // (preserve ordering)
-        if (mapping.getMappedRepositories().size() == 1
-            && "*".equals(mapping.getMappedRepositories().get(0))) {
-          for (Repository repo : resolvedRepositories) {
-            reposIdSet.add(repo.getId());
-          }
-        }
-        else {
-          for (Repository repo : resolvedRepositories) {
-            if (mapping.getMappedRepositories().contains(repo.getId()) || !repo.isUserManaged()) {
-              reposIdSet.add(repo.getId());
-            }
-          }
-        }
-      }
+    CompiledMappings mappings = compiledMappings;
+    if (mappings == null) {
+      mappings = compile();
     }
 
-    // then, if exlude found, remove those
-    for (RepositoryPathMapping mapping : exclusions) {
-      if (mapping.matches(repository, request)) {
-        appliedMappings.add(mapping);
-
-        if (mapping.getMappedRepositories().size() == 1
-            && "*".equals(mapping.getMappedRepositories().get(0))) {
-          reposIdSet.clear();
-
-          break;
-        }
-
-        for (String repositoryId : mapping.getMappedRepositories()) {
-          Repository mappedRepository = repositoryRegistry.getRepository(repositoryId);
-
-          // but only if is user managed
-          if (mappedRepository.isUserManaged()) {
-            reposIdSet.remove(mappedRepository.getId());
-          }
-        }
-      }
+    final RepositoryPathMatcher matcher = mappings.getMatcher(repository);
+    final RepositoryPathMatcher.Outcome outcome;
+    try {
+      outcome = matcher.map(request.getRequestPath(), resolvedRepositories);
     }
+    catch (NoSuchRepositoryException e) {
+      log.error(
+          "Some of the Routes contains references to non-existant repositories! Please check the following mappings: \""
+              + matcher.applied(request.getRequestPath()) + "\".");
 
-    // store the applied mappings to request context
-    ArrayList<String> appliedMappingsList = new ArrayList<String>(appliedMappings.size());
-
-    for (RepositoryPathMapping mapping : appliedMappings) {
-      appliedMappingsList.add(mapping.toString());
+      throw e;
     }
 
-    request.addAppliedMappingsList(repository, appliedMappingsList);
+    request.addAppliedMappingsList(repository, outcome.getAppliedMappings());
 
     // log it if needed
     if (log.isDebugEnabled()) {
-      if (appliedMappings.isEmpty()) {
+      if (outcome.isBlocked()) {
+        log.debug("The request path [" + request.toString() + "] is blocked by rule "
+            + outcome.getAppliedMappings().get(0));
+      }
+      else if (outcome.getAppliedMappings().isEmpty()) {
         log.debug("No mapping exists for request path [" + request.toString() + "]");
       }
       else {
@@ -247,40 +173,26 @@ public class DefaultRequestRepositoryMapper
                 + getResourceStoreListAsString(resolvedRepositories)
                 + "\" got these mappings applied:\n");
 
-        for (RepositoryPathMapping mapping : appliedMappings) {
-          sb.append(" * ").append(mapping.toString()).append("\n");
+        for (String mapping : outcome.getAppliedMappings()) {
+          sb.append(" * ").append(mapping).append("\n");
         }
 
         log.debug(sb.toString());
 
-        if (reposIdSet.size() == 0) {
+        if (outcome.getRepositories().isEmpty()) {
           log.debug(
               "Mapping for path [" + request.toString()
                   + "] excluded all storages from servicing the request.");
         }
         else {
           log.debug(
-              "Request path for [" + request.toString() + "] is MAPPED to reposes: " + reposIdSet);
+              "Request path for [" + request.toString() + "] is MAPPED to reposes: "
+                  + getResourceStoreListAsString(outcome.getRepositories()));
         }
       }
     }
 
-    ArrayList<Repository> result = new ArrayList<Repository>(reposIdSet.size());
-
-    try {
-      for (String repoId : reposIdSet) {
-        result.add(repositoryRegistry.getRepository(repoId));
-      }
-    }
-    catch (NoSuchRepositoryException e) {
-      log.error(
-          "Some of the Routes contains references to non-existant repositories! Please check the following mappings: \""
-              + appliedMappingsList.toString() + "\".");
-
-      throw e;
-    }
-
-    return result;
+    return outcome.getRepositories();
   }
 
   public String getResourceStoreListAsString(List<? extends ResourceStore> stores) {
@@ -303,47 +215,47 @@ public class DefaultRequestRepositoryMapper
 
   // ==
 
-  protected synchronized void compile()
+  /**
+   * Compiles the current configuration into matchers, unless already compiled.
+   */
+  protected synchronized CompiledMappings compile()
       throws NoSuchRepositoryException
   {
-    if (compiled) {
-      return;
+    if (compiledMappings != null) {
+      return compiledMappings;
     }
 
-    blockings.clear();
-
-    inclusions.clear();
-
-    exclusions.clear();
-
     if (getCurrentConfiguration(false) == null) {
       if (log.isDebugEnabled()) {
         log.debug("No Routes defined, have nothing to compile.");
       }
 
-      return;
+      return new CompiledMappings(repositoryRegistry, Collections.<RepositoryPathMapping>emptyList());
     }
 
+    compiledMappings = build();
+
+    return compiledMappings;
+  }
+
+  /**
+   * Compiles the committed configuration into new matchers, and publishes them at once. Requests being mapped while
+   * compilation happens keep using the previous matchers.
+   */
+  protected synchronized void recompile() {
+    compiledMappings = getCurrentConfiguration(false) != null ? build() : null;
+  }
+
+  private CompiledMappings build() {
     List<CPathMappingItem> pathMappings = getCurrentConfiguration(false).getPathMappings();
 
-    for (CPathMappingItem item : pathMappings) {
-      if (CPathMappingItem.BLOCKING_RULE_TYPE.equals(item.getRouteType())) {
-        blockings.add(convert(item));
-      }
-      else if (CPathMappingItem.INCLUSION_RULE_TYPE.equals(item.getRouteType())) {
-        inclusions.add(convert(item));
-      }
-      else if (CPathMappingItem.EXCLUSION_RULE_TYPE.equals(item.getRouteType())) {
-        exclusions.add(convert(item));
-      }
-      else {
-        log.warn("Unknown route type: " + item.getRouteType());
+    List<RepositoryPathMapping> mappings = new ArrayList<RepositoryPathMapping>(pathMappings.size());
 
-        throw new IllegalArgumentException("Unknown route type: " + item.getRouteType());
-      }
+    for (CPathMappingItem item : pathMappings) {
+      mappings.add(convert(item));
     }
 
-    compiled = true;
+    return new CompiledMappings(repositoryRegistry, mappings);
   }
 
   protected RepositoryPathMapping convert(CPathMappingItem item)
@@ -475,4 +387,78 @@ public class DefaultRequestRepositoryMapper
     }
   }
 
+  @Subscribe
+  public void onEvent(final RepositoryRegistryRepositoryEvent evt) {
+    invalidateOutcomes();
+  }
+
+  @Subscribe
+  public void onEvent(final RepositoryConfigurationUpdatedEvent evt) {
+    invalidateOutcomes();
+  }
+
+  /**
+   * Drops the cached outcomes of the compiled matchers, as repositories were added, removed or changed.
+   */
+  private void invalidateOutcomes() {
+    final CompiledMappings mappings = compiledMappings;
+    if (mappings != null) {
+      mappings.invalidateOutcomes();
+    }
+  }
+
+  // ==
+
+  /**
+   * Compiled mappings: a matcher per group having group specific mappings, and one shared by all other repositories
+   * with mappings applying to all groups only.
+   */
+  protected static class CompiledMappings
+  {
+    private final RepositoryPathMatcher allGroupsMatcher;
+
+    private final Map<String, RepositoryPathMatcher> groupMatchers;
+
+    private CompiledMappings(final RepositoryRegistry repositoryRegistry, final List<RepositoryPathMapping> mappings) {
+      final List<RepositoryPathMapping> allGroupsMappings = new ArrayList<RepositoryPathMapping>();
+      final Set<String> groupIds = new HashSet<String>();
+      for (RepositoryPathMapping mapping : mappings) {
+        if (mapping.isAllGroups()) {
+          allGroupsMappings.add(mapping);
+        }
+        else {
+          groupIds.add(mapping.getGroupId());
+        }
+      }
+      this.allGroupsMatcher = new RepositoryPathMatcher(repositoryRegistry, allGroupsMappings);
+      this.groupMatchers = new HashMap<String, RepositoryPathMatcher>(groupIds.size());
+      for (String groupId : groupIds) {
+        // group specific and all groups mappings, keeping the configuration order
+        final List<RepositoryPathMapping> groupMappings = new ArrayList<RepositoryPathMapping>();
+        for (RepositoryPathMapping mapping : mappings) {
+          if (mapping.isAllGroups() || groupId.equals(mapping.getGroupId())) {
+            groupMappings.add(mapping);
+          }
+        }
+        groupMatchers.put(groupId, new RepositoryPathMatcher(repositoryRegistry, groupMappings));
+      }
+    }
+
+    private void invalidateOutcomes() {
+      allGroupsMatcher.invalidateOutcomes();
+      for (RepositoryPathMatcher matcher : groupMatchers.values()) {
+        matcher.invalidateOutcomes();
+      }
+    }
+
+    private RepositoryPathMatcher getMatcher(final Repository repository) {
+      if (!groupMatchers.isEmpty() && repository.getRepositoryKind().isFacetAvailable(GroupRepository.class)) {
+        final RepositoryPathMatcher matcher = groupMatchers.get(repository.getId());
+        if (matcher != null) {
+          return matcher;
+        }
+      }
+      return allGroupsMatcher;
+    }
+  }
 }
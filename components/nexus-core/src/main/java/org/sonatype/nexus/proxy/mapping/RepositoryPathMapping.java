@@ -81,19 +81,28 @@ public class RepositoryPathMapping
     if (isAllGroups()
         || (repository.getRepositoryKind().isFacetAvailable(GroupRepository.class) && groupId.equals(repository
         .getId()))) {
-      for (Pattern pattern : patterns) {
-        if (pattern.matcher(request.getRequestPath()).matches()) {
-          return true;
-        }
-      }
-
-      return false;
+      return matches(request.getRequestPath());
     }
     else {
       return false;
     }
   }
 
+  /**
+   * Returns {@code true} if any of the patterns matches given path, regardless of the group.
+   *
+   * @since 3.0
+   */
+  public boolean matches(String path) {
+    for (Pattern pattern : patterns) {
+      if (pattern.matcher(path).matches()) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
   public String getId() {
     return id;
   }
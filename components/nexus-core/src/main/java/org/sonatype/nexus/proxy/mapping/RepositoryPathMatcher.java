@@ -0,0 +1,375 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.mapping;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.sonatype.nexus.proxy.NoSuchRepositoryException;
+import org.sonatype.nexus.proxy.mapping.RepositoryPathMapping.MappingType;
+import org.sonatype.nexus.proxy.registry.RepositoryRegistry;
+import org.sonatype.nexus.proxy.repository.Repository;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Objects;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Immutable, compiled form of the {@link RepositoryPathMapping}s applicable to one group (or to all groups). As the
+ * outcome of mapping depends only on the mappings matched and on the resolved repositories, outcomes are cached as
+ * immutable lists, and most of the per request work saved comes from this cache. Mappings are also indexed by the first
+ * path segment their patterns require (ie. "/org/" for "/org/apache/.*"), but this only prunes the evaluated mappings
+ * when patterns start with different segments: mappings that all start with "/com/" are all evaluated for every
+ * "/com/" path.
+ *
+ * @since 3.0
+ */
+class RepositoryPathMatcher
+{
+  private static final int OUTCOME_CACHE_SIZE = 1000;
+
+  private static final String ALL = "*";
+
+  private final RepositoryRegistry repositoryRegistry;
+
+  private final Rules blockings;
+
+  private final Rules inclusions;
+
+  private final Rules exclusions;
+
+  private final Cache<OutcomeKey, Outcome> outcomes =
+      CacheBuilder.newBuilder().maximumSize(OUTCOME_CACHE_SIZE).build();
+
+  /**
+   * @param mappings the applicable mappings, in configuration order.
+   */
+  RepositoryPathMatcher(final RepositoryRegistry repositoryRegistry, final List<RepositoryPathMapping> mappings) {
+    this.repositoryRegistry = repositoryRegistry;
+    this.blockings = new Rules(mappings, MappingType.BLOCKING);
+    this.inclusions = new Rules(mappings, MappingType.INCLUSION);
+    this.exclusions = new Rules(mappings, MappingType.EXCLUSION);
+  }
+
+  /**
+   * Maps the path to repositories, narrowing down the resolved repositories.
+   */
+  Outcome map(final String path, final List<Repository> resolvedRepositories)
+      throws NoSuchRepositoryException
+  {
+    for (RepositoryPathMapping mapping : blockings.candidates(firstSegment(path))) {
+      if (mapping.matches(path)) {
+        return new Outcome(Collections.<Repository>emptyList(),
+            Collections.singletonList(mapping.toString()), true);
+      }
+    }
+
+    final List<RepositoryPathMapping> applied = applied(path);
+    final OutcomeKey key = new OutcomeKey(applied, resolvedRepositories);
+    Outcome outcome = outcomes.getIfPresent(key);
+    if (outcome == null) {
+      outcome = compute(applied, resolvedRepositories);
+      outcomes.put(new OutcomeKey(applied, ImmutableList.copyOf(resolvedRepositories)), outcome);
+    }
+    return outcome;
+  }
+
+  /**
+   * Drops the cached outcomes, as they depend on the repositories existing and being user managed.
+   */
+  void invalidateOutcomes() {
+    outcomes.invalidateAll();
+  }
+
+  /**
+   * Returns the inclusion and exclusion mappings matching the path, in order they are applied.
+   */
+  List<RepositoryPathMapping> applied(final String path) {
+    final String segment = firstSegment(path);
+    List<RepositoryPathMapping> applied = Collections.emptyList();
+    for (RepositoryPathMapping mapping : inclusions.candidates(segment)) {
+      if (mapping.matches(path)) {
+        applied = add(applied, mapping);
+      }
+    }
+    for (RepositoryPathMapping mapping : exclusions.candidates(segment)) {
+      if (mapping.matches(path)) {
+        applied = add(applied, mapping);
+        if (isAll(mapping)) {
+          // nothing left to exclude
+          break;
+        }
+      }
+    }
+    return applied;
+  }
+
+  private Outcome compute(final List<RepositoryPathMapping> applied, final List<Repository> resolvedRepositories)
+      throws NoSuchRepositoryException
+  {
+    // NEXUS-2852: to make our life easier, we will work with repository IDs,
+    // and will fill the result with Repositories at the end
+    final Map<String, Repository> resolvedById = Maps.newLinkedHashMap();
+    for (Repository repository : resolvedRepositories) {
+      if (!resolvedById.containsKey(repository.getId())) {
+        resolvedById.put(repository.getId(), repository);
+      }
+    }
+    final Set<String> reposIdSet = new LinkedHashSet<String>(resolvedById.keySet());
+
+    boolean firstAdd = true;
+    for (RepositoryPathMapping mapping : applied) {
+      if (MappingType.INCLUSION == mapping.getMappingType()) {
+        if (firstAdd) {
+          reposIdSet.clear();
+          firstAdd = false;
+        }
+        // add only those that are in initial resolvedRepositories list and that are non-user managed
+        // (preserve ordering)
+        for (Repository repo : resolvedById.values()) {
+          if (isAll(mapping) || mapping.getMappedRepositories().contains(repo.getId()) || !repo.isUserManaged()) {
+            reposIdSet.add(repo.getId());
+          }
+        }
+      }
+      else if (isAll(mapping)) {
+        reposIdSet.clear();
+      }
+      else {
+        for (String repositoryId : mapping.getMappedRepositories()) {
+          // but only if is user managed
+          if (repositoryRegistry.getRepository(repositoryId).isUserManaged()) {
+            reposIdSet.remove(repositoryId);
+          }
+        }
+      }
+    }
+
+    final List<Repository> repositories = new ArrayList<Repository>(reposIdSet.size());
+    for (String repoId : reposIdSet) {
+      repositories.add(resolvedById.get(repoId));
+    }
+    final List<String> appliedMappings = new ArrayList<String>(applied.size());
+    for (RepositoryPathMapping mapping : applied) {
+      appliedMappings.add(mapping.toString());
+    }
+    return new Outcome(ImmutableList.copyOf(repositories), ImmutableList.copyOf(appliedMappings), false);
+  }
+
+  private static List<RepositoryPathMapping> add(final List<RepositoryPathMapping> list,
+                                                 final RepositoryPathMapping mapping)
+  {
+    final List<RepositoryPathMapping> result = list.isEmpty() ? new ArrayList<RepositoryPathMapping>() : list;
+    result.add(mapping);
+    return result;
+  }
+
+  private static boolean isAll(final RepositoryPathMapping mapping) {
+    return mapping.getMappedRepositories().size() == 1 && ALL.equals(mapping.getMappedRepositories().get(0));
+  }
+
+  /**
+   * Returns the first segment of path with slashes (ie. "/org/" for "/org/apache/maven"), or {@code null} if path
+   * has no complete first segment.
+   */
+  @VisibleForTesting
+  static String firstSegment(final String path) {
+    if (path == null || path.length() < 2 || path.charAt(0) != '/') {
+      return null;
+    }
+    final int end = path.indexOf('/', 1);
+    return end > 1 ? path.substring(0, end + 1) : null;
+  }
+
+  /**
+   * Returns the first segment every path fully matching the regular expression must start with, or {@code null} if
+   * it cannot be determined (in which case the pattern has to be evaluated against every path).
+   */
+  @VisibleForTesting
+  static String requiredFirstSegment(final String regex) {
+    if (regex.indexOf('|') >= 0) {
+      // alternation, any literal prefix might be optional
+      return null;
+    }
+    final StringBuilder prefix = new StringBuilder();
+    for (int i = regex.startsWith("^") ? 1 : 0; i < regex.length(); i++) {
+      final char c = regex.charAt(i);
+      if ("*+?{".indexOf(c) >= 0) {
+        // quantifier applies to the last literal character, hence that one is optional
+        if (prefix.length() > 0) {
+          prefix.setLength(prefix.length() - 1);
+        }
+        break;
+      }
+      if ("\\.[]()^$".indexOf(c) >= 0) {
+        break;
+      }
+      prefix.append(c);
+    }
+    return firstSegment(prefix.toString());
+  }
+
+  // ==
+
+  /**
+   * Mappings of one type, indexed by required first segment.
+   */
+  private static class Rules
+  {
+    private final List<RepositoryPathMapping> unsegmented;
+
+    private final Map<String, List<RepositoryPathMapping>> bySegment;
+
+    private Rules(final List<RepositoryPathMapping> mappings, final MappingType type) {
+      final List<RepositoryPathMapping> ofType = Lists.newArrayList();
+      final List<RepositoryPathMapping> unsegmented = Lists.newArrayList();
+      final Map<String, Set<RepositoryPathMapping>> segmented = new LinkedHashMap<>();
+      for (RepositoryPathMapping mapping : mappings) {
+        if (type != mapping.getMappingType()) {
+          continue;
+        }
+        ofType.add(mapping);
+        final Set<String> segments = requiredFirstSegments(mapping);
+        if (segments == null) {
+          unsegmented.add(mapping);
+        }
+        else {
+          for (String segment : segments) {
+            if (!segmented.containsKey(segment)) {
+              segmented.put(segment, new LinkedHashSet<RepositoryPathMapping>());
+            }
+            segmented.get(segment).add(mapping);
+          }
+        }
+      }
+
+      this.unsegmented = ImmutableList.copyOf(unsegmented);
+      final Map<String, List<RepositoryPathMapping>> bySegment = Maps.newHashMap();
+      for (Map.Entry<String, Set<RepositoryPathMapping>> entry : segmented.entrySet()) {
+        // candidates of segment are its own mappings plus unsegmented ones, in configuration order
+        final List<RepositoryPathMapping> candidates = Lists.newArrayList();
+        for (RepositoryPathMapping mapping : ofType) {
+          if (entry.getValue().contains(mapping) || unsegmented.contains(mapping)) {
+            candidates.add(mapping);
+          }
+        }
+        bySegment.put(entry.getKey(), ImmutableList.copyOf(candidates));
+      }
+      this.bySegment = bySegment;
+    }
+
+    private List<RepositoryPathMapping> candidates(final String segment) {
+      if (segment != null) {
+        final List<RepositoryPathMapping> candidates = bySegment.get(segment);
+        if (candidates != null) {
+          return candidates;
+        }
+      }
+      return unsegmented;
+    }
+
+    /**
+     * Returns the first segments of all patterns, or {@code null} if any pattern might match any path.
+     */
+    private static Set<String> requiredFirstSegments(final RepositoryPathMapping mapping) {
+      final Set<String> segments = new LinkedHashSet<>();
+      for (Pattern pattern : mapping.getPatterns()) {
+        final String segment = requiredFirstSegment(pattern.pattern());
+        if (segment == null || pattern.flags() != 0) {
+          return null;
+        }
+        segments.add(segment);
+      }
+      return segments;
+    }
+  }
+
+  /**
+   * The outcome of mapping a path.
+   */
+  static class Outcome
+  {
+    private final List<Repository> repositories;
+
+    private final List<String> appliedMappings;
+
+    private final boolean blocked;
+
+    private Outcome(final List<Repository> repositories, final List<String> appliedMappings, final boolean blocked) {
+      this.repositories = repositories;
+      this.appliedMappings = appliedMappings;
+      this.blocked = blocked;
+    }
+
+    /**
+     * The mapped repositories, immutable.
+     */
+    List<Repository> getRepositories() {
+      return repositories;
+    }
+
+    /**
+     * The applied mappings, immutable.
+     */
+    List<String> getAppliedMappings() {
+      return appliedMappings;
+    }
+
+    boolean isBlocked() {
+      return blocked;
+    }
+  }
+
+  private static final class OutcomeKey
+  {
+    private final List<RepositoryPathMapping> applied;
+
+    private final List<Repository> resolvedRepositories;
+
+    private final int hashCode;
+
+    private OutcomeKey(final List<RepositoryPathMapping> applied, final List<Repository> resolvedRepositories) {
+      this.applied = applied;
+      this.resolvedRepositories = resolvedRepositories;
+      this.hashCode = Objects.hashCode(applied, resolvedRepositories);
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof OutcomeKey)) {
+        return false;
+      }
+      final OutcomeKey that = (OutcomeKey) o;
+      return hashCode == that.hashCode && applied.equals(that.applied)
+          && resolvedRepositories.equals(that.resolvedRepositories);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+}
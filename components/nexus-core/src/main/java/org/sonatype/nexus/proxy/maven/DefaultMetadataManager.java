@@ -33,6 +33,8 @@ import org.apache.maven.artifact.repository.metadata.SnapshotVersion;
 import org.apache.maven.artifact.repository.metadata.Versioning;
 import org.codehaus.plexus.util.StringUtils;
 
+import com.google.common.base.Optional;
+
 import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
@@ -57,11 +59,15 @@ public class DefaultMetadataManager
 
   private final MetadataLocator metadataLocator;
 
+  private final MetadataResolutionCache resolutionCache;
+
   @Inject
   public DefaultMetadataManager(final MetadataUpdater metadataUpdater, 
-                                final MetadataLocator metadataLocator) {
+                                final MetadataLocator metadataLocator,
+                                final MetadataResolutionCache resolutionCache) {
     this.metadataUpdater = checkNotNull(metadataUpdater);
     this.metadataLocator = checkNotNull(metadataLocator);
+    this.resolutionCache = checkNotNull(resolutionCache);
   }
 
   @Override
@@ -74,6 +80,24 @@ public class DefaultMetadataManager
   @Override
   public Gav resolveArtifact(ArtifactStoreRequest gavRequest)
       throws IOException
+  {
+    if (!resolutionCache.isCacheable(gavRequest)) {
+      return doResolveArtifact(gavRequest);
+    }
+
+    final Optional<Gav> cached = resolutionCache.get(gavRequest);
+    if (cached != null) {
+      return cached.orNull();
+    }
+
+    final long generation = resolutionCache.getGeneration();
+    final Gav resolved = doResolveArtifact(gavRequest);
+    resolutionCache.put(gavRequest, resolved, generation);
+    return resolved;
+  }
+
+  protected Gav doResolveArtifact(ArtifactStoreRequest gavRequest)
+      throws IOException
   {
     MavenRepository repository = gavRequest.getMavenRepository();
 
@@ -0,0 +1,288 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.maven;
+
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.sonatype.nexus.events.EventSubscriber;
+import org.sonatype.nexus.proxy.events.RepositoryConfigurationUpdatedEvent;
+import org.sonatype.nexus.proxy.events.RepositoryGroupMembersChangedEvent;
+import org.sonatype.nexus.proxy.events.RepositoryItemEvent;
+import org.sonatype.nexus.proxy.events.RepositoryItemEventCache;
+import org.sonatype.nexus.proxy.events.RepositoryItemEventDelete;
+import org.sonatype.nexus.proxy.events.RepositoryItemEventStore;
+import org.sonatype.nexus.proxy.events.RepositoryRegistryEventRemove;
+import org.sonatype.nexus.proxy.item.StorageCollectionItem;
+import org.sonatype.nexus.proxy.maven.gav.Gav;
+import org.sonatype.nexus.proxy.registry.RepositoryRegistry;
+import org.sonatype.nexus.proxy.repository.GroupRepository;
+import org.sonatype.nexus.proxy.repository.Repository;
+import org.sonatype.nexus.util.SystemPropertiesHelper;
+import org.sonatype.sisu.goodies.common.ComponentSupport;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Optional;
+import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.eventbus.AllowConcurrentEvents;
+import com.google.common.eventbus.Subscribe;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Cache of "LATEST", "RELEASE" and "-SNAPSHOT" version resolutions performed by {@link DefaultMetadataManager}, keyed
+ * by repository, GA and the request properties influencing the result. Entries are invalidated when Maven metadata
+ * (or a collection containing it) is stored, cached or deleted in the repository or any of its member repositories,
+ * and as safety net expire after {@code nexus.proxy.maven.resolutionCache.ttlSeconds} (60 by default).
+ * <p>
+ * Metadata resolution reads metadata with authorization check disabled, so serving a cached resolution does not
+ * change what caller is allowed to see: artifact content is still retrieved (and authorized) by caller.
+ *
+ * @since 3.0
+ */
+@Named
+@Singleton
+public class MetadataResolutionCache
+    extends ComponentSupport
+    implements EventSubscriber
+{
+  private static final String KEY_PREFIX = "nexus.proxy.maven.resolutionCache";
+
+  private static final String METADATA_FILENAME = "maven-metadata.xml";
+
+  private final Provider<RepositoryRegistry> repositoryRegistryProvider;
+
+  private final boolean enabled;
+
+  private final Cache<Key, Optional<Gav>> cache;
+
+  /**
+   * Bumped on every invalidation, to prevent resolutions started before the invalidation from populating the cache.
+   */
+  private final AtomicLong generation = new AtomicLong();
+
+  @Inject
+  public MetadataResolutionCache(final Provider<RepositoryRegistry> repositoryRegistryProvider) {
+    this(repositoryRegistryProvider,
+        SystemPropertiesHelper.getBoolean(KEY_PREFIX + ".enabled", true),
+        SystemPropertiesHelper.getInteger(KEY_PREFIX + ".maxSize", 10000),
+        SystemPropertiesHelper.getLong(KEY_PREFIX + ".ttlSeconds", 60L));
+  }
+
+  MetadataResolutionCache(final Provider<RepositoryRegistry> repositoryRegistryProvider, final boolean enabled,
+                          final int maxSize, final long ttlSeconds)
+  {
+    this.repositoryRegistryProvider = checkNotNull(repositoryRegistryProvider);
+    this.enabled = enabled && maxSize > 0 && ttlSeconds > 0;
+    this.cache = CacheBuilder.newBuilder()
+        .maximumSize(Math.max(0, maxSize))
+        .expireAfterWrite(Math.max(0, ttlSeconds), TimeUnit.SECONDS)
+        .recordStats()
+        .build();
+    log.debug("Resolution cache enabled={}, maxSize={}, ttlSeconds={}", this.enabled, maxSize, ttlSeconds);
+  }
+
+  /**
+   * Returns {@code true} if resolution of given request consults metadata, hence is worth caching.
+   */
+  public boolean isCacheable(final ArtifactStoreRequest request) {
+    final String version = request.getVersion();
+    return enabled && version != null && (DefaultMetadataManager.LATEST_VERSION.equals(version)
+        || DefaultMetadataManager.RELEASE_VERSION.equals(version)
+        || version.endsWith(DefaultMetadataManager.SNAPSHOT_VERSION));
+  }
+
+  /**
+   * Returns the current generation, to be passed to {@link #put(ArtifactStoreRequest, Gav, long)} once resolution
+   * completes.
+   */
+  public long getGeneration() {
+    return generation.get();
+  }
+
+  /**
+   * Returns the cached resolution of given request, {@code null} if not cached. Absent value means the request was
+   * found unresolvable.
+   */
+  public Optional<Gav> get(final ArtifactStoreRequest request) {
+    return cache.getIfPresent(new Key(request));
+  }
+
+  /**
+   * Caches the resolution of given request, unless an invalidation happened since given generation was obtained.
+   */
+  public void put(final ArtifactStoreRequest request, final Gav resolved, final long startGeneration) {
+    final Key key = new Key(request);
+    cache.put(key, Optional.fromNullable(resolved));
+    if (generation.get() != startGeneration) {
+      // raced with an invalidation, the resolution might be based on stale metadata
+      cache.invalidate(key);
+    }
+  }
+
+  /**
+   * Invalidates cached resolutions of given repository affected by a change of given path: those whose GA path is
+   * equal to, is a parent of, or lies below given path.
+   */
+  public void invalidate(final String repositoryId, final String path) {
+    generation.incrementAndGet();
+    final String changed = stripTrailingSlash(path);
+    final Iterator<Key> keys = cache.asMap().keySet().iterator();
+    while (keys.hasNext()) {
+      final Key key = keys.next();
+      if (key.repositoryId.equals(repositoryId) && isRelated(key.gaPath, changed)) {
+        keys.remove();
+      }
+    }
+  }
+
+  /**
+   * Invalidates all cached resolutions of given repository.
+   */
+  public void invalidate(final String repositoryId) {
+    invalidate(repositoryId, "/");
+  }
+
+  public void invalidateAll() {
+    generation.incrementAndGet();
+    cache.invalidateAll();
+  }
+
+  public long getSize() {
+    return cache.size();
+  }
+
+  public CacheStats getStats() {
+    return cache.stats();
+  }
+
+  // ==
+
+  @Subscribe
+  @AllowConcurrentEvents
+  public void on(final RepositoryItemEventStore evt) {
+    onItemEvent(evt);
+  }
+
+  @Subscribe
+  @AllowConcurrentEvents
+  public void on(final RepositoryItemEventCache evt) {
+    onItemEvent(evt);
+  }
+
+  @Subscribe
+  @AllowConcurrentEvents
+  public void on(final RepositoryItemEventDelete evt) {
+    onItemEvent(evt);
+  }
+
+  @Subscribe
+  @AllowConcurrentEvents
+  public void on(final RepositoryConfigurationUpdatedEvent evt) {
+    invalidateWithGroups(evt.getRepository(), "/");
+  }
+
+  @Subscribe
+  @AllowConcurrentEvents
+  public void on(final RepositoryGroupMembersChangedEvent evt) {
+    invalidateWithGroups(evt.getGroupRepository(), "/");
+  }
+
+  @Subscribe
+  @AllowConcurrentEvents
+  public void on(final RepositoryRegistryEventRemove evt) {
+    invalidate(evt.getRepository().getId());
+  }
+
+  private void onItemEvent(final RepositoryItemEvent evt) {
+    if (!enabled) {
+      return;
+    }
+    final String path = evt.getItem().getPath();
+    if (evt.getItem() instanceof StorageCollectionItem) {
+      invalidateWithGroups(evt.getRepository(), path);
+    }
+    else if (path.endsWith("/" + METADATA_FILENAME)) {
+      invalidateWithGroups(evt.getRepository(), path.substring(0, path.length() - METADATA_FILENAME.length()));
+    }
+  }
+
+  private void invalidateWithGroups(final Repository repository, final String path) {
+    invalidate(repository.getId(), path);
+    for (GroupRepository group : repositoryRegistryProvider.get().getTransitiveGroupsOfRepository(repository)) {
+      invalidate(group.getId(), path);
+    }
+  }
+
+  // ==
+
+  /**
+   * Returns {@code true} if the two slash separated paths are equal, or one is ancestor of the other.
+   */
+  static boolean isRelated(final String gaPath, final String changedPath) {
+    if (changedPath.isEmpty() || gaPath.equals(changedPath)) {
+      return true;
+    }
+    return gaPath.startsWith(changedPath + "/") || changedPath.startsWith(gaPath + "/");
+  }
+
+  private static String stripTrailingSlash(final String path) {
+    if (path.endsWith("/")) {
+      return path.substring(0, path.length() - 1);
+    }
+    return path;
+  }
+
+  private static final class Key
+  {
+    private final String repositoryId;
+
+    private final String gaPath;
+
+    private final String variant;
+
+    private Key(final ArtifactStoreRequest request) {
+      this.repositoryId = request.getMavenRepository().getId();
+      this.gaPath = "/" + request.getGroupId().replace('.', '/') + "/" + request.getArtifactId();
+      this.variant = request.getVersion() + ":" + Strings.nullToEmpty(request.getClassifier()) + ":"
+          + Strings.nullToEmpty(request.getExtension()) + ":" + request.isRequestLocalOnly() + ":"
+          + request.isRequestRemoteOnly();
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      final Key that = (Key) o;
+      return repositoryId.equals(that.repositoryId) && gaPath.equals(that.gaPath) && variant.equals(that.variant);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(repositoryId, gaPath, variant);
+    }
+  }
+}
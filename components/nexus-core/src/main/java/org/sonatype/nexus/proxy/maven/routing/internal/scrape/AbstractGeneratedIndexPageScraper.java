@@ -13,53 +13,117 @@
 package org.sonatype.nexus.proxy.maven.routing.internal.scrape;
 
 import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.sonatype.nexus.apachehttpclient.page.Page;
 import org.sonatype.nexus.apachehttpclient.page.Page.UnexpectedPageResponse;
+import org.sonatype.nexus.proxy.maven.routing.internal.ArrayListPrefixSource;
 import org.sonatype.nexus.proxy.maven.routing.internal.task.CancelableUtil;
+import org.sonatype.nexus.proxy.maven.routing.internal.task.RunnableInterruptedException;
 import org.sonatype.nexus.proxy.walker.ParentOMatic;
 import org.sonatype.nexus.proxy.walker.ParentOMatic.Payload;
+import org.sonatype.nexus.threads.NexusThreadFactory;
 import org.sonatype.nexus.util.Node;
 import org.sonatype.nexus.util.SystemPropertiesHelper;
 
 import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.apache.http.Header;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.HttpGet;
 import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
 
+import static com.google.common.base.Preconditions.checkNotNull;
+
 /**
  * Scraper for remote Nexus instances that will scrape only if remote is for sure recognized as Nexus instance, and URL
  * points to a hosted repository.
  * <p>
- * Info: Central scrape takes around 3 minutes, and this class issues over 700 requests. This means about 4 HTTP GET
- * requests per second (1req takes about 250ms) is made to fetch index page. If we add a fix pause of 200ms in between
- * requests, this will "throttle" scraping, it would take around 5 minutes instead of 3 minutes for Central sized
- * repository, that is still acceptable, but would lessen pressure on remote server. Later we can design some more
- * smarter way to control throttling of scrape.
+ * Info: Central scrape issues over 700 requests. Sibling directory pages are fetched concurrently (using a bounded
+ * pool shared by all scrapes), but every request against a remote host has to fit into the {@link ScrapeBudget} of
+ * that host (max in-flight requests plus a token bucket rate), to not suffocate remote server by index page
+ * generations and/or prevent Nexus to be seen as DoS attacker. Pages are fetched conditionally (using ETag and/or
+ * Last-Modified of previous scrape) when possible, and unchanged pages are not re-parsed. The prefix list scraped so
+ * far is made available as {@link ScrapeContext#getPartialEntries()}.
  *
  * @author cstamas
  */
 public abstract class AbstractGeneratedIndexPageScraper
     extends AbstractScraper
 {
+  private static final String KEY_PREFIX = Scraper.class.getName();
+
   /**
-   * Sleep time in millis that scraping thread will sleep between processing the page response (after processing page
-   * response and before making another one following a "deeper" link to be more precise). Goal of this sleep is to
-   * "throttle" a bit the scrape speed, to not suffocate remote server by index page generations and/or prevent Nexus
-   * to be seen as DoS attacker. This throttling sleep time is 200ms by default. Modifying it is possible using
-   * System
-   * properties using key {@code org.sonatype.nexus.proxy.maven.routing.internal.scrape.Scraper.pageSleepTimeMillis}.
-   * An example of setting sleep time to 500 ms:
-   *
-   * <pre>
-   * org.sonatype.nexus.proxy.maven.routing.internal.scrape.Scraper.pageSleepTimeMillis = 500
-   * </pre>
+   * Sleep time in millis that was used to throttle the scrape speed (when pages were fetched one by one). It is now
+   * used to derive the default of {@link #requestsPerSecond}: 200ms by default, meaning 5 requests per second per
+   * remote host. Modifying it is possible using System properties using key
+   * {@code org.sonatype.nexus.proxy.maven.routing.internal.scrape.Scraper.pageSleepTimeMillis}, while 0 disables
+   * rate limiting.
+   */
+  private final long pageSleepTimeMillis = SystemPropertiesHelper.getLong(KEY_PREFIX + ".pageSleepTimeMillis", 200);
+
+  /**
+   * Max rate of page requests issued against one remote host, using key
+   * {@code org.sonatype.nexus.proxy.maven.routing.internal.scrape.Scraper.requestsPerSecond}. Defaults to value
+   * derived from {@link #pageSleepTimeMillis}.
+   */
+  private final double requestsPerSecond = Double.parseDouble(SystemPropertiesHelper.getString(
+      KEY_PREFIX + ".requestsPerSecond",
+      String.valueOf(pageSleepTimeMillis > 0 ? 1000d / pageSleepTimeMillis : Double.MAX_VALUE)));
+
+  /**
+   * Max count of in-flight page requests issued against one remote host, using key
+   * {@code org.sonatype.nexus.proxy.maven.routing.internal.scrape.Scraper.maxInFlight}. Default is 4.
+   */
+  private final int maxInFlight = SystemPropertiesHelper.getInteger(KEY_PREFIX + ".maxInFlight", 4);
+
+  /**
+   * Max count of threads fetching pages, shared by all the scrapes performed by this scraper, using key
+   * {@code org.sonatype.nexus.proxy.maven.routing.internal.scrape.Scraper.fetchThreads}. Default is 16.
    */
-  private long pageSleepTimeMillis = SystemPropertiesHelper.getLong(
-      Scraper.class.getName() + ".pageSleepTimeMillis", 200);
+  private final int fetchThreads = SystemPropertiesHelper.getInteger(KEY_PREFIX + ".fetchThreads", 16);
+
+  /**
+   * Max count of pages whose validators and links are remembered for conditional requests, using key
+   * {@code org.sonatype.nexus.proxy.maven.routing.internal.scrape.Scraper.pageCacheSize}. Default is 100000.
+   */
+  private final int pageCacheSize = SystemPropertiesHelper.getInteger(KEY_PREFIX + ".pageCacheSize", 100000);
+
+  /**
+   * Set to {@code true} to publish the partial (coarser) prefix list if scrape fails after the root page was
+   * processed, using key {@code org.sonatype.nexus.proxy.maven.routing.internal.scrape.Scraper.publishPartial}.
+   * Default is {@code false}, failed scrape is reported as failure.
+   */
+  private final boolean publishPartial = SystemPropertiesHelper.getBoolean(KEY_PREFIX + ".publishPartial", false);
+
+  private final ConcurrentMap<String, ScrapeBudget> budgets = Maps.newConcurrentMap();
+
+  private final Cache<String, ScrapedPage> pageCache = CacheBuilder.newBuilder().maximumSize(pageCacheSize).build();
+
+  private final ThreadPoolExecutor fetchExecutor;
 
   protected AbstractGeneratedIndexPageScraper(final int priority, final String id) {
     super(priority, id);
+    this.fetchExecutor = new ThreadPoolExecutor(fetchThreads, fetchThreads, 60L, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<Runnable>(), new NexusThreadFactory("scrape", "Scraper " + id, Thread.NORM_PRIORITY,
+        true));
+    this.fetchExecutor.allowCoreThreadTimeOut(true);
   }
 
   protected abstract String getTargetedServer();
@@ -97,7 +161,19 @@ public abstract class AbstractGeneratedIndexPageScraper
   {
     // we use the great and all-mighty ParentOMatic
     final ParentOMatic parentOMatic = new ParentOMatic();
-    diveIn(context, page, 0, parentOMatic, parentOMatic.getRoot());
+    try {
+      diveIn(context, page, parentOMatic);
+    }
+    catch (IOException e) {
+      if (publishPartial && !parentOMatic.getRoot().isLeaf()) {
+        final List<String> entries = parentOMatic.getAllLeafPaths();
+        context.stop(new ArrayListPrefixSource(entries), "Remote recognized as " + getTargetedServer()
+            + ", but scrape failed: " + e.getMessage() + " (published partial scrape of " + entries.size()
+            + " entries).");
+        return entries;
+      }
+      throw e;
+    }
     // Special case: scraped with 0 entry, we consider this as an error
     // Remote repo empty? Why are you proxying it? Or worse, some scrape
     // exotic index page and we end up with 0 entries by mistake?
@@ -107,71 +183,252 @@ public abstract class AbstractGeneratedIndexPageScraper
       return null;
     }
     final List<String> entries = parentOMatic.getAllLeafPaths();
+    context.setPartialEntries(entries);
     return entries;
   }
 
-  protected void diveIn(final ScrapeContext context, final Page page, final int currentDepth,
-                        final ParentOMatic parentOMatic, final Node<Payload> currentNode)
+  /**
+   * Processes the root page and then fetches the deeper directory pages concurrently. Only the calling thread
+   * modifies the {@link ParentOMatic}, fetcher threads just fetch and parse pages.
+   */
+  protected void diveIn(final ScrapeContext context, final Page rootPage, final ParentOMatic parentOMatic)
       throws IOException
+  {
+    final ScrapeBudget budget = getBudgetFor(context);
+    final CompletionService<FetchedPage> completionService = new ExecutorCompletionService<>(fetchExecutor);
+    final List<Future<FetchedPage>> futures = Lists.newArrayList();
+    int pending = 0;
+    boolean done = false;
+    try {
+      pending += processLinks(context, new FetchedPage(parentOMatic.getRoot(), 0, getLinks(rootPage)),
+          parentOMatic, budget, completionService, futures);
+      long lastSnapshot = System.currentTimeMillis();
+      while (pending > 0) {
+        // cancelation
+        CancelableUtil.checkInterruption();
+        final Future<FetchedPage> future = completionService.poll(1L, TimeUnit.SECONDS);
+        if (future == null) {
+          continue;
+        }
+        pending--;
+        pending += processLinks(context, get(future), parentOMatic, budget, completionService, futures);
+        if (System.currentTimeMillis() - lastSnapshot > 1000L) {
+          context.setPartialEntries(parentOMatic.getAllLeafPaths());
+          lastSnapshot = System.currentTimeMillis();
+        }
+      }
+      done = true;
+    }
+    catch (InterruptedException e) {
+      throw new RunnableInterruptedException("Thread \"" + Thread.currentThread().getName() + "\" is interrupted!");
+    }
+    finally {
+      if (!done) {
+        for (Future<FetchedPage> future : futures) {
+          future.cancel(true);
+        }
+      }
+    }
+  }
+
+  /**
+   * Adds the deeper links of a page to the tree, and submits fetches of deeper directory pages.
+   *
+   * @return the count of submitted fetches.
+   */
+  private int processLinks(final ScrapeContext context, final FetchedPage fetchedPage,
+                           final ParentOMatic parentOMatic, final ScrapeBudget budget,
+                           final CompletionService<FetchedPage> completionService,
+                           final List<Future<FetchedPage>> futures)
   {
     // entry protection
-    if (currentDepth >= context.getScrapeDepth()) {
-      return;
+    if (fetchedPage.depth >= context.getScrapeDepth()) {
+      return 0;
     }
-    // cancelation
-    CancelableUtil.checkInterruption();
-    log.debug("Processing page response from URL {} for repository {}", page.getUrl(), context.getProxyRepository());
-    final Elements elements = page.getDocument().getElementsByTag("a");
+    final Node<Payload> currentNode = fetchedPage.node;
+    log.debug("Processing page of path {} for repository {}", currentNode.getPath(), context.getProxyRepository());
     final List<String> pathElements = currentNode.getPathElements();
     final String currentPath = currentNode.getPath();
-    for (Element element : elements) {
-      if (isDeeperRepoLink(context, pathElements, element)) {
-        if (element.text().startsWith(".")) {
+    int submitted = 0;
+    for (Link link : fetchedPage.links) {
+      if (isDeeperRepoLink(context, pathElements, link)) {
+        if (link.text.startsWith(".")) {
           // skip hidden paths
           continue;
         }
-        final Node<Payload> newSibling = parentOMatic.addPath(currentPath + "/" + element.text());
-        if (element.absUrl("href").endsWith("/")) {
+        final Node<Payload> newSibling = parentOMatic.addPath(currentPath + "/" + link.text);
+        if (link.absUrl.endsWith("/")) {
           // "cut" recursion preemptively to save remote fetch (and then stop recursion due to depth)
-          final int siblingDepth = currentDepth + 1;
+          final int siblingDepth = fetchedPage.depth + 1;
           if (siblingDepth < context.getScrapeDepth()) {
-            maySleepBeforeSubsequentFetch();
             final String newSiblingEncodedUrl =
                 getRemoteUrlForRepositoryPath(context, newSibling.getPathElements()) + "/";
-            final Page siblingPage = Page.getPageFor(context, newSiblingEncodedUrl);
-            if (siblingPage.getHttpResponse().getStatusLine().getStatusCode() == 200) {
-              diveIn(context, siblingPage, siblingDepth, parentOMatic, newSibling);
-            }
-            else {
-              // we do expect strictly 200 here
-              throw new UnexpectedPageResponse(page.getUrl(), page.getHttpResponse().getStatusLine());
-            }
+            futures.add(completionService.submit(new Callable<FetchedPage>()
+            {
+              @Override
+              public FetchedPage call() throws Exception {
+                return new FetchedPage(newSibling, siblingDepth, fetchLinks(context, budget, newSiblingEncodedUrl));
+              }
+            }));
+            submitted++;
           }
         }
       }
     }
+    return submitted;
   }
 
-  protected void maySleepBeforeSubsequentFetch() {
-    if (pageSleepTimeMillis > 0) {
-      try {
-        Thread.sleep(pageSleepTimeMillis);
+  /**
+   * Fetches the links of page on given URL within budget of the remote host, using conditional request if page was
+   * seen before.
+   */
+  private List<Link> fetchLinks(final ScrapeContext context, final ScrapeBudget budget, final String url)
+      throws IOException, InterruptedException
+  {
+    final ScrapedPage cached = pageCache.getIfPresent(url);
+    final HttpGet get = new HttpGet(url);
+    if (cached != null) {
+      if (cached.etag != null) {
+        get.setHeader("If-None-Match", cached.etag);
+      }
+      if (cached.lastModified != null) {
+        get.setHeader("If-Modified-Since", cached.lastModified);
+      }
+    }
+    final Page page;
+    budget.acquire();
+    try {
+      page = Page.buildPageFor(context, get);
+    }
+    finally {
+      budget.release();
+    }
+    final int statusCode = page.getStatusCode();
+    if (statusCode == HttpStatus.SC_NOT_MODIFIED && cached != null) {
+      log.debug("Page {} not modified", url);
+      return cached.links;
+    }
+    else if (statusCode == HttpStatus.SC_OK) {
+      final List<Link> links = getLinks(page);
+      final Header etag = page.getHttpResponse().getFirstHeader("ETag");
+      final Header lastModified = page.getHttpResponse().getFirstHeader("Last-Modified");
+      if (etag != null || lastModified != null) {
+        pageCache.put(url, new ScrapedPage(etag == null ? null : etag.getValue(),
+            lastModified == null ? null : lastModified.getValue(), links));
       }
-      catch (InterruptedException e) {
-        Throwables.propagate(e);
+      return links;
+    }
+    // we do expect strictly 200 here
+    throw new UnexpectedPageResponse(url, page.getHttpResponse().getStatusLine());
+  }
+
+  private List<Link> getLinks(final Page page) {
+    if (page.getDocument() == null) {
+      return new ArrayList<>();
+    }
+    final Elements elements = page.getDocument().getElementsByTag("a");
+    final List<Link> links = new ArrayList<>(elements.size());
+    for (Element element : elements) {
+      links.add(new Link(element.text(), element.attr("href"), element.absUrl("href")));
+    }
+    return links;
+  }
+
+  private FetchedPage get(final Future<FetchedPage> future)
+      throws IOException, InterruptedException
+  {
+    try {
+      return future.get();
+    }
+    catch (ExecutionException e) {
+      Throwables.propagateIfPossible(e.getCause(), IOException.class);
+      throw Throwables.propagate(e.getCause());
+    }
+  }
+
+  private ScrapeBudget getBudgetFor(final ScrapeContext context) {
+    String host;
+    try {
+      host = new URL(context.getRemoteRepositoryRootUrl()).getAuthority();
+    }
+    catch (MalformedURLException e) {
+      host = context.getRemoteRepositoryRootUrl();
+    }
+    ScrapeBudget budget = budgets.get(host);
+    if (budget == null) {
+      final ScrapeBudget newBudget = new ScrapeBudget(maxInFlight, requestsPerSecond);
+      budget = budgets.putIfAbsent(host, newBudget);
+      if (budget == null) {
+        budget = newBudget;
       }
     }
+    return budget;
   }
 
-  protected boolean isDeeperRepoLink(final ScrapeContext context, final List<String> pathElements, final Element aTag) {
+  protected boolean isDeeperRepoLink(final ScrapeContext context, final List<String> pathElements, final Link link) {
     // HTTPD and some others have anchors for sorting, their rel URL start with "?"
-    if (aTag.attr("href").startsWith("?")) {
+    if (link.href.startsWith("?")) {
       return false;
     }
-    final String linkAbsoluteUrl = aTag.absUrl("href");
     final String currentUrl = getRemoteUrlForRepositoryPath(context, pathElements);
-    return linkAbsoluteUrl.startsWith(currentUrl);
+    return link.absUrl.startsWith(currentUrl);
   }
 
   protected abstract Element getParentDirectoryElement(final Page page);
+
+  // ==
+
+  /**
+   * An anchor of an index page, detached from the parsed document.
+   */
+  protected static class Link
+  {
+    private final String text;
+
+    private final String href;
+
+    private final String absUrl;
+
+    private Link(final String text, final String href, final String absUrl) {
+      this.text = checkNotNull(text);
+      this.href = checkNotNull(href);
+      this.absUrl = checkNotNull(absUrl);
+    }
+  }
+
+  /**
+   * Links of a fetched page, with the tree node and depth it belongs to.
+   */
+  private static class FetchedPage
+  {
+    private final Node<Payload> node;
+
+    private final int depth;
+
+    private final List<Link> links;
+
+    private FetchedPage(final Node<Payload> node, final int depth, final List<Link> links) {
+      this.node = node;
+      this.depth = depth;
+      this.links = links;
+    }
+  }
+
+  /**
+   * Validators and links of a previously scraped page.
+   */
+  private static class ScrapedPage
+  {
+    private final String etag;
+
+    private final String lastModified;
+
+    private final List<Link> links;
+
+    private ScrapedPage(final String etag, final String lastModified, final List<Link> links) {
+      this.etag = etag;
+      this.lastModified = lastModified;
+      this.links = links;
+    }
+  }
 }
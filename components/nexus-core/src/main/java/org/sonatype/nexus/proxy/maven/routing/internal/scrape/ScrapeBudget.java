@@ -0,0 +1,55 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.maven.routing.internal.scrape;
+
+import java.util.concurrent.Semaphore;
+
+import com.google.common.util.concurrent.RateLimiter;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Politeness budget of scraping one remote host: limits the count of in-flight requests, and the rate of requests
+ * (using a token bucket) issued against the host, shared by all the scrapes targeting it.
+ *
+ * @since 3.0
+ */
+public class ScrapeBudget
+{
+  private final Semaphore inFlight;
+
+  private final RateLimiter rateLimiter;
+
+  public ScrapeBudget(final int maxInFlight, final double requestsPerSecond) {
+    checkArgument(maxInFlight > 0, "Max in-flight requests must be greater than zero");
+    checkArgument(requestsPerSecond > 0, "Requests per second must be greater than zero");
+    this.inFlight = new Semaphore(maxInFlight, true);
+    this.rateLimiter = RateLimiter.create(requestsPerSecond);
+  }
+
+  /**
+   * Blocks until a request against the host may be issued. Every successful invocation must be followed by
+   * {@link #release()}.
+   */
+  public void acquire() throws InterruptedException {
+    inFlight.acquire();
+    rateLimiter.acquire();
+  }
+
+  /**
+   * Signals that request against the host is done.
+   */
+  public void release() {
+    inFlight.release();
+  }
+}
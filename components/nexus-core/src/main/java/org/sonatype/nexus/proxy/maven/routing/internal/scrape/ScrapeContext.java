@@ -12,6 +12,9 @@
  */
 package org.sonatype.nexus.proxy.maven.routing.internal.scrape;
 
+import java.util.Collections;
+import java.util.List;
+
 import org.sonatype.nexus.apachehttpclient.page.Page.RepositoryPageContext;
 import org.sonatype.nexus.proxy.maven.MavenProxyRepository;
 import org.sonatype.nexus.proxy.maven.routing.PrefixSource;
@@ -37,6 +40,8 @@ public class ScrapeContext extends RepositoryPageContext
 
   private String message;
 
+  private volatile List<String> partialEntries = Collections.emptyList();
+
   /**
    * Constructor, none of the parameters might be {@code null}.
    */
@@ -105,6 +110,26 @@ public class ScrapeContext extends RepositoryPageContext
     return message;
   }
 
+  /**
+   * Returns the snapshot of entries scraped so far. While scrape is in progress, not yet scraped directories are
+   * present as entries themselves, hence the snapshot is always a valid (only coarser) prefix list, that might be
+   * published in case scrape cannot be finished.
+   *
+   * @since 3.0
+   */
+  public List<String> getPartialEntries() {
+    return partialEntries;
+  }
+
+  /**
+   * Updates the snapshot of entries scraped so far.
+   *
+   * @since 3.0
+   */
+  public void setPartialEntries(final List<String> partialEntries) {
+    this.partialEntries = Collections.unmodifiableList(checkNotNull(partialEntries));
+  }
+
   // ==
 
   /**
@@ -0,0 +1,194 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.mirror;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.inject.Named;
+import javax.inject.Singleton;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.sonatype.nexus.events.EventSubscriber;
+import org.sonatype.nexus.proxy.events.RepositoryRegistryEventRemove;
+import org.sonatype.nexus.proxy.repository.ProxyRepository;
+import org.sonatype.sisu.goodies.common.ComponentSupport;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.eventbus.AllowConcurrentEvents;
+import com.google.common.eventbus.Subscribe;
+
+/**
+ * Default {@link MirrorScheduler}. Orders the remote URLs of a repository as follows: URLs never used yet come first
+ * (in configured order, so they get measured), then healthy URLs ranked by their score, finally ejected mirrors in
+ * order of their readmission. Ejected mirrors are still tried as last resort, and nothing is ever dropped from the
+ * list. Statistics are kept in memory only, and are purged when repository is removed.
+ *
+ * @since 3.0
+ */
+@Named
+@Singleton
+public class DefaultMirrorScheduler
+    extends ComponentSupport
+    implements MirrorScheduler, EventSubscriber
+{
+  private static final String JMX_DOMAIN = MirrorScheduler.class.getPackage().getName();
+
+  private final ConcurrentMap<String, ConcurrentMap<String, MirrorStatistics>> statistics =
+      Maps.newConcurrentMap();
+
+  public DefaultMirrorScheduler() {
+    try {
+      final ObjectName jmxName = ObjectName.getInstance(JMX_DOMAIN, "name", MirrorScheduler.class.getSimpleName());
+      final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      if (server.isRegistered(jmxName)) {
+        log.warn("MBean already registered; replacing: {}", jmxName);
+        server.unregisterMBean(jmxName);
+      }
+      server.registerMBean(new DefaultMirrorSchedulerMBean(this), jmxName);
+    }
+    catch (Exception e) {
+      log.warn("Problem registering MBean for: " + getClass().getName(), e);
+    }
+  }
+
+  @Override
+  public List<String> order(final ProxyRepository repository, final List<String> remoteUrls) {
+    if (remoteUrls.size() < 2) {
+      return remoteUrls;
+    }
+    final long now = System.currentTimeMillis();
+    final List<MirrorStatistics> unmeasured = Lists.newArrayList();
+    final List<MirrorStatistics> healthy = Lists.newArrayList();
+    final List<MirrorStatistics> ejected = Lists.newArrayList();
+    for (String remoteUrl : remoteUrls) {
+      final MirrorStatistics stats = getStatistics(repository, remoteUrl);
+      if (stats.isEjected(now)) {
+        ejected.add(stats);
+      }
+      else if (stats.getSamples() == 0) {
+        unmeasured.add(stats);
+      }
+      else {
+        healthy.add(stats);
+      }
+    }
+    Collections.sort(healthy, SCORE_ORDER);
+    Collections.sort(ejected, EJECTION_ORDER);
+
+    final List<String> result = new ArrayList<>(remoteUrls.size());
+    for (MirrorStatistics stats : unmeasured) {
+      result.add(stats.getUrl());
+    }
+    for (MirrorStatistics stats : healthy) {
+      result.add(stats.getUrl());
+    }
+    for (MirrorStatistics stats : ejected) {
+      result.add(stats.getUrl());
+    }
+    return result;
+  }
+
+  @Override
+  public void onSuccess(final ProxyRepository repository, final String remoteUrl, final long elapsedMillis,
+                        final long bytes)
+  {
+    getStatistics(repository, remoteUrl).success(elapsedMillis, bytes);
+  }
+
+  @Override
+  public void onFailure(final ProxyRepository repository, final String remoteUrl) {
+    final MirrorStatistics stats = getStatistics(repository, remoteUrl);
+    final boolean wasEjected = stats.isEjected(System.currentTimeMillis());
+    stats.failure();
+    if (!wasEjected && stats.isEjected(System.currentTimeMillis())) {
+      log.info("Ejected mirror {} of repository {} until {}", remoteUrl, repository.getId(),
+          new Date(stats.getEjectedUntil()));
+    }
+  }
+
+  @Override
+  public List<MirrorStatistics> getRanking(final String repositoryId) {
+    final ConcurrentMap<String, MirrorStatistics> repositoryStatistics = statistics.get(repositoryId);
+    if (repositoryStatistics == null) {
+      return Collections.emptyList();
+    }
+    final long now = System.currentTimeMillis();
+    final List<MirrorStatistics> healthy = Lists.newArrayList();
+    final List<MirrorStatistics> ejected = Lists.newArrayList();
+    for (MirrorStatistics stats : repositoryStatistics.values()) {
+      (stats.isEjected(now) ? ejected : healthy).add(stats);
+    }
+    Collections.sort(healthy, SCORE_ORDER);
+    Collections.sort(ejected, EJECTION_ORDER);
+    healthy.addAll(ejected);
+    return healthy;
+  }
+
+  public Set<String> getRepositoryIds() {
+    return ImmutableSet.copyOf(statistics.keySet());
+  }
+
+  @Subscribe
+  @AllowConcurrentEvents
+  public void on(final RepositoryRegistryEventRemove evt) {
+    statistics.remove(evt.getRepository().getId());
+  }
+
+  // ==
+
+  private MirrorStatistics getStatistics(final ProxyRepository repository, final String remoteUrl) {
+    ConcurrentMap<String, MirrorStatistics> repositoryStatistics = statistics.get(repository.getId());
+    if (repositoryStatistics == null) {
+      final ConcurrentMap<String, MirrorStatistics> newStatistics = Maps.newConcurrentMap();
+      repositoryStatistics = statistics.putIfAbsent(repository.getId(), newStatistics);
+      if (repositoryStatistics == null) {
+        repositoryStatistics = newStatistics;
+      }
+    }
+    MirrorStatistics stats = repositoryStatistics.get(remoteUrl);
+    if (stats == null) {
+      final MirrorStatistics newStats = new MirrorStatistics(remoteUrl, remoteUrl.equals(repository.getRemoteUrl()));
+      stats = repositoryStatistics.putIfAbsent(remoteUrl, newStats);
+      if (stats == null) {
+        stats = newStats;
+      }
+    }
+    return stats;
+  }
+
+  private static final Comparator<MirrorStatistics> SCORE_ORDER = new Comparator<MirrorStatistics>()
+  {
+    @Override
+    public int compare(final MirrorStatistics o1, final MirrorStatistics o2) {
+      return Double.compare(o1.getScore(), o2.getScore());
+    }
+  };
+
+  private static final Comparator<MirrorStatistics> EJECTION_ORDER = new Comparator<MirrorStatistics>()
+  {
+    @Override
+    public int compare(final MirrorStatistics o1, final MirrorStatistics o2) {
+      return Long.compare(o1.getEjectedUntil(), o2.getEjectedUntil());
+    }
+  };
+}
@@ -0,0 +1,51 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.mirror;
+
+import java.util.List;
+
+import javax.management.StandardMBean;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * The default implementation of MBean management interface for {@link MirrorScheduler}.
+ *
+ * @since 3.0
+ */
+public class DefaultMirrorSchedulerMBean
+    extends StandardMBean
+    implements MirrorSchedulerMBean
+{
+  private final DefaultMirrorScheduler mirrorScheduler;
+
+  public DefaultMirrorSchedulerMBean(final DefaultMirrorScheduler mirrorScheduler) {
+    super(MirrorSchedulerMBean.class, false);
+    this.mirrorScheduler = Preconditions.checkNotNull(mirrorScheduler, "Managed MirrorScheduler cannot be null!");
+  }
+
+  @Override
+  public String[] getRepositoryIds() {
+    return mirrorScheduler.getRepositoryIds().toArray(new String[0]);
+  }
+
+  @Override
+  public String[] getRanking(final String repositoryId) {
+    final List<MirrorStatistics> ranking = mirrorScheduler.getRanking(repositoryId);
+    final String[] result = new String[ranking.size()];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = ranking.get(i).toString();
+    }
+    return result;
+  }
+}
@@ -0,0 +1,48 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.mirror;
+
+import java.util.List;
+
+import org.sonatype.nexus.proxy.repository.ProxyRepository;
+
+/**
+ * Schedules remote retrievals of proxy repositories across their remote URLs (mirrors and the canonical URL), by
+ * tracking latency, throughput and error rate of each URL. Healthy URLs are tried fastest first, ejected mirrors are
+ * tried last.
+ *
+ * @since 3.0
+ */
+public interface MirrorScheduler
+{
+  /**
+   * Returns the passed in remote URLs of the repository ordered by preference.
+   */
+  List<String> order(ProxyRepository repository, List<String> remoteUrls);
+
+  /**
+   * Records a successful retrieval from given remote URL.
+   */
+  void onSuccess(ProxyRepository repository, String remoteUrl, long elapsedMillis, long bytes);
+
+  /**
+   * Records a failed retrieval from given remote URL.
+   */
+  void onFailure(ProxyRepository repository, String remoteUrl);
+
+  /**
+   * Returns the statistics of every remote URL used so far by given repository, ordered by preference. Never
+   * {@code null}.
+   */
+  List<MirrorStatistics> getRanking(String repositoryId);
+}
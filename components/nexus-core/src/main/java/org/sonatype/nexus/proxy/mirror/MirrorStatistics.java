@@ -0,0 +1,165 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.mirror;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Health and performance statistics of one remote URL (mirror or canonical URL) of a proxy repository, maintained as
+ * exponentially weighted moving averages. A mirror failing repeatedly is ejected for a backoff period that doubles
+ * with each consecutive ejection (capped at 30 minutes), and is readmitted once the period elapses: the next success
+ * resets the backoff, the next failure ejects it again. The canonical URL of repository is never ejected.
+ *
+ * @since 3.0
+ */
+public class MirrorStatistics
+{
+  /**
+   * Weight of a new sample in moving averages.
+   */
+  private static final double ALPHA = 0.2;
+
+  /**
+   * Consecutive failures triggering ejection.
+   */
+  private static final int EJECT_CONSECUTIVE_FAILURES = 3;
+
+  /**
+   * Error rate triggering ejection, once enough samples were collected.
+   */
+  private static final double EJECT_ERROR_RATE = 0.5;
+
+  private static final int EJECT_MIN_SAMPLES = 10;
+
+  private static final long EJECT_BASE_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+  private static final long EJECT_MAX_MILLIS = TimeUnit.MINUTES.toMillis(30);
+
+  private final String url;
+
+  private final boolean canonical;
+
+  private double latency;
+
+  private double throughput;
+
+  private double errorRate;
+
+  private long samples;
+
+  private int consecutiveFailures;
+
+  private int ejections;
+
+  private long ejectedUntil;
+
+  public MirrorStatistics(final String url, final boolean canonical) {
+    this.url = checkNotNull(url);
+    this.canonical = canonical;
+  }
+
+  public String getUrl() {
+    return url;
+  }
+
+  public boolean isCanonical() {
+    return canonical;
+  }
+
+  /**
+   * Records a successful retrieval.
+   *
+   * @param elapsedMillis time needed to retrieve (and cache) the item.
+   * @param bytes         size of retrieved item, or -1 if unknown.
+   */
+  public synchronized void success(final long elapsedMillis, final long bytes) {
+    latency = average(latency, elapsedMillis);
+    if (bytes > 0) {
+      throughput = average(throughput, bytes * 1000d / Math.max(1, elapsedMillis));
+    }
+    errorRate = average(errorRate, 0);
+    samples++;
+    consecutiveFailures = 0;
+    ejections = 0;
+  }
+
+  /**
+   * Records a failed retrieval, ejecting the mirror if it became unhealthy.
+   */
+  public synchronized void failure() {
+    errorRate = average(errorRate, 1);
+    samples++;
+    consecutiveFailures++;
+    if (!canonical && !isEjected(System.currentTimeMillis())
+        && (consecutiveFailures >= EJECT_CONSECUTIVE_FAILURES
+        || (samples >= EJECT_MIN_SAMPLES && errorRate > EJECT_ERROR_RATE))) {
+      ejections++;
+      ejectedUntil = System.currentTimeMillis()
+          + Math.min(EJECT_MAX_MILLIS, EJECT_BASE_MILLIS << Math.min(ejections - 1, 16));
+      consecutiveFailures = 0;
+    }
+  }
+
+  private double average(final double current, final double sample) {
+    return samples == 0 ? sample : current + ALPHA * (sample - current);
+  }
+
+  public synchronized boolean isEjected(final long now) {
+    return now < ejectedUntil;
+  }
+
+  public synchronized long getEjectedUntil() {
+    return ejectedUntil;
+  }
+
+  /**
+   * Returns the EWMA of retrieval time in milliseconds.
+   */
+  public synchronized long getLatency() {
+    return Math.round(latency);
+  }
+
+  /**
+   * Returns the EWMA of retrieval throughput in bytes per second.
+   */
+  public synchronized long getThroughput() {
+    return Math.round(throughput);
+  }
+
+  /**
+   * Returns the EWMA of error rate, 0 being healthy and 1 being always failing.
+   */
+  public synchronized double getErrorRate() {
+    return errorRate;
+  }
+
+  public synchronized long getSamples() {
+    return samples;
+  }
+
+  /**
+   * Returns the score used to rank mirrors, lower is better. Latency is penalized by error rate, as an error usually
+   * means paying for retrieval from next mirror too.
+   */
+  synchronized double getScore() {
+    return latency * (1 + 4 * errorRate);
+  }
+
+  @Override
+  public synchronized String toString() {
+    return url + " (latency " + getLatency() + " ms, throughput " + getThroughput() + " B/s, errorRate "
+        + String.format("%.2f", errorRate) + (isEjected(System.currentTimeMillis()) ? ", ejected" : "") + ")";
+  }
+}
@@ -0,0 +1,54 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.quota;
+
+/**
+ * Component keeping the cached content of proxy repositories under their storage budget, by evicting the least
+ * recently used items. Accesses are tracked as they happen (see access journal), hence no repository walk is needed
+ * to find eviction candidates.
+ *
+ * @since 3.0
+ */
+public interface StorageQuotaManager
+{
+  /**
+   * Returns the count of bytes of tracked cached content in given repository.
+   */
+  long getUsedBytes(String repositoryId);
+
+  /**
+   * Returns the storage budget of given repository in bytes, or 0 if repository is not limited.
+   */
+  long getQuotaBytes(String repositoryId);
+
+  /**
+   * Returns the count of bytes of tracked cached content of all the proxy repositories.
+   */
+  long getTotalUsedBytes();
+
+  /**
+   * Returns the count of items evicted since start.
+   */
+  long getEvictedItemCount();
+
+  /**
+   * Returns the count of bytes freed by evictions since start.
+   */
+  long getFreedBytes();
+
+  /**
+   * Evicts items from repositories being over their budget (or from all repositories if total budget is exceeded),
+   * until they are under the budget again. Invoked periodically, but may be invoked on demand too.
+   */
+  void enforceQuotas();
+}
@@ -0,0 +1,229 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.quota.internal;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Approximate LRU index of cached items of one repository, backed by an {@link AccessJournal}. The index is an access
+ * ordered map, so the eldest entry is the least recently used one. Touches are journaled only if previous journaled
+ * access of the item is older than {@code touchResolutionMillis}, to keep journal compact on hot items.
+ *
+ * @since 3.0
+ */
+class AccessIndex
+{
+  private static final Logger log = LoggerFactory.getLogger(AccessIndex.class);
+
+  /**
+   * Journal is rewritten when it has more records than this many times the count of live entries.
+   */
+  private static final int COMPACTION_RATIO = 4;
+
+  private final String repositoryId;
+
+  private final AccessJournal journal;
+
+  private final long touchResolutionMillis;
+
+  private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+
+  private long usedBytes;
+
+  AccessIndex(final String repositoryId, final AccessJournal journal, final long touchResolutionMillis) {
+    this.repositoryId = checkNotNull(repositoryId);
+    this.journal = checkNotNull(journal);
+    this.touchResolutionMillis = touchResolutionMillis;
+  }
+
+  String getRepositoryId() {
+    return repositoryId;
+  }
+
+  synchronized void open() throws IOException {
+    journal.open(new AccessJournal.Replayer()
+    {
+      @Override
+      public void add(final String path, final long size, final long timestamp) {
+        doAdd(path, size, timestamp);
+      }
+
+      @Override
+      public void touch(final String path, final long timestamp) {
+        final Entry entry = entries.get(path);
+        if (entry != null) {
+          entry.lastAccess = timestamp;
+        }
+      }
+
+      @Override
+      public void remove(final String path) {
+        doRemove(path);
+      }
+
+      @Override
+      public void removePrefix(final String prefix) {
+        doRemovePrefix(prefix);
+      }
+    });
+    log.debug("Repository {} access index opened with {} entries ({} bytes)", repositoryId, entries.size(),
+        usedBytes);
+  }
+
+  synchronized long getUsedBytes() {
+    return usedBytes;
+  }
+
+  synchronized int size() {
+    return entries.size();
+  }
+
+  /**
+   * Returns the timestamp of last access of the least recently used item, or {@link Long#MAX_VALUE} if empty.
+   */
+  synchronized long getEldestAccess() {
+    final Iterator<Entry> iterator = entries.values().iterator();
+    return iterator.hasNext() ? iterator.next().lastAccess : Long.MAX_VALUE;
+  }
+
+  /**
+   * Returns the path of least recently used item, or {@code null} if empty.
+   */
+  synchronized String getEldestPath() {
+    final Iterator<String> iterator = entries.keySet().iterator();
+    return iterator.hasNext() ? iterator.next() : null;
+  }
+
+  /**
+   * Records addition (or replacement) of cached item.
+   */
+  synchronized void add(final String path, final long size, final long timestamp) throws IOException {
+    doAdd(path, size, timestamp);
+    journal.append(AccessJournal.ADD, path, size, timestamp);
+  }
+
+  /**
+   * Records access of item, adding it if not yet tracked.
+   */
+  synchronized void touch(final String path, final long size, final long timestamp) throws IOException {
+    final Entry entry = entries.get(path);
+    if (entry == null) {
+      add(path, size, timestamp);
+    }
+    else if (timestamp - entry.lastAccess >= touchResolutionMillis) {
+      entry.lastAccess = timestamp;
+      journal.append(AccessJournal.TOUCH, path, 0, timestamp);
+    }
+  }
+
+  /**
+   * Records removal of item, returns the size of it or -1 if it was not tracked.
+   */
+  synchronized long remove(final String path) throws IOException {
+    final long size = doRemove(path);
+    if (size >= 0) {
+      journal.append(AccessJournal.REMOVE, path, 0, System.currentTimeMillis());
+    }
+    return size;
+  }
+
+  /**
+   * Records removal of a collection and all the items below it.
+   */
+  synchronized void removePrefix(final String prefix) throws IOException {
+    if (doRemovePrefix(prefix)) {
+      journal.append(AccessJournal.REMOVE_PREFIX, prefix, 0, System.currentTimeMillis());
+    }
+  }
+
+  /**
+   * Flushes the journal, and rewrites it if it grew too big.
+   */
+  synchronized void flush() throws IOException {
+    if (journal.getRecordCount() > COMPACTION_RATIO * Math.max(1024, entries.size())) {
+      final AccessJournal rewrite = journal.beginRewrite();
+      for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+        rewrite.append(AccessJournal.ADD, entry.getKey(), entry.getValue().size, entry.getValue().lastAccess);
+      }
+      journal.commitRewrite(rewrite);
+      log.debug("Repository {} access journal compacted to {} records", repositoryId, entries.size());
+    }
+    else {
+      journal.flush();
+    }
+  }
+
+  synchronized void close() throws IOException {
+    journal.close();
+  }
+
+  synchronized void delete() throws IOException {
+    entries.clear();
+    usedBytes = 0;
+    journal.delete();
+  }
+
+  // ==
+
+  private void doAdd(final String path, final long size, final long timestamp) {
+    final Entry old = entries.put(path, new Entry(size, timestamp));
+    if (old != null) {
+      usedBytes -= old.size;
+    }
+    usedBytes += size;
+  }
+
+  private long doRemove(final String path) {
+    final Entry old = entries.remove(path);
+    if (old != null) {
+      usedBytes -= old.size;
+      return old.size;
+    }
+    return -1;
+  }
+
+  private boolean doRemovePrefix(final String prefix) {
+    final String dirPrefix = prefix.endsWith("/") ? prefix : prefix + "/";
+    boolean removed = false;
+    final Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+    while (iterator.hasNext()) {
+      final Map.Entry<String, Entry> entry = iterator.next();
+      if (entry.getKey().startsWith(dirPrefix) || "/".equals(prefix)) {
+        usedBytes -= entry.getValue().size;
+        iterator.remove();
+        removed = true;
+      }
+    }
+    return removed;
+  }
+
+  private static class Entry
+  {
+    private final long size;
+
+    private long lastAccess;
+
+    private Entry(final long size, final long lastAccess) {
+      this.size = size;
+      this.lastAccess = lastAccess;
+    }
+  }
+}
@@ -0,0 +1,213 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.quota.internal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+import com.google.common.io.Closeables;
+import com.google.common.io.CountingInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * Compact append-only journal of accesses to cached items of one repository. Records are binary: type byte,
+ * timestamp, path, and size for additions. The journal is replayed on startup to rebuild the {@link AccessIndex},
+ * and rewritten from it when grown too big compared to live entries. A torn last record (crash while appending) is
+ * cut off after replay, so records appended later stay readable. A rewritten journal atomically replaces the
+ * journal.
+ *
+ * @since 3.0
+ */
+class AccessJournal
+{
+  static final byte ADD = 'A';
+
+  static final byte TOUCH = 'T';
+
+  static final byte REMOVE = 'R';
+
+  static final byte REMOVE_PREFIX = 'P';
+
+  /**
+   * Callback of journal replay.
+   */
+  interface Replayer
+  {
+    void add(String path, long size, long timestamp);
+
+    void touch(String path, long timestamp);
+
+    void remove(String path);
+
+    void removePrefix(String prefix);
+  }
+
+  private static final Logger log = LoggerFactory.getLogger(AccessJournal.class);
+
+  private final File file;
+
+  private DataOutputStream out;
+
+  private long recordCount;
+
+  AccessJournal(final File file) {
+    this.file = checkNotNull(file);
+  }
+
+  File getFile() {
+    return file;
+  }
+
+  /**
+   * Returns the count of records in journal (as replayed plus appended since).
+   */
+  long getRecordCount() {
+    return recordCount;
+  }
+
+  /**
+   * Replays the journal (if exists) and opens it for appending.
+   */
+  void open(final Replayer replayer) throws IOException {
+    recordCount = 0;
+    if (file.isFile()) {
+      final long validLength = replay(replayer);
+      if (file.length() > validLength) {
+        // cut off torn last record, as records appended after it would not be readable
+        log.warn("Truncating torn record at end of access journal {}", file);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+          channel.truncate(validLength);
+        }
+      }
+    }
+    else {
+      file.getParentFile().mkdirs();
+    }
+    out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+  }
+
+  /**
+   * Replays records of journal, returns the length of journal up to the end of last complete record.
+   */
+  private long replay(final Replayer replayer) throws IOException {
+    final CountingInputStream counting = new CountingInputStream(new BufferedInputStream(new FileInputStream(file)));
+    final DataInputStream in = new DataInputStream(counting);
+    long validLength = 0;
+    try {
+      while (true) {
+        final byte type;
+        try {
+          type = in.readByte();
+        }
+        catch (EOFException e) {
+          break;
+        }
+        try {
+          final long timestamp = in.readLong();
+          final String path = in.readUTF();
+          switch (type) {
+            case ADD:
+              replayer.add(path, in.readLong(), timestamp);
+              break;
+            case TOUCH:
+              replayer.touch(path, timestamp);
+              break;
+            case REMOVE:
+              replayer.remove(path);
+              break;
+            case REMOVE_PREFIX:
+              replayer.removePrefix(path);
+              break;
+            default:
+              throw new IOException("Corrupt access journal " + file + ": unknown record type " + type);
+          }
+          recordCount++;
+          validLength = counting.getCount();
+        }
+        catch (EOFException e) {
+          // torn last record
+          break;
+        }
+      }
+    }
+    finally {
+      Closeables.close(in, true);
+    }
+    return validLength;
+  }
+
+  void append(final byte type, final String path, final long size, final long timestamp) throws IOException {
+    out.writeByte(type);
+    out.writeLong(timestamp);
+    out.writeUTF(path);
+    if (type == ADD) {
+      out.writeLong(size);
+    }
+    recordCount++;
+  }
+
+  void flush() throws IOException {
+    if (out != null) {
+      out.flush();
+    }
+  }
+
+  void close() throws IOException {
+    if (out != null) {
+      out.close();
+      out = null;
+    }
+  }
+
+  /**
+   * Starts a rewrite of journal: returns a writer of a temporary journal, that will replace this journal once
+   * {@link #commitRewrite(AccessJournal)} is invoked.
+   */
+  AccessJournal beginRewrite() throws IOException {
+    final AccessJournal rewrite = new AccessJournal(new File(file.getParentFile(), file.getName() + ".tmp"));
+    rewrite.getFile().delete();
+    rewrite.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(rewrite.getFile())));
+    return rewrite;
+  }
+
+  void commitRewrite(final AccessJournal rewrite) throws IOException {
+    rewrite.close();
+    close();
+    Files.move(rewrite.getFile().toPath(), file.toPath(), ATOMIC_MOVE, REPLACE_EXISTING);
+    recordCount = rewrite.getRecordCount();
+    out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+  }
+
+  /**
+   * Closes and deletes the journal.
+   */
+  void delete() throws IOException {
+    close();
+    file.delete();
+  }
+}
@@ -0,0 +1,407 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.quota.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.sonatype.nexus.configuration.application.ApplicationDirectories;
+import org.sonatype.nexus.events.EventSubscriber;
+import org.sonatype.nexus.proxy.ItemNotFoundException;
+import org.sonatype.nexus.proxy.NoSuchRepositoryException;
+import org.sonatype.nexus.proxy.ResourceStoreRequest;
+import org.sonatype.nexus.proxy.events.NexusStartedEvent;
+import org.sonatype.nexus.proxy.events.NexusStoppedEvent;
+import org.sonatype.nexus.proxy.events.RepositoryItemEvent;
+import org.sonatype.nexus.proxy.events.RepositoryItemEventCache;
+import org.sonatype.nexus.proxy.events.RepositoryItemEventDelete;
+import org.sonatype.nexus.proxy.events.RepositoryItemEventRetrieve;
+import org.sonatype.nexus.proxy.events.RepositoryRegistryEventRemove;
+import org.sonatype.nexus.proxy.item.StorageCollectionItem;
+import org.sonatype.nexus.proxy.item.StorageFileItem;
+import org.sonatype.nexus.proxy.item.StorageItem;
+import org.sonatype.nexus.proxy.quota.StorageQuotaManager;
+import org.sonatype.nexus.proxy.registry.RepositoryRegistry;
+import org.sonatype.nexus.proxy.repository.ProxyRepository;
+import org.sonatype.nexus.proxy.repository.Repository;
+import org.sonatype.nexus.proxy.wastebasket.DeleteOperation;
+import org.sonatype.nexus.threads.FakeAlmightySubject;
+import org.sonatype.nexus.threads.NexusScheduledExecutorService;
+import org.sonatype.nexus.threads.NexusThreadFactory;
+import org.sonatype.nexus.util.SystemPropertiesHelper;
+import org.sonatype.sisu.goodies.common.ComponentSupport;
+
+import com.google.common.collect.Maps;
+import com.google.common.eventbus.AllowConcurrentEvents;
+import com.google.common.eventbus.Subscribe;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Default {@link StorageQuotaManager}. Being an {@link EventSubscriber}, it is created and registered at boot. Listens
+ * to item events of proxy repositories, records them into per repository {@link AccessIndex}, and periodically evicts
+ * least recently used items of repositories over their budget. Items cached before the access journal existed are
+ * tracked once accessed; never accessed ones are left to the "evict unused items" task.
+ * <p>
+ * Budgets are configured using System properties: {@code nexus.proxy.quota.maxBytes} is the default budget of proxy
+ * repositories, {@code nexus.proxy.quota.<repoId>.maxBytes} the budget of given repository, and
+ * {@code nexus.proxy.quota.globalMaxBytes} the budget of all proxy repositories together. Value 0 means unlimited,
+ * and is the default of all of them.
+ *
+ * @since 3.0
+ */
+@Named
+@Singleton
+public class StorageQuotaManagerImpl
+    extends ComponentSupport
+    implements StorageQuotaManager, EventSubscriber
+{
+  private static final String KEY_PREFIX = "nexus.proxy.quota";
+
+  private static final String JMX_DOMAIN = StorageQuotaManager.class.getPackage().getName();
+
+  private final RepositoryRegistry repositoryRegistry;
+
+  private final File journalDirectory;
+
+  private final long defaultMaxBytes = SystemPropertiesHelper.getLong(KEY_PREFIX + ".maxBytes", 0L);
+
+  private final long globalMaxBytes = SystemPropertiesHelper.getLong(KEY_PREFIX + ".globalMaxBytes", 0L);
+
+  private final long evictionPeriodMillis =
+      TimeUnit.SECONDS.toMillis(SystemPropertiesHelper.getLong(KEY_PREFIX + ".evictionPeriodSeconds", 60L));
+
+  private final long touchResolutionMillis =
+      TimeUnit.SECONDS.toMillis(SystemPropertiesHelper.getLong(KEY_PREFIX + ".touchResolutionSeconds", 60L));
+
+  private final ConcurrentMap<String, AccessIndex> indexes = Maps.newConcurrentMap();
+
+  private final AtomicLong evictedItems = new AtomicLong();
+
+  private final AtomicLong freedBytes = new AtomicLong();
+
+  private final NexusScheduledExecutorService executor;
+
+  private volatile boolean started;
+
+  @Inject
+  public StorageQuotaManagerImpl(final ApplicationDirectories applicationDirectories,
+                                 final RepositoryRegistry repositoryRegistry)
+  {
+    this.repositoryRegistry = checkNotNull(repositoryRegistry);
+    this.journalDirectory = applicationDirectories.getWorkDirectory("db/access-journal");
+    final ScheduledThreadPoolExecutor target =
+        new ScheduledThreadPoolExecutor(1, new NexusThreadFactory("quota", "Storage Quota Evictor"),
+            new ThreadPoolExecutor.AbortPolicy());
+    this.executor = NexusScheduledExecutorService.forFixedSubject(target, FakeAlmightySubject.TASK_SUBJECT);
+    try {
+      final ObjectName jmxName =
+          ObjectName.getInstance(JMX_DOMAIN, "name", StorageQuotaManager.class.getSimpleName());
+      final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      if (server.isRegistered(jmxName)) {
+        log.warn("MBean already registered; replacing: {}", jmxName);
+        server.unregisterMBean(jmxName);
+      }
+      server.registerMBean(new StorageQuotaManagerMBeanImpl(this), jmxName);
+    }
+    catch (Exception e) {
+      log.warn("Problem registering MBean for: " + getClass().getName(), e);
+    }
+  }
+
+  // == StorageQuotaManager
+
+  @Override
+  public long getUsedBytes(final String repositoryId) {
+    final AccessIndex index = indexes.get(repositoryId);
+    return index == null ? 0L : index.getUsedBytes();
+  }
+
+  @Override
+  public long getQuotaBytes(final String repositoryId) {
+    return SystemPropertiesHelper.getLong(KEY_PREFIX + "." + repositoryId + ".maxBytes", defaultMaxBytes);
+  }
+
+  @Override
+  public long getTotalUsedBytes() {
+    long result = 0;
+    for (AccessIndex index : indexes.values()) {
+      result += index.getUsedBytes();
+    }
+    return result;
+  }
+
+  @Override
+  public long getEvictedItemCount() {
+    return evictedItems.get();
+  }
+
+  @Override
+  public long getFreedBytes() {
+    return freedBytes.get();
+  }
+
+  @Override
+  public void enforceQuotas() {
+    for (AccessIndex index : indexes.values()) {
+      final long quota = getQuotaBytes(index.getRepositoryId());
+      while (quota > 0 && index.getUsedBytes() > quota) {
+        if (!evictEldest(index)) {
+          break;
+        }
+      }
+    }
+    if (globalMaxBytes > 0) {
+      while (getTotalUsedBytes() > globalMaxBytes) {
+        // evict from repository having the least recently used item
+        AccessIndex eldest = null;
+        for (AccessIndex index : indexes.values()) {
+          if (index.size() > 0 && (eldest == null || index.getEldestAccess() < eldest.getEldestAccess())) {
+            eldest = index;
+          }
+        }
+        if (eldest == null || !evictEldest(eldest)) {
+          break;
+        }
+      }
+    }
+    flushAll();
+  }
+
+  Map<String, Long> getUsedBytesPerRepository() {
+    final Map<String, Long> result = Maps.newTreeMap();
+    for (AccessIndex index : indexes.values()) {
+      result.put(index.getRepositoryId(), index.getUsedBytes());
+    }
+    return result;
+  }
+
+  // == Events
+
+  @Subscribe
+  public void on(final NexusStartedEvent evt) {
+    for (ProxyRepository repository : repositoryRegistry.getRepositoriesWithFacet(ProxyRepository.class)) {
+      getIndex(repository);
+    }
+    executor.scheduleWithFixedDelay(new Runnable()
+    {
+      @Override
+      public void run() {
+        try {
+          enforceQuotas();
+        }
+        catch (Exception e) {
+          log.warn("Problem while enforcing storage quotas", e);
+        }
+      }
+    }, evictionPeriodMillis, evictionPeriodMillis, TimeUnit.MILLISECONDS);
+    started = true;
+  }
+
+  @Subscribe
+  public void on(final NexusStoppedEvent evt) {
+    started = false;
+    executor.shutdown();
+    try {
+      if (!executor.awaitTermination(15L, TimeUnit.SECONDS)) {
+        executor.shutdownNow();
+      }
+    }
+    catch (InterruptedException e) {
+      log.debug("Could not cleanly shut down", e);
+    }
+    for (AccessIndex index : indexes.values()) {
+      try {
+        index.flush();
+        index.close();
+      }
+      catch (IOException e) {
+        log.warn("Could not close access journal of repository {}", index.getRepositoryId(), e);
+      }
+    }
+    indexes.clear();
+  }
+
+  @Subscribe
+  @AllowConcurrentEvents
+  public void on(final RepositoryItemEventCache evt) {
+    final AccessIndex index = getIndexFor(evt);
+    if (index != null && evt.getItem() instanceof StorageFileItem) {
+      final long length = ((StorageFileItem) evt.getItem()).getLength();
+      if (length >= 0) {
+        try {
+          index.add(evt.getItem().getPath(), length, System.currentTimeMillis());
+        }
+        catch (IOException e) {
+          log.warn("Could not journal caching of {}", evt.getItemUid(), e);
+        }
+      }
+    }
+  }
+
+  @Subscribe
+  @AllowConcurrentEvents
+  public void on(final RepositoryItemEventRetrieve evt) {
+    final AccessIndex index = getIndexFor(evt);
+    if (index != null && evt.getItem() instanceof StorageFileItem) {
+      final long length = ((StorageFileItem) evt.getItem()).getLength();
+      if (length >= 0) {
+        try {
+          index.touch(evt.getItem().getPath(), length, System.currentTimeMillis());
+        }
+        catch (IOException e) {
+          log.warn("Could not journal access of {}", evt.getItemUid(), e);
+        }
+      }
+    }
+  }
+
+  @Subscribe
+  @AllowConcurrentEvents
+  public void on(final RepositoryItemEventDelete evt) {
+    final AccessIndex index = getIndexFor(evt);
+    if (index != null) {
+      try {
+        if (evt.getItem() instanceof StorageCollectionItem) {
+          index.removePrefix(evt.getItem().getPath());
+        }
+        else {
+          index.remove(evt.getItem().getPath());
+        }
+      }
+      catch (IOException e) {
+        log.warn("Could not journal deletion of {}", evt.getItemUid(), e);
+      }
+    }
+  }
+
+  @Subscribe
+  @AllowConcurrentEvents
+  public void on(final RepositoryRegistryEventRemove evt) {
+    final AccessIndex index = indexes.remove(evt.getRepository().getId());
+    if (index != null) {
+      try {
+        index.delete();
+      }
+      catch (IOException e) {
+        log.warn("Could not delete access journal of repository {}", index.getRepositoryId(), e);
+      }
+    }
+  }
+
+  // ==
+
+  /**
+   * Evicts the least recently used item of given index, returns {@code true} if eviction should continue.
+   */
+  private boolean evictEldest(final AccessIndex index) {
+    final String path = index.getEldestPath();
+    if (path == null) {
+      return false;
+    }
+    final Repository repository;
+    try {
+      repository = repositoryRegistry.getRepository(index.getRepositoryId());
+    }
+    catch (NoSuchRepositoryException e) {
+      return false;
+    }
+    try {
+      // drop it from index first, so freed bytes are counted once (deletion event will find nothing)
+      final long size = index.remove(path);
+      final ResourceStoreRequest request = new ResourceStoreRequest(path, true, false);
+      request.getRequestContext().put(DeleteOperation.DELETE_OPERATION_CTX_KEY, DeleteOperation.DELETE_PERMANENTLY);
+      repository.deleteItem(false, request);
+      evictedItems.incrementAndGet();
+      freedBytes.addAndGet(Math.max(0, size));
+      log.debug("Evicted {}:{} ({} bytes)", repository.getId(), path, size);
+      return true;
+    }
+    catch (ItemNotFoundException e) {
+      // already gone, it was not consuming space anyway
+      return true;
+    }
+    catch (Exception e) {
+      log.warn("Could not evict {}:{}, will retry later", repository.getId(), path, e);
+      return false;
+    }
+  }
+
+  private AccessIndex getIndexFor(final RepositoryItemEvent evt) {
+    if (!started) {
+      return null;
+    }
+    final StorageItem item = evt.getItem();
+    // skip "hidden" files, just like eviction of unused items does
+    if (item.getPath().startsWith("/.") || item.getPath().startsWith(".")) {
+      return null;
+    }
+    return getIndex(evt.getRepository());
+  }
+
+  private AccessIndex getIndex(final Repository repository) {
+    if (!repository.getRepositoryKind().isFacetAvailable(ProxyRepository.class)) {
+      return null;
+    }
+    AccessIndex index = indexes.get(repository.getId());
+    if (index == null) {
+      synchronized (indexes) {
+        index = indexes.get(repository.getId());
+        if (index == null) {
+          index = new AccessIndex(repository.getId(),
+              new AccessJournal(new File(journalDirectory, repository.getId() + ".journal")), touchResolutionMillis);
+          try {
+            index.open();
+          }
+          catch (IOException e) {
+            log.warn("Could not open access journal of repository {}, starting from scratch", repository.getId(), e);
+            try {
+              index.delete();
+              index.open();
+            }
+            catch (IOException e1) {
+              log.warn("Could not recreate access journal of repository {}", repository.getId(), e1);
+              return null;
+            }
+          }
+          indexes.put(repository.getId(), index);
+        }
+      }
+    }
+    return index;
+  }
+
+  private void flushAll() {
+    for (AccessIndex index : indexes.values()) {
+      try {
+        index.flush();
+      }
+      catch (IOException e) {
+        log.warn("Could not flush access journal of repository {}", index.getRepositoryId(), e);
+      }
+    }
+  }
+}
@@ -0,0 +1,62 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.quota.internal;
+
+import java.util.Map;
+
+import javax.management.StandardMBean;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * The default implementation of {@link StorageQuotaManagerMBean}.
+ *
+ * @since 3.0
+ */
+public class StorageQuotaManagerMBeanImpl
+    extends StandardMBean
+    implements StorageQuotaManagerMBean
+{
+  private final StorageQuotaManagerImpl storageQuotaManager;
+
+  public StorageQuotaManagerMBeanImpl(final StorageQuotaManagerImpl storageQuotaManager) {
+    super(StorageQuotaManagerMBean.class, false);
+    this.storageQuotaManager =
+        Preconditions.checkNotNull(storageQuotaManager, "Managed StorageQuotaManager cannot be null!");
+  }
+
+  @Override
+  public long getTotalUsedBytes() {
+    return storageQuotaManager.getTotalUsedBytes();
+  }
+
+  @Override
+  public Map<String, Long> getUsedBytesPerRepository() {
+    return storageQuotaManager.getUsedBytesPerRepository();
+  }
+
+  @Override
+  public long getEvictedItemCount() {
+    return storageQuotaManager.getEvictedItemCount();
+  }
+
+  @Override
+  public long getFreedBytes() {
+    return storageQuotaManager.getFreedBytes();
+  }
+
+  @Override
+  public void enforceQuotas() {
+    storageQuotaManager.enforceQuotas();
+  }
+}
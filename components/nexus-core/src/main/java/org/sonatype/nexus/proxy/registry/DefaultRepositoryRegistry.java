@@ -13,10 +13,15 @@
 package org.sonatype.nexus.proxy.registry;
 
 import java.util.ArrayList;
+import java.util.ArrayDeque;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -24,6 +29,8 @@ import javax.inject.Singleton;
 
 import org.sonatype.nexus.configuration.AbstractConfigurable;
 import org.sonatype.nexus.proxy.NoSuchRepositoryException;
+import org.sonatype.nexus.proxy.events.RepositoryConfigurationUpdatedEvent;
+import org.sonatype.nexus.proxy.events.RepositoryGroupMembersChangedEvent;
 import org.sonatype.nexus.proxy.events.RepositoryRegistryEventAdd;
 import org.sonatype.nexus.proxy.events.RepositoryRegistryEventPostRemove;
 import org.sonatype.nexus.proxy.events.RepositoryRegistryEventRemove;
@@ -34,6 +41,8 @@ import org.sonatype.sisu.goodies.common.ComponentSupport;
 import org.sonatype.sisu.goodies.eventbus.EventBus;
 
 import com.google.common.collect.Maps;
+import com.google.common.eventbus.AllowConcurrentEvents;
+import com.google.common.eventbus.Subscribe;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
@@ -49,6 +58,10 @@ import static com.google.common.base.Preconditions.checkNotNull;
  * ProximityEvents: this component just "concentrates" the repositiry events of all known repositories by it. It can be
  * used as single point to access all repository events. TODO this is not a good place to keep group repository
  * management code
+ * <p>
+ * Reads are lock-free: all the reading methods work against an immutable {@link RegistrySnapshot}, that is replaced
+ * as whole on every modification. The snapshot lazily builds (and then keeps) the facet and group membership
+ * indexes, and a new snapshot is published when group members change, so these lookups do not scan the registry.
  *
  * @author cstamas
  */
@@ -66,6 +79,7 @@ public class DefaultRepositoryRegistry
   public DefaultRepositoryRegistry(final EventBus eventBus, final RepositoryTypeRegistry repositoryTypeRegistry) {
     this.eventBus = checkNotNull(eventBus);
     this.repositoryTypeRegistry = checkNotNull(repositoryTypeRegistry);
+    eventBus.register(this);
   }
 
   @Override
@@ -93,22 +107,12 @@ public class DefaultRepositoryRegistry
 
   @Override
   public List<Repository> getRepositories() {
-    return Collections.unmodifiableList(new ArrayList<Repository>(getRepositoriesMap().values()));
+    return snapshot.getRepositories();
   }
 
   @Override
   public <T> List<T> getRepositoriesWithFacet(final Class<T> f) {
-    final List<Repository> repositories = getRepositories();
-
-    final ArrayList<T> result = new ArrayList<T>();
-
-    for (Repository repository : repositories) {
-      if (repository.getRepositoryKind().isFacetAvailable(f)) {
-        result.add(repository.adaptToFacet(f));
-      }
-    }
-
-    return Collections.unmodifiableList(result);
+    return snapshot.getRepositoriesWithFacet(f);
   }
 
   @Override
@@ -146,42 +150,44 @@ public class DefaultRepositoryRegistry
 
   @Override
   public List<String> getGroupsOfRepository(final String repositoryId) {
-    final ArrayList<String> result = new ArrayList<String>();
-
-    try {
-      final Repository repository = getRepository(repositoryId);
-
-      for (GroupRepository group : getGroupsOfRepository(repository)) {
-        result.add(group.getId());
-      }
+    final List<GroupRepository> groups = snapshot.getGroupIndex().getGroups(repositoryId);
+    final ArrayList<String> result = new ArrayList<String>(groups.size());
+    for (GroupRepository group : groups) {
+      result.add(group.getId());
     }
-    catch (NoSuchRepositoryException e) {
-      // ignore, just return empty collection
-    }
-
     return result;
   }
 
   @Override
   public List<GroupRepository> getGroupsOfRepository(final Repository repository) {
-    final ArrayList<GroupRepository> result = new ArrayList<GroupRepository>();
-
-    for (Repository repo : getRepositories()) {
-      if (!repo.getId().equals(repository.getId())
-          && repo.getRepositoryKind().isFacetAvailable(GroupRepository.class)) {
-        final GroupRepository group = repo.adaptToFacet(GroupRepository.class);
-
-        members:
-        for (Repository member : group.getMemberRepositories()) {
-          if (repository.getId().equals(member.getId())) {
-            result.add(group);
-            break members;
-          }
-        }
-      }
+    return new ArrayList<GroupRepository>(snapshot.getGroupIndex().getGroups(repository.getId()));
+  }
+
+  @Override
+  public List<GroupRepository> getTransitiveGroupsOfRepository(final Repository repository) {
+    return new ArrayList<GroupRepository>(snapshot.getGroupIndex().getTransitiveGroups(repository.getId()));
+  }
+
+  /**
+   * Publishes a new snapshot (with empty indexes) once group member changes are committed, as groups are kept in
+   * registry while their members change.
+   */
+  @Subscribe
+  @AllowConcurrentEvents
+  public void on(final RepositoryConfigurationUpdatedEvent evt) {
+    if (evt.getRepository().getRepositoryKind().isFacetAvailable(GroupRepository.class)) {
+      invalidateIndexes();
     }
+  }
 
-    return result;
+  /**
+   * Group members change event is fired before the change is committed, still drop the indexes in case they were
+   * built by a concurrent reader, to have them rebuilt soon.
+   */
+  @Subscribe
+  @AllowConcurrentEvents
+  public void on(final RepositoryGroupMembersChangedEvent evt) {
+    invalidateIndexes();
   }
 
   //
@@ -194,31 +200,31 @@ public class DefaultRepositoryRegistry
   private final Map<String, Repository> _repositories = Maps.newHashMap();
 
   /**
-   * The repository registry RO "view"
+   * The published snapshot of registry, never {@code null}.
    */
-  private volatile Map<String, Repository> _repositoriesView;
+  private volatile RegistrySnapshot snapshot = new RegistrySnapshot(Collections.<String, Repository>emptyMap());
 
   /**
-   * Returns a copy of map with repositories. Is synchronized method, to allow consistent-read access. Methods
-   * modifying this map are all also synchronized (see API Interface and above), while all the "reading" methods from
-   * public API will boil down to this single method.
+   * Returns RO map of repositories. Is lock-free, as it returns the map of currently published snapshot. Methods
+   * modifying the registry are all synchronized (see API Interface and above), and they publish a new snapshot,
+   * while all the "reading" methods from public API will boil down to the snapshot.
    */
-  protected synchronized Map<String, Repository> getRepositoriesMap() {
-    if (_repositoriesView == null) {
-      _repositoriesView = Collections.unmodifiableMap(new HashMap<String, Repository>(_repositories));
-    }
-
-    return _repositoriesView;
+  protected Map<String, Repository> getRepositoriesMap() {
+    return snapshot.getRepositoriesMap();
   }
 
   protected synchronized void repositoriesMapPut(final Repository repository) {
     _repositories.put(repository.getId(), repository);
-    _repositoriesView = Collections.unmodifiableMap(new HashMap<String, Repository>(_repositories));
+    snapshot = new RegistrySnapshot(_repositories);
   }
 
   protected synchronized void repositoriesMapRemove(final String repositoryId) {
     _repositories.remove(repositoryId);
-    _repositoriesView = Collections.unmodifiableMap(new HashMap<String, Repository>(_repositories));
+    snapshot = new RegistrySnapshot(_repositories);
+  }
+
+  protected synchronized void invalidateIndexes() {
+    snapshot = new RegistrySnapshot(_repositories);
   }
 
   protected void doRemoveRepository(final String repoId, final boolean silently)
@@ -265,4 +271,123 @@ public class DefaultRepositoryRegistry
       eventBus.post(new RepositoryRegistryEventPostRemove(this, repository));
     }
   }
+
+  // ==
+
+  /**
+   * Immutable state of registry. The indexes are built on first use, as registry is modified many times during boot
+   * while nobody asks for them.
+   */
+  private static class RegistrySnapshot
+  {
+    private final Map<String, Repository> repositoriesMap;
+
+    private final List<Repository> repositories;
+
+    private final ConcurrentMap<Class<?>, List<?>> facetIndex = Maps.newConcurrentMap();
+
+    private volatile GroupIndex groupIndex;
+
+    private RegistrySnapshot(final Map<String, Repository> repositories) {
+      this.repositoriesMap = Collections.unmodifiableMap(new HashMap<String, Repository>(repositories));
+      this.repositories = Collections.unmodifiableList(new ArrayList<Repository>(repositoriesMap.values()));
+    }
+
+    private Map<String, Repository> getRepositoriesMap() {
+      return repositoriesMap;
+    }
+
+    private List<Repository> getRepositories() {
+      return repositories;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> List<T> getRepositoriesWithFacet(final Class<T> f) {
+      List<T> result = (List<T>) facetIndex.get(f);
+      if (result == null) {
+        final ArrayList<T> facets = new ArrayList<T>();
+        for (Repository repository : repositories) {
+          if (repository.getRepositoryKind().isFacetAvailable(f)) {
+            facets.add(repository.adaptToFacet(f));
+          }
+        }
+        result = Collections.unmodifiableList(facets);
+        facetIndex.put(f, result);
+      }
+      return result;
+    }
+
+    private GroupIndex getGroupIndex() {
+      GroupIndex result = groupIndex;
+      if (result == null) {
+        result = new GroupIndex(repositoriesMap, getRepositoriesWithFacet(GroupRepository.class));
+        groupIndex = result;
+      }
+      return result;
+    }
+  }
+
+  /**
+   * Reverse index of group membership: repository ID to groups having it as direct member, and to groups containing
+   * it directly or via member groups.
+   */
+  private static class GroupIndex
+  {
+    private final Map<String, List<GroupRepository>> groups = Maps.newHashMap();
+
+    private final Map<String, List<GroupRepository>> transitiveGroups = Maps.newHashMap();
+
+    private GroupIndex(final Map<String, Repository> repositories, final List<GroupRepository> groupRepositories) {
+      final Map<String, List<GroupRepository>> direct = Maps.newHashMap();
+      for (GroupRepository group : groupRepositories) {
+        for (String memberId : new LinkedHashSet<String>(group.getMemberRepositoryIds())) {
+          if (!memberId.equals(group.getId()) && repositories.containsKey(memberId)) {
+            List<GroupRepository> memberGroups = direct.get(memberId);
+            if (memberGroups == null) {
+              memberGroups = new ArrayList<GroupRepository>();
+              direct.put(memberId, memberGroups);
+            }
+            memberGroups.add(group);
+          }
+        }
+      }
+      for (Map.Entry<String, List<GroupRepository>> entry : direct.entrySet()) {
+        groups.put(entry.getKey(), Collections.unmodifiableList(entry.getValue()));
+        transitiveGroups.put(entry.getKey(), Collections.unmodifiableList(collectTransitive(direct, entry.getKey())));
+      }
+    }
+
+    private List<GroupRepository> collectTransitive(final Map<String, List<GroupRepository>> direct,
+                                                    final String repositoryId)
+    {
+      // breadth first, nearest groups first, guarding against cycles
+      final Set<String> seen = new LinkedHashSet<String>();
+      final List<GroupRepository> result = new ArrayList<GroupRepository>();
+      final Deque<String> queue = new ArrayDeque<String>();
+      seen.add(repositoryId);
+      queue.add(repositoryId);
+      while (!queue.isEmpty()) {
+        final List<GroupRepository> memberGroups = direct.get(queue.poll());
+        if (memberGroups != null) {
+          for (GroupRepository group : memberGroups) {
+            if (seen.add(group.getId())) {
+              result.add(group);
+              queue.add(group.getId());
+            }
+          }
+        }
+      }
+      return result;
+    }
+
+    private List<GroupRepository> getGroups(final String repositoryId) {
+      final List<GroupRepository> result = groups.get(repositoryId);
+      return result != null ? result : Collections.<GroupRepository>emptyList();
+    }
+
+    private List<GroupRepository> getTransitiveGroups(final String repositoryId) {
+      final List<GroupRepository> result = transitiveGroups.get(repositoryId);
+      return result != null ? result : Collections.<GroupRepository>emptyList();
+    }
+  }
 }
@@ -111,4 +111,14 @@ public interface RepositoryRegistry
    * @return list of group's where the repo appears as member
    */
   List<GroupRepository> getGroupsOfRepository(Repository repository);
+
+  /**
+   * Collect the groups where repository is member, either directly or as member of another group. Nearest groups
+   * come first.
+   *
+   * @param repository the repository
+   * @return list of group's where the repo appears as member, directly or transitively
+   * @since 3.0
+   */
+  List<GroupRepository> getTransitiveGroupsOfRepository(Repository repository);
 }
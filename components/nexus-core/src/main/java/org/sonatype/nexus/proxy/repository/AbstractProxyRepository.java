@@ -26,6 +26,7 @@ import javax.net.ssl.SSLException;
 import javax.net.ssl.SSLPeerUnverifiedException;
 
 import org.sonatype.configuration.ConfigurationException;
+import org.sonatype.nexus.ApplicationStatusSource;
 import org.sonatype.nexus.configuration.model.CRemoteStorage;
 import org.sonatype.nexus.proxy.IllegalOperationException;
 import org.sonatype.nexus.proxy.ItemNotFoundException;
@@ -38,6 +39,7 @@ import org.sonatype.nexus.proxy.RemoteStorageTransportException;
 import org.sonatype.nexus.proxy.ResourceStoreRequest;
 import org.sonatype.nexus.proxy.StorageException;
 import org.sonatype.nexus.proxy.access.Action;
+import org.sonatype.nexus.proxy.events.NexusStartedEvent;
 import org.sonatype.nexus.proxy.events.NexusStoppedEvent;
 import org.sonatype.nexus.proxy.events.RepositoryConfigurationUpdatedEvent;
 import org.sonatype.nexus.proxy.events.RepositoryEventEvictUnusedItems;
@@ -51,7 +53,9 @@ import org.sonatype.nexus.proxy.item.AbstractStorageItem;
 import org.sonatype.nexus.proxy.item.RepositoryItemUid;
 import org.sonatype.nexus.proxy.item.RepositoryItemUidLock;
 import org.sonatype.nexus.proxy.item.StorageCollectionItem;
+import org.sonatype.nexus.proxy.item.StorageFileItem;
 import org.sonatype.nexus.proxy.item.StorageItem;
+import org.sonatype.nexus.proxy.mirror.MirrorScheduler;
 import org.sonatype.nexus.proxy.repository.EvictUnusedItemsWalkerProcessor.EvictUnusedItemsWalkerFilter;
 import org.sonatype.nexus.proxy.repository.threads.ThreadPoolManager;
 import org.sonatype.nexus.proxy.storage.UnsupportedStorageOperationException;
@@ -112,6 +116,8 @@ public abstract class AbstractProxyRepository
 
   private ThreadPoolManager poolManager;
 
+  private MirrorScheduler mirrorScheduler;
+
   // == set by this
 
   /**
@@ -120,6 +126,8 @@ public abstract class AbstractProxyRepository
    */
   private RepositoryStatusCheckerThread repositoryStatusCheckerThread;
 
+  private ApplicationStatusSource applicationStatusSource;
+
   /**
    * Remote storage context to store connection configs.
    */
@@ -161,8 +169,12 @@ public abstract class AbstractProxyRepository
       REMOTE_STATUS_RETAIN_TIME);
 
   @Inject
-  public void populateAbstractProxyRepository(ThreadPoolManager poolManager) {
+  public void populateAbstractProxyRepository(ThreadPoolManager poolManager, MirrorScheduler mirrorScheduler,
+                                              ApplicationStatusSource applicationStatusSource)
+  {
     this.poolManager = checkNotNull(poolManager);
+    this.mirrorScheduler = checkNotNull(mirrorScheduler);
+    this.applicationStatusSource = checkNotNull(applicationStatusSource);
 
     // we have been not configured yet! So, we have no ID and stuff coming from config!
     // set here
@@ -177,12 +189,18 @@ public abstract class AbstractProxyRepository
             forModification);
   }
 
+  @Subscribe
+  public void on(final NexusStartedEvent e) {
+    // status checking is not started while booting, see doConfigure()
+    createRepositoryStatusCheckerThread();
+  }
+
   @Subscribe
   public void on(final NexusStoppedEvent e) {
     disposeRepositoryStatusCheckerThread();
   }
 
-  private void createRepositoryStatusCheckerThread() {
+  private synchronized void createRepositoryStatusCheckerThread() {
     // only for proxy kind
     if (getRepositoryKind().isFacetAvailable(ProxyRepository.class)) {
       if (repositoryStatusCheckerThread == null) {
@@ -216,7 +234,10 @@ public abstract class AbstractProxyRepository
       throws ConfigurationException
   {
     super.doConfigure();
-    createRepositoryStatusCheckerThread();
+    // while booting, defer remote status checks until Nexus is started, to not hit all remotes at once
+    if (applicationStatusSource.getSystemStatus().isNexusStarted()) {
+      createRepositoryStatusCheckerThread();
+    }
   }
 
   @Override
@@ -1288,7 +1309,8 @@ public abstract class AbstractProxyRepository
    * error will be returned if there are no more urls.</li> <li>Mirror url will be put on the blacklist if retrieve
    * item operation from the url failed with StorageException, AccessDenied or InvalidItemContent error but the item
    * was successfully retrieve from another url.</li> <li>Mirror url will be removed from blacklist after 30
-   * minutes.</li>
+   * minutes.</li> <li>When more than one url is available, urls are tried in order given by {@link MirrorScheduler},
+   * fastest healthy url first, and the outcome of each retrieval is reported back to it.</li>
    * The following matrix summarises retry/blacklist behaviour
    * <p/>
    * <p/>
@@ -1313,7 +1335,7 @@ public abstract class AbstractProxyRepository
     itemUidLock.lock(Action.create);
 
     try {
-      List<String> remoteUrls = getRemoteUrls(request);
+      List<String> remoteUrls = mirrorScheduler.order(this, getRemoteUrls(request));
 
       List<RepositoryItemValidationEvent> events = new ArrayList<>();
 
@@ -1355,6 +1377,7 @@ public abstract class AbstractProxyRepository
         }
 
         for (int i = 0; i < retryCount; i++) {
+          final long started = System.currentTimeMillis();
           try {
             // events.clear();
 
@@ -1366,15 +1389,23 @@ public abstract class AbstractProxyRepository
             if (doValidateRemoteItemContent(request, remoteUrl, remoteItem, events)) {
               sendContentValidationEvents(request, events, true);
 
+              mirrorScheduler.onSuccess(this, remoteUrl, System.currentTimeMillis() - started,
+                  remoteItem instanceof StorageFileItem ? ((StorageFileItem) remoteItem).getLength() : -1);
+
               return remoteItem;
             }
             else {
+              mirrorScheduler.onFailure(this, remoteUrl);
+
               continue all_urls; // retry with next url
             }
           }
           catch (ItemNotFoundException e) {
             lastException = e;
 
+            // remote responded, just does not have it
+            mirrorScheduler.onSuccess(this, remoteUrl, System.currentTimeMillis() - started, -1);
+
             continue all_urls; // retry with next url
           }
           catch (RemoteAccessException e) {
@@ -1382,6 +1413,8 @@ public abstract class AbstractProxyRepository
 
             logFailedUrl(remoteUrl, e);
 
+            mirrorScheduler.onFailure(this, remoteUrl);
+
             continue all_urls; // retry with next url
           }
           catch (RemoteStorageException e) {
@@ -1393,6 +1426,8 @@ public abstract class AbstractProxyRepository
 
             lastException = e;
 
+            mirrorScheduler.onFailure(this, remoteUrl);
+
             // debug, print all
             if (log.isDebugEnabled()) {
               logFailedUrl(remoteUrl, e);
@@ -1449,6 +1484,8 @@ public abstract class AbstractProxyRepository
             // make it logged, this is RuntimeEx
             log.warn("Failed URL retrieve/cache: {}", remoteUrl, e);
 
+            mirrorScheduler.onFailure(this, remoteUrl);
+
             continue all_urls; // retry with next url
           }
 
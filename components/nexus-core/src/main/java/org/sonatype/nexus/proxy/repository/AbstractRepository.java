@@ -551,6 +551,15 @@ public abstract class AbstractRepository
         throw e;
       }
     }
+    finally {
+      try {
+        // no-op if walk completed, as walker awaited it already
+        walkerProcessor.awaitTermination();
+      }
+      catch (Exception e) {
+        log.warn("Could not recreate attributes in repository {}", this, e);
+      }
+    }
     eventBus().post(new RepositoryEventRecreateAttributes(this));
     return true;
   }
@@ -14,26 +14,65 @@ package org.sonatype.nexus.proxy.repository;
 
 import java.io.IOException;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor.CallerRunsPolicy;
+import java.util.concurrent.TimeUnit;
 
 import org.sonatype.nexus.proxy.RequestContext;
+import org.sonatype.nexus.proxy.attributes.inspectors.DigestCalculatingInspector;
 import org.sonatype.nexus.proxy.item.StorageCollectionItem;
 import org.sonatype.nexus.proxy.item.StorageFileItem;
 import org.sonatype.nexus.proxy.item.StorageItem;
 import org.sonatype.nexus.proxy.walker.AbstractWalkerProcessor;
 import org.sonatype.nexus.proxy.walker.WalkerContext;
-
+import org.sonatype.nexus.threads.NexusExecutorService;
+import org.sonatype.nexus.threads.NexusThreadFactory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Walker processor recreating attributes of walked items. Behaviour is controlled with request context "hints":
+ * {@link #FORCE_ATTRIBUTE_RECREATION} (recalculate attributes from content, default {@code true}),
+ * {@link #SKIP_UNCHANGED_ITEMS} (do not recalculate digests of files having same length and modification timestamp
+ * as when digests were calculated, default {@code false}) and {@link #THREADS} (count of threads processing files,
+ * default 1, processing them on walker thread).
+ */
 public class RecreateAttributesWalker
     extends AbstractWalkerProcessor
 {
   public static final String FORCE_ATTRIBUTE_RECREATION = RecreateAttributesWalker.class.getName()
       + ".forceAttributeRecreation";
 
+  /**
+   * @since 3.0
+   */
+  public static final String SKIP_UNCHANGED_ITEMS = RecreateAttributesWalker.class.getName()
+      + ".skipUnchangedItems";
+
+  /**
+   * @since 3.0
+   */
+  public static final String THREADS = RecreateAttributesWalker.class.getName() + ".threads";
+
+  private static final Logger log = LoggerFactory.getLogger(RecreateAttributesWalker.class);
+
   private final Repository repository;
 
   private final Map<String, String> initialData;
 
   private boolean forceAttributeRecreation;
 
+  private boolean skipUnchangedItems;
+
+  private ExecutorService executor;
+
+  private volatile Exception failure;
+
+  private boolean failureReported;
+
   public RecreateAttributesWalker(final Repository repository, final Map<String, String> initialData) {
     this.repository = repository;
     this.initialData = initialData;
@@ -54,17 +93,81 @@ public class RecreateAttributesWalker
       throws Exception
   {
     forceAttributeRecreation = isForceAttributeRecreation(context);
+    skipUnchangedItems = getBooleanHint(context, SKIP_UNCHANGED_ITEMS, false);
+    final int threads = getIntegerHint(context, THREADS, 1);
+    if (threads > 1) {
+      executor = NexusExecutorService.forCurrentSubject(
+          new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+              new ArrayBlockingQueue<Runnable>(threads * 2),
+              new NexusThreadFactory("recreate-attributes", "Recreate attributes " + repository.getId()),
+              new CallerRunsPolicy()));
+    }
   }
 
   @Override
-  public final void processItem(WalkerContext context, StorageItem item)
+  public final void processItem(final WalkerContext context, final StorageItem item)
       throws Exception
   {
     if (item instanceof StorageCollectionItem) {
       return; // collections have no attributes persisted
     }
 
-    doProcessFileItem(context, item);
+    if (executor == null) {
+      doProcessFileItem(context, item);
+      return;
+    }
+
+    reportFailure();
+    executor.execute(new Runnable()
+    {
+      @Override
+      public void run() {
+        if (failure != null) {
+          return;
+        }
+        try {
+          doProcessFileItem(context, item);
+        }
+        catch (Exception e) {
+          failure = e;
+        }
+      }
+    });
+  }
+
+  @Override
+  public void afterWalk(final WalkerContext context)
+      throws Exception
+  {
+    awaitTermination();
+  }
+
+  /**
+   * Waits for files handed over to processing threads, if any, and rethrows the first failure of them, unless it
+   * was already reported. Invoked after walk, but must be invoked by walk initiator too, as walker does not invoke
+   * {@link #afterWalk(WalkerContext)} when walk was stopped. Only the first invocation waits, subsequent ones return
+   * immediately.
+   *
+   * @since 3.0
+   */
+  public void awaitTermination()
+      throws Exception
+  {
+    if (executor == null) {
+      return;
+    }
+    executor.shutdown();
+    try {
+      while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+        log.debug("Waiting for attributes recreation of {} to finish", repository.getId());
+      }
+    }
+    catch (InterruptedException e) {
+      executor.shutdownNow();
+      Thread.currentThread().interrupt();
+    }
+    executor = null;
+    reportFailure();
   }
 
   // == Internal
@@ -76,7 +179,8 @@ public class RecreateAttributesWalker
       item.getRepositoryItemAttributes().putAll(initialData);
     }
 
-    if (forceAttributeRecreation && item instanceof StorageFileItem) {
+    if (forceAttributeRecreation && item instanceof StorageFileItem
+        && !(skipUnchangedItems && DigestCalculatingInspector.isDigestUpToDate((StorageFileItem) item))) {
       getRepository().getAttributesHandler().storeAttributes(item,
           ((StorageFileItem) item).getContentLocator());
     }
@@ -86,14 +190,42 @@ public class RecreateAttributesWalker
   }
 
   protected boolean isForceAttributeRecreation(final WalkerContext ctx) {
+    // fallback to default behavior: do force it
+    return getBooleanHint(ctx, FORCE_ATTRIBUTE_RECREATION, true);
+  }
+
+  private boolean getBooleanHint(final WalkerContext ctx, final String key, final boolean defaultValue) {
     final RequestContext reqestContext = ctx.getResourceStoreRequest().getRequestContext();
-    if (reqestContext.containsKey(FORCE_ATTRIBUTE_RECREATION, false)) {
+    if (reqestContext.containsKey(key, false)) {
       // obey the "hint"
-      return Boolean.parseBoolean(String.valueOf(reqestContext.get(FORCE_ATTRIBUTE_RECREATION, false)));
+      return Boolean.parseBoolean(String.valueOf(reqestContext.get(key, false)));
     }
-    else {
-      // fallback to default behavior: do force it
-      return true;
+    return defaultValue;
+  }
+
+  private int getIntegerHint(final WalkerContext ctx, final String key, final int defaultValue) {
+    final RequestContext reqestContext = ctx.getResourceStoreRequest().getRequestContext();
+    if (reqestContext.containsKey(key, false)) {
+      final String value = String.valueOf(reqestContext.get(key, false));
+      try {
+        return Integer.parseInt(value.trim());
+      }
+      catch (NumberFormatException e) {
+        log.warn("Invalid value '{}' of {}, using {}", value, key, defaultValue);
+      }
+    }
+    return defaultValue;
+  }
+
+  /**
+   * Rethrows the failure of a processing thread, only once, as both walker and walk initiator may ask for it.
+   */
+  private void reportFailure()
+      throws Exception
+  {
+    if (failure != null && !failureReported) {
+      failureReported = true;
+      throw failure;
     }
   }
 }
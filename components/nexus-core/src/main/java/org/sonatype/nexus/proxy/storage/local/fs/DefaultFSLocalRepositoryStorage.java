@@ -19,6 +19,11 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
@@ -453,6 +458,52 @@ public class DefaultFSLocalRepositoryStorage
     return result;
   }
 
+  /**
+   * Lists the direct children of the directory at the request path, using file system attributes only. Unlike {@link
+   * #listItems(Repository, ResourceStoreRequest)}, no storage items are built, hence neither item attributes are
+   * read nor items are touched, making this method suitable for listings of big directories. Entries are returned
+   * in no particular order.
+   *
+   * @since 3.0
+   */
+  public List<DirectoryEntry> listDirectoryEntries(final Repository repository, final ResourceStoreRequest request)
+      throws ItemNotFoundException, LocalStorageException
+  {
+    final Path target = getFileFromBase(repository, request).toPath();
+    if (!Files.isDirectory(target)) {
+      throw new ItemNotFoundException(reasonFor(request, repository,
+          "Path %s not found as collection in local storage of repository %s", request.getRequestPath(),
+          RepositoryStringUtils.getHumanizedNameString(repository)));
+    }
+    final List<DirectoryEntry> result = new ArrayList<DirectoryEntry>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(target)) {
+      for (Path path : stream) {
+        final String name = path.getFileName().toString();
+        if (name.endsWith(DefaultFSPeer.HIDDEN_TARGET_SUFFIX)) {
+          continue;
+        }
+        final BasicFileAttributes attributes;
+        try {
+          attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        }
+        catch (NoSuchFileException e) {
+          // deleted while listing
+          continue;
+        }
+        if (attributes.isDirectory()) {
+          result.add(new DirectoryEntry(name, true, attributes.lastModifiedTime().toMillis(), -1));
+        }
+        else if (attributes.isRegularFile()) {
+          result.add(new DirectoryEntry(name, false, attributes.lastModifiedTime().toMillis(), attributes.size()));
+        }
+      }
+    }
+    catch (IOException e) {
+      throw new LocalStorageException("Cannot list directory in repository " + repository + ", path " + target, e);
+    }
+    return result;
+  }
+
   private static File getFileFromUrl(String urlPath) {
     if (validFileUrl(urlPath)) {
       try {
@@ -66,7 +66,7 @@ public class DefaultFSPeer
     implements FSPeer
 {
 
-  private static final String HIDDEN_TARGET_SUFFIX = ".nx-upload";
+  static final String HIDDEN_TARGET_SUFFIX = ".nx-upload";
 
   private static final String APPENDIX = "nx-tmp";
 
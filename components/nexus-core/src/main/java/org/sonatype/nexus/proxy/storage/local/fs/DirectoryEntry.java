@@ -0,0 +1,64 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.storage.local.fs;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Lightweight entry of a local storage directory listing, built out of file system attributes only.
+ *
+ * @since 3.0
+ * @see DefaultFSLocalRepositoryStorage#listDirectoryEntries(org.sonatype.nexus.proxy.repository.Repository,
+ *      org.sonatype.nexus.proxy.ResourceStoreRequest)
+ */
+public class DirectoryEntry
+{
+  private final String name;
+
+  private final boolean collection;
+
+  private final long lastModified;
+
+  private final long size;
+
+  public DirectoryEntry(final String name, final boolean collection, final long lastModified, final long size) {
+    this.name = checkNotNull(name);
+    this.collection = collection;
+    this.lastModified = lastModified;
+    this.size = size;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public boolean isCollection() {
+    return collection;
+  }
+
+  public long getLastModified() {
+    return lastModified;
+  }
+
+  /**
+   * Returns the size of the file in bytes, or -1 for collections.
+   */
+  public long getSize() {
+    return size;
+  }
+
+  @Override
+  public String toString() {
+    return name + (collection ? "/" : "");
+  }
+}
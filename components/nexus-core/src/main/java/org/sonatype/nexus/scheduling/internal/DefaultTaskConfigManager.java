@@ -56,7 +56,9 @@ import org.sonatype.sisu.goodies.eventbus.EventBus;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
- * The default implementation of the Task Configuration manager.
+ * The default implementation of the Task Configuration manager. Task definitions are persisted in nexus.xml, while
+ * run state changing on every task execution is persisted in {@link TaskRunStateJournal}, to not rewrite whole
+ * configuration under its global lock on every task run.
  */
 @Singleton
 @Named
@@ -67,13 +69,17 @@ public class DefaultTaskConfigManager
 
   private final Map<String, Provider<SchedulerTask<?>>> tasks;
 
+  private final TaskRunStateJournal runStateJournal;
+
   // TODO: Nx configuration is used here, as it's used as monitor for synchronization!!!
   @Inject
   public DefaultTaskConfigManager(final EventBus eventBus, final NexusConfiguration nexusConfiguration,
-                                  final Map<String, Provider<SchedulerTask<?>>> tasks)
+                                  final Map<String, Provider<SchedulerTask<?>>> tasks,
+                                  final TaskRunStateJournal runStateJournal)
   {
     super("Scheduled Tasks", eventBus, nexusConfiguration);
     this.tasks = checkNotNull(tasks);
+    this.runStateJournal = checkNotNull(runStateJournal);
   }
 
   // ==
@@ -125,15 +131,24 @@ public class DefaultTaskConfigManager
           TaskUtils.setId(nexusTask, task.getId());
           TaskUtils.setName(nexusTask, task.getName());
 
+          // journaled run state is more recent than the one in configuration, if any
+          long lastRun = task.getLastRun();
+          long nextRun = task.getNextRun();
+          final TaskRunStateJournal.RunState runState = runStateJournal.get(task.getId());
+          if (runState != null) {
+            lastRun = runState.getLastRun();
+            nextRun = runState.getNextRun();
+          }
+
           DefaultScheduledTask<?> scheduledTask = (DefaultScheduledTask<?>) scheduler.initialize(task.getId(),
               task.getName(), task.getType(), nexusTask,
-              translateFrom(task.getSchedule(), new Date(task.getNextRun())), task.isEnabled());
+              translateFrom(task.getSchedule(), new Date(nextRun)), task.isEnabled());
 
           // since the default schedules task appends 20 ms to the last run time, we don't want
           // set the value if it is 0, otherwise will give appearance that task did run, since
           // timestamp greater than 0
-          if (task.getLastRun() > 0) {
-            scheduledTask.setLastRun(new Date(task.getLastRun()));
+          if (lastRun > 0) {
+            scheduledTask.setLastRun(new Date(lastRun));
           }
         }
         catch (IllegalArgumentException e) {
@@ -182,6 +197,9 @@ public class DefaultTaskConfigManager
         log.warn("Could not save task changes!", e);
       }
     }
+
+    // keep journal as recent as configuration, as it takes precedence on load
+    updateTaskRunState(task);
   }
 
   public <T> void removeTask(ScheduledTask<T> task) {
@@ -207,9 +225,24 @@ public class DefaultTaskConfigManager
       }
     }
 
+    runStateJournal.remove(task.getId());
+
     // TODO: need to also add task to a history file
   }
 
+  /**
+   * Journals the run state of task, does not touch nor lock the configuration.
+   */
+  public <T> void updateTaskRunState(ScheduledTask<T> task) {
+    // RunNowSchedules are not saved
+    if (RunNowSchedule.class.isAssignableFrom(task.getSchedule().getClass())) {
+      return;
+    }
+
+    runStateJournal.put(task.getId(), task.getLastRun() != null ? task.getLastRun().getTime() : 0,
+        task.getNextRun() != null ? task.getNextRun().getTime() : 0);
+  }
+
   public SchedulerTask<?> createTaskInstance(String taskType) throws IllegalArgumentException {
     return lookupTask(taskType);
   }
@@ -0,0 +1,320 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.scheduling.internal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.sonatype.nexus.configuration.application.ApplicationDirectories;
+import org.sonatype.sisu.goodies.common.ComponentSupport;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Maps;
+import com.google.common.io.Closeables;
+import com.google.common.io.CountingInputStream;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * Append-only journal of scheduled task run state (last run and next run), kept apart from the task definitions in
+ * nexus.xml. Task runs just append a small record here, instead of rewriting the whole application configuration
+ * under its global lock. The journal is replayed on first access, and rewritten from the live states when it has
+ * grown too big compared to them. A torn last record (crash while appending) is ignored on replay, and cut off before
+ * new records are appended.
+ *
+ * @since 3.0
+ */
+@Named
+@Singleton
+public class TaskRunStateJournal
+    extends ComponentSupport
+{
+  private static final byte STATE = 'S';
+
+  private static final byte REMOVE = 'R';
+
+  /**
+   * Journal is rewritten when it has more records than this many times the count of live states.
+   */
+  private static final int COMPACTION_RATIO = 4;
+
+  private static final int COMPACTION_MINIMUM = 1024;
+
+  private final File file;
+
+  private final Map<String, RunState> states = Maps.newHashMap();
+
+  private boolean replayed;
+
+  private DataOutputStream out;
+
+  private long recordCount;
+
+  @Inject
+  public TaskRunStateJournal(final ApplicationDirectories applicationDirectories) {
+    this(new File(applicationDirectories.getWorkDirectory("db"), "task-run-state.journal"));
+  }
+
+  @VisibleForTesting
+  TaskRunStateJournal(final File file) {
+    this.file = checkNotNull(file);
+  }
+
+  /**
+   * Returns the journaled run state of task, or {@code null} if none.
+   */
+  @Nullable
+  public synchronized RunState get(final String taskId) {
+    open();
+    return states.get(taskId);
+  }
+
+  /**
+   * Journals run state of the task.
+   */
+  public synchronized void put(final String taskId, final long lastRun, final long nextRun) {
+    open();
+    final RunState state = new RunState(lastRun, nextRun);
+    if (state.equals(states.get(taskId))) {
+      return;
+    }
+    states.put(taskId, state);
+    try {
+      if (out != null) {
+        out.writeByte(STATE);
+        out.writeUTF(taskId);
+        out.writeLong(lastRun);
+        out.writeLong(nextRun);
+        recordCount++;
+        flush();
+      }
+    }
+    catch (IOException e) {
+      log.warn("Could not journal run state of task {}", taskId, e);
+      close();
+    }
+  }
+
+  /**
+   * Journals removal of the task.
+   */
+  public synchronized void remove(final String taskId) {
+    open();
+    if (states.remove(taskId) == null) {
+      return;
+    }
+    try {
+      if (out != null) {
+        out.writeByte(REMOVE);
+        out.writeUTF(taskId);
+        recordCount++;
+        flush();
+      }
+    }
+    catch (IOException e) {
+      log.warn("Could not journal removal of task {}", taskId, e);
+      close();
+    }
+  }
+
+  private void close() {
+    if (out != null) {
+      try {
+        out.close();
+      }
+      catch (IOException e) {
+        log.warn("Could not close task run state journal {}", file, e);
+      }
+      out = null;
+    }
+  }
+
+  @VisibleForTesting
+  synchronized long getRecordCount() {
+    return recordCount;
+  }
+
+  // ==
+
+  /**
+   * Replays the journal (if exists) and opens it for appending, on first access only. If journal cannot be written,
+   * run states are kept in memory only, and the ones in nexus.xml will be used on next start.
+   */
+  private void open() {
+    if (replayed) {
+      return;
+    }
+    replayed = true;
+    try {
+      if (file.isFile()) {
+        final long validLength = replay();
+        if (file.length() > validLength) {
+          // cut off torn last record, as records appended after it would not be readable
+          log.warn("Truncating torn record at end of task run state journal {}", file);
+          try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            channel.truncate(validLength);
+          }
+        }
+      }
+      else {
+        file.getParentFile().mkdirs();
+      }
+      out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+      if (recordCount > COMPACTION_RATIO * Math.max(COMPACTION_MINIMUM, states.size())) {
+        compact();
+      }
+    }
+    catch (IOException e) {
+      log.warn("Could not open task run state journal {}", file, e);
+      close();
+    }
+  }
+
+  /**
+   * Replays the journal, returning the length of the journal up to the end of last complete record.
+   */
+  private long replay() throws IOException {
+    final CountingInputStream counting = new CountingInputStream(new BufferedInputStream(new FileInputStream(file)));
+    final DataInputStream in = new DataInputStream(counting);
+    long validLength = 0;
+    try {
+      while (true) {
+        final byte type;
+        try {
+          type = in.readByte();
+        }
+        catch (EOFException e) {
+          break;
+        }
+        try {
+          final String taskId = in.readUTF();
+          switch (type) {
+            case STATE:
+              states.put(taskId, new RunState(in.readLong(), in.readLong()));
+              break;
+            case REMOVE:
+              states.remove(taskId);
+              break;
+            default:
+              throw new IOException("Corrupt task run state journal " + file + ": unknown record type " + type);
+          }
+          recordCount++;
+          validLength = counting.getCount();
+        }
+        catch (EOFException e) {
+          // torn last record
+          break;
+        }
+      }
+    }
+    finally {
+      Closeables.close(in, true);
+    }
+    log.debug("Replayed {} task run state records from {}", recordCount, file);
+    return validLength;
+  }
+
+  private void flush() throws IOException {
+    out.flush();
+    if (recordCount > COMPACTION_RATIO * Math.max(COMPACTION_MINIMUM, states.size())) {
+      compact();
+    }
+  }
+
+  /**
+   * Rewrites the journal to contain live states only.
+   */
+  private void compact() throws IOException {
+    final File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+    final DataOutputStream rewrite = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+    try {
+      for (Map.Entry<String, RunState> entry : states.entrySet()) {
+        rewrite.writeByte(STATE);
+        rewrite.writeUTF(entry.getKey());
+        rewrite.writeLong(entry.getValue().getLastRun());
+        rewrite.writeLong(entry.getValue().getNextRun());
+      }
+    }
+    finally {
+      rewrite.close();
+    }
+    out.close();
+    out = null;
+    Files.move(tmp.toPath(), file.toPath(), ATOMIC_MOVE, REPLACE_EXISTING);
+    recordCount = states.size();
+    out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+    log.debug("Task run state journal compacted to {} records", recordCount);
+  }
+
+  // ==
+
+  /**
+   * Journaled run state of a task.
+   */
+  public static class RunState
+  {
+    private final long lastRun;
+
+    private final long nextRun;
+
+    private RunState(final long lastRun, final long nextRun) {
+      this.lastRun = lastRun;
+      this.nextRun = nextRun;
+    }
+
+    public long getLastRun() {
+      return lastRun;
+    }
+
+    public long getNextRun() {
+      return nextRun;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof RunState)) {
+        return false;
+      }
+      final RunState that = (RunState) o;
+      return lastRun == that.lastRun && nextRun == that.nextRun;
+    }
+
+    @Override
+    public int hashCode() {
+      int result = (int) (lastRun ^ (lastRun >>> 32));
+      result = 31 * result + (int) (nextRun ^ (nextRun >>> 32));
+      return result;
+    }
+  }
+}
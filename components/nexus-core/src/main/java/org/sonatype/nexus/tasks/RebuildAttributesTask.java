@@ -19,6 +19,7 @@ import java.util.Map;
 import javax.inject.Named;
 
 import org.sonatype.nexus.proxy.ResourceStoreRequest;
+import org.sonatype.nexus.proxy.repository.RecreateAttributesWalker;
 import org.sonatype.nexus.proxy.repository.Repository;
 import org.sonatype.nexus.scheduling.AbstractNexusRepositoriesPathAwareTask;
 import org.sonatype.nexus.tasks.descriptors.RebuildAttributesTaskDescriptor;
@@ -45,11 +46,22 @@ public class RebuildAttributesTask
     return RebuildAttributesTaskDescriptor.RESOURCE_STORE_PATH_FIELD_ID;
   }
 
+  public int getThreads() {
+    final String threads = getParameters().get(RebuildAttributesTaskDescriptor.THREADS_FIELD_ID);
+    return threads == null || threads.trim().isEmpty() ? 1 : Integer.parseInt(threads.trim());
+  }
+
+  public boolean isSkipUnchanged() {
+    return Boolean.parseBoolean(getParameters().get(RebuildAttributesTaskDescriptor.SKIP_UNCHANGED_FIELD_ID));
+  }
+
   @Override
   public Object doRun()
       throws Exception
   {
     ResourceStoreRequest req = new ResourceStoreRequest(getResourceStorePath());
+    req.getRequestContext().put(RecreateAttributesWalker.THREADS, getThreads());
+    req.getRequestContext().put(RecreateAttributesWalker.SKIP_UNCHANGED_ITEMS, isSkipUnchanged());
 
     Map<String, String> initialData = new HashMap<String, String>();
 
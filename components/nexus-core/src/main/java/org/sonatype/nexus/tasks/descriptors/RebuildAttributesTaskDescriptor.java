@@ -18,7 +18,9 @@ import java.util.List;
 import javax.inject.Named;
 import javax.inject.Singleton;
 
+import org.sonatype.nexus.formfields.CheckboxFormField;
 import org.sonatype.nexus.formfields.FormField;
+import org.sonatype.nexus.formfields.NumberTextFormField;
 import org.sonatype.nexus.formfields.RepoOrGroupComboFormField;
 import org.sonatype.nexus.formfields.StringTextFormField;
 
@@ -33,6 +35,10 @@ public class RebuildAttributesTaskDescriptor
 
   public static final String RESOURCE_STORE_PATH_FIELD_ID = "resourceStorePath";
 
+  public static final String THREADS_FIELD_ID = "threads";
+
+  public static final String SKIP_UNCHANGED_FIELD_ID = "skipUnchanged";
+
   private final RepoOrGroupComboFormField repoField = new RepoOrGroupComboFormField(REPO_OR_GROUP_FIELD_ID,
       FormField.MANDATORY);
 
@@ -43,6 +49,20 @@ public class RebuildAttributesTaskDescriptor
           "Enter a repository path to run the task in recursively (ie. \"/\" for root or \"/org/apache\").",
           FormField.OPTIONAL);
 
+  private final NumberTextFormField threadsField =
+      new NumberTextFormField(
+          THREADS_FIELD_ID,
+          "Threads",
+          "The number of threads rebuilding attributes of files in parallel (1 if not set).",
+          FormField.OPTIONAL);
+
+  private final CheckboxFormField skipUnchangedField =
+      new CheckboxFormField(
+          SKIP_UNCHANGED_FIELD_ID,
+          "Skip unchanged files",
+          "Digests of files not changed (same size and modification time) since their digests were calculated are not recalculated.",
+          FormField.OPTIONAL);
+
   public String getId() {
     return ID;
   }
@@ -58,6 +78,10 @@ public class RebuildAttributesTaskDescriptor
 
     fields.add(resourceStorePathField);
 
+    fields.add(threadsField);
+
+    fields.add(skipUnchangedField);
+
     return fields;
   }
 
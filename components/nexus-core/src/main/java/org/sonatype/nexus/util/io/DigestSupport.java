@@ -0,0 +1,152 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.util.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.sonatype.nexus.util.DigesterUtils;
+import org.sonatype.nexus.util.SystemPropertiesHelper;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Digest related support class. Calculates several digests of a content with one single read of it, using a large
+ * (by default 1MB) buffer. Files are read using direct buffers borrowed from a small bounded pool (one buffer per CPU
+ * by default); when all of them are in use, a heap buffer is used instead.
+ *
+ * @since 3.0
+ */
+public final class DigestSupport
+{
+
+  private DigestSupport() {
+    // no instance
+  }
+
+  public static final int BUFFER_SIZE = SystemPropertiesHelper.getInteger(
+      DigestSupport.class.getName() + ".BUFFER_SIZE", 1024 * 1024
+  );
+
+  public static final int DIRECT_BUFFERS = SystemPropertiesHelper.getInteger(
+      DigestSupport.class.getName() + ".DIRECT_BUFFERS", Runtime.getRuntime().availableProcessors()
+  );
+
+  private static final AtomicInteger DIRECT_BUFFERS_ALLOCATED = new AtomicInteger();
+
+  private static final BlockingQueue<ByteBuffer> DIRECT_BUFFER_POOL =
+      new ArrayBlockingQueue<>(Math.max(1, DIRECT_BUFFERS));
+
+  /**
+   * Calculates the digests of given file using given algorithms.
+   *
+   * @return map of hex encoded digests keyed by algorithm, in order of algorithms given.
+   */
+  public static Map<String, String> digest(final Path file, final String... algorithms)
+      throws IOException, NoSuchAlgorithmException
+  {
+    checkNotNull(file);
+    final MessageDigest[] digests = createDigests(algorithms);
+    final ByteBuffer buffer = borrowBuffer();
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      while (true) {
+        buffer.clear();
+        if (channel.read(buffer) == -1) {
+          break;
+        }
+        for (MessageDigest digest : digests) {
+          buffer.flip();
+          digest.update(buffer);
+        }
+      }
+    }
+    finally {
+      returnBuffer(buffer);
+    }
+    return toMap(algorithms, digests);
+  }
+
+  /**
+   * Calculates the digests of given stream using given algorithms. The stream is consumed, but not closed.
+   *
+   * @return map of hex encoded digests keyed by algorithm, in order of algorithms given.
+   */
+  public static Map<String, String> digest(final InputStream stream, final String... algorithms)
+      throws IOException, NoSuchAlgorithmException
+  {
+    checkNotNull(stream);
+    final MessageDigest[] digests = createDigests(algorithms);
+    final byte[] buf = new byte[BUFFER_SIZE];
+    while (true) {
+      int r = stream.read(buf);
+      if (r == -1) {
+        break;
+      }
+      for (MessageDigest digest : digests) {
+        digest.update(buf, 0, r);
+      }
+    }
+    return toMap(algorithms, digests);
+  }
+
+  /**
+   * Returns a pooled direct buffer, allocating it if pool is not yet full, or a heap buffer if all direct buffers are
+   * in use.
+   */
+  private static ByteBuffer borrowBuffer() {
+    final ByteBuffer pooled = DIRECT_BUFFER_POOL.poll();
+    if (pooled != null) {
+      return pooled;
+    }
+    if (DIRECT_BUFFERS_ALLOCATED.incrementAndGet() <= DIRECT_BUFFERS) {
+      return ByteBuffer.allocateDirect(BUFFER_SIZE);
+    }
+    DIRECT_BUFFERS_ALLOCATED.decrementAndGet();
+    return ByteBuffer.allocate(BUFFER_SIZE);
+  }
+
+  private static void returnBuffer(final ByteBuffer buffer) {
+    if (buffer.isDirect()) {
+      DIRECT_BUFFER_POOL.offer(buffer);
+    }
+  }
+
+  private static MessageDigest[] createDigests(final String... algorithms) throws NoSuchAlgorithmException {
+    checkArgument(algorithms.length > 0, "No digest algorithm given");
+    final MessageDigest[] digests = new MessageDigest[algorithms.length];
+    for (int i = 0; i < algorithms.length; i++) {
+      digests[i] = MessageDigest.getInstance(algorithms[i]);
+    }
+    return digests;
+  }
+
+  private static Map<String, String> toMap(final String[] algorithms, final MessageDigest[] digests) {
+    final Map<String, String> result = new LinkedHashMap<>(algorithms.length);
+    for (int i = 0; i < algorithms.length; i++) {
+      result.put(algorithms[i], DigesterUtils.getDigestAsString(digests[i].digest()));
+    }
+    return result;
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.apachehttpclient;
+
+import java.util.concurrent.TimeUnit;
+
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+
+/**
+ * {@link RemoteHostLimiter} UTs.
+ *
+ * @since 3.0
+ */
+public class RemoteHostLimiterTest
+    extends TestSupport
+{
+  @Test
+  public void throttlingHalvesLimit() {
+    final RemoteHostLimiter underTest = new RemoteHostLimiter("remote", 20, 2, 20, 4.0, 0);
+    underTest.onResponse(10, 200);
+    assertThat(underTest.getLimit(), equalTo(20));
+    underTest.onResponse(10, 429);
+    assertThat(underTest.getLimit(), equalTo(10));
+    underTest.onResponse(10, 503);
+    assertThat(underTest.getLimit(), equalTo(5));
+    underTest.onFailure();
+    underTest.onFailure();
+    assertThat(underTest.getLimit(), equalTo(2));
+    assertThat(underTest.getThrottledCount(), equalTo(2L));
+    assertThat(underTest.getErrorCount(), equalTo(2L));
+  }
+
+  @Test
+  public void slowResponsesDecreaseLimit() {
+    final RemoteHostLimiter underTest = new RemoteHostLimiter("remote", 20, 2, 20, 4.0, 0);
+    underTest.onResponse(10, 200);
+    underTest.onResponse(100, 200);
+    assertThat(underTest.getLimit(), equalTo(10));
+  }
+
+  @Test
+  public void healthyResponsesIncreaseLimit() {
+    final RemoteHostLimiter underTest = new RemoteHostLimiter("remote", 20, 2, 20, 4.0, 0);
+    underTest.onResponse(10, 503);
+    assertThat(underTest.getLimit(), equalTo(10));
+    for (int i = 0; i < 100; i++) {
+      underTest.onResponse(10, 200);
+    }
+    assertThat(underTest.getLimit(), greaterThan(10));
+  }
+
+  @Test
+  public void cooldownPreventsRepeatedDecrease() {
+    final RemoteHostLimiter underTest = new RemoteHostLimiter("remote", 20, 2, 20, 4.0, TimeUnit.HOURS.toMillis(1));
+    underTest.onResponse(10, 429);
+    underTest.onResponse(10, 429);
+    assertThat(underTest.getLimit(), equalTo(10));
+  }
+
+  @Test
+  public void queuedRequestTimesOut() throws Exception {
+    final RemoteHostLimiter underTest = new RemoteHostLimiter("remote", 1, 1, 1, 4.0, 0);
+    assertThat(underTest.acquire(10, TimeUnit.MILLISECONDS), equalTo(true));
+    assertThat(underTest.acquire(10, TimeUnit.MILLISECONDS), equalTo(false));
+    assertThat(underTest.getQueueTimeoutCount(), equalTo(1L));
+    assertThat(underTest.getInFlight(), equalTo(1));
+    underTest.release();
+    assertThat(underTest.acquire(10, TimeUnit.MILLISECONDS), equalTo(true));
+  }
+
+  @Test
+  public void p99Latency() {
+    final RemoteHostLimiter underTest = new RemoteHostLimiter("remote", 20, 2, 20, 1000.0, 0);
+    for (int i = 1; i <= 100; i++) {
+      underTest.onResponse(i, 200);
+    }
+    assertThat(underTest.getP99Latency(), equalTo(99L));
+  }
+}
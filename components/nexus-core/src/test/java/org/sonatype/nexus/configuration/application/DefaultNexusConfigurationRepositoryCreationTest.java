@@ -0,0 +1,193 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.configuration.application;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import javax.inject.Provider;
+
+import org.sonatype.configuration.ConfigurationException;
+import org.sonatype.nexus.configuration.Configurable;
+import org.sonatype.nexus.configuration.application.runtime.ApplicationRuntimeConfigurationBuilder;
+import org.sonatype.nexus.configuration.model.CRepository;
+import org.sonatype.nexus.configuration.model.Configuration;
+import org.sonatype.nexus.configuration.source.ApplicationConfigurationSource;
+import org.sonatype.nexus.configuration.validator.ApplicationConfigurationValidator;
+import org.sonatype.nexus.proxy.cache.CacheManager;
+import org.sonatype.nexus.proxy.events.VetoFormatter;
+import org.sonatype.nexus.proxy.registry.RepositoryRegistry;
+import org.sonatype.nexus.proxy.registry.RepositoryTypeRegistry;
+import org.sonatype.nexus.proxy.repository.Repository;
+import org.sonatype.nexus.tasks.descriptors.ScheduledTaskDescriptor;
+import org.sonatype.security.SecuritySystem;
+import org.sonatype.sisu.goodies.eventbus.EventBus;
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Tests for parallel repository creation of {@link DefaultNexusConfiguration}.
+ */
+public class DefaultNexusConfigurationRepositoryCreationTest
+    extends TestSupport
+{
+  private static final String THREADS_KEY = "nexus.configuration.repositoryCreationThreads";
+
+  @Mock
+  private ApplicationConfigurationSource configurationSource;
+
+  @Mock
+  private ApplicationRuntimeConfigurationBuilder runtimeConfigurationBuilder;
+
+  @Mock
+  private RepositoryRegistry repositoryRegistry;
+
+  @Mock
+  private ApplicationDirectories applicationDirectories;
+
+  private final Configuration configuration = new Configuration();
+
+  /**
+   * Repositories created by runtime configuration builder.
+   */
+  private final Set<Repository> created = Sets.newConcurrentHashSet();
+
+  private DefaultNexusConfiguration underTest;
+
+  @Before
+  @SuppressWarnings("unchecked")
+  public void prepare() throws Exception {
+    System.setProperty(THREADS_KEY, "4");
+    when(configurationSource.getConfiguration()).thenReturn(configuration);
+    when(runtimeConfigurationBuilder.createRepository(any(Class.class), anyString())).thenAnswer(
+        new Answer<Repository>()
+        {
+          @Override
+          public Repository answer(final InvocationOnMock invocation) throws Throwable {
+            if ("broken".equals(invocation.getArguments()[1])) {
+              throw new ConfigurationException("Broken repository");
+            }
+            final Repository repository =
+                mock(Repository.class, withSettings().extraInterfaces(Configurable.class));
+            created.add(repository);
+            return repository;
+          }
+        });
+    underTest = new DefaultNexusConfiguration(mock(CacheManager.class), mock(EventBus.class), configurationSource,
+        mock(Provider.class), mock(Provider.class), mock(ApplicationConfigurationValidator.class),
+        runtimeConfigurationBuilder, mock(RepositoryTypeRegistry.class), repositoryRegistry,
+        Collections.<ScheduledTaskDescriptor>emptyList(), mock(SecuritySystem.class), mock(VetoFormatter.class),
+        Collections.<ConfigurationModifier>emptyList(), getClass().getClassLoader(), applicationDirectories);
+  }
+
+  @After
+  public void cleanup() {
+    System.clearProperty(THREADS_KEY);
+  }
+
+  @Test
+  public void repositoriesRegisteredInConfigurationOrder() throws Exception {
+    for (int i = 0; i < 8; i++) {
+      addRepository("repo" + i, "maven2");
+    }
+
+    underTest.createInternals();
+
+    final List<Repository> registered = registered();
+    assertThat(Sets.newHashSet(registered), equalTo(created));
+    assertThat(idsOf(registered), contains("repo0", "repo1", "repo2", "repo3", "repo4", "repo5", "repo6", "repo7"));
+    verify(runtimeConfigurationBuilder, never()).releaseRepository(any(Repository.class));
+  }
+
+  @Test
+  public void createdButNotRegisteredRepositoriesReleasedOnFailure() throws Exception {
+    addRepository("repo0", "maven2");
+    addRepository("repo1", "maven2");
+    addRepository("broken", "broken");
+    for (int i = 3; i < 16; i++) {
+      addRepository("repo" + i, "maven2");
+    }
+
+    try {
+      underTest.createInternals();
+      fail("Broken repository should fail creation");
+    }
+    catch (ConfigurationException e) {
+      assertThat(e.getMessage(), equalTo("Broken repository"));
+    }
+
+    // only repositories preceding the broken one are registered
+    final List<Repository> registered = registered();
+    assertThat(idsOf(registered), contains("repo0", "repo1"));
+
+    // every other created repository is released exactly once, none is leaked
+    final Set<Repository> expectedReleased = Sets.newHashSet(created);
+    expectedReleased.removeAll(registered);
+    final ArgumentCaptor<Repository> released = ArgumentCaptor.forClass(Repository.class);
+    verify(runtimeConfigurationBuilder, times(expectedReleased.size())).releaseRepository(released.capture());
+    assertThat(Sets.newHashSet(released.getAllValues()), equalTo(expectedReleased));
+  }
+
+  // ==
+
+  private List<Repository> registered() throws Exception {
+    final ArgumentCaptor<Repository> registered = ArgumentCaptor.forClass(Repository.class);
+    verify(repositoryRegistry, atLeast(0)).addRepository(registered.capture());
+    return registered.getAllValues();
+  }
+
+  /**
+   * Returns ids of configuration the given repositories were configured with.
+   */
+  private List<String> idsOf(final List<Repository> repositories) throws Exception {
+    final List<String> result = Lists.newArrayList();
+    for (Repository repository : repositories) {
+      final ArgumentCaptor<Object> config = ArgumentCaptor.forClass(Object.class);
+      verify((Configurable) repository).configure(config.capture());
+      result.add(((CRepository) config.getValue()).getId());
+    }
+    return result;
+  }
+
+  private void addRepository(final String id, final String providerHint) {
+    final CRepository repository = new CRepository();
+    repository.setId(id);
+    repository.setProviderRole(Repository.class.getName());
+    repository.setProviderHint(providerHint);
+    configuration.addRepository(repository);
+  }
+}
@@ -0,0 +1,132 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.maven.tasks;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.net.URL;
+
+import org.sonatype.nexus.AbstractMavenRepoContentTests;
+import org.sonatype.nexus.proxy.ResourceStoreRequest;
+import org.sonatype.nexus.proxy.item.RepositoryItemUid;
+import org.sonatype.nexus.proxy.maven.metadata.operations.MetadataBuilder;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.artifact.repository.metadata.Metadata;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+/**
+ * Tests for {@link DefaultSnapshotRemover} processing many artifacts with several worker threads.
+ */
+public class DefaultSnapshotRemoverParallelIT
+    extends AbstractMavenRepoContentTests
+{
+  private static final String THREADS_KEY = "nexus.snapshotRemover.threads";
+
+  private static final int ARTIFACTS = 24;
+
+  private static final int BUILDS = 3;
+
+  private File snapshotsRoot;
+
+  @Override
+  protected void setUp() throws Exception {
+    // read when the remover is created
+    System.setProperty(THREADS_KEY, "4");
+    super.setUp();
+    snapshotsRoot = new File(new URL(snapshots.getLocalUrl()).toURI()).getAbsoluteFile();
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    try {
+      super.tearDown();
+    }
+    finally {
+      System.clearProperty(THREADS_KEY);
+    }
+  }
+
+  @Test
+  public void removesSnapshotsOfAllArtifacts() throws Exception {
+    for (int i = 0; i < ARTIFACTS; i++) {
+      for (int build = 1; build <= BUILDS; build++) {
+        deploy("artifact" + i, build);
+      }
+    }
+    snapshots.expireCaches(new ResourceStoreRequest(RepositoryItemUid.PATH_ROOT));
+
+    final SnapshotRemovalResult result =
+        lookup(SnapshotRemover.class).removeSnapshots(new SnapshotRemovalRequest(snapshots.getId(), 1, -1, false));
+
+    assertThat(result.isSuccessful(), is(true));
+    final SnapshotRemovalRepositoryResult repositoryResult = result.getProcessedRepositories().get(snapshots.getId());
+    assertThat(repositoryResult.getDeletedSnapshots(), equalTo(ARTIFACTS * (BUILDS - 1)));
+    assertThat(repositoryResult.getDeletedFiles(), equalTo(ARTIFACTS * (BUILDS - 1) * 2));
+
+    for (int i = 0; i < ARTIFACTS; i++) {
+      final String artifactId = "artifact" + i;
+      for (int build = 1; build <= BUILDS; build++) {
+        assertThat(file(artifactId, build, "jar").exists(), is(build == BUILDS));
+        assertThat(file(artifactId, build, "pom").exists(), is(build == BUILDS));
+      }
+      final Metadata md = readMavenMetadata(artifactId);
+      assertThat(md.getVersioning().getSnapshot().getBuildNumber(), equalTo(BUILDS));
+    }
+  }
+
+  @Test
+  public void recreatesMetadataOfUntouchedVersions() throws Exception {
+    // single snapshot is kept, nothing is deleted
+    deploy("untouched", 1);
+    snapshots.expireCaches(new ResourceStoreRequest(RepositoryItemUid.PATH_ROOT));
+    assertThat(metadataFile("untouched").exists(), is(false));
+
+    final SnapshotRemovalResult result =
+        lookup(SnapshotRemover.class).removeSnapshots(new SnapshotRemovalRequest(snapshots.getId(), 1, -1, false));
+
+    assertThat(result.isSuccessful(), is(true));
+    assertThat(result.getProcessedRepositories().get(snapshots.getId()).getDeletedFiles(), equalTo(0));
+    assertThat(file("untouched", 1, "jar").exists(), is(true));
+    assertThat(metadataFile("untouched").exists(), is(true));
+    assertThat(readMavenMetadata("untouched").getVersioning().getSnapshot().getBuildNumber(), equalTo(1));
+  }
+
+  // ==
+
+  private void deploy(final String artifactId, final int build) throws Exception {
+    FileUtils.writeStringToFile(file(artifactId, build, "jar"), artifactId + "-" + build, "UTF-8");
+    FileUtils.writeStringToFile(file(artifactId, build, "pom"),
+        "<project><modelVersion>4.0.0</modelVersion><groupId>org.example.parallel</groupId><artifactId>"
+            + artifactId + "</artifactId><version>1.0-SNAPSHOT</version></project>", "UTF-8");
+  }
+
+  private File file(final String artifactId, final int build, final String extension) {
+    return new File(snapshotsRoot, "org/example/parallel/" + artifactId + "/1.0-SNAPSHOT/" + artifactId
+        + "-1.0-20140101.12000" + build + "-" + build + "." + extension);
+  }
+
+  private File metadataFile(final String artifactId) {
+    return new File(snapshotsRoot, "org/example/parallel/" + artifactId + "/1.0-SNAPSHOT/maven-metadata.xml");
+  }
+
+  private Metadata readMavenMetadata(final String artifactId) throws Exception {
+    try (FileInputStream inputStream = new FileInputStream(metadataFile(artifactId))) {
+      return MetadataBuilder.read(inputStream);
+    }
+  }
+}
@@ -0,0 +1,249 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.mapping;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.sonatype.nexus.proxy.NoSuchRepositoryException;
+import org.sonatype.nexus.proxy.mapping.RepositoryPathMapping.MappingType;
+import org.sonatype.nexus.proxy.registry.RepositoryRegistry;
+import org.sonatype.nexus.proxy.repository.Repository;
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link RepositoryPathMatcher}.
+ */
+public class RepositoryPathMatcherTest
+    extends TestSupport
+{
+  @Mock
+  private RepositoryRegistry repositoryRegistry;
+
+  @Mock
+  private Repository repoA;
+
+  @Mock
+  private Repository repoB;
+
+  @Mock
+  private Repository repoC;
+
+  private List<Repository> members;
+
+  @Before
+  public void prepare() throws Exception {
+    for (Repository repository : Arrays.asList(repoA, repoB, repoC)) {
+      final String id = "repo" + (repository == repoA ? "A" : repository == repoB ? "B" : "C");
+      when(repository.getId()).thenReturn(id);
+      when(repository.isUserManaged()).thenReturn(true);
+      when(repositoryRegistry.getRepository(id)).thenReturn(repository);
+    }
+    members = Arrays.asList(repoA, repoB, repoC);
+  }
+
+  private RepositoryPathMapping mapping(final MappingType type, final String regexp, final String... repositories) {
+    return new RepositoryPathMapping(type + regexp, type, "*", Arrays.asList(regexp), Arrays.asList(repositories));
+  }
+
+  @Test
+  public void firstSegment() {
+    assertThat(RepositoryPathMatcher.firstSegment("/org/apache/maven"), is("/org/"));
+    assertThat(RepositoryPathMatcher.firstSegment("/org/"), is("/org/"));
+    assertThat(RepositoryPathMatcher.firstSegment("/org"), nullValue());
+    assertThat(RepositoryPathMatcher.firstSegment("//org"), nullValue());
+    assertThat(RepositoryPathMatcher.firstSegment("/"), nullValue());
+  }
+
+  @Test
+  public void requiredFirstSegment() {
+    assertThat(RepositoryPathMatcher.requiredFirstSegment("/org/apache/.*"), is("/org/"));
+    assertThat(RepositoryPathMatcher.requiredFirstSegment("^/org/apache/.*"), is("/org/"));
+    assertThat(RepositoryPathMatcher.requiredFirstSegment("/com-foo/bar/.*"), is("/com-foo/"));
+    // the slash is optional
+    assertThat(RepositoryPathMatcher.requiredFirstSegment("/org/?.*"), nullValue());
+    assertThat(RepositoryPathMatcher.requiredFirstSegment("/org/apache/.*|/com/.*"), nullValue());
+    assertThat(RepositoryPathMatcher.requiredFirstSegment(".*/maven-metadata.xml"), nullValue());
+    assertThat(RepositoryPathMatcher.requiredFirstSegment("/(org|com)/.*"), nullValue());
+    assertThat(RepositoryPathMatcher.requiredFirstSegment("/org.*"), nullValue());
+  }
+
+  @Test
+  public void noMappingMatches() throws Exception {
+    final RepositoryPathMatcher underTest = new RepositoryPathMatcher(repositoryRegistry, Arrays.asList(
+        mapping(MappingType.INCLUSION, "/org/.*", "repoA"),
+        mapping(MappingType.EXCLUSION, ".*/foo/.*", "repoB")));
+
+    final RepositoryPathMatcher.Outcome outcome = underTest.map("/com/bar/1.0/bar-1.0.jar", members);
+    assertThat(outcome.getRepositories(), contains(repoA, repoB, repoC));
+    assertThat(outcome.getAppliedMappings(), is(empty()));
+    assertThat(outcome.isBlocked(), is(false));
+  }
+
+  @Test
+  public void blocking() throws Exception {
+    final RepositoryPathMatcher underTest = new RepositoryPathMatcher(repositoryRegistry, Arrays.asList(
+        mapping(MappingType.INCLUSION, "/org/.*", "repoA"),
+        mapping(MappingType.BLOCKING, "/org/blocked/.*", "*")));
+
+    final RepositoryPathMatcher.Outcome outcome = underTest.map("/org/blocked/1.0/blocked-1.0.jar", members);
+    assertThat(outcome.getRepositories(), is(empty()));
+    assertThat(outcome.getAppliedMappings(), hasSize(1));
+    assertThat(outcome.isBlocked(), is(true));
+  }
+
+  @Test
+  public void inclusionsAndExclusionsInConfigurationOrder() throws Exception {
+    final RepositoryPathMatcher underTest = new RepositoryPathMatcher(repositoryRegistry, Arrays.asList(
+        mapping(MappingType.INCLUSION, "/org/.*", "repoC"),
+        mapping(MappingType.INCLUSION, ".*/bar/.*", "repoB", "repoA"),
+        mapping(MappingType.EXCLUSION, "/org/foo/.*", "repoA"),
+        mapping(MappingType.EXCLUSION, "/org/.*/none/.*", "*")));
+
+    // repositories are ordered by inclusions first, then by group ordering
+    assertThat(underTest.map("/org/bar/1.0/bar-1.0.jar", members).getRepositories(), contains(repoC, repoA, repoB));
+    assertThat(underTest.map("/org/foo/bar/1.0/bar-1.0.jar", members).getRepositories(), contains(repoC, repoB));
+    assertThat(underTest.map("/org/foo/1.0/foo-1.0.jar", members).getRepositories(), contains(repoC));
+    assertThat(underTest.map("/com/bar/1.0/bar-1.0.jar", members).getRepositories(), contains(repoA, repoB));
+    assertThat(underTest.map("/org/foo/none/1.0/none-1.0.jar", members).getRepositories(), is(empty()));
+    assertThat(underTest.map("/org/foo/none/1.0/none-1.0.jar", members).getAppliedMappings(), hasSize(3));
+  }
+
+  @Test
+  public void nonUserManagedRepositoriesAreKept() throws Exception {
+    when(repoB.isUserManaged()).thenReturn(false);
+    final RepositoryPathMatcher underTest = new RepositoryPathMatcher(repositoryRegistry, Arrays.asList(
+        mapping(MappingType.INCLUSION, "/org/.*", "repoC"),
+        mapping(MappingType.EXCLUSION, "/com/.*", "repoB")));
+
+    assertThat(underTest.map("/org/foo/1.0/foo-1.0.jar", members).getRepositories(), contains(repoB, repoC));
+    assertThat(underTest.map("/com/foo/1.0/foo-1.0.jar", members).getRepositories(), contains(repoA, repoB, repoC));
+  }
+
+  @Test
+  public void outcomesAreCached() throws Exception {
+    final RepositoryPathMatcher underTest = new RepositoryPathMatcher(repositoryRegistry, Arrays.asList(
+        mapping(MappingType.INCLUSION, "/org/.*", "repoA")));
+
+    final RepositoryPathMatcher.Outcome first = underTest.map("/org/foo/1.0/foo-1.0.jar", members);
+    final RepositoryPathMatcher.Outcome second = underTest.map("/org/bar/1.0/bar-1.0.jar", Arrays.asList(
+        repoA, repoB, repoC));
+    assertThat(second, sameInstance(first));
+
+    // different members, different outcome
+    final RepositoryPathMatcher.Outcome third = underTest.map("/org/bar/1.0/bar-1.0.jar", Arrays.asList(
+        repoB, repoC));
+    assertThat(third.getRepositories(), is(empty()));
+  }
+
+  @Test
+  public void invalidatedOutcomesAreRecomputed() throws Exception {
+    final RepositoryPathMatcher underTest = new RepositoryPathMatcher(repositoryRegistry, Arrays.asList(
+        mapping(MappingType.EXCLUSION, "/org/.*", "repoB")));
+
+    assertThat(underTest.map("/org/foo/1.0/foo-1.0.jar", members).getRepositories(), contains(repoA, repoC));
+
+    // repository changed, cached outcome is stale until invalidated
+    when(repoB.isUserManaged()).thenReturn(false);
+    assertThat(underTest.map("/org/foo/1.0/foo-1.0.jar", members).getRepositories(), contains(repoA, repoC));
+    underTest.invalidateOutcomes();
+    assertThat(underTest.map("/org/foo/1.0/foo-1.0.jar", members).getRepositories(), contains(repoA, repoB, repoC));
+  }
+
+  @Test
+  public void missingRepositoryOfAppliedMapping() throws Exception {
+    when(repositoryRegistry.getRepository("missing")).thenThrow(new NoSuchRepositoryException("missing"));
+    final RepositoryPathMapping exclusion = mapping(MappingType.EXCLUSION, "/org/.*", "missing");
+    final RepositoryPathMatcher underTest = new RepositoryPathMatcher(repositoryRegistry, Arrays.asList(
+        mapping(MappingType.INCLUSION, "/com/.*", "repoA"),
+        exclusion));
+
+    try {
+      underTest.map("/org/foo/1.0/foo-1.0.jar", members);
+      fail("Mapping referencing missing repository must fail");
+    }
+    catch (NoSuchRepositoryException e) {
+      // mapper reports mappings applied to the path
+      assertThat(underTest.applied("/org/foo/1.0/foo-1.0.jar"), contains(exclusion));
+    }
+  }
+
+  @Test
+  public void testManyMappingsBenchmark() throws Exception {
+    // mappings with varied first segments, as the first segment index can only prune those
+    final List<RepositoryPathMapping> mappings = new ArrayList<RepositoryPathMapping>();
+    for (int i = 0; i < 500; i++) {
+      mappings.add(mapping(MappingType.INCLUSION, "/g" + i + "/.*", "repoA"));
+      mappings.add(mapping(MappingType.EXCLUSION, "/g" + i + "/excluded/.*", "repoB"));
+    }
+    final RepositoryPathMatcher underTest = new RepositoryPathMatcher(repositoryRegistry, mappings);
+    final List<String> paths = new ArrayList<String>();
+    for (int i = 0; i < 1000; i++) {
+      paths.add("/g" + (i * 7 % 500) + (i % 2 == 0 ? "/excluded" : "") + "/foo/1.0/foo-1.0.jar");
+    }
+
+    // warm up
+    for (int i = 0; i < 5; i++) {
+      indexed(underTest, paths);
+      linear(mappings, paths);
+    }
+
+    long start = System.nanoTime();
+    final int indexedMatches = indexed(underTest, paths);
+    final long indexed = System.nanoTime() - start;
+    start = System.nanoTime();
+    final int linearMatches = linear(mappings, paths);
+    final long linear = System.nanoTime() - start;
+
+    log.info("{} mappings, {} paths: {} ms indexed ({} matches), {} ms linear scan ({} matches)", mappings.size(),
+        paths.size(), TimeUnit.NANOSECONDS.toMillis(indexed), indexedMatches, TimeUnit.NANOSECONDS.toMillis(linear),
+        linearMatches);
+  }
+
+  private int indexed(final RepositoryPathMatcher matcher, final List<String> paths) throws Exception {
+    int matches = 0;
+    for (String path : paths) {
+      matches += matcher.applied(path).size();
+      matcher.map(path, members);
+    }
+    return matches;
+  }
+
+  private int linear(final List<RepositoryPathMapping> mappings, final List<String> paths) {
+    int matches = 0;
+    for (String path : paths) {
+      for (RepositoryPathMapping mapping : mappings) {
+        if (mapping.matches(path)) {
+          matches++;
+        }
+      }
+    }
+    return matches;
+  }
+}
@@ -0,0 +1,125 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.maven;
+
+import javax.inject.Provider;
+
+import org.sonatype.nexus.proxy.maven.gav.Gav;
+import org.sonatype.nexus.proxy.maven.gav.M2GavCalculator;
+import org.sonatype.nexus.proxy.registry.RepositoryRegistry;
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+import com.google.common.base.Optional;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link MetadataResolutionCache}.
+ */
+public class MetadataResolutionCacheTest
+    extends TestSupport
+{
+  @Mock
+  private Provider<RepositoryRegistry> repositoryRegistryProvider;
+
+  @Mock
+  private MavenRepository repository;
+
+  private MetadataResolutionCache underTest;
+
+  @Before
+  public void prepare() {
+    when(repository.getId()).thenReturn("releases");
+    when(repository.getGavCalculator()).thenReturn(new M2GavCalculator());
+    underTest = new MetadataResolutionCache(repositoryRegistryProvider, true, 100, 60);
+  }
+
+  private ArtifactStoreRequest request(final String groupId, final String artifactId, final String version) {
+    return new ArtifactStoreRequest(repository,
+        new Gav(groupId, artifactId, version, null, "jar", null, null, null, false, null, false, null), false);
+  }
+
+  private Gav resolved(final String groupId, final String artifactId, final String version) {
+    return new Gav(groupId, artifactId, version, null, "jar", null, null, null, false, null, false, null);
+  }
+
+  @Test
+  public void cacheableVersions() {
+    assertThat(underTest.isCacheable(request("org.foo", "bar", "LATEST")), is(true));
+    assertThat(underTest.isCacheable(request("org.foo", "bar", "RELEASE")), is(true));
+    assertThat(underTest.isCacheable(request("org.foo", "bar", "1.0-SNAPSHOT")), is(true));
+    assertThat(underTest.isCacheable(request("org.foo", "bar", "1.0")), is(false));
+    assertThat(underTest.isCacheable(request("org.foo", "bar", "1.0-20101224.124422-1")), is(false));
+  }
+
+  @Test
+  public void putAndGet() {
+    underTest.put(request("org.foo", "bar", "LATEST"), resolved("org.foo", "bar", "1.2"),
+        underTest.getGeneration());
+    underTest.put(request("org.foo", "baz", "RELEASE"), null, underTest.getGeneration());
+
+    assertThat(underTest.get(request("org.foo", "bar", "LATEST")).get().getVersion(), is("1.2"));
+    assertThat(underTest.get(request("org.foo", "baz", "RELEASE")), is(Optional.<Gav>absent()));
+    assertThat(underTest.get(request("org.foo", "bar", "RELEASE")), nullValue());
+  }
+
+  @Test
+  public void staleResolutionNotCached() {
+    final long generation = underTest.getGeneration();
+    underTest.invalidate("releases", "/org/foo/bar");
+    underTest.put(request("org.foo", "bar", "LATEST"), resolved("org.foo", "bar", "1.2"), generation);
+
+    assertThat(underTest.get(request("org.foo", "bar", "LATEST")), nullValue());
+  }
+
+  @Test
+  public void invalidateByPath() {
+    underTest.put(request("org.foo", "bar", "LATEST"), resolved("org.foo", "bar", "1.2"),
+        underTest.getGeneration());
+    underTest.put(request("org.foo", "barbar", "LATEST"), resolved("org.foo", "barbar", "1.2"),
+        underTest.getGeneration());
+    underTest.put(request("org.foo", "bar", "1.0-SNAPSHOT"), resolved("org.foo", "bar", "1.0-20101224.124422-1"),
+        underTest.getGeneration());
+
+    // GAV metadata below GA
+    underTest.invalidate("releases", "/org/foo/bar/1.0-SNAPSHOT");
+    assertThat(underTest.get(request("org.foo", "bar", "LATEST")), nullValue());
+    assertThat(underTest.get(request("org.foo", "bar", "1.0-SNAPSHOT")), nullValue());
+    assertThat(underTest.get(request("org.foo", "barbar", "LATEST")), notNullValue());
+
+    // other repository
+    underTest.invalidate("snapshots", "/org/foo");
+    assertThat(underTest.get(request("org.foo", "barbar", "LATEST")), notNullValue());
+
+    // parent collection
+    underTest.invalidate("releases", "/org/foo/");
+    assertThat(underTest.get(request("org.foo", "barbar", "LATEST")), nullValue());
+  }
+
+  @Test
+  public void relatedPaths() {
+    assertThat(MetadataResolutionCache.isRelated("/org/foo/bar", ""), is(true));
+    assertThat(MetadataResolutionCache.isRelated("/org/foo/bar", "/org/foo/bar"), is(true));
+    assertThat(MetadataResolutionCache.isRelated("/org/foo/bar", "/org/foo"), is(true));
+    assertThat(MetadataResolutionCache.isRelated("/org/foo/bar", "/org/foo/bar/1.0-SNAPSHOT"), is(true));
+    assertThat(MetadataResolutionCache.isRelated("/org/foo/bar", "/org/foo/barbar"), is(false));
+    assertThat(MetadataResolutionCache.isRelated("/org/foo/bar", "/org/fo"), is(false));
+  }
+}
@@ -0,0 +1,264 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.maven.routing.internal.scrape;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.sonatype.nexus.apachehttpclient.page.Page;
+import org.sonatype.nexus.proxy.maven.MavenProxyRepository;
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+import com.google.common.collect.Maps;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.message.BasicStatusLine;
+import org.apache.http.protocol.HttpContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for the budget, conditional requests and partial entries of {@link AbstractGeneratedIndexPageScraper}, using
+ * {@link SvnIndexScraper} against a stubbed HTTP client.
+ */
+public class GeneratedIndexPageScraperTest
+    extends TestSupport
+{
+  private static final String KEY_PREFIX = Scraper.class.getName();
+
+  private static final String REPO_ROOT = "http://remote.example.com/trunk/somerepo/";
+
+  @Mock
+  private MavenProxyRepository mavenProxyRepository;
+
+  @Mock
+  private HttpClient httpClient;
+
+  private StubRemote remote;
+
+  @Before
+  public void prepare() throws Exception {
+    remote = new StubRemote();
+    when(mavenProxyRepository.getRemoteUrl()).thenReturn(REPO_ROOT);
+    when(httpClient.execute(any(HttpUriRequest.class), any(HttpContext.class))).thenAnswer(remote);
+  }
+
+  @After
+  public void cleanup() {
+    System.clearProperty(KEY_PREFIX + ".maxInFlight");
+    System.clearProperty(KEY_PREFIX + ".requestsPerSecond");
+    System.clearProperty(KEY_PREFIX + ".publishPartial");
+  }
+
+  @Test
+  public void unmodifiedPagesAreRequestedConditionally() throws Exception {
+    remote.serve("/trunk/somerepo/", SvnIndexScraperTest.ROOT_BODY);
+    remote.serve("/trunk/somerepo/com/", SvnIndexScraperTest.COM_BODY);
+    final SvnIndexScraper scraper = new SvnIndexScraper();
+
+    final ScrapeContext first = scrape(scraper);
+    assertThat(first.isSuccessful(), is(true));
+    assertThat(first.getPrefixSource().readEntries(), contains("/com/foo", "/com/bar"));
+    assertThat(remote.ifNoneMatch("/trunk/somerepo/com/"), nullValue());
+
+    // the remote page is not sent again, remembered links are used
+    final ScrapeContext second = scrape(scraper);
+    assertThat(second.isSuccessful(), is(true));
+    assertThat(second.getPrefixSource().readEntries(), contains("/com/foo", "/com/bar"));
+    assertThat(remote.ifNoneMatch("/trunk/somerepo/com/"), equalTo(remote.etag("/trunk/somerepo/com/")));
+    assertThat(remote.notModified.get(), equalTo(1));
+  }
+
+  @Test
+  public void modifiedPagesAreScrapedAgain() throws Exception {
+    remote.serve("/trunk/somerepo/", SvnIndexScraperTest.ROOT_BODY);
+    remote.serve("/trunk/somerepo/com/", SvnIndexScraperTest.COM_BODY);
+    final SvnIndexScraper scraper = new SvnIndexScraper();
+    scrape(scraper);
+
+    remote.serve("/trunk/somerepo/com/", SvnIndexScraperTest.COM_FOO_BODY);
+    final ScrapeContext second = scrape(scraper);
+    assertThat(second.getPrefixSource().readEntries(), contains("/com/foo1", "/com/foo2"));
+    assertThat(remote.notModified.get(), equalTo(0));
+  }
+
+  @Test
+  public void partialEntriesOfSuccessfulScrape() throws Exception {
+    remote.serve("/trunk/somerepo/", SvnIndexScraperTest.ROOT_BODY);
+    remote.serve("/trunk/somerepo/com/", SvnIndexScraperTest.COM_BODY);
+
+    final ScrapeContext context = scrape(new SvnIndexScraper());
+    assertThat(context.getPartialEntries(), contains("/com/foo", "/com/bar"));
+  }
+
+  @Test
+  public void failedScrapeNotPublishedByDefault() throws Exception {
+    remote.serve("/trunk/somerepo/", SvnIndexScraperTest.ROOT_BODY);
+
+    final ScrapeContext context = scrape(new SvnIndexScraper());
+    assertThat(context.isStopped(), is(true));
+    assertThat(context.isSuccessful(), is(false));
+  }
+
+  @Test
+  public void failedScrapePublishedPartially() throws Exception {
+    System.setProperty(KEY_PREFIX + ".publishPartial", "true");
+    remote.serve("/trunk/somerepo/", SvnIndexScraperTest.ROOT_BODY);
+
+    final ScrapeContext context = scrape(new SvnIndexScraper());
+    assertThat(context.isStopped(), is(true));
+    assertThat(context.isSuccessful(), is(true));
+    // com page failed, so com itself is the (coarser) prefix
+    assertThat(context.getPrefixSource().readEntries(), contains("/com"));
+  }
+
+  @Test
+  public void inFlightRequestsLimitedPerHost() throws Exception {
+    System.setProperty(KEY_PREFIX + ".maxInFlight", "2");
+    System.setProperty(KEY_PREFIX + ".requestsPerSecond", "1000");
+    final StringBuilder root = new StringBuilder("<html><body><ul><li><a href=\"../\">..</a></li>");
+    for (int i = 0; i < 8; i++) {
+      root.append("<li><a href=\"dir").append(i).append("/\">dir").append(i).append("/</a></li>");
+      remote.serve("/trunk/somerepo/dir" + i + "/", "<html><body><ul><li><a href=\"../\">..</a></li>"
+          + "<li><a href=\"sub/\">sub/</a></li></ul></body></html>");
+    }
+    root.append("</ul><a href=\"http://subversion.apache.org/\">Subversion</a></body></html>");
+    remote.serve("/trunk/somerepo/", root.toString());
+    remote.delayMillis = 50;
+
+    final ScrapeContext context = scrape(new SvnIndexScraper());
+    assertThat(context.isSuccessful(), is(true));
+    final List<String> entries = context.getPrefixSource().readEntries();
+    assertThat(entries, hasSize(8));
+    assertThat(entries, containsInAnyOrder("/dir0/sub", "/dir1/sub", "/dir2/sub", "/dir3/sub", "/dir4/sub",
+        "/dir5/sub", "/dir6/sub", "/dir7/sub"));
+    assertThat(remote.maxInFlight.get(), lessThanOrEqualTo(2));
+  }
+
+  // ==
+
+  private ScrapeContext scrape(final SvnIndexScraper scraper) throws Exception {
+    final ScrapeContext context = new ScrapeContext(mavenProxyRepository, httpClient, 2);
+    final Page page = Page.getPageFor(context, REPO_ROOT);
+    scraper.scrape(context, page);
+    return context;
+  }
+
+  /**
+   * Remote serving index pages from memory, with ETag validators, and answering 500 to unknown paths.
+   */
+  private static class StubRemote
+      implements Answer<HttpResponse>
+  {
+    private final Map<String, String> pages = Maps.newConcurrentMap();
+
+    private final Map<String, Integer> revisions = Maps.newConcurrentMap();
+
+    private final List<HttpUriRequest> requests = new CopyOnWriteArrayList<HttpUriRequest>();
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+
+    private final AtomicInteger notModified = new AtomicInteger();
+
+    private volatile long delayMillis;
+
+    private void serve(final String path, final String body) {
+      pages.put(path, body);
+      revisions.put(path, revisions.containsKey(path) ? revisions.get(path) + 1 : 1);
+    }
+
+    private String etag(final String path) {
+      return "\"" + path.hashCode() + "-" + revisions.get(path) + "\"";
+    }
+
+    /**
+     * Returns the If-None-Match header sent by last request of given path.
+     */
+    private String ifNoneMatch(final String path) {
+      String result = null;
+      for (HttpUriRequest request : requests) {
+        if (path.equals(request.getURI().getPath())) {
+          result = request.getFirstHeader("If-None-Match") == null
+              ? null
+              : request.getFirstHeader("If-None-Match").getValue();
+        }
+      }
+      return result;
+    }
+
+    @Override
+    public HttpResponse answer(final InvocationOnMock invocation) throws Throwable {
+      final HttpUriRequest request = (HttpUriRequest) invocation.getArguments()[0];
+      requests.add(request);
+      final int current = inFlight.incrementAndGet();
+      try {
+        synchronized (maxInFlight) {
+          maxInFlight.set(Math.max(maxInFlight.get(), current));
+        }
+        if (delayMillis > 0) {
+          Thread.sleep(delayMillis);
+        }
+        final String path = request.getURI().getPath();
+        final String body = pages.get(path);
+        if (body == null) {
+          return response(500, "<h1>Ooops!</h1>", null);
+        }
+        final String etag = etag(path);
+        if (request.getFirstHeader("If-None-Match") != null
+            && etag.equals(request.getFirstHeader("If-None-Match").getValue())) {
+          notModified.incrementAndGet();
+          return response(304, null, etag);
+        }
+        return response(200, body, etag);
+      }
+      finally {
+        inFlight.decrementAndGet();
+      }
+    }
+
+    private HttpResponse response(final int code, final String body, final String etag) {
+      final HttpResponse response = new BasicHttpResponse(new BasicStatusLine(HttpVersion.HTTP_1_1, code, null));
+      if (body != null) {
+        response.setEntity(new StringEntity(body, ContentType.TEXT_HTML));
+      }
+      if (etag != null) {
+        response.setHeader("ETag", etag);
+      }
+      return response;
+    }
+  }
+}
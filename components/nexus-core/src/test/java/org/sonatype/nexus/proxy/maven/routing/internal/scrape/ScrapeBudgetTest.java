@@ -0,0 +1,84 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.maven.routing.internal.scrape;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+
+/**
+ * Tests for {@link ScrapeBudget}.
+ */
+public class ScrapeBudgetTest
+    extends TestSupport
+{
+  @Test
+  public void limitsInFlightRequests() throws Exception {
+    final ScrapeBudget budget = new ScrapeBudget(1, 1000);
+    budget.acquire();
+
+    final CountDownLatch acquired = new CountDownLatch(1);
+    final Thread other = new Thread()
+    {
+      @Override
+      public void run() {
+        try {
+          budget.acquire();
+          acquired.countDown();
+          budget.release();
+        }
+        catch (InterruptedException e) {
+          // test fails on latch
+        }
+      }
+    };
+    other.start();
+    try {
+      assertThat(acquired.await(200, TimeUnit.MILLISECONDS), is(false));
+      budget.release();
+      assertThat(acquired.await(5, TimeUnit.SECONDS), is(true));
+    }
+    finally {
+      other.interrupt();
+    }
+  }
+
+  @Test
+  public void limitsRequestRate() throws Exception {
+    final ScrapeBudget budget = new ScrapeBudget(10, 5);
+    final long started = System.nanoTime();
+    // first request is issued right away, the 5 next ones every 200ms
+    for (int i = 0; i < 6; i++) {
+      budget.acquire();
+      budget.release();
+    }
+    assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started), greaterThanOrEqualTo(800L));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void zeroInFlightRejected() {
+    new ScrapeBudget(0, 5);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void zeroRateRejected() {
+    new ScrapeBudget(1, 0);
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.mirror;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.sonatype.nexus.proxy.repository.ProxyRepository;
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * {@link DefaultMirrorScheduler} UTs.
+ */
+public class DefaultMirrorSchedulerTest
+    extends TestSupport
+{
+  private static final String CANONICAL = "http://canonical/";
+
+  private static final String MIRROR1 = "http://mirror1/";
+
+  private static final String MIRROR2 = "http://mirror2/";
+
+  private ProxyRepository repository;
+
+  private DefaultMirrorScheduler underTest;
+
+  @Before
+  public void prepare() {
+    repository = mock(ProxyRepository.class);
+    when(repository.getId()).thenReturn("proxy");
+    when(repository.getRemoteUrl()).thenReturn(CANONICAL);
+    underTest = new DefaultMirrorScheduler();
+  }
+
+  @Test
+  public void unmeasuredKeepConfiguredOrder() {
+    assertThat(underTest.order(repository, Arrays.asList(MIRROR1, MIRROR2, CANONICAL)),
+        contains(MIRROR1, MIRROR2, CANONICAL));
+  }
+
+  @Test
+  public void fastestFirst() {
+    underTest.onSuccess(repository, MIRROR1, 500, 1000);
+    underTest.onSuccess(repository, MIRROR2, 50, 1000);
+    underTest.onSuccess(repository, CANONICAL, 100, 1000);
+    assertThat(underTest.order(repository, Arrays.asList(MIRROR1, MIRROR2, CANONICAL)),
+        contains(MIRROR2, CANONICAL, MIRROR1));
+  }
+
+  @Test
+  public void failingMirrorEjectedToEnd() {
+    underTest.onSuccess(repository, MIRROR1, 10, 1000);
+    underTest.onSuccess(repository, MIRROR2, 50, 1000);
+    underTest.onSuccess(repository, CANONICAL, 100, 1000);
+    for (int i = 0; i < 3; i++) {
+      underTest.onFailure(repository, MIRROR1);
+    }
+    final List<String> ordered = underTest.order(repository, Arrays.asList(MIRROR1, MIRROR2, CANONICAL));
+    assertThat(ordered, contains(MIRROR2, CANONICAL, MIRROR1));
+    assertThat(underTest.getRanking("proxy"), hasSize(3));
+  }
+
+  @Test
+  public void canonicalNeverEjected() {
+    for (int i = 0; i < 20; i++) {
+      underTest.onFailure(repository, CANONICAL);
+    }
+    assertThat(underTest.getRanking("proxy").get(0).isEjected(System.currentTimeMillis()),
+        is(false));
+  }
+}
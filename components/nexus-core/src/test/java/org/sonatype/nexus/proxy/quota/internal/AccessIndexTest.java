@@ -0,0 +1,126 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.quota.internal;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.nullValue;
+
+/**
+ * UT for {@link AccessIndex} and {@link AccessJournal}.
+ */
+public class AccessIndexTest
+    extends TestSupport
+{
+  private File journalFile;
+
+  @Before
+  public void prepare() throws Exception {
+    journalFile = new File(util.createTempDir(), "repo.journal");
+  }
+
+  private AccessIndex open() throws Exception {
+    final AccessIndex index = new AccessIndex("repo", new AccessJournal(journalFile), 0L);
+    index.open();
+    return index;
+  }
+
+  @Test
+  public void leastRecentlyUsedFirst() throws Exception {
+    final AccessIndex index = open();
+    index.add("/a", 10, 1);
+    index.add("/b", 20, 2);
+    index.add("/c", 30, 3);
+    index.touch("/a", 10, 4);
+    assertThat(index.getUsedBytes(), equalTo(60L));
+    assertThat(index.getEldestPath(), equalTo("/b"));
+    assertThat(index.remove("/b"), equalTo(20L));
+    assertThat(index.getEldestPath(), equalTo("/c"));
+    assertThat(index.remove("/b"), equalTo(-1L));
+    assertThat(index.getUsedBytes(), equalTo(40L));
+  }
+
+  @Test
+  public void replayRestoresState() throws Exception {
+    AccessIndex index = open();
+    index.add("/a", 10, 1);
+    index.add("/b", 20, 2);
+    index.add("/dir/c", 30, 3);
+    index.add("/dir/d", 40, 4);
+    index.touch("/a", 10, 5);
+    index.removePrefix("/dir");
+    index.flush();
+    index.close();
+
+    index = open();
+    assertThat(index.size(), equalTo(2));
+    assertThat(index.getUsedBytes(), equalTo(30L));
+    assertThat(index.getEldestPath(), equalTo("/b"));
+    assertThat(index.getEldestAccess(), equalTo(2L));
+  }
+
+  @Test
+  public void tornRecordIsCutOff() throws Exception {
+    AccessIndex index = open();
+    index.add("/a", 10, 1);
+    index.add("/b", 20, 2);
+    index.flush();
+    index.close();
+    // crash while appending the last record
+    try (RandomAccessFile raf = new RandomAccessFile(journalFile, "rw")) {
+      raf.setLength(raf.length() - 3);
+    }
+
+    index = open();
+    assertThat(index.size(), equalTo(1));
+    index.add("/c", 30, 3);
+    index.flush();
+    index.close();
+
+    // records appended after the torn one are replayed
+    index = open();
+    assertThat(index.size(), equalTo(2));
+    assertThat(index.getUsedBytes(), equalTo(40L));
+    assertThat(index.getEldestPath(), equalTo("/a"));
+  }
+
+  @Test
+  public void compactionKeepsOrder() throws Exception {
+    AccessIndex index = open();
+    index.add("/a", 10, 1);
+    index.add("/b", 20, 2);
+    for (int i = 0; i < 5000; i++) {
+      index.touch("/a", 10, 10 + i);
+    }
+    final long before = journalFile.length();
+    index.flush();
+    index.close();
+    assertThat(journalFile.length(), lessThan(before));
+
+    index = open();
+    assertThat(index.size(), equalTo(2));
+    assertThat(index.getEldestPath(), equalTo("/b"));
+    index.remove("/b");
+    index.remove("/a");
+    assertThat(index.getEldestPath(), nullValue());
+  }
+}
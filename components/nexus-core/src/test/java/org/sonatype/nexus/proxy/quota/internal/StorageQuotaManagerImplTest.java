@@ -0,0 +1,92 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.quota.internal;
+
+import org.sonatype.nexus.NexusAppTestSupport;
+import org.sonatype.nexus.proxy.ResourceStoreRequest;
+import org.sonatype.nexus.proxy.events.RepositoryItemEventCache;
+import org.sonatype.nexus.proxy.events.RepositoryItemEventRetrieve;
+import org.sonatype.nexus.proxy.item.DefaultStorageFileItem;
+import org.sonatype.nexus.proxy.item.RepositoryItemUid;
+import org.sonatype.nexus.proxy.item.StringContentLocator;
+import org.sonatype.nexus.proxy.quota.StorageQuotaManager;
+import org.sonatype.nexus.proxy.registry.RepositoryRegistry;
+import org.sonatype.nexus.proxy.repository.DefaultRepositoryKind;
+import org.sonatype.nexus.proxy.repository.ProxyRepository;
+import org.sonatype.nexus.proxy.repository.Repository;
+
+import com.google.common.base.Strings;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Tests for {@link StorageQuotaManagerImpl} as booted by Nexus, receiving events posted on event bus.
+ */
+public class StorageQuotaManagerImplTest
+    extends NexusAppTestSupport
+{
+  private static final String REPO_ID = "quota-proxy";
+
+  private static final String QUOTA_KEY = "nexus.proxy.quota." + REPO_ID + ".maxBytes";
+
+  @Test
+  public void evictsLeastRecentlyUsedItemsOverQuota() throws Exception {
+    System.setProperty(QUOTA_KEY, "25");
+    try {
+      startNx();
+      final ProxyRepository repository = mock(ProxyRepository.class);
+      doReturn(Repository.class.getName()).when(repository).getProviderRole();
+      doReturn("maven2").when(repository).getProviderHint();
+      doReturn(REPO_ID).when(repository).getId();
+      doReturn(new DefaultRepositoryKind(ProxyRepository.class, null)).when(repository).getRepositoryKind();
+      doReturn(mock(RepositoryItemUid.class)).when(repository).createUid(anyString());
+      lookup(RepositoryRegistry.class).addRepository(repository);
+
+      final StorageQuotaManager underTest = lookup(StorageQuotaManager.class);
+      eventBus().post(new RepositoryItemEventCache(repository, item(repository, "/a")));
+      eventBus().post(new RepositoryItemEventCache(repository, item(repository, "/b")));
+      eventBus().post(new RepositoryItemEventCache(repository, item(repository, "/c")));
+      // makes /a the most recently used
+      eventBus().post(new RepositoryItemEventRetrieve(repository, item(repository, "/a")));
+      assertThat(underTest.getUsedBytes(REPO_ID), equalTo(30L));
+
+      underTest.enforceQuotas();
+
+      final ArgumentCaptor<ResourceStoreRequest> request = ArgumentCaptor.forClass(ResourceStoreRequest.class);
+      verify(repository).deleteItem(eq(false), request.capture());
+      assertThat(request.getValue().getRequestPath(), equalTo("/b"));
+      assertThat(underTest.getUsedBytes(REPO_ID), equalTo(20L));
+      assertThat(underTest.getEvictedItemCount(), equalTo(1L));
+      assertThat(underTest.getFreedBytes(), equalTo(10L));
+    }
+    finally {
+      System.clearProperty(QUOTA_KEY);
+    }
+  }
+
+  /**
+   * Returns an item of 10 bytes.
+   */
+  private DefaultStorageFileItem item(final Repository repository, final String path) {
+    return new DefaultStorageFileItem(repository, new ResourceStoreRequest(path), true, true,
+        new StringContentLocator(Strings.repeat("x", 10)));
+  }
+}
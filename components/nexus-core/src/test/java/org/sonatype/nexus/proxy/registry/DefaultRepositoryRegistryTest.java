@@ -13,6 +13,8 @@
 package org.sonatype.nexus.proxy.registry;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -22,6 +24,7 @@ import org.sonatype.nexus.configuration.model.CRepository;
 import org.sonatype.nexus.configuration.model.DefaultCRepository;
 import org.sonatype.nexus.proxy.AbstractNexusTestEnvironment;
 import org.sonatype.nexus.proxy.NoSuchRepositoryException;
+import org.sonatype.nexus.proxy.events.RepositoryConfigurationUpdatedEvent;
 import org.sonatype.nexus.proxy.maven.maven2.M2GroupRepository;
 import org.sonatype.nexus.proxy.maven.maven2.M2GroupRepositoryConfiguration;
 import org.sonatype.nexus.proxy.maven.maven2.Maven2ContentClass;
@@ -155,4 +158,57 @@ public class DefaultRepositoryRegistryTest
 
     assertEquals(0, group.getMemberRepositories().size());
   }
+
+  @Test
+  public void testGroupsOfRepository()
+      throws Exception
+  {
+    final HostedRepository repoA = mock(HostedRepository.class);
+    doReturn(Repository.class.getName()).when(repoA).getProviderRole();
+    doReturn("maven2").when(repoA).getProviderHint();
+    doReturn("A").when(repoA).getId();
+    doReturn(new DefaultRepositoryKind(HostedRepository.class, null)).when(repoA).getRepositoryKind();
+    repositoryRegistry.addRepository(repoA);
+
+    // G2 -> G1 -> A
+    final GroupRepository groupG1 = mockGroup("G1", Arrays.asList("A"));
+    final GroupRepository groupG2 = mockGroup("G2", Arrays.asList("G1"));
+    repositoryRegistry.addRepository(groupG1);
+    repositoryRegistry.addRepository(groupG2);
+
+    assertEquals(Arrays.asList("G1"), repositoryRegistry.getGroupsOfRepository("A"));
+    assertEquals(Arrays.asList(groupG1), repositoryRegistry.getGroupsOfRepository(repoA));
+    assertEquals(Arrays.asList(groupG1, groupG2), repositoryRegistry.getTransitiveGroupsOfRepository(repoA));
+    assertEquals(Arrays.asList(groupG2), repositoryRegistry.getTransitiveGroupsOfRepository(groupG1));
+    assertEquals(2, repositoryRegistry.getRepositoriesWithFacet(GroupRepository.class).size());
+
+    // returned lists are copies owned by caller
+    repositoryRegistry.getGroupsOfRepository(repoA).clear();
+    repositoryRegistry.getTransitiveGroupsOfRepository(repoA).clear();
+    assertEquals(Arrays.asList(groupG1, groupG2), repositoryRegistry.getTransitiveGroupsOfRepository(repoA));
+
+    // G1 looses its member, registry learns it from config change
+    doReturn(Collections.emptyList()).when(groupG1).getMemberRepositoryIds();
+    ((DefaultRepositoryRegistry) repositoryRegistry).on(new RepositoryConfigurationUpdatedEvent(groupG1));
+
+    assertTrue(repositoryRegistry.getGroupsOfRepository("A").isEmpty());
+    assertTrue(repositoryRegistry.getTransitiveGroupsOfRepository(repoA).isEmpty());
+    assertEquals(Arrays.asList(groupG2), repositoryRegistry.getTransitiveGroupsOfRepository(groupG1));
+
+    // removed group is gone from index
+    repositoryRegistry.removeRepository("G2");
+    assertTrue(repositoryRegistry.getGroupsOfRepository("G1").isEmpty());
+    assertEquals(1, repositoryRegistry.getRepositoriesWithFacet(GroupRepository.class).size());
+  }
+
+  private GroupRepository mockGroup(final String id, final List<String> memberIds) {
+    final GroupRepository group = mock(GroupRepository.class);
+    doReturn(GroupRepository.class.getName()).when(group).getProviderRole();
+    doReturn("maven2").when(group).getProviderHint();
+    doReturn(id).when(group).getId();
+    doReturn(new DefaultRepositoryKind(GroupRepository.class, null)).when(group).getRepositoryKind();
+    doReturn(group).when(group).adaptToFacet(GroupRepository.class);
+    doReturn(memberIds).when(group).getMemberRepositoryIds();
+    return group;
+  }
 }
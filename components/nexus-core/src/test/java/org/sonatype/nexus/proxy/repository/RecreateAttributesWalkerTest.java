@@ -19,6 +19,7 @@ import org.sonatype.nexus.proxy.AbstractProxyTestEnvironment;
 import org.sonatype.nexus.proxy.EnvironmentBuilder;
 import org.sonatype.nexus.proxy.M2TestsuiteEnvironmentBuilder;
 import org.sonatype.nexus.proxy.ResourceStoreRequest;
+import org.sonatype.nexus.proxy.attributes.inspectors.DigestCalculatingInspector;
 import org.sonatype.nexus.proxy.item.DefaultStorageCompositeFileItem;
 import org.sonatype.nexus.proxy.item.DefaultStorageFileItem;
 import org.sonatype.nexus.proxy.item.DefaultStorageLinkItem;
@@ -27,11 +28,17 @@ import org.sonatype.nexus.proxy.item.StorageFileItem;
 import org.sonatype.nexus.proxy.item.StorageItem;
 import org.sonatype.nexus.proxy.item.StorageLinkItem;
 import org.sonatype.nexus.proxy.item.StringContentLocator;
+import org.sonatype.nexus.proxy.walker.DefaultWalkerContext;
+import org.sonatype.nexus.proxy.walker.Walker;
+import org.sonatype.nexus.proxy.walker.WalkerContext;
+import org.sonatype.nexus.proxy.walker.WalkerException;
+import org.sonatype.nexus.util.DigesterUtils;
 
 import org.junit.Test;
 
 import static org.hamcrest.MatcherAssert.*;
 import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.fail;
 
 public class RecreateAttributesWalkerTest
     extends AbstractProxyTestEnvironment
@@ -91,4 +98,89 @@ public class RecreateAttributesWalkerTest
     assertThat(retrievedLinkItem.getRepositoryItemAttributes().get("foo"), is("bar"));
     assertThat(retrievedCompositeItem.getRepositoryItemAttributes().get("foo"), is("bar"));
   }
+
+  @Test
+  public void testRecreateAttributesInParallel()
+      throws Exception
+  {
+    final Repository repository = getRepositoryRegistry().getRepository("inhouse");
+
+    for (int i = 0; i < 20; i++) {
+      repository.storeItem(false, new DefaultStorageFileItem(repository, new ResourceStoreRequest(
+          "/parallel/file" + i + ".txt"), true, true, new StringContentLocator("This is file " + i)));
+    }
+
+    final ResourceStoreRequest recreateAttributesRequest = new ResourceStoreRequest("/parallel");
+    recreateAttributesRequest.getRequestContext().put(RecreateAttributesWalker.THREADS, 4);
+    repository.recreateAttributes(recreateAttributesRequest, null);
+
+    for (int i = 0; i < 20; i++) {
+      final StorageItem item = repository.retrieveItem(false,
+          new ResourceStoreRequest("/parallel/file" + i + ".txt"));
+      assertThat(item.getRepositoryItemAttributes().get(StorageFileItem.DIGEST_SHA1_KEY),
+          is(DigesterUtils.getSha1Digest("This is file " + i)));
+      assertThat(DigestCalculatingInspector.isDigestUpToDate((StorageFileItem) item), is(true));
+    }
+  }
+
+  @Test
+  public void testStoredItemDigestIsUpToDate()
+      throws Exception
+  {
+    final Repository repository = getRepositoryRegistry().getRepository("inhouse");
+    // digests are calculated while storing, inspector takes them from request context
+    repository.storeItem(false, new DefaultStorageFileItem(repository, new ResourceStoreRequest(
+        "/stored/file.txt"), true, true, new StringContentLocator("This is a stored file")));
+
+    final StorageItem item = repository.retrieveItem(false, new ResourceStoreRequest("/stored/file.txt"));
+    assertThat(item.getRepositoryItemAttributes().get(StorageFileItem.DIGEST_SHA1_KEY),
+        is(DigesterUtils.getSha1Digest("This is a stored file")));
+    assertThat(DigestCalculatingInspector.isDigestUpToDate((StorageFileItem) item), is(true));
+  }
+
+  @Test
+  public void testInvalidThreadsHintIgnored()
+      throws Exception
+  {
+    final Repository repository = getRepositoryRegistry().getRepository("inhouse");
+    repository.storeItem(false, new DefaultStorageFileItem(repository, new ResourceStoreRequest(
+        "/invalid/file.txt"), true, true, new StringContentLocator("This is a file")));
+
+    final ResourceStoreRequest recreateAttributesRequest = new ResourceStoreRequest("/invalid");
+    recreateAttributesRequest.getRequestContext().put(RecreateAttributesWalker.THREADS, "many");
+    assertThat(repository.recreateAttributes(recreateAttributesRequest, null), is(true));
+  }
+
+  @Test
+  public void testParallelFailureReportedOnce()
+      throws Exception
+  {
+    final Repository repository = getRepositoryRegistry().getRepository("inhouse");
+    for (int i = 0; i < 20; i++) {
+      repository.storeItem(false, new DefaultStorageFileItem(repository, new ResourceStoreRequest(
+          "/failing/file" + i + ".txt"), true, true, new StringContentLocator("This is file " + i)));
+    }
+
+    final RecreateAttributesWalker failing = new RecreateAttributesWalker(repository, null)
+    {
+      @Override
+      protected void doProcessFileItem(final WalkerContext ctx, final StorageItem item) {
+        throw new IllegalStateException("Cannot process " + item.getPath());
+      }
+    };
+    final ResourceStoreRequest request = new ResourceStoreRequest("/failing");
+    request.getRequestContext().put(RecreateAttributesWalker.THREADS, 4);
+    final DefaultWalkerContext ctx = new DefaultWalkerContext(repository, request);
+    ctx.getProcessors().add(failing);
+    try {
+      lookup(Walker.class).walk(ctx);
+      fail("Processing failure should stop the walk");
+    }
+    catch (WalkerException e) {
+      // runtime exception of processing thread is not lost
+      assertThat(e.getWalkerContext().getStopCause(), instanceOf(IllegalStateException.class));
+    }
+    // already reported, does not throw again
+    failing.awaitTermination();
+  }
 }
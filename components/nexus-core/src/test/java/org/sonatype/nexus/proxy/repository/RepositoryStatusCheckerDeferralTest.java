@@ -0,0 +1,84 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.proxy.repository;
+
+import org.sonatype.nexus.ApplicationStatusSource;
+import org.sonatype.nexus.NexusAppTestSupport;
+import org.sonatype.nexus.SystemState;
+import org.sonatype.nexus.proxy.events.NexusStartedEvent;
+import org.sonatype.nexus.proxy.maven.RepositoryPolicy;
+import org.sonatype.nexus.templates.repository.RepositoryTemplate;
+import org.sonatype.nexus.templates.repository.maven.Maven2ProxyRepositoryTemplate;
+
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+/**
+ * Tests that remote status checking of proxy repositories created while Nexus is booting starts only once Nexus is
+ * started.
+ */
+public class RepositoryStatusCheckerDeferralTest
+    extends NexusAppTestSupport
+{
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    startNx();
+  }
+
+  @Test
+  public void statusCheckerStartedOnceNexusStarted() throws Exception {
+    final ApplicationStatusSource applicationStatusSource = lookup(ApplicationStatusSource.class);
+    final Repository repository;
+    applicationStatusSource.getSystemStatus().setState(SystemState.STARTING);
+    try {
+      repository = createProxy("booting-proxy");
+    }
+    finally {
+      applicationStatusSource.getSystemStatus().setState(SystemState.STARTED);
+    }
+    assertThat(statusCheckerRunning("booting-proxy"), is(false));
+
+    ((AbstractProxyRepository) repository).on(new NexusStartedEvent(null));
+    assertThat(statusCheckerRunning("booting-proxy"), is(true));
+  }
+
+  @Test
+  public void statusCheckerStartedRightAwayAfterStartup() throws Exception {
+    createProxy("started-proxy");
+    assertThat(statusCheckerRunning("started-proxy"), is(true));
+  }
+
+  // ==
+
+  private Repository createProxy(final String id) throws Exception {
+    final RepositoryTemplate template =
+        (RepositoryTemplate) getRepositoryTemplates().getTemplates(Maven2ProxyRepositoryTemplate.class,
+            RepositoryPolicy.RELEASE).pick();
+    template.getConfigurableRepository().setId(id);
+    template.getConfigurableRepository().setName(id + "-name");
+    template.getConfigurableRepository().setLocalStatus(LocalStatus.IN_SERVICE);
+    return template.create();
+  }
+
+  private boolean statusCheckerRunning(final String repositoryId) {
+    for (Thread thread : Thread.getAllStackTraces().keySet()) {
+      if (thread.isAlive() && ("RepositoryStatusChecker-" + repositoryId).equals(thread.getName())) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
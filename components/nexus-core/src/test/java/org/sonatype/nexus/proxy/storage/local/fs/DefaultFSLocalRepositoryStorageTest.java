@@ -43,6 +43,7 @@ import org.mockito.Mockito;
 
 import static org.hamcrest.MatcherAssert.*;
 import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.fail;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
@@ -214,4 +215,47 @@ public class DefaultFSLocalRepositoryStorageTest
     localRepositoryStorageUnderTest.retrieveItemFromFile(repository, new ResourceStoreRequest("not-used"), mockFile);
     Mockito.verify(linkPersister, times(0)).isLinkContent(Mockito.any(ContentLocator.class));
   }
+
+  /**
+   * Tests listing a directory using file system attributes only.
+   */
+  @Test
+  public void testListDirectoryEntries() throws Exception {
+    File repoLocation = new File(util.getBaseDir(), "target/" + getClass().getSimpleName() + "/entries/");
+    File dir = new File(repoLocation, "dir/");
+    new File(dir, "subdir").mkdirs();
+    FileUtils.write(new File(dir, "file.txt"), "content", "UTF-8");
+    FileUtils.write(new File(dir, "upload.nx-upload"), "partial", "UTF-8");
+
+    Repository repository = mock(Repository.class);
+    when(repository.getId()).thenReturn("mock");
+    when(repository.getLocalUrl()).thenReturn(repoLocation.toURI().toURL().toString());
+    when(repository.getLocalStorageContext()).thenReturn(new DefaultLocalStorageContext(null));
+
+    DefaultFSLocalRepositoryStorage localRepositoryStorageUnderTest = new DefaultFSLocalRepositoryStorage(
+        mock(Wastebasket.class), mock(LinkPersister.class), mock(MimeSupport.class), mock(FSPeer.class));
+
+    List<DirectoryEntry> entries = localRepositoryStorageUnderTest.listDirectoryEntries(repository,
+        new ResourceStoreRequest("/dir"));
+    assertThat(entries, hasSize(2));
+    for (DirectoryEntry entry : entries) {
+      if (entry.isCollection()) {
+        assertThat(entry.getName(), equalTo("subdir"));
+        assertThat(entry.getSize(), equalTo(-1L));
+      }
+      else {
+        assertThat(entry.getName(), equalTo("file.txt"));
+        assertThat(entry.getSize(), equalTo(7L));
+        assertThat(entry.getLastModified(), equalTo(new File(dir, "file.txt").lastModified()));
+      }
+    }
+
+    try {
+      localRepositoryStorageUnderTest.listDirectoryEntries(repository, new ResourceStoreRequest("/dir/file.txt"));
+      fail("Files cannot be listed");
+    }
+    catch (ItemNotFoundException e) {
+      // expected
+    }
+  }
 }
@@ -0,0 +1,109 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.scheduling.internal;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.nullValue;
+
+/**
+ * UT for {@link TaskRunStateJournal}.
+ */
+public class TaskRunStateJournalTest
+    extends TestSupport
+{
+  private File journalFile;
+
+  @Before
+  public void prepare() throws Exception {
+    journalFile = new File(util.createTempDir(), "task-run-state.journal");
+  }
+
+  @Test
+  public void replayRestoresState() throws Exception {
+    TaskRunStateJournal journal = new TaskRunStateJournal(journalFile);
+    journal.put("1", 100L, 200L);
+    journal.put("2", 0L, 300L);
+    journal.put("1", 200L, 400L);
+    journal.put("3", 50L, 60L);
+    journal.remove("3");
+
+    journal = new TaskRunStateJournal(journalFile);
+    assertThat(journal.get("1").getLastRun(), equalTo(200L));
+    assertThat(journal.get("1").getNextRun(), equalTo(400L));
+    assertThat(journal.get("2").getLastRun(), equalTo(0L));
+    assertThat(journal.get("2").getNextRun(), equalTo(300L));
+    assertThat(journal.get("3"), nullValue());
+    assertThat(journal.getRecordCount(), equalTo(5L));
+  }
+
+  @Test
+  public void unchangedStateIsNotJournaled() throws Exception {
+    final TaskRunStateJournal journal = new TaskRunStateJournal(journalFile);
+    journal.put("1", 100L, 200L);
+    journal.put("1", 100L, 200L);
+    journal.remove("2");
+    assertThat(journal.getRecordCount(), equalTo(1L));
+  }
+
+  @Test
+  public void tornRecordIsCutOff() throws Exception {
+    TaskRunStateJournal journal = new TaskRunStateJournal(journalFile);
+    journal.put("1", 100L, 200L);
+    journal.put("2", 0L, 300L);
+    final long validLength = journalFile.length();
+
+    // crash while appending: record type and half of task id only
+    try (DataOutputStream out = new DataOutputStream(new FileOutputStream(journalFile, true))) {
+      out.writeByte('S');
+      out.writeShort(10);
+      out.writeBytes("12345");
+    }
+
+    journal = new TaskRunStateJournal(journalFile);
+    assertThat(journal.get("1").getLastRun(), equalTo(100L));
+    assertThat(journal.getRecordCount(), equalTo(2L));
+    assertThat(journalFile.length(), equalTo(validLength));
+    journal.put("3", 10L, 20L);
+
+    // records appended after the torn one are replayed
+    journal = new TaskRunStateJournal(journalFile);
+    assertThat(journal.get("2").getNextRun(), equalTo(300L));
+    assertThat(journal.get("3").getLastRun(), equalTo(10L));
+    assertThat(journal.getRecordCount(), equalTo(3L));
+  }
+
+  @Test
+  public void journalIsCompacted() throws Exception {
+    TaskRunStateJournal journal = new TaskRunStateJournal(journalFile);
+    for (int i = 0; i < 10000; i++) {
+      journal.put(String.valueOf(i % 10), i, i + 1);
+    }
+    assertThat(journal.getRecordCount(), lessThan(5000L));
+
+    journal = new TaskRunStateJournal(journalFile);
+    for (int i = 0; i < 10; i++) {
+      assertThat(journal.get(String.valueOf(i)).getLastRun(), equalTo(9990L + i));
+    }
+  }
+}
@@ -0,0 +1,96 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.util.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.sonatype.nexus.util.DigesterUtils;
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+import com.google.common.collect.Lists;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+
+/**
+ * UT for {@link DigestSupport}.
+ */
+public class DigestSupportTest
+    extends TestSupport
+{
+  private static final byte[] CONTENT = "This is a file.".getBytes();
+
+  @Test
+  public void digestFile() throws Exception {
+    final File file = util.createTempFile();
+    // span several buffer fills
+    final byte[] content = new byte[DigestSupport.BUFFER_SIZE * 2 + 17];
+    for (int i = 0; i < content.length; i++) {
+      content[i] = (byte) i;
+    }
+    Files.write(file.toPath(), content);
+
+    final Map<String, String> digests = DigestSupport.digest(file.toPath(), "SHA1", "MD5");
+
+    assertThat(digests.keySet(), contains("SHA1", "MD5"));
+    assertThat(digests.get("SHA1"), equalTo(DigesterUtils.getSha1Digest(content)));
+    assertThat(digests.get("MD5"), equalTo(DigesterUtils.getMd5Digest(content)));
+  }
+
+  @Test
+  public void digestFilesConcurrently() throws Exception {
+    final File file = util.createTempFile();
+    Files.write(file.toPath(), CONTENT);
+    // more threads than pooled direct buffers, some digest using heap buffers
+    final int threads = DigestSupport.DIRECT_BUFFERS + 4;
+    final ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      final List<Future<Map<String, String>>> results = Lists.newArrayList();
+      for (int i = 0; i < threads * 10; i++) {
+        results.add(executor.submit(new Callable<Map<String, String>>()
+        {
+          @Override
+          public Map<String, String> call() throws Exception {
+            return DigestSupport.digest(file.toPath(), "SHA1");
+          }
+        }));
+      }
+      for (Future<Map<String, String>> result : results) {
+        assertThat(result.get().get("SHA1"), equalTo(DigesterUtils.getSha1Digest(CONTENT)));
+      }
+    }
+    finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void digestStream() throws Exception {
+    final Map<String, String> digests =
+        DigestSupport.digest(new ByteArrayInputStream(CONTENT), "SHA1", "MD5", "SHA-256");
+
+    assertThat(digests.get("SHA1"), equalTo(DigesterUtils.getSha1Digest(CONTENT)));
+    assertThat(digests.get("MD5"), equalTo(DigesterUtils.getMd5Digest(CONTENT)));
+    assertThat(digests.get("SHA-256"), equalTo("c195ea0690238192d2a000c5e35f42469242bab0dc6a03b09dbffc5408a24170"));
+  }
+}
@@ -18,6 +18,7 @@ import java.util.Set;
 import javax.annotation.Nullable;
 import javax.naming.NamingException;
 
+import org.sonatype.security.events.UserPrincipalsExpired;
 import org.sonatype.security.ldap.dao.LdapDAOException;
 import org.sonatype.security.ldap.dao.NoLdapUserRolesFoundException;
 import org.sonatype.security.ldap.realms.persist.LdapClearCacheEvent;
@@ -50,9 +51,12 @@ public abstract class AbstractLdapAuthenticatingRealm
 
   private final Logger logger = Loggers.getLogger(getClass());
 
+  private final EventBus eventBus;
+
   private final LdapManager ldapManager;
 
   public AbstractLdapAuthenticatingRealm(final EventBus eventBus, final LdapManager ldapManager) {
+    this.eventBus = checkNotNull(eventBus);
     this.ldapManager = checkNotNull(ldapManager);
     setName(NAME);
     setAuthenticationCachingEnabled(true);
@@ -73,6 +77,8 @@ public abstract class AbstractLdapAuthenticatingRealm
   public void on(final LdapClearCacheEvent evt) {
     clearIfNonNull(getAuthenticationCache());
     clearIfNonNull(getAuthorizationCache());
+    // LDAP configuration changed, drop all the verified credentials too
+    eventBus.post(new UserPrincipalsExpired());
   }
 
   /**
@@ -15,6 +15,15 @@ package org.sonatype.sisu.locks;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.lang.management.ManagementFactory;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.annotation.Nullable;
 import javax.inject.Inject;
@@ -29,23 +38,53 @@ import com.hazelcast.config.XmlConfigBuilder;
 import com.hazelcast.core.Hazelcast;
 import com.hazelcast.core.HazelcastInstance;
 import com.hazelcast.core.ISemaphore;
+import com.hazelcast.core.ITopic;
 import com.hazelcast.core.InstanceDestroyedException;
+import com.hazelcast.core.MessageListener;
 import org.eclipse.sisu.inject.Logs;
 
 /**
  * Distributed Hazelcast {@link ResourceLockFactory} implementation.
+ * <p>
+ * To avoid a cluster round trip on every shared lock, a member takes a read lease on a resource: one shared permit of
+ * the distributed semaphore held on behalf of all local shared lockers, which are coordinated by a local semaphore.
+ * A member taking an exclusive lock asks the other members to revoke their leases over a topic, and waits for all
+ * permits; exclusive locks always go to the cluster. After a revocation, members briefly take a permit per shared lock
+ * instead of a new lease, so the exclusive locker gets its turn. Leases idle for the lease time are released. A lease
+ * time of zero (or less) disables leasing, every lock then goes to the cluster.
  */
 @Named("hazelcast")
 @Singleton
 final class HazelcastResourceLockFactory
     extends AbstractResourceLockFactory
 {
+  // ----------------------------------------------------------------------
+  // Constants
+  // ----------------------------------------------------------------------
+
+  private static final String REVOCATION_TOPIC = "sisu-resource-lock-revocations";
+
   // ----------------------------------------------------------------------
   // Implementation fields
   // ----------------------------------------------------------------------
 
   private final HazelcastInstance instance;
 
+  private final long leaseMillis;
+
+  private final String memberId = UUID.randomUUID().toString();
+
+  private final ConcurrentMap<String, HazelcastResourceLock> leases =
+      new ConcurrentHashMap<String, HazelcastResourceLock>();
+
+  private final AtomicLong remoteCalls = new AtomicLong();
+
+  private ITopic<String> revocations;
+
+  private MessageListener<String> revocationListener;
+
+  private ScheduledExecutorService leaseExecutor;
+
   private ObjectName jmxQuery;
 
   private ObjectName jmxMaster;
@@ -55,10 +94,44 @@ final class HazelcastResourceLockFactory
   // ----------------------------------------------------------------------
 
   @Inject
-  HazelcastResourceLockFactory(@Nullable @Named("hazelcast.config") final File configFile) {
+  HazelcastResourceLockFactory(@Nullable @Named("hazelcast.config") final File configFile,
+                               @Named("${hazelcast.lease.millis:-10000}") final long leaseMillis)
+  {
+    this(getHazelcastConfig(configFile), leaseMillis);
+  }
+
+  HazelcastResourceLockFactory(final Config config, final long leaseMillis) {
     super(true);
 
-    instance = Hazelcast.newHazelcastInstance(getHazelcastConfig(configFile));
+    this.leaseMillis = leaseMillis;
+
+    instance = Hazelcast.newHazelcastInstance(config);
+
+    if (leaseMillis > 0) {
+      leaseExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+      {
+        public Thread newThread(final Runnable r) {
+          final Thread thread = new Thread(r, "resource-lock-leases");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+      leaseExecutor.scheduleWithFixedDelay(new Runnable()
+      {
+        public void run() {
+          releaseIdleLeases();
+        }
+      }, leaseMillis, Math.max(1, leaseMillis / 2), TimeUnit.MILLISECONDS);
+
+      revocations = instance.getTopic(REVOCATION_TOPIC);
+      revocationListener = new MessageListener<String>()
+      {
+        public void onMessage(final String message) {
+          revoked(message);
+        }
+      };
+      revocations.addMessageListener(revocationListener);
+    }
 
     try {
       final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
@@ -82,6 +155,10 @@ final class HazelcastResourceLockFactory
   public void shutdown() {
     boolean lastMember = false;
     try {
+      if (null != leaseExecutor) {
+        revocations.removeMessageListener(revocationListener);
+        leaseExecutor.shutdownNow();
+      }
       super.shutdown();
       final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
       lastMember = server.queryNames(jmxQuery, null).isEmpty();
@@ -115,13 +192,94 @@ final class HazelcastResourceLockFactory
 
   @Override
   protected ResourceLock createResourceLock(final String name) {
-    return new HazelcastResourceLock(instance.getSemaphore(name));
+    return new HazelcastResourceLock(this, name, instance.getSemaphore(name));
+  }
+
+  /**
+   * @return Lease time in milliseconds; zero or less if leasing is disabled
+   */
+  long getLeaseMillis() {
+    return leaseMillis;
+  }
+
+  /**
+   * @return Time in milliseconds a member takes no new lease on a resource after a revocation, so the member locking
+   *         exclusively gets all permits
+   */
+  long getHoldOffMillis() {
+    return Math.max(1, leaseMillis / 20);
+  }
+
+  /**
+   * @return Number of cluster operations issued by this member's locks so far
+   */
+  long getRemoteCalls() {
+    return remoteCalls.get();
+  }
+
+  void remoteCall() {
+    remoteCalls.incrementAndGet();
+  }
+
+  /**
+   * Keeps the lock reachable while it holds (or is taking) a lease, so revocations find it.
+   */
+  void leased(final String name, final HazelcastResourceLock lock) {
+    leases.put(name, lock);
+  }
+
+  void unleased(final String name, final HazelcastResourceLock lock) {
+    leases.remove(name, lock);
+  }
+
+  /**
+   * Asks other members to revoke their leases on the named resource.
+   */
+  void revoke(final String name) {
+    remoteCall();
+    revocations.publish(memberId + '\n' + name);
+  }
+
+  /**
+   * Releases the lease permit asynchronously, as topic listeners must not block on cluster operations.
+   */
+  void releaseLeaseAsync(final HazelcastResourceLock lock) {
+    try {
+      leaseExecutor.execute(new Runnable()
+      {
+        public void run() {
+          lock.releaseLease();
+        }
+      });
+    }
+    catch (final Exception e) {
+      // shutting down, member leaving the cluster detaches its permits
+      Logs.trace("Lease of <> not released: <>", lock, e);
+    }
+  }
+
+  private void revoked(final String message) {
+    final int separator = message.indexOf('\n');
+    if (separator < 0 || memberId.equals(message.substring(0, separator))) {
+      return;
+    }
+    final HazelcastResourceLock lock = leases.get(message.substring(separator + 1));
+    if (null != lock) {
+      lock.revokeLease();
+    }
+  }
+
+  private void releaseIdleLeases() {
+    final long idleSince = System.currentTimeMillis() - leaseMillis;
+    for (final HazelcastResourceLock lock : leases.values()) {
+      lock.expireLease(idleSince);
+    }
   }
 
   /**
    * @return Hazelcast configuration; ensures semaphores start with {@link Integer#MAX_VALUE} permits by default
    */
-  private static Config getHazelcastConfig(final File configFile) {
+  static Config getHazelcastConfig(@Nullable final File configFile) {
     final Config config;
     if (null != configFile && configFile.isFile()) {
       try {
@@ -143,7 +301,8 @@ final class HazelcastResourceLockFactory
 }
 
 /**
- * {@link ResourceLock} implemented on top of a Hazelcast {@link ISemaphore}.
+ * {@link ResourceLock} implemented on top of a Hazelcast {@link ISemaphore}, with shared locks served from a member
+ * read lease when leasing is enabled.
  */
 final class HazelcastResourceLock
     extends AbstractSemaphoreResourceLock
@@ -152,13 +311,41 @@ final class HazelcastResourceLock
   // Implementation fields
   // ----------------------------------------------------------------------
 
+  private final HazelcastResourceLockFactory factory;
+
+  private final String name;
+
   private final ISemaphore sem;
 
+  private final Semaphore local = new Semaphore(Integer.MAX_VALUE, true);
+
+  /*
+   * Lease state, guarded by this
+   */
+
+  private boolean leased;
+
+  private boolean acquiring;
+
+  private boolean revoked;
+
+  private int revocations;
+
+  private long holdOffUntil;
+
+  private long lastUsed;
+
+  private int leaseHolders;
+
+  private int directHolders;
+
   // ----------------------------------------------------------------------
   // Constructors
   // ----------------------------------------------------------------------
 
-  HazelcastResourceLock(final ISemaphore sem) {
+  HazelcastResourceLock(final HazelcastResourceLockFactory factory, final String name, final ISemaphore sem) {
+    this.factory = factory;
+    this.name = name;
     this.sem = sem;
   }
 
@@ -168,8 +355,241 @@ final class HazelcastResourceLock
 
   @Override
   protected void acquire(final int permits) {
+    if (factory.getLeaseMillis() <= 0) {
+      acquireRemote(permits);
+    }
+    else if (permits == 1) {
+      local.acquireUninterruptibly(1);
+      try {
+        acquireShared();
+      }
+      catch (final RuntimeException e) {
+        local.release(1);
+        throw e;
+      }
+    }
+    else {
+      local.acquireUninterruptibly(permits);
+      try {
+        acquireExclusive(permits);
+      }
+      catch (final RuntimeException e) {
+        local.release(permits);
+        throw e;
+      }
+    }
+  }
+
+  @Override
+  protected void release(final int permits) {
+    if (factory.getLeaseMillis() <= 0) {
+      releaseRemote(permits);
+    }
+    else if (permits == 1) {
+      boolean releaseLease = false;
+      boolean releaseDirect = false;
+      synchronized (this) {
+        if (directHolders > 0) {
+          directHolders--;
+          releaseDirect = true;
+        }
+        else {
+          leaseHolders--;
+          releaseLease = leaseHolders == 0 && revoked && dropLease();
+        }
+      }
+      if (releaseDirect || releaseLease) {
+        releaseRemote(1);
+      }
+      local.release(1);
+    }
+    else {
+      releaseRemote(permits);
+      local.release(permits);
+    }
+  }
+
+  @Override
+  protected int availablePermits() {
+    return sem.availablePermits();
+  }
+
+  // ----------------------------------------------------------------------
+  // Lease methods
+  // ----------------------------------------------------------------------
+
+  /**
+   * Invoked when another member wants to lock exclusively: lease is released as soon as no local shared locks use it,
+   * and no new lease is taken for the hold off time.
+   */
+  void revokeLease() {
+    boolean releaseLease = false;
+    synchronized (this) {
+      revocations++;
+      holdOffUntil = System.currentTimeMillis() + factory.getHoldOffMillis();
+      if (leased) {
+        revoked = true;
+        releaseLease = leaseHolders == 0 && dropLease();
+      }
+    }
+    if (releaseLease) {
+      factory.releaseLeaseAsync(this);
+    }
+  }
+
+  /**
+   * Releases the lease if unused since the given time.
+   */
+  void expireLease(final long idleSince) {
+    boolean releaseLease = false;
+    synchronized (this) {
+      if (leased && leaseHolders == 0 && lastUsed < idleSince) {
+        releaseLease = dropLease();
+      }
+    }
+    if (releaseLease) {
+      releaseLease();
+    }
+  }
+
+  void releaseLease() {
+    releaseRemote(1);
+  }
+
+  // ----------------------------------------------------------------------
+  // Implementation methods
+  // ----------------------------------------------------------------------
+
+  private void acquireShared() {
+    boolean takeLease;
+    final int revocationsBefore;
+    synchronized (this) {
+      while (true) {
+        final long now = System.currentTimeMillis();
+        if (leased && !revoked) {
+          // served from lease, no round trip
+          leaseHolders++;
+          lastUsed = now;
+          return;
+        }
+        if (leased || now < holdOffUntil) {
+          // lease is being revoked, or an exclusive lock was recently requested: take own permit
+          takeLease = false;
+          break;
+        }
+        if (!acquiring) {
+          acquiring = true;
+          factory.leased(name, this);
+          takeLease = true;
+          break;
+        }
+        waitUninterruptibly();
+      }
+      revocationsBefore = revocations;
+    }
+
+    try {
+      acquireRemote(1);
+    }
+    catch (final RuntimeException e) {
+      if (takeLease) {
+        synchronized (this) {
+          acquiring = false;
+          factory.unleased(name, this);
+          notifyAll();
+        }
+      }
+      throw e;
+    }
+
+    synchronized (this) {
+      if (takeLease) {
+        acquiring = false;
+        leased = true;
+        // revocation received while taking the lease applies to it
+        revoked = revocations != revocationsBefore;
+        lastUsed = System.currentTimeMillis();
+        leaseHolders++;
+        notifyAll();
+      }
+      else {
+        directHolders++;
+      }
+    }
+  }
+
+  private void acquireExclusive(final int permits) {
+    // local semaphore is drained, so own lease (if any) is unused
+    boolean releaseLease;
+    synchronized (this) {
+      releaseLease = leased && dropLease();
+    }
+    if (releaseLease) {
+      releaseRemote(1);
+    }
+
+    // locking is uninterruptible: interrupt is remembered and restored once locked, not to spin on interrupted waits
+    boolean interrupted = false;
+    boolean revoke = true;
+    try {
+      while (true) {
+        if (revoke) {
+          factory.revoke(name);
+        }
+        try {
+          factory.remoteCall();
+          // retry revocation before hold off on other members ends, in case they took new leases meanwhile
+          if (sem.tryAcquireAttach(permits, Math.max(1, factory.getHoldOffMillis() / 2), TimeUnit.MILLISECONDS)) {
+            return;
+          }
+          revoke = true;
+        }
+        catch (final InterruptedException e) {
+          // wait was cut short, revocation sent before it is still fresh
+          interrupted = true;
+          revoke = false;
+        }
+        catch (final InstanceDestroyedException e) {
+          throw new IllegalStateException(e);
+        }
+      }
+    }
+    finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * @return {@code true} if lease was held and is now dropped; caller must release its permit
+   */
+  private boolean dropLease() {
+    if (!leased) {
+      return false;
+    }
+    leased = false;
+    revoked = false;
+    if (!acquiring) {
+      factory.unleased(name, this);
+    }
+    notifyAll();
+    return true;
+  }
+
+  private void waitUninterruptibly() {
+    try {
+      wait();
+    }
+    catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void acquireRemote(final int permits) {
     while (true) {
       try {
+        factory.remoteCall();
         sem.acquireAttach(permits);
         return;
       }
@@ -182,13 +602,8 @@ final class HazelcastResourceLock
     }
   }
 
-  @Override
-  protected void release(final int permits) {
+  private void releaseRemote(final int permits) {
+    factory.remoteCall();
     sem.releaseDetach(permits);
   }
-
-  @Override
-  protected int availablePermits() {
-    return sem.availablePermits();
-  }
 }
@@ -0,0 +1,293 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.sisu.locks;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+import org.sonatype.sisu.litmus.testsupport.group.Slow;
+
+import com.google.common.collect.Lists;
+import com.hazelcast.config.Config;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+/**
+ * IT for read leases of {@link HazelcastResourceLockFactory}, running multiple cluster members in this JVM.
+ */
+@Category(Slow.class)
+public class HazelcastResourceLockLeaseIT
+    extends TestSupport
+{
+  private static final long LEASE_MILLIS = 2000L;
+
+  private final List<HazelcastResourceLockFactory> members = Lists.newArrayList();
+
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+
+  @After
+  public void shutdown() {
+    executor.shutdownNow();
+    for (HazelcastResourceLockFactory member : Lists.reverse(members)) {
+      member.shutdown();
+    }
+  }
+
+  private HazelcastResourceLockFactory startMember(final long leaseMillis) {
+    final Config config = HazelcastResourceLockFactory.getHazelcastConfig(null);
+    config.getNetworkConfig().getJoin().getMulticastConfig().setEnabled(false);
+    config.getNetworkConfig().getJoin().getTcpIpConfig().setEnabled(true).addMember("127.0.0.1");
+    final HazelcastResourceLockFactory member = new HazelcastResourceLockFactory(config, leaseMillis);
+    members.add(member);
+    return member;
+  }
+
+  @Test
+  public void sharedLocksAreServedFromLease() {
+    final HazelcastResourceLockFactory member = startMember(LEASE_MILLIS);
+    final ResourceLock lock = member.getResourceLock("shared");
+    final Thread self = Thread.currentThread();
+
+    final long before = member.getRemoteCalls();
+    for (int i = 0; i < 1000; i++) {
+      lock.lockShared(self);
+      lock.unlockShared(self);
+    }
+    // the lease acquisition only
+    assertThat(member.getRemoteCalls() - before, equalTo(1L));
+  }
+
+  @Test
+  public void exclusiveLockRevokesLeases() throws Exception {
+    final HazelcastResourceLockFactory reader = startMember(LEASE_MILLIS);
+    final HazelcastResourceLockFactory writer = startMember(LEASE_MILLIS);
+
+    // leave an idle lease on reader
+    lockShared(reader, "revoked").get(10, TimeUnit.SECONDS);
+
+    final CountDownLatch locked = new CountDownLatch(1);
+    final CountDownLatch unlock = new CountDownLatch(1);
+    final Future<Void> exclusive = executor.submit(new Callable<Void>()
+    {
+      @Override
+      public Void call() throws Exception {
+        final ResourceLock lock = writer.getResourceLock("revoked");
+        lock.lockExclusive(Thread.currentThread());
+        locked.countDown();
+        unlock.await();
+        lock.unlockExclusive(Thread.currentThread());
+        return null;
+      }
+    });
+    // well before the idle lease would expire
+    assertThat(locked.await(LEASE_MILLIS / 2, TimeUnit.MILLISECONDS), is(true));
+
+    // readers wait for the writer
+    final Future<Void> shared = lockShared(reader, "revoked");
+    Thread.sleep(200);
+    assertThat(shared.isDone(), is(false));
+
+    unlock.countDown();
+    exclusive.get(10, TimeUnit.SECONDS);
+    shared.get(10, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void exclusiveLocksAreMutuallyExclusiveAcrossMembers() throws Exception {
+    final HazelcastResourceLockFactory first = startMember(LEASE_MILLIS);
+    final HazelcastResourceLockFactory second = startMember(LEASE_MILLIS);
+
+    final AtomicInteger writers = new AtomicInteger();
+    final AtomicInteger readers = new AtomicInteger();
+    final AtomicBoolean violated = new AtomicBoolean();
+    final List<Future<?>> futures = Lists.newArrayList();
+    for (final HazelcastResourceLockFactory member : new HazelcastResourceLockFactory[]{first, second}) {
+      for (int t = 0; t < 4; t++) {
+        futures.add(executor.submit(new Runnable()
+        {
+          @Override
+          public void run() {
+            final ResourceLock lock = member.getResourceLock("mutex");
+            final Thread self = Thread.currentThread();
+            final Random random = new Random();
+            for (int i = 0; i < 200; i++) {
+              if (random.nextInt(10) == 0) {
+                lock.lockExclusive(self);
+                if (writers.incrementAndGet() != 1 || readers.get() != 0) {
+                  violated.set(true);
+                }
+                writers.decrementAndGet();
+                lock.unlockExclusive(self);
+              }
+              else {
+                lock.lockShared(self);
+                readers.incrementAndGet();
+                if (writers.get() != 0) {
+                  violated.set(true);
+                }
+                readers.decrementAndGet();
+                lock.unlockShared(self);
+              }
+            }
+          }
+        }));
+      }
+    }
+    for (Future<?> future : futures) {
+      future.get(2, TimeUnit.MINUTES);
+    }
+    assertThat(violated.get(), is(false));
+  }
+
+  @Test
+  public void interruptedExclusiveLockKeepsWaitingWithoutSpinning() throws Exception {
+    final HazelcastResourceLockFactory reader = startMember(LEASE_MILLIS);
+    final HazelcastResourceLockFactory writer = startMember(LEASE_MILLIS);
+
+    // reader keeps using its lease, so revocation cannot take it away
+    final CountDownLatch shared = new CountDownLatch(1);
+    final CountDownLatch unlockShared = new CountDownLatch(1);
+    final Future<Void> sharedHolder = executor.submit(new Callable<Void>()
+    {
+      @Override
+      public Void call() throws Exception {
+        final ResourceLock lock = reader.getResourceLock("interrupted");
+        lock.lockShared(Thread.currentThread());
+        shared.countDown();
+        unlockShared.await();
+        lock.unlockShared(Thread.currentThread());
+        return null;
+      }
+    });
+    assertThat(shared.await(10, TimeUnit.SECONDS), is(true));
+
+    final AtomicBoolean interruptKept = new AtomicBoolean();
+    final Thread exclusive = new Thread()
+    {
+      @Override
+      public void run() {
+        final ResourceLock lock = writer.getResourceLock("interrupted");
+        lock.lockExclusive(this);
+        interruptKept.set(isInterrupted());
+        lock.unlockExclusive(this);
+      }
+    };
+    exclusive.start();
+    Thread.sleep(200);
+    exclusive.interrupt();
+
+    final long before = writer.getRemoteCalls();
+    Thread.sleep(500);
+    // revocation is retried every half hold off period (50 ms here), not on every pass of a spinning loop
+    assertThat(writer.getRemoteCalls() - before, lessThan(100L));
+    assertThat(exclusive.isAlive(), is(true));
+
+    unlockShared.countDown();
+    sharedHolder.get(10, TimeUnit.SECONDS);
+    exclusive.join(10000L);
+    assertThat(exclusive.isAlive(), is(false));
+    assertThat(interruptKept.get(), is(true));
+  }
+
+  /**
+   * Compares cluster round trips per lock request of a read-heavy workload, with and without read leases.
+   */
+  @Test
+  public void roundTripsBenchmark() throws Exception {
+    final double leased = runWorkload("leased", startMember(LEASE_MILLIS), startMember(LEASE_MILLIS));
+    final double unleased = runWorkload("unleased", startMember(0), startMember(0));
+    log.info("Round trips per request: {} leased, {} unleased", leased, unleased);
+    assertThat(unleased, lessThanOrEqualTo(4.0));
+    assertThat(leased, lessThan(unleased / 2));
+  }
+
+  private double runWorkload(final String prefix, final HazelcastResourceLockFactory... workers) throws Exception {
+    final int threads = 4;
+    final int requests = 2000;
+    final int keys = 50;
+
+    long callsBefore = 0;
+    for (HazelcastResourceLockFactory worker : workers) {
+      callsBefore += worker.getRemoteCalls();
+    }
+
+    final long start = System.nanoTime();
+    final List<Future<?>> futures = Lists.newArrayList();
+    for (final HazelcastResourceLockFactory worker : workers) {
+      for (int t = 0; t < threads; t++) {
+        futures.add(executor.submit(new Runnable()
+        {
+          @Override
+          public void run() {
+            final Thread self = Thread.currentThread();
+            final Random random = new Random();
+            for (int i = 0; i < requests; i++) {
+              final ResourceLock lock = worker.getResourceLock(prefix + random.nextInt(keys));
+              // one deploy per hundred reads
+              if (random.nextInt(100) == 0) {
+                lock.lockExclusive(self);
+                lock.unlockExclusive(self);
+              }
+              else {
+                lock.lockShared(self);
+                lock.unlockShared(self);
+              }
+            }
+          }
+        }));
+      }
+    }
+    for (Future<?> future : futures) {
+      future.get(5, TimeUnit.MINUTES);
+    }
+    final long elapsed = System.nanoTime() - start;
+
+    long calls = -callsBefore;
+    for (HazelcastResourceLockFactory worker : workers) {
+      calls += worker.getRemoteCalls();
+    }
+    final int total = workers.length * threads * requests;
+    log.info("{}: {} requests, {} round trips, {} us/request", prefix, total, calls,
+        TimeUnit.NANOSECONDS.toMicros(elapsed) / total);
+    return (double) calls / total;
+  }
+
+  private Future<Void> lockShared(final HazelcastResourceLockFactory member, final String name) {
+    return executor.submit(new Callable<Void>()
+    {
+      @Override
+      public Void call() throws Exception {
+        final ResourceLock lock = member.getResourceLock(name);
+        lock.lockShared(Thread.currentThread());
+        lock.unlockShared(Thread.currentThread());
+        return null;
+      }
+    });
+  }
+}
@@ -183,7 +183,7 @@ public class DefaultScheduler
   }
 
   protected void taskRescheduled(ScheduledTask<?> task) {
-    taskConfig.addTask(task);
+    taskConfig.updateTaskRunState(task);
   }
 
   protected String generateId() {
@@ -27,6 +27,14 @@ public interface TaskConfigManager
    */
   <T> void removeTask(ScheduledTask<T> task);
 
+  /**
+   * Stores the run state (last run, next run and status) of an existing scheduled task, invoked as task executes and
+   * is rescheduled. Unlike {@link #addTask(ScheduledTask)}, task definition is not modified.
+   *
+   * @since 3.0
+   */
+  <T> void updateTaskRunState(ScheduledTask<T> task);
+
   /**
    * Create and start all tasks, usually done once upon starting system (to start tasks that should be recurring)
    */
@@ -38,6 +38,10 @@ public class SimpleTaskConfigManager
     tasks.remove(task.getId());
   }
 
+  public <T> void updateTaskRunState(ScheduledTask<T> task) {
+    // nothing here, it is not persistent
+  }
+
   public SchedulerTask<?> createTaskInstance(String taskType)
       throws IllegalArgumentException
   {
@@ -0,0 +1,248 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.security.authentication;
+
+import java.lang.management.ManagementFactory;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.sonatype.security.events.SecurityConfigurationChanged;
+import org.sonatype.security.events.UserPrincipalsExpired;
+import org.sonatype.sisu.goodies.eventbus.EventBus;
+
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.eventbus.AllowConcurrentEvents;
+import com.google.common.eventbus.Subscribe;
+import org.apache.shiro.authc.AuthenticationInfo;
+import org.apache.shiro.authc.AuthenticationToken;
+import org.apache.shiro.authc.UsernamePasswordToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Cache of successful username/password verifications, to not hash passwords or bind to LDAP on every request of
+ * clients sending Basic credentials with each request (like Maven or Gradle). Entries are keyed by username and a
+ * salted SHA-256 hash of the supplied password (salt is random and lives in memory only), so the cache never holds
+ * plain passwords. Entries expire after a TTL, and are evicted when user principals expire (password change, user
+ * disabled or removed) or security configuration changes.
+ * <p>
+ * Note: passwords changed outside of Nexus (ie. on LDAP server) remain valid until the TTL expires.
+ *
+ * @since 3.0
+ */
+@Named
+@Singleton
+public class CredentialVerificationCache
+{
+  private static final Logger logger = LoggerFactory.getLogger(CredentialVerificationCache.class);
+
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  private final boolean enabled;
+
+  private final byte[] salt;
+
+  private final Cache<CredentialKey, AuthenticationInfo> cache;
+
+  /**
+   * Bumped on every invalidation, to not cache verifications that started before it.
+   */
+  private final AtomicLong generation = new AtomicLong();
+
+  @Inject
+  public CredentialVerificationCache(final EventBus eventBus,
+                                     final @Named("${security.credentialCache.enabled:-true}") boolean enabled,
+                                     final @Named("${security.credentialCache.maxSize:-10000}") int maxSize,
+                                     final @Named("${security.credentialCache.ttlSeconds:-300}") long ttlSeconds)
+  {
+    this.enabled = enabled;
+    this.salt = new byte[32];
+    new SecureRandom().nextBytes(salt);
+    this.cache = CacheBuilder.newBuilder()
+        .maximumSize(maxSize)
+        .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+        .recordStats()
+        .build();
+    eventBus.register(this);
+    registerMBean();
+    logger.info("Credential verification cache enabled: {} (max size {}, TTL {}s)", enabled, maxSize, ttlSeconds);
+  }
+
+  /**
+   * Returns the cached authentication info for given token, if the same credentials were successfully verified
+   * recently, otherwise {@code null}.
+   */
+  public AuthenticationInfo get(final AuthenticationToken token) {
+    final CredentialKey key = keyOf(token);
+    if (key == null) {
+      return null;
+    }
+    return cache.getIfPresent(key);
+  }
+
+  /**
+   * Returns the current generation of cache, to be passed to {@link #put(AuthenticationToken, AuthenticationInfo,
+   * long)} when verification is done.
+   */
+  public long getGeneration() {
+    return generation.get();
+  }
+
+  /**
+   * Records successful verification of credentials carried by token, unless cache was invalidated since the
+   * verification started.
+   */
+  public void put(final AuthenticationToken token, final AuthenticationInfo info, final long startGeneration) {
+    final CredentialKey key = keyOf(token);
+    if (key != null) {
+      cache.put(key, checkNotNull(info));
+      if (generation.get() != startGeneration) {
+        // raced with invalidation, the verification might be stale
+        cache.invalidate(key);
+      }
+    }
+  }
+
+  /**
+   * Evicts all entries of given user.
+   */
+  public void invalidate(final String username) {
+    generation.incrementAndGet();
+    final Iterator<CredentialKey> keys = cache.asMap().keySet().iterator();
+    while (keys.hasNext()) {
+      if (keys.next().username.equals(username)) {
+        keys.remove();
+      }
+    }
+  }
+
+  /**
+   * Evicts all entries.
+   */
+  public void invalidateAll() {
+    generation.incrementAndGet();
+    cache.invalidateAll();
+  }
+
+  public CacheStats getStats() {
+    return cache.stats();
+  }
+
+  public long getSize() {
+    return cache.size();
+  }
+
+  // ==
+
+  @Subscribe
+  @AllowConcurrentEvents
+  public void on(final UserPrincipalsExpired evt) {
+    if (evt.getUserId() == null) {
+      invalidateAll();
+    }
+    else {
+      invalidate(evt.getUserId());
+    }
+  }
+
+  @Subscribe
+  @AllowConcurrentEvents
+  public void on(final SecurityConfigurationChanged evt) {
+    invalidateAll();
+  }
+
+  // ==
+
+  private CredentialKey keyOf(final AuthenticationToken token) {
+    if (!enabled || !(token instanceof UsernamePasswordToken)) {
+      return null;
+    }
+    final UsernamePasswordToken upToken = (UsernamePasswordToken) token;
+    if (upToken.getUsername() == null || upToken.getPassword() == null) {
+      return null;
+    }
+    try {
+      final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      digest.update(salt);
+      digest.update(UTF8.encode(CharBuffer.wrap(upToken.getPassword())));
+      return new CredentialKey(upToken.getUsername(), digest.digest());
+    }
+    catch (NoSuchAlgorithmException e) {
+      throw Throwables.propagate(e);
+    }
+  }
+
+  private void registerMBean() {
+    try {
+      final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      final ObjectName name = ObjectName.getInstance("org.sonatype.security:type=CredentialVerificationCache");
+      if (server.isRegistered(name)) {
+        server.unregisterMBean(name);
+      }
+      server.registerMBean(new CredentialVerificationCacheMBeanImpl(this), name);
+    }
+    catch (Exception e) {
+      logger.warn("Could not register credential verification cache MBean", e);
+    }
+  }
+
+  private static class CredentialKey
+  {
+    private final String username;
+
+    private final byte[] credentialHash;
+
+    private final int hashCode;
+
+    private CredentialKey(final String username, final byte[] credentialHash) {
+      this.username = username;
+      this.credentialHash = credentialHash;
+      this.hashCode = 31 * username.hashCode() + Arrays.hashCode(credentialHash);
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof CredentialKey)) {
+        return false;
+      }
+      final CredentialKey that = (CredentialKey) o;
+      return username.equals(that.username) && MessageDigest.isEqual(credentialHash, that.credentialHash);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+}
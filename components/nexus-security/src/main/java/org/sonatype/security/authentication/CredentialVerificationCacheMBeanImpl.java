@@ -0,0 +1,65 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.security.authentication;
+
+import javax.management.NotCompliantMBeanException;
+import javax.management.StandardMBean;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Default {@link CredentialVerificationCacheMBean} implementation.
+ *
+ * @since 3.0
+ */
+class CredentialVerificationCacheMBeanImpl
+    extends StandardMBean
+    implements CredentialVerificationCacheMBean
+{
+  private final CredentialVerificationCache cache;
+
+  CredentialVerificationCacheMBeanImpl(final CredentialVerificationCache cache) throws NotCompliantMBeanException {
+    super(CredentialVerificationCacheMBean.class);
+    this.cache = checkNotNull(cache);
+  }
+
+  @Override
+  public long getSize() {
+    return cache.getSize();
+  }
+
+  @Override
+  public long getHitCount() {
+    return cache.getStats().hitCount();
+  }
+
+  @Override
+  public long getMissCount() {
+    return cache.getStats().missCount();
+  }
+
+  @Override
+  public double getHitRate() {
+    return cache.getStats().hitRate();
+  }
+
+  @Override
+  public long getEvictionCount() {
+    return cache.getStats().evictionCount();
+  }
+
+  @Override
+  public void invalidateAll() {
+    cache.invalidateAll();
+  }
+}
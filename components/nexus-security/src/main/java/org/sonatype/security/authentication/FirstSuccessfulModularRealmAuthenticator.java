@@ -14,6 +14,10 @@ package org.sonatype.security.authentication;
 
 import java.util.Collection;
 
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+
+import org.apache.shiro.authc.AuthenticationException;
 import org.apache.shiro.authc.AuthenticationInfo;
 import org.apache.shiro.authc.AuthenticationToken;
 import org.apache.shiro.authc.pam.ModularRealmAuthenticator;
@@ -28,6 +32,9 @@ import org.slf4j.LoggerFactory;
  * This makes for the performance short comings when using the {@link ModularRealmAuthenticator} and
  * {@link FirstSuccessfulAuthenticationStrategy} where all the realms will be queried, but only the first success is
  * returned.
+ * <p>
+ * Successful username/password verifications are remembered in {@link CredentialVerificationCache} (if present), so
+ * clients sending same credentials with every request do not hit the realms every time.
  *
  * @author Brian Demers
  * @see ModularRealmAuthenticator
@@ -38,6 +45,37 @@ public class FirstSuccessfulModularRealmAuthenticator
 {
   private static final Logger logger = LoggerFactory.getLogger(FirstSuccessfulModularRealmAuthenticator.class);
 
+  private CredentialVerificationCache credentialVerificationCache;
+
+  /**
+   * @since 3.0
+   */
+  @Inject
+  public void setCredentialVerificationCache(final @Nullable CredentialVerificationCache credentialVerificationCache) {
+    this.credentialVerificationCache = credentialVerificationCache;
+  }
+
+  @Override
+  protected AuthenticationInfo doAuthenticate(final AuthenticationToken token)
+      throws AuthenticationException
+  {
+    final CredentialVerificationCache cache = credentialVerificationCache;
+    if (cache == null) {
+      return super.doAuthenticate(token);
+    }
+    AuthenticationInfo info = cache.get(token);
+    if (info != null) {
+      logger.trace("Credentials of token [{}] verified by cache", token);
+      return info;
+    }
+    final long generation = cache.getGeneration();
+    info = super.doAuthenticate(token);
+    if (info != null) {
+      cache.put(token, info, generation);
+    }
+    return info;
+  }
+
   @Override
   protected AuthenticationInfo doMultiRealmAuthentication(Collection<Realm> realms, AuthenticationToken token) {
     logger.trace("Iterating through [" + realms.size() + "] realms for PAM authentication");
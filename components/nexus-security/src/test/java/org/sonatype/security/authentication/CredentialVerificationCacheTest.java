@@ -0,0 +1,94 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.security.authentication;
+
+import org.sonatype.security.events.SecurityConfigurationChanged;
+import org.sonatype.security.events.UserPrincipalsExpired;
+import org.sonatype.sisu.goodies.eventbus.EventBus;
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+import org.apache.shiro.authc.AuthenticationInfo;
+import org.apache.shiro.authc.SimpleAuthenticationInfo;
+import org.apache.shiro.authc.UsernamePasswordToken;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Tests for {@link CredentialVerificationCache}.
+ */
+public class CredentialVerificationCacheTest
+    extends TestSupport
+{
+  private CredentialVerificationCache underTest;
+
+  private AuthenticationInfo info;
+
+  @Before
+  public void setUp() {
+    underTest = new CredentialVerificationCache(mock(EventBus.class), true, 100, 300);
+    info = new SimpleAuthenticationInfo("alice", "secret".toCharArray(), "realm");
+  }
+
+  private void put(final String username, final String password) {
+    underTest.put(new UsernamePasswordToken(username, password), info, underTest.getGeneration());
+  }
+
+  @Test
+  public void hitOnlyWithSameCredentials() {
+    put("alice", "secret");
+    assertThat(underTest.get(new UsernamePasswordToken("alice", "secret")), sameInstance(info));
+    assertThat(underTest.get(new UsernamePasswordToken("alice", "wrong")), nullValue());
+    assertThat(underTest.get(new UsernamePasswordToken("bob", "secret")), nullValue());
+    assertThat(underTest.getStats().hitCount(), is(1L));
+    assertThat(underTest.getStats().missCount(), is(2L));
+  }
+
+  @Test
+  public void userPrincipalsExpiredInvalidatesUser() {
+    put("alice", "secret");
+    put("bob", "secret");
+    underTest.on(new UserPrincipalsExpired("alice", "default"));
+    assertThat(underTest.get(new UsernamePasswordToken("alice", "secret")), nullValue());
+    assertThat(underTest.get(new UsernamePasswordToken("bob", "secret")), sameInstance(info));
+    underTest.on(new UserPrincipalsExpired());
+    assertThat(underTest.getSize(), is(0L));
+  }
+
+  @Test
+  public void securityConfigurationChangedInvalidatesAll() {
+    put("alice", "secret");
+    underTest.on(new SecurityConfigurationChanged());
+    assertThat(underTest.get(new UsernamePasswordToken("alice", "secret")), nullValue());
+  }
+
+  @Test
+  public void verificationRacingWithInvalidationNotCached() {
+    final long generation = underTest.getGeneration();
+    underTest.invalidate("alice");
+    underTest.put(new UsernamePasswordToken("alice", "secret"), info, generation);
+    assertThat(underTest.get(new UsernamePasswordToken("alice", "secret")), nullValue());
+  }
+
+  @Test
+  public void disabledCacheNeverHits() {
+    underTest = new CredentialVerificationCache(mock(EventBus.class), false, 100, 300);
+    put("alice", "secret");
+    assertThat(underTest.get(new UsernamePasswordToken("alice", "secret")), nullValue());
+  }
+}
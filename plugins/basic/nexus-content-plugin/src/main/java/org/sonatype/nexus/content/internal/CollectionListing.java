@@ -0,0 +1,180 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.content.internal;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.sonatype.nexus.proxy.storage.local.fs.DirectoryEntry;
+
+import com.google.common.base.Strings;
+import com.google.common.primitives.Longs;
+
+/**
+ * Sorting, paging and format options of a collection listing, as requested by HTTP query parameters. Invalid
+ * parameter values are ignored, and defaults are used instead: entries sorted by name (collections first), no
+ * paging, and HTML format.
+ *
+ * @since 3.0
+ */
+public class CollectionListing
+{
+  /**
+   * HTTP query parameter selecting the sort field: "name", "lastModified" or "size".
+   */
+  static final String REQ_QP_SORT_PARAMETER = "sort";
+
+  /**
+   * HTTP query parameter selecting the sort order: "asc" or "desc".
+   */
+  static final String REQ_QP_ORDER_PARAMETER = "order";
+
+  /**
+   * HTTP query parameter selecting the index of first entry to render.
+   */
+  static final String REQ_QP_OFFSET_PARAMETER = "offset";
+
+  /**
+   * HTTP query parameter selecting the maximum count of entries to render.
+   */
+  static final String REQ_QP_LIMIT_PARAMETER = "limit";
+
+  /**
+   * HTTP query parameter selecting the listing format: "html" or "json".
+   */
+  static final String REQ_QP_FORMAT_PARAMETER = "format";
+
+  public enum SortField
+  {
+    name, lastModified, size
+  }
+
+  private final SortField sortField;
+
+  private final boolean descending;
+
+  private final int offset;
+
+  private final int limit;
+
+  private final boolean json;
+
+  public CollectionListing(final SortField sortField, final boolean descending, final int offset, final int limit,
+                           final boolean json)
+  {
+    this.sortField = sortField;
+    this.descending = descending;
+    this.offset = Math.max(0, offset);
+    this.limit = limit;
+    this.json = json;
+  }
+
+  public static CollectionListing fromRequest(final HttpServletRequest request) {
+    SortField sortField = SortField.name;
+    final String sort = request.getParameter(REQ_QP_SORT_PARAMETER);
+    if (sort != null) {
+      for (SortField field : SortField.values()) {
+        if (field.name().equalsIgnoreCase(sort)) {
+          sortField = field;
+        }
+      }
+    }
+    final boolean descending = "desc".equalsIgnoreCase(request.getParameter(REQ_QP_ORDER_PARAMETER));
+    final int offset = parseInt(request.getParameter(REQ_QP_OFFSET_PARAMETER), 0);
+    final int limit = parseInt(request.getParameter(REQ_QP_LIMIT_PARAMETER), -1);
+    final boolean json = "json".equalsIgnoreCase(request.getParameter(REQ_QP_FORMAT_PARAMETER));
+    return new CollectionListing(sortField, descending, offset, limit, json);
+  }
+
+  private static int parseInt(final String value, final int defaultValue) {
+    if (Strings.isNullOrEmpty(value)) {
+      return defaultValue;
+    }
+    try {
+      return Integer.parseInt(value);
+    }
+    catch (NumberFormatException e) {
+      return defaultValue;
+    }
+  }
+
+  public SortField getSortField() {
+    return sortField;
+  }
+
+  public boolean isDescending() {
+    return descending;
+  }
+
+  public int getOffset() {
+    return offset;
+  }
+
+  /**
+   * Returns maximum count of entries to render, or -1 if all entries starting from offset are to be rendered.
+   */
+  public int getLimit() {
+    return limit;
+  }
+
+  public boolean isPaged() {
+    return offset > 0 || limit > -1;
+  }
+
+  public boolean isJson() {
+    return json;
+  }
+
+  /**
+   * Sorts given entries in place. Collections always precede files.
+   */
+  public void sort(final List<DirectoryEntry> entries) {
+    Collections.sort(entries, new Comparator<DirectoryEntry>()
+    {
+      @Override
+      public int compare(final DirectoryEntry o1, final DirectoryEntry o2) {
+        if (o1.isCollection() != o2.isCollection()) {
+          // dirs always win
+          return o1.isCollection() ? -1 : 1;
+        }
+        int result;
+        switch (sortField) {
+          case lastModified:
+            result = Longs.compare(o1.getLastModified(), o2.getLastModified());
+            break;
+          case size:
+            result = Longs.compare(o1.getSize(), o2.getSize());
+            break;
+          default:
+            result = 0;
+        }
+        if (result == 0) {
+          result = o1.getName().compareTo(o2.getName());
+        }
+        return descending ? -result : result;
+      }
+    });
+  }
+
+  /**
+   * Returns the requested page of given (sorted) entries, as a view of given list.
+   */
+  public List<DirectoryEntry> page(final List<DirectoryEntry> entries) {
+    final int from = Math.min(offset, entries.size());
+    final int to = limit > -1 ? (int) Math.min((long) from + limit, entries.size()) : entries.size();
+    return entries.subList(from, to);
+  }
+}
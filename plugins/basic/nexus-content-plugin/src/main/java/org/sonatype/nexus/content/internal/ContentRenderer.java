@@ -13,7 +13,7 @@
 package org.sonatype.nexus.content.internal;
 
 import java.io.IOException;
-import java.util.Collection;
+import java.util.List;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -21,6 +21,7 @@ import javax.servlet.http.HttpServletResponse;
 import org.sonatype.nexus.proxy.ResourceStoreRequest;
 import org.sonatype.nexus.proxy.item.StorageCollectionItem;
 import org.sonatype.nexus.proxy.item.StorageItem;
+import org.sonatype.nexus.proxy.storage.local.fs.DirectoryEntry;
 
 /**
  * Rendering component, to render error and index pages.
@@ -29,10 +30,16 @@ import org.sonatype.nexus.proxy.item.StorageItem;
  */
 public interface ContentRenderer
 {
+  /**
+   * Renders the page of given collection entries selected by listing options, in format selected by options.
+   *
+   * @param entries all the entries of the collection, already sorted as requested by listing options.
+   */
   void renderCollection(final HttpServletRequest request,
                         final HttpServletResponse response,
                         final StorageCollectionItem coll,
-                        final Collection<StorageItem> children)
+                        final CollectionListing listing,
+                        final List<DirectoryEntry> entries)
       throws IOException;
 
   void renderRequestDescription(final HttpServletRequest request,
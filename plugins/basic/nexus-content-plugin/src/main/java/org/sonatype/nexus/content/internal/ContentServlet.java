@@ -16,10 +16,10 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.security.cert.X509Certificate;
 import java.util.Arrays;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -43,13 +43,20 @@ import org.sonatype.nexus.proxy.RequestContext;
 import org.sonatype.nexus.proxy.ResourceStoreRequest;
 import org.sonatype.nexus.proxy.access.AccessManager;
 import org.sonatype.nexus.proxy.item.ContentLocator;
+import org.sonatype.nexus.proxy.item.DigestedContentLocator;
 import org.sonatype.nexus.proxy.item.RepositoryItemUid;
 import org.sonatype.nexus.proxy.item.StorageCollectionItem;
 import org.sonatype.nexus.proxy.item.StorageFileItem;
 import org.sonatype.nexus.proxy.item.StorageItem;
 import org.sonatype.nexus.proxy.item.StorageLinkItem;
+import org.sonatype.nexus.proxy.item.uid.IsHiddenAttribute;
+import org.sonatype.nexus.proxy.maven.MavenHostedRepository;
+import org.sonatype.nexus.proxy.repository.Repository;
 import org.sonatype.nexus.proxy.router.RepositoryRouter;
 import org.sonatype.nexus.proxy.storage.UnsupportedStorageOperationException;
+import org.sonatype.nexus.proxy.storage.local.fs.DefaultFSLocalRepositoryStorage;
+import org.sonatype.nexus.proxy.storage.local.fs.DirectoryEntry;
+import org.sonatype.nexus.util.PathUtils;
 import org.sonatype.nexus.util.SystemPropertiesHelper;
 import org.sonatype.nexus.web.BaseUrlHolder;
 import org.sonatype.nexus.web.Constants;
@@ -63,6 +70,7 @@ import com.google.common.base.Stopwatch;
 import com.google.common.base.Strings;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Range;
+import com.google.common.collect.Sets;
 import org.apache.shiro.SecurityUtils;
 import org.apache.shiro.subject.Subject;
 import org.slf4j.Logger;
@@ -475,17 +483,23 @@ public class ContentServlet
   {
     // ETag, in "shaved" form of {SHA1{e5c244520e897865709c730433f8b0c44ef271f1}} (without quotes)
     // or null if file does not have SHA1 (like Virtual) or generated items (as their SHA1 would correspond to template,
-    // not to actual generated content).
+    // not to actual generated content), unless generator provided digest of the generated content.
     final String etag;
     if (!file.isContentGenerated() && !file.isVirtual()
         && file.getRepositoryItemAttributes().containsKey(StorageFileItem.DIGEST_SHA1_KEY)) {
       etag = "{SHA1{" + file.getRepositoryItemAttributes().get(StorageFileItem.DIGEST_SHA1_KEY) + "}}";
-      // tag header ETag: "{SHA1{e5c244520e897865709c730433f8b0c44ef271f1}}", quotes are must by RFC
-      response.setHeader("ETag", "\"" + etag + "\"");
+    }
+    else if (file.isContentGenerated() && file.getContentLocator() instanceof DigestedContentLocator
+        && ((DigestedContentLocator) file.getContentLocator()).getSha1() != null) {
+      etag = "{SHA1{" + ((DigestedContentLocator) file.getContentLocator()).getSha1() + "}}";
     }
     else {
       etag = null;
     }
+    if (etag != null) {
+      // tag header ETag: "{SHA1{e5c244520e897865709c730433f8b0c44ef271f1}}", quotes are must by RFC
+      response.setHeader("ETag", "\"" + etag + "\"");
+    }
 
     response.setHeader("Content-Type", file.getMimeType());
     response.setDateHeader("Last-Modified", file.getModified());
@@ -505,7 +519,7 @@ public class ContentServlet
       // this is a conditional GET using time-stamp
       response.setStatus(SC_NOT_MODIFIED);
     }
-    else if (!file.isContentGenerated() && file.getResourceStoreRequest().getIfNoneMatch() != null && etag != null
+    else if (etag != null && file.getResourceStoreRequest().getIfNoneMatch() != null
         && file.getResourceStoreRequest().getIfNoneMatch().equals(etag)) {
       // this is a conditional GET using ETag
       response.setStatus(SC_NOT_MODIFIED);
@@ -573,10 +587,49 @@ public class ContentServlet
     }
     // send no cache headers, as any of these responses should not be cached, ever
     webUtils.addNoCacheResponseHeaders(response);
-    // perform fairly expensive operation of fetching children from Nx
-    final Collection<StorageItem> children = coll.list();
+    final CollectionListing listing = CollectionListing.fromRequest(request);
+    final List<DirectoryEntry> entries = listCollection(coll);
+    listing.sort(entries);
     // render the page
-    contentRenderer.renderCollection(request, response, coll, children);
+    contentRenderer.renderCollection(request, response, coll, listing, entries);
+  }
+
+  /**
+   * Lists the visible children of collection. Hosted Maven repositories on file system are listed using file system
+   * attributes only, otherwise the fairly expensive operation of fetching children items from Nx is performed.
+   */
+  protected List<DirectoryEntry> listCollection(final StorageCollectionItem coll)
+      throws Exception
+  {
+    final List<DirectoryEntry> entries = Lists.newArrayList();
+    final Repository repository = coll.getRepositoryItemUid().getRepository();
+    if (!coll.isVirtual()
+        && repository.getRepositoryKind().isFacetAvailable(MavenHostedRepository.class)
+        && repository.getLocalStorage() instanceof DefaultFSLocalRepositoryStorage
+        && repository.getLocalStatus().shouldServiceRequest()) {
+      final String collPath = coll.getRepositoryItemUid().getPath();
+      final List<DirectoryEntry> children = ((DefaultFSLocalRepositoryStorage) repository.getLocalStorage())
+          .listDirectoryEntries(repository, new ResourceStoreRequest(coll));
+      for (DirectoryEntry child : children) {
+        final RepositoryItemUid childUid = repository.createUid(PathUtils.concatPaths(collPath, child.getName()));
+        if (!childUid.getBooleanAttributeValue(IsHiddenAttribute.class)) {
+          entries.add(child);
+        }
+      }
+    }
+    else {
+      final Set<String> uniqueNames = Sets.newHashSet();
+      for (StorageItem child : coll.list()) {
+        if (child.isVirtual() || !child.getRepositoryItemUid().getBooleanAttributeValue(IsHiddenAttribute.class)) {
+          if (uniqueNames.add(child.getName())) {
+            final boolean isCollection = child instanceof StorageCollectionItem;
+            entries.add(new DirectoryEntry(child.getName(), isCollection, child.getModified(),
+                child instanceof StorageFileItem ? ((StorageFileItem) child).getLength() : -1));
+          }
+        }
+      }
+    }
+    return entries;
   }
 
   /**
@@ -13,14 +13,10 @@
 package org.sonatype.nexus.content.internal;
 
 import java.io.IOException;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Set;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -38,18 +34,20 @@ import org.sonatype.nexus.proxy.attributes.Attributes;
 import org.sonatype.nexus.proxy.attributes.internal.DefaultAttributes;
 import org.sonatype.nexus.proxy.item.StorageCollectionItem;
 import org.sonatype.nexus.proxy.item.StorageCompositeItem;
-import org.sonatype.nexus.proxy.item.StorageFileItem;
 import org.sonatype.nexus.proxy.item.StorageItem;
-import org.sonatype.nexus.proxy.item.uid.IsHiddenAttribute;
 import org.sonatype.nexus.proxy.repository.GroupItemNotFoundException;
 import org.sonatype.nexus.proxy.repository.Repository;
+import org.sonatype.nexus.proxy.storage.local.fs.DirectoryEntry;
 import org.sonatype.nexus.web.BaseUrlHolder;
 import org.sonatype.nexus.web.TemplateRenderer;
 import org.sonatype.sisu.goodies.common.ComponentSupport;
 
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.google.common.base.Function;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
-import com.google.common.collect.Sets;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
@@ -67,6 +65,8 @@ public class VelocityContentRenderer
 
   private final String applicationVersion;
 
+  private final JsonFactory jsonFactory = new JsonFactory();
+
   @Inject
   public VelocityContentRenderer(final TemplateRenderer templateRenderer,
                                  final ApplicationStatusSource applicationStatusSource)
@@ -79,37 +79,89 @@ public class VelocityContentRenderer
   public void renderCollection(final HttpServletRequest request,
                                final HttpServletResponse response,
                                final StorageCollectionItem coll,
-                               final Collection<StorageItem> children)
+                               final CollectionListing listing,
+                               final List<DirectoryEntry> entries)
       throws IOException
   {
-    final Set<String> uniqueNames = Sets.newHashSetWithExpectedSize(children.size());
-    final List<CollectionEntry> entries = Lists.newArrayListWithCapacity(children.size());
-    
     // use request URL (it does not contain any parameters) as the base URL of collection entries
     final String collUrl = BaseUrlHolder.get() + request.getServletPath() + request.getPathInfo();
-    for (StorageItem child : children) {
-      if (child.isVirtual() || !child.getRepositoryItemUid().getBooleanAttributeValue(IsHiddenAttribute.class)) {
-        if (!uniqueNames.contains(child.getName())) {
-          final boolean isCollection = child instanceof StorageCollectionItem;
-          final String name = isCollection ? child.getName() + "/" : child.getName();
-          final CollectionEntry entry = new CollectionEntry(name, isCollection, collUrl + name,
-              new Date(child.getModified()), StorageFileItem.class.isAssignableFrom(child
-              .getClass()) ? ((StorageFileItem) child).getLength() : -1, "");
-          entries.add(entry);
-          uniqueNames.add(child.getName());
-        }
-      }
-    }
+    final List<DirectoryEntry> page = listing.page(entries);
 
-    Collections.sort(entries, new CollectionEntryComparator());
+    if (listing.isJson()) {
+      renderCollectionJson(response, coll, collUrl, listing, entries.size(), page);
+      return;
+    }
 
     final Map<String, Object> dataModel = createBaseModel();
     dataModel.put("requestPath", coll.getPath());
-    dataModel.put("listItems", entries);
+    // lazy view, entries are converted while template is rendered
+    dataModel.put("listItems", Lists.transform(page, new Function<DirectoryEntry, CollectionEntry>()
+    {
+      @Override
+      public CollectionEntry apply(final DirectoryEntry entry) {
+        final String name = entry.isCollection() ? entry.getName() + "/" : entry.getName();
+        return new CollectionEntry(name, entry.isCollection(), collUrl + name, new Date(entry.getLastModified()),
+            entry.getSize(), "");
+      }
+    }));
+    if (listing.isPaged()) {
+      dataModel.put("totalCount", entries.size());
+      if (listing.getOffset() > 0) {
+        final int previousOffset = listing.getLimit() > -1 ? Math.max(0, listing.getOffset() - listing.getLimit()) : 0;
+        dataModel.put("previousPageUri", pageUrl(collUrl, listing, previousOffset));
+      }
+      if (listing.getLimit() > -1 && (long) listing.getOffset() + listing.getLimit() < entries.size()) {
+        dataModel.put("nextPageUri", pageUrl(collUrl, listing, listing.getOffset() + listing.getLimit()));
+      }
+    }
     templateRenderer.render(templateRenderer.template("/org/sonatype/nexus/content/internal/repositoryContentHtml.vm",
         getClass().getClassLoader()), dataModel, response);
   }
 
+  private void renderCollectionJson(final HttpServletResponse response,
+                                    final StorageCollectionItem coll,
+                                    final String collUrl,
+                                    final CollectionListing listing,
+                                    final int totalCount,
+                                    final List<DirectoryEntry> page)
+      throws IOException
+  {
+    response.setContentType("application/json");
+    response.setCharacterEncoding("UTF-8");
+    try (JsonGenerator generator = jsonFactory.createGenerator(response.getOutputStream(), JsonEncoding.UTF8)) {
+      generator.writeStartObject();
+      generator.writeStringField("path", coll.getPath());
+      generator.writeNumberField("totalCount", totalCount);
+      generator.writeNumberField("offset", listing.getOffset());
+      generator.writeArrayFieldStart("data");
+      for (DirectoryEntry entry : page) {
+        final String name = entry.isCollection() ? entry.getName() + "/" : entry.getName();
+        generator.writeStartObject();
+        generator.writeStringField("name", name);
+        generator.writeBooleanField("collection", entry.isCollection());
+        generator.writeStringField("resourceUri", collUrl + name);
+        generator.writeNumberField("lastModified", entry.getLastModified());
+        generator.writeNumberField("size", entry.getSize());
+        generator.writeEndObject();
+      }
+      generator.writeEndArray();
+      generator.writeEndObject();
+    }
+    response.flushBuffer();
+  }
+
+  private String pageUrl(final String collUrl, final CollectionListing listing, final int offset) {
+    final StringBuilder url = new StringBuilder(collUrl);
+    url.append('?').append(CollectionListing.REQ_QP_SORT_PARAMETER).append('=').append(listing.getSortField());
+    url.append('&').append(CollectionListing.REQ_QP_ORDER_PARAMETER).append('=')
+        .append(listing.isDescending() ? "desc" : "asc");
+    url.append('&').append(CollectionListing.REQ_QP_OFFSET_PARAMETER).append('=').append(offset);
+    if (listing.getLimit() > -1) {
+      url.append('&').append(CollectionListing.REQ_QP_LIMIT_PARAMETER).append('=').append(listing.getLimit());
+    }
+    return url.toString();
+  }
+
   @Override
   public void renderRequestDescription(final HttpServletRequest request,
                                        final HttpServletResponse response,
@@ -233,32 +285,6 @@ public class VelocityContentRenderer
 
   // =
 
-  private static class CollectionEntryComparator
-      implements Comparator<CollectionEntry>
-  {
-    @Override
-    public int compare(final CollectionEntry o1, final CollectionEntry o2) {
-      if (o1.isCollection()) {
-        if (o2.isCollection()) {
-          // 2 directories, do a path compare
-          return o1.getName().compareTo(o2.getName());
-        }
-        else {
-          // first item is a dir, second is a file, dirs always win
-          return -1;
-        }
-      }
-      else if (o2.isCollection()) {
-        // first item is a file, second is a dir, dirs always win
-        return 1;
-      }
-      else {
-        // 2 files, do a path compare
-        return o1.getName().compareTo(o2.getName());
-      }
-    }
-  }
-
   /**
    * Entry exposed to template for rendering.
    */
@@ -0,0 +1,431 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.unpack.internal;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor.CallerRunsPolicy;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.sonatype.nexus.proxy.RequestContext;
+import org.sonatype.nexus.proxy.ResourceStoreRequest;
+import org.sonatype.nexus.proxy.events.RepositoryItemBatchEventImported;
+import org.sonatype.nexus.proxy.maven.MavenHostedRepository;
+import org.sonatype.nexus.proxy.maven.gav.Gav;
+import org.sonatype.nexus.proxy.repository.Repository;
+import org.sonatype.nexus.threads.NexusExecutorService;
+import org.sonatype.nexus.threads.NexusThreadFactory;
+import org.sonatype.sisu.goodies.common.ComponentSupport;
+import org.sonatype.sisu.goodies.eventbus.EventBus;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.base.Strings;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingInputStream;
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.ArchiveException;
+import org.apache.commons.compress.archivers.ArchiveInputStream;
+import org.apache.commons.compress.archivers.ArchiveStreamFactory;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.compressors.CompressorException;
+import org.apache.commons.compress.compressors.CompressorStreamFactory;
+import org.apache.commons.io.input.CloseShieldInputStream;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Imports large sets of files into repositories. Files are stored in parallel, with
+ * {@link RequestContext#CTX_BULK_IMPORT_FLAG} set, and once all of them are stored, Maven metadata of every affected
+ * GA is recreated once (in case of Maven hosted repositories), and a single {@link RepositoryItemBatchEventImported}
+ * is posted announcing the whole import (and letting subscribers like indexer process it as one batch).
+ *
+ * @since 3.0
+ */
+@Named
+@Singleton
+public class BulkImporter
+    extends ComponentSupport
+{
+  private final EventBus eventBus;
+
+  private final int threads;
+
+  private final int maxBufferedEntrySize;
+
+  /**
+   * Server side directory that imported directories must be within, or {@code null} if directory imports are
+   * disabled (the default).
+   */
+  private final File directoryRoot;
+
+  @Inject
+  public BulkImporter(final EventBus eventBus,
+                      final @Named("${nexus.bulkImport.threads:-4}") int threads,
+                      final @Named("${nexus.bulkImport.maxBufferedEntrySize:-1048576}") int maxBufferedEntrySize,
+                      final @Named("${nexus.bulkImport.directoryRoot:-}") String directoryRoot)
+  {
+    checkArgument(threads > 0, "Thread count must be positive");
+    this.eventBus = checkNotNull(eventBus);
+    this.threads = threads;
+    this.maxBufferedEntrySize = maxBufferedEntrySize;
+    this.directoryRoot = Strings.isNullOrEmpty(directoryRoot) ? null : new File(directoryRoot);
+  }
+
+  /**
+   * Imports the archive (ZIP or TAR, optionally compressed with GZIP or BZIP2) read from given stream below given path
+   * of the repository. Entries are stored as they are read, entries fitting into {@code maxBufferedEntrySize} are
+   * buffered and stored in parallel, bigger ones are stored by caller thread directly from the stream.
+   *
+   * @param parentContext the request context to be used as parent of contexts of all store requests, may be
+   *                      {@code null}.
+   */
+  public Result importArchive(final Repository repository, final String basePath,
+                              final @Nullable RequestContext parentContext, final InputStream stream)
+      throws Exception
+  {
+    final Import imp = new Import(repository, basePath, parentContext);
+    try {
+      final ArchiveInputStream archive = openArchive(stream);
+      ArchiveEntry entry;
+      while (imp.failure.get() == null && (entry = archive.getNextEntry()) != null) {
+        if (entry.isDirectory() || (entry instanceof TarArchiveEntry && !((TarArchiveEntry) entry).isFile())) {
+          continue;
+        }
+        final String path = imp.pathOf(entry.getName());
+        if (path == null) {
+          log.warn("Skipping archive entry {} not within {}:{}", entry.getName(), repository.getId(), basePath);
+          continue;
+        }
+        final byte[] head = ByteStreams.toByteArray(ByteStreams.limit(archive, maxBufferedEntrySize + 1));
+        if (head.length <= maxBufferedEntrySize) {
+          imp.storeAsync(path, new ByteArrayInputStream(head));
+        }
+        else {
+          // too big to buffer, store it from the stream, but do not let store close the archive stream
+          imp.store(path,
+              new SequenceInputStream(new ByteArrayInputStream(head), new CloseShieldInputStream(archive)));
+        }
+      }
+    }
+    catch (Exception e) {
+      imp.failure.compareAndSet(null, e);
+    }
+    return imp.finish();
+  }
+
+  /**
+   * Imports the content of given server side directory below given path of the repository. Files are stored in
+   * parallel while the directory tree is being walked.
+   *
+   * @param parentContext the request context to be used as parent of contexts of all store requests, may be
+   *                      {@code null}.
+   * @param directory     the directory to import, as resolved by {@link #resolveDirectory(String)}.
+   */
+  public Result importDirectory(final Repository repository, final String basePath,
+                                final @Nullable RequestContext parentContext, final File directory)
+      throws Exception
+  {
+    final Import imp = new Import(repository, basePath, parentContext);
+    final Path root = directory.toPath();
+    try {
+      Files.walkFileTree(root, new SimpleFileVisitor<Path>()
+      {
+        @Override
+        public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) throws IOException {
+          if (imp.failure.get() != null) {
+            return FileVisitResult.TERMINATE;
+          }
+          if (attrs.isRegularFile()) {
+            final String path = imp.pathOf(root.relativize(file).toString().replace(File.separatorChar, '/'));
+            imp.storeAsync(path, file.toFile());
+          }
+          return FileVisitResult.CONTINUE;
+        }
+      });
+    }
+    catch (Exception e) {
+      imp.failure.compareAndSet(null, e);
+    }
+    return imp.finish();
+  }
+
+  /**
+   * Resolves directory name against configured root, following links, and ensures result is within the root, so
+   * callers can not import arbitrary directories readable by Nexus.
+   *
+   * @param directoryName the directory to import, relative to the configured {@code nexus.bulkImport.directoryRoot}.
+   * @throws IllegalStateException    if directory imports are disabled.
+   * @throws IllegalArgumentException if directory does not exist or is not within the configured root.
+   */
+  public File resolveDirectory(final String directoryName) throws IOException {
+    checkState(directoryRoot != null, "Directory imports are disabled");
+    final File root = directoryRoot.getCanonicalFile();
+    final File directory = new File(root, directoryName).getCanonicalFile();
+    checkArgument(directory.toPath().startsWith(root.toPath()) && directory.isDirectory(),
+        "Not a directory within import root: %s", directoryName);
+    return directory;
+  }
+
+  private ArchiveInputStream openArchive(final InputStream stream) {
+    InputStream in = new BufferedInputStream(stream);
+    try {
+      in = new BufferedInputStream(new CompressorStreamFactory().createCompressorInputStream(in));
+    }
+    catch (CompressorException e) {
+      // not compressed, factory did reset the stream
+    }
+    try {
+      return new ArchiveStreamFactory().createArchiveInputStream(in);
+    }
+    catch (ArchiveException e) {
+      throw new IllegalArgumentException("Unsupported archive format, ZIP or TAR expected", e);
+    }
+  }
+
+  private ExecutorService newExecutor(final Repository repository) {
+    return NexusExecutorService.forCurrentSubject(
+        new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<Runnable>(threads * 2),
+            new NexusThreadFactory("bulkimport", "Bulk import " + repository.getId()),
+            new CallerRunsPolicy()));
+  }
+
+  private void awaitTermination(final ExecutorService executor) throws InterruptedException {
+    executor.shutdown();
+    while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+      log.debug("Waiting for bulk import tasks to finish");
+    }
+  }
+
+  /**
+   * State of one import.
+   */
+  private class Import
+  {
+    private final Repository repository;
+
+    private final MavenHostedRepository mavenRepository;
+
+    private final String basePath;
+
+    private final RequestContext parentContext;
+
+    private final Stopwatch stopwatch = new Stopwatch().start();
+
+    private final List<String> storedPaths = Collections.synchronizedList(Lists.<String>newArrayList());
+
+    private final Set<String> gaPaths = Sets.newConcurrentHashSet();
+
+    private final AtomicLong storedBytes = new AtomicLong();
+
+    private final AtomicReference<Exception> failure = new AtomicReference<>();
+
+    private final ExecutorService executor;
+
+    private Import(final Repository repository, final String basePath,
+                   final @Nullable RequestContext parentContext)
+    {
+      this.repository = checkNotNull(repository);
+      this.mavenRepository = repository.getRepositoryKind().isFacetAvailable(MavenHostedRepository.class)
+          ? repository.adaptToFacet(MavenHostedRepository.class)
+          : null;
+      this.basePath = basePath.endsWith("/") ? basePath.substring(0, basePath.length() - 1) : basePath;
+      this.parentContext = parentContext;
+      this.executor = newExecutor(repository);
+    }
+
+    /**
+     * Returns the repository path of given relative name, or {@code null} if name would escape the base path.
+     */
+    private String pathOf(final String name) {
+      final String relative = name.startsWith("/") ? name.substring(1) : name;
+      for (String segment : relative.split("/")) {
+        if ("..".equals(segment)) {
+          return null;
+        }
+      }
+      return basePath + "/" + relative;
+    }
+
+    private void storeAsync(final String path, final InputStream content) {
+      executor.execute(new Runnable()
+      {
+        @Override
+        public void run() {
+          if (failure.get() != null) {
+            return;
+          }
+          try {
+            store(path, content);
+          }
+          catch (Exception e) {
+            failure.compareAndSet(null, e);
+          }
+        }
+      });
+    }
+
+    private void storeAsync(final String path, final File file) {
+      executor.execute(new Runnable()
+      {
+        @Override
+        public void run() {
+          if (failure.get() != null) {
+            return;
+          }
+          try (InputStream content = new FileInputStream(file)) {
+            store(path, content);
+          }
+          catch (Exception e) {
+            failure.compareAndSet(null, e);
+          }
+        }
+      });
+    }
+
+    private void store(final String path, final InputStream content) throws Exception {
+      final ResourceStoreRequest request = new ResourceStoreRequest(path);
+      request.getRequestContext().setParentContext(parentContext);
+      request.getRequestContext().put(RequestContext.CTX_BULK_IMPORT_FLAG, Boolean.TRUE);
+      final CountingInputStream counting = new CountingInputStream(content);
+      repository.storeItem(request, counting, null);
+      storedPaths.add(path);
+      storedBytes.addAndGet(counting.getCount());
+      if (mavenRepository != null) {
+        final Gav gav = mavenRepository.getGavCalculator().pathToGav(path);
+        if (gav != null && !gav.isHash() && !gav.isSignature()) {
+          gaPaths.add("/" + gav.getGroupId().replace('.', '/') + "/" + gav.getArtifactId());
+        }
+      }
+    }
+
+    /**
+     * Waits for stores to finish, then recreates metadata of affected GAs and announces the import. This happens
+     * even if import failed, to leave repository consistent with content that made it in.
+     */
+    private Result finish() throws Exception {
+      awaitTermination(executor);
+      final long storeMillis = stopwatch.elapsed(TimeUnit.MILLISECONDS);
+
+      final ExecutorService metadataExecutor = newExecutor(repository);
+      try {
+        for (final String gaPath : gaPaths) {
+          metadataExecutor.execute(new Runnable()
+          {
+            @Override
+            public void run() {
+              try {
+                mavenRepository.recreateMavenMetadata(new ResourceStoreRequest(gaPath));
+              }
+              catch (Exception e) {
+                failure.compareAndSet(null, e);
+              }
+            }
+          });
+        }
+      }
+      finally {
+        awaitTermination(metadataExecutor);
+      }
+
+      if (!storedPaths.isEmpty()) {
+        eventBus.post(new RepositoryItemBatchEventImported(repository, storedPaths));
+      }
+
+      final Result result = new Result(storedPaths.size(), storedBytes.get(), gaPaths.size(),
+          stopwatch.elapsed(TimeUnit.MILLISECONDS));
+      log.info("Imported {} files ({} bytes, {} GAs) into {}:{} in {} ms (store {} ms, {} files/s)",
+          result.getFileCount(), result.getByteCount(), result.getGaCount(), repository.getId(), basePath,
+          result.getElapsedMillis(), storeMillis, result.getFileCount() * 1000L / Math.max(1, storeMillis));
+
+      if (failure.get() != null) {
+        throw failure.get();
+      }
+      return result;
+    }
+  }
+
+  /**
+   * Outcome of a finished import.
+   */
+  public static class Result
+  {
+    private final int fileCount;
+
+    private final long byteCount;
+
+    private final int gaCount;
+
+    private final long elapsedMillis;
+
+    public Result(final int fileCount, final long byteCount, final int gaCount, final long elapsedMillis) {
+      this.fileCount = fileCount;
+      this.byteCount = byteCount;
+      this.gaCount = gaCount;
+      this.elapsedMillis = elapsedMillis;
+    }
+
+    public int getFileCount() {
+      return fileCount;
+    }
+
+    public long getByteCount() {
+      return byteCount;
+    }
+
+    public int getGaCount() {
+      return gaCount;
+    }
+
+    public long getElapsedMillis() {
+      return elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+      return getClass().getSimpleName() + "{" +
+          "fileCount=" + fileCount +
+          ", byteCount=" + byteCount +
+          ", gaCount=" + gaCount +
+          ", elapsedMillis=" + elapsedMillis +
+          '}';
+    }
+  }
+}
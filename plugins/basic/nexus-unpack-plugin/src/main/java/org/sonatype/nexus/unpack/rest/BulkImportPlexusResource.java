@@ -0,0 +1,157 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.unpack.rest;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.List;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+
+import org.sonatype.nexus.proxy.NoSuchResourceStoreException;
+import org.sonatype.nexus.proxy.RequestContext;
+import org.sonatype.nexus.proxy.maven.MavenHostedRepository;
+import org.sonatype.nexus.proxy.repository.Repository;
+import org.sonatype.nexus.rest.AbstractResourceStoreContentPlexusResource;
+import org.sonatype.nexus.unpack.internal.BulkImporter;
+import org.sonatype.plexus.rest.resource.PathProtectionDescriptor;
+
+import org.apache.commons.fileupload.FileItem;
+import org.restlet.Context;
+import org.restlet.data.Request;
+import org.restlet.data.Response;
+import org.restlet.data.Status;
+import org.restlet.resource.ResourceException;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.sonatype.nexus.rest.repositories.AbstractRepositoryPlexusResource.REPOSITORY_ID_KEY;
+
+/**
+ * A REST Resource importing large sets of files into a Maven hosted repository, below the given path. Uploaded files
+ * are expected to be archives (ZIP or TAR, optionally GZIP or BZIP2 compressed), while a form field named
+ * {@value #DIRECTORY} imports content of the given directory on the server, relative to the directory configured by
+ * {@code nexus.bulkImport.directoryRoot} (directory imports are disabled unless it is set). Unlike plain deploys,
+ * Maven metadata is recreated once per GA and indexing happens in one batch once all content is stored.
+ *
+ * @since 3.0
+ */
+@Path("/repositories/{" + REPOSITORY_ID_KEY + "}/bulk-import")
+@Produces({"application/xml", "application/json"})
+@Consumes({"application/xml", "application/json"})
+@Named
+@Singleton
+public class BulkImportPlexusResource
+    extends AbstractResourceStoreContentPlexusResource
+{
+  public static final String DIRECTORY = "directory";
+
+  private BulkImporter bulkImporter;
+
+  public BulkImportPlexusResource() {
+    this.setModifiable(true);
+  }
+
+  @Inject
+  public void setBulkImporter(final BulkImporter bulkImporter) {
+    this.bulkImporter = checkNotNull(bulkImporter);
+  }
+
+  @Override
+  public Object getPayloadInstance() {
+    return null;
+  }
+
+  @Override
+  public PathProtectionDescriptor getResourceProtection() {
+    return new PathProtectionDescriptor("/repositories/*/bulk-import/**",
+        "contentAuthcBasic,perms[nexus:bulkimport]");
+  }
+
+  @Override
+  public String getResourceUri() {
+    return "/repositories/{" + REPOSITORY_ID_KEY + "}/bulk-import";
+  }
+
+  @Override
+  public boolean acceptsUpload() {
+    return true;
+  }
+
+  /**
+   * Imports uploaded archives, or content of server side directories given as {@value #DIRECTORY} form fields, into
+   * the repository below the current path.
+   */
+  @Override
+  @POST
+  public Object upload(final Context context,
+                       final Request request,
+                       final Response response,
+                       final List<FileItem> files)
+      throws ResourceException
+  {
+    try {
+      final Repository repository = getResourceStore(request);
+      final String basePath = getResourceStorePath(request);
+
+      if (!repository.getRepositoryKind().isFacetAvailable(MavenHostedRepository.class)) {
+        throw new ResourceException(Status.CLIENT_ERROR_BAD_REQUEST,
+            "Bulk import is supported into Maven hosted repositories only!");
+      }
+      final MavenHostedRepository mavenRepository = repository.adaptToFacet(MavenHostedRepository.class);
+
+      // carries the user, address and agent of this request over to all the stores
+      final RequestContext parentContext = getResourceStoreRequest(request, basePath).getRequestContext();
+
+      for (final FileItem fileItem : files) {
+        final BulkImporter.Result result;
+        if (fileItem.isFormField()) {
+          if (!DIRECTORY.equals(fileItem.getFieldName())) {
+            continue;
+          }
+          final File directory;
+          try {
+            directory = bulkImporter.resolveDirectory(fileItem.getString());
+          }
+          catch (IllegalStateException | IllegalArgumentException e) {
+            throw new ResourceException(Status.CLIENT_ERROR_BAD_REQUEST, e.getMessage());
+          }
+          result = bulkImporter.importDirectory(mavenRepository, basePath, parentContext, directory);
+        }
+        else {
+          try (InputStream is = fileItem.getInputStream()) {
+            result = bulkImporter.importArchive(mavenRepository, basePath, parentContext, is);
+          }
+        }
+        getLogger().debug("Bulk import into {}:{} finished: {}", repository.getId(), basePath, result);
+      }
+    }
+    catch (Exception t) {
+      handleException(request, response, t);
+    }
+    return null;
+  }
+
+  @Override
+  protected Repository getResourceStore(final Request request)
+      throws NoSuchResourceStoreException, ResourceException
+  {
+    final String repoId = request.getAttributes().get(REPOSITORY_ID_KEY).toString();
+    return getUnprotectedRepositoryRegistry().getRepository(repoId);
+  }
+}
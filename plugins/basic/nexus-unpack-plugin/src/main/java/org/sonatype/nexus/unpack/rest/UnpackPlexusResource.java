@@ -12,14 +12,10 @@
  */
 package org.sonatype.nexus.unpack.rest;
 
-import java.io.File;
-import java.io.IOException;
 import java.io.InputStream;
-import java.util.Enumeration;
 import java.util.List;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
 
+import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
 import javax.ws.rs.Consumes;
@@ -30,24 +26,28 @@ import javax.ws.rs.Produces;
 
 import org.sonatype.nexus.proxy.ItemNotFoundException;
 import org.sonatype.nexus.proxy.NoSuchResourceStoreException;
-import org.sonatype.nexus.proxy.ResourceStoreRequest;
+import org.sonatype.nexus.proxy.RequestContext;
+import org.sonatype.nexus.proxy.events.RepositoryItemBatchEventImported;
 import org.sonatype.nexus.proxy.item.StorageItem;
 import org.sonatype.nexus.proxy.repository.Repository;
 import org.sonatype.nexus.rest.AbstractResourceStoreContentPlexusResource;
+import org.sonatype.nexus.unpack.internal.BulkImporter;
 import org.sonatype.plexus.rest.resource.PathProtectionDescriptor;
 
 import org.apache.commons.fileupload.FileItem;
-import org.apache.commons.io.FileUtils;
 import org.restlet.Context;
 import org.restlet.data.Form;
 import org.restlet.data.Request;
 import org.restlet.data.Response;
 import org.restlet.resource.ResourceException;
 
+import static com.google.common.base.Preconditions.checkNotNull;
 import static org.sonatype.nexus.rest.repositories.AbstractRepositoryPlexusResource.REPOSITORY_ID_KEY;
 
 /**
  * A REST Resource that accepts upload (zip file), and it simply explodes it in the root of the given repository.
+ * Entries are stored in parallel by {@link BulkImporter} as they are read from the upload, and once all of them are
+ * stored, a single {@link RepositoryItemBatchEventImported} is posted announcing the whole batch.
  *
  * @author cstamas
  */
@@ -61,10 +61,17 @@ public class UnpackPlexusResource
 {
   private static final String DELETE_BEFORE_UNPACK = "delete";
 
+  private BulkImporter bulkImporter;
+
   public UnpackPlexusResource() {
     this.setModifiable(true);
   }
 
+  @Inject
+  public void setBulkImporter(final BulkImporter bulkImporter) {
+    this.bulkImporter = checkNotNull(bulkImporter);
+  }
+
   @Override
   public Object getPayloadInstance() {
     return null;
@@ -120,32 +127,13 @@ public class UnpackPlexusResource
         }
       }
 
+      // carries the user, address and agent of this request over to all the stores
+      final RequestContext parentContext = getResourceStoreRequest(request, basePath).getRequestContext();
+
       for (final FileItem fileItem : files) {
-        final File tempFile = File.createTempFile("unzip", ".zip");
-        try {
-          copyToFile(fileItem, tempFile);
-          final ZipFile zip = new ZipFile(tempFile);
-          try {
-            final Enumeration<? extends ZipEntry> entries = zip.entries();
-            while (entries.hasMoreElements()) {
-              final ZipEntry entry = entries.nextElement();
-              if (entry.getName().endsWith("/")) {
-                // must be a folder
-                continue;
-              }
-              final ResourceStoreRequest storeRequest =
-                  getResourceStoreRequest(request, basePath + "/" + entry.getName());
-              try (InputStream is = zip.getInputStream(entry)) {
-                repository.storeItem(storeRequest, is, null);
-              }
-            }
-          }
-          finally {
-            close(zip);
-          }
-        }
-        finally {
-          tempFile.delete();
+        try (InputStream is = fileItem.getInputStream()) {
+          final BulkImporter.Result result = bulkImporter.importArchive(repository, basePath, parentContext, is);
+          getLogger().debug("Unpack into {}:{} finished: {}", repository.getId(), basePath, result);
         }
       }
     }
@@ -175,23 +163,6 @@ public class UnpackPlexusResource
     repository.deleteItem(item.getResourceStoreRequest());
   }
 
-  private void close(final ZipFile zip) {
-    try {
-      zip.close();
-    }
-    catch (IOException e) {
-      getLogger().debug("Could not close ZipFile", e);
-    }
-  }
-
-  private void copyToFile(final FileItem source, final File target)
-      throws IOException
-  {
-    try (InputStream is = source.getInputStream()) {
-      FileUtils.copyInputStreamToFile(is, target);
-    }
-  }
-
   @Override
   protected Repository getResourceStore(final Request request)
       throws NoSuchResourceStoreException, ResourceException
@@ -0,0 +1,286 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.unpack.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.sonatype.nexus.proxy.RequestContext;
+import org.sonatype.nexus.proxy.ResourceStoreRequest;
+import org.sonatype.nexus.proxy.events.RepositoryItemBatchEventImported;
+import org.sonatype.nexus.proxy.maven.MavenHostedRepository;
+import org.sonatype.nexus.proxy.maven.gav.M2GavCalculator;
+import org.sonatype.nexus.proxy.repository.DefaultRepositoryKind;
+import org.sonatype.nexus.proxy.repository.HostedRepository;
+import org.sonatype.nexus.proxy.repository.Repository;
+import org.sonatype.sisu.goodies.eventbus.EventBus;
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyMapOf;
+import static org.mockito.Mockito.doAnswer;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Tests for {@link BulkImporter}.
+ */
+public class BulkImporterTest
+    extends TestSupport
+{
+  private static final int MAX_BUFFERED_ENTRY_SIZE = 16;
+
+  @Mock
+  private EventBus eventBus;
+
+  @Mock
+  private Repository repository;
+
+  private StoringRepository storage;
+
+  @Before
+  public void prepare() throws Exception {
+    storage = new StoringRepository();
+    doReturn("test").when(repository).getId();
+    doReturn(new DefaultRepositoryKind(HostedRepository.class, null)).when(repository).getRepositoryKind();
+    doAnswer(storage).when(repository).storeItem(any(ResourceStoreRequest.class), any(InputStream.class),
+        anyMapOf(String.class, String.class));
+  }
+
+  @Test
+  public void zipUnpackedInParallelAndStreamed() throws Exception {
+    // small entries wait for each other, so they are stored only if stored in parallel
+    storage.concurrentStores = new CountDownLatch(2);
+    final String big = Strings.repeat("big", MAX_BUFFERED_ENTRY_SIZE);
+    final byte[] zip = zip(
+        "dir/", null,
+        "dir/a.txt", "a",
+        "dir/b.txt", "b",
+        "dir/big.txt", big,
+        "c.txt", "c");
+
+    final BulkImporter.Result result = new BulkImporter(eventBus, 2, MAX_BUFFERED_ENTRY_SIZE, "")
+        .importArchive(repository, "/unpacked/", new RequestContext(), new ByteArrayInputStream(zip));
+
+    assertThat(result.getFileCount(), equalTo(4));
+    assertThat(result.getByteCount(), equalTo(3L + big.length()));
+    assertThat(result.getGaCount(), equalTo(0));
+    assertThat(storage.contents.keySet(),
+        containsInAnyOrder("/unpacked/dir/a.txt", "/unpacked/dir/b.txt", "/unpacked/dir/big.txt", "/unpacked/c.txt"));
+    assertThat(storage.contents.get("/unpacked/dir/big.txt"), equalTo(big));
+    assertThat(storage.contents.get("/unpacked/c.txt"), equalTo("c"));
+    assertThat(storage.maxInFlight.get(), greaterThanOrEqualTo(2));
+    assertThat(storage.bulkImportFlags.values(), everyItem(equalTo(Boolean.TRUE)));
+
+    // whole unpack is announced by one event, that indexer handles as batch
+    final ArgumentCaptor<RepositoryItemBatchEventImported> event =
+        ArgumentCaptor.forClass(RepositoryItemBatchEventImported.class);
+    verify(eventBus).post(event.capture());
+    assertThat(event.getValue().getItemPaths(),
+        containsInAnyOrder("/unpacked/dir/a.txt", "/unpacked/dir/b.txt", "/unpacked/dir/big.txt", "/unpacked/c.txt"));
+  }
+
+  @Test
+  public void compressedTarImportedWithMetadataRecreatedPerGa() throws Exception {
+    final MavenHostedRepository mavenRepository = mavenRepository();
+    final String[] paths = {
+        "org/example/a/1.0/a-1.0.jar", "org/example/a/1.0/a-1.0.jar.sha1", "org/example/a/1.0/a-1.0.pom",
+        "org/example/a/2.0/a-2.0.jar", "org/example/b/1.0/b-1.0.jar", "org/example/b/1.0/b-1.0.jar.asc"
+    };
+
+    final BulkImporter.Result result = new BulkImporter(eventBus, 2, MAX_BUFFERED_ENTRY_SIZE, "")
+        .importArchive(mavenRepository, "/", null, new ByteArrayInputStream(tarGz(paths)));
+
+    assertThat(result.getFileCount(), equalTo(paths.length));
+    assertThat(result.getGaCount(), equalTo(2));
+    assertThat(storage.contents.get("/org/example/a/1.0/a-1.0.pom"), equalTo("org/example/a/1.0/a-1.0.pom"));
+    final ArgumentCaptor<ResourceStoreRequest> metadata = ArgumentCaptor.forClass(ResourceStoreRequest.class);
+    verify(mavenRepository, times(2)).recreateMavenMetadata(metadata.capture());
+    final List<String> metadataPaths = Lists.newArrayList();
+    for (ResourceStoreRequest request : metadata.getAllValues()) {
+      metadataPaths.add(request.getRequestPath());
+    }
+    assertThat(metadataPaths, containsInAnyOrder("/org/example/a", "/org/example/b"));
+  }
+
+  @Test
+  public void entriesEscapingBasePathSkipped() throws Exception {
+    final byte[] zip = zip(
+        "../evil.txt", "evil",
+        "a/../../evil.txt", "evil",
+        "/good.txt", "good",
+        "a/..b/good.txt", "good");
+
+    final BulkImporter.Result result = new BulkImporter(eventBus, 2, MAX_BUFFERED_ENTRY_SIZE, "")
+        .importArchive(repository, "/base", null, new ByteArrayInputStream(zip));
+
+    assertThat(result.getFileCount(), equalTo(2));
+    assertThat(storage.contents.keySet(), containsInAnyOrder("/base/good.txt", "/base/a/..b/good.txt"));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void directoryImportDisabledByDefault() throws Exception {
+    new BulkImporter(eventBus, 2, MAX_BUFFERED_ENTRY_SIZE, "").resolveDirectory("import");
+  }
+
+  @Test
+  public void directoryImportConfinedToRoot() throws Exception {
+    final File root = util.createTempDir("import-root");
+    final File outside = util.createTempDir("import-outside");
+    final File inside = new File(root, "content/inside.txt");
+    Files.createParentDirs(inside);
+    Files.write("inside", inside, StandardCharsets.UTF_8);
+    Files.write("outside", new File(outside, "outside.txt"), StandardCharsets.UTF_8);
+    final BulkImporter underTest = new BulkImporter(eventBus, 2, MAX_BUFFERED_ENTRY_SIZE, root.getPath());
+
+    for (String name : new String[]{"../" + outside.getName(), outside.getAbsolutePath(), "missing"}) {
+      try {
+        underTest.resolveDirectory(name);
+        fail("Directory " + name + " must not be imported");
+      }
+      catch (IllegalArgumentException e) {
+        // good
+      }
+    }
+    assertThat(storage.contents.keySet(), empty());
+
+    underTest.importDirectory(repository, "/", null, underTest.resolveDirectory("content"));
+    assertThat(storage.contents.keySet(), contains("/inside.txt"));
+  }
+
+  // ==
+
+  private MavenHostedRepository mavenRepository() throws Exception {
+    final MavenHostedRepository mavenRepository = mock(MavenHostedRepository.class);
+    doReturn("maven").when(mavenRepository).getId();
+    doReturn(new DefaultRepositoryKind(HostedRepository.class, Arrays.<Class<?>>asList(MavenHostedRepository.class)))
+        .when(mavenRepository).getRepositoryKind();
+    doReturn(mavenRepository).when(mavenRepository).adaptToFacet(MavenHostedRepository.class);
+    doReturn(new M2GavCalculator()).when(mavenRepository).getGavCalculator();
+    doAnswer(storage).when(mavenRepository).storeItem(any(ResourceStoreRequest.class), any(InputStream.class),
+        anyMapOf(String.class, String.class));
+    return mavenRepository;
+  }
+
+  /**
+   * Creates GZIP compressed TAR of given paths, each having its path as content.
+   */
+  private static byte[] tarGz(final String... paths) throws Exception {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (TarArchiveOutputStream tar = new TarArchiveOutputStream(new GzipCompressorOutputStream(bytes))) {
+      for (String path : paths) {
+        final byte[] content = path.getBytes(StandardCharsets.UTF_8);
+        final TarArchiveEntry entry = new TarArchiveEntry(path);
+        entry.setSize(content.length);
+        tar.putArchiveEntry(entry);
+        tar.write(content);
+        tar.closeArchiveEntry();
+      }
+    }
+    return bytes.toByteArray();
+  }
+
+
+  /**
+   * Creates ZIP of given name and content pairs, where {@code null} content stands for directory.
+   */
+  static byte[] zip(final String... namesAndContents) throws Exception {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+      for (int i = 0; i < namesAndContents.length; i += 2) {
+        zip.putNextEntry(new ZipEntry(namesAndContents[i]));
+        if (namesAndContents[i + 1] != null) {
+          zip.write(namesAndContents[i + 1].getBytes(StandardCharsets.UTF_8));
+        }
+        zip.closeEntry();
+      }
+    }
+    return bytes.toByteArray();
+  }
+
+  /**
+   * Answers stores by keeping the stored content, and the bulk import flag of the store request.
+   */
+  static class StoringRepository
+      implements Answer<Void>
+  {
+    final Map<String, String> contents = Maps.newConcurrentMap();
+
+    final Map<String, Object> bulkImportFlags = Maps.newConcurrentMap();
+
+    final AtomicInteger inFlight = new AtomicInteger();
+
+    final AtomicInteger maxInFlight = new AtomicInteger();
+
+    volatile CountDownLatch concurrentStores;
+
+    @Override
+    public Void answer(final InvocationOnMock invocation) throws Throwable {
+      final ResourceStoreRequest request = (ResourceStoreRequest) invocation.getArguments()[0];
+      final int current = inFlight.incrementAndGet();
+      try {
+        synchronized (maxInFlight) {
+          maxInFlight.set(Math.max(maxInFlight.get(), current));
+        }
+        final byte[] content = ByteStreams.toByteArray((InputStream) invocation.getArguments()[1]);
+        if (concurrentStores != null && content.length <= MAX_BUFFERED_ENTRY_SIZE) {
+          concurrentStores.countDown();
+          concurrentStores.await(5, TimeUnit.SECONDS);
+        }
+        contents.put(request.getRequestPath(), new String(content, StandardCharsets.UTF_8));
+        bulkImportFlags.put(request.getRequestPath(),
+            request.getRequestContext().get(RequestContext.CTX_BULK_IMPORT_FLAG));
+        return null;
+      }
+      finally {
+        inFlight.decrementAndGet();
+      }
+    }
+  }
+}
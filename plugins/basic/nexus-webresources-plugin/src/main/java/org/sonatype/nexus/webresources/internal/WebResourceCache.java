@@ -0,0 +1,188 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.webresources.internal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.sonatype.nexus.webresources.WebResource;
+import org.sonatype.sisu.goodies.common.ComponentSupport;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+
+/**
+ * In-memory cache of cacheable {@link WebResource} contents, keyed by request path. Along with the content, a
+ * content-hash based entity tag and gzip compressed variant (if worth it) are calculated once, when resource is
+ * loaded.
+ *
+ * @since 3.0
+ */
+@Singleton
+@Named
+public class WebResourceCache
+    extends ComponentSupport
+{
+  /**
+   * Compressed variant is kept only if it saves at least this ratio of original size.
+   */
+  private static final double MIN_COMPRESSION_SAVING = 0.1;
+
+  private final long maxEntrySize;
+
+  private final Cache<String, CachedWebResource> cache;
+
+  @Inject
+  public WebResourceCache(final @Named("${nexus.webresources.cache.maxSize:-33554432}") long maxSize,
+                          final @Named("${nexus.webresources.cache.maxEntrySize:-8388608}") long maxEntrySize)
+  {
+    this.maxEntrySize = Math.min(maxEntrySize, maxSize);
+    this.cache = CacheBuilder.newBuilder()
+        .maximumWeight(Math.max(0, maxSize))
+        .weigher(new Weigher<String, CachedWebResource>()
+        {
+          @Override
+          public int weigh(final String key, final CachedWebResource value) {
+            return value.getWeight();
+          }
+        })
+        .build();
+    log.info("Max-size: {} bytes, max-entry-size: {} bytes", maxSize, this.maxEntrySize);
+  }
+
+  /**
+   * Returns the cached resource for given path, or {@code null} if not cached.
+   */
+  @Nullable
+  public CachedWebResource get(final String path) {
+    return cache.getIfPresent(path);
+  }
+
+  /**
+   * Loads given resource into cache under given path, if it is cacheable and not too big. Returns {@code null} if
+   * the resource was not cached.
+   */
+  @Nullable
+  public CachedWebResource load(final String path, final WebResource resource) throws IOException {
+    if (!resource.isCacheable() || resource instanceof WebResource.Prepareable || resource.getSize() < 0
+        || resource.getSize() > maxEntrySize) {
+      return null;
+    }
+    final byte[] content;
+    try (InputStream in = resource.getInputStream()) {
+      content = ByteStreams.toByteArray(in);
+    }
+    final CachedWebResource cached = new CachedWebResource(resource, content, gzip(content));
+    cache.put(path, cached);
+    log.debug("Cached resource {}: {} bytes, {} bytes gzipped", path, content.length,
+        cached.getGzippedContent() != null ? cached.getGzippedContent().length : "-");
+    return cached;
+  }
+
+  /**
+   * Drops all cached resources, invoked when web resources contributed by plugins change.
+   */
+  public void invalidateAll() {
+    cache.invalidateAll();
+  }
+
+  @Nullable
+  private static byte[] gzip(final byte[] content) throws IOException {
+    final ByteArrayOutputStream buffer = new ByteArrayOutputStream(content.length / 2);
+    try (GZIPOutputStream out = new GZIPOutputStream(buffer)) {
+      out.write(content);
+    }
+    if (buffer.size() > content.length * (1 - MIN_COMPRESSION_SAVING)) {
+      return null;
+    }
+    return buffer.toByteArray();
+  }
+
+  /**
+   * Cached content of a {@link WebResource}.
+   */
+  public static class CachedWebResource
+  {
+    private final String contentType;
+
+    private final long lastModified;
+
+    private final byte[] content;
+
+    private final byte[] gzippedContent;
+
+    private final String etag;
+
+    private final String gzippedEtag;
+
+    private CachedWebResource(final WebResource resource, final byte[] content, @Nullable final byte[] gzippedContent)
+    {
+      this.contentType = resource.getContentType() != null ? resource.getContentType()
+          : WebResource.UNKNOWN_CONTENT_TYPE;
+      this.lastModified = resource.getLastModified();
+      this.content = content;
+      this.gzippedContent = gzippedContent;
+      final String hash = Hashing.sha1().hashBytes(content).toString();
+      this.etag = "\"" + hash + "\"";
+      this.gzippedEtag = "\"" + hash + "-gzip\"";
+    }
+
+    public String getContentType() {
+      return contentType;
+    }
+
+    public long getLastModified() {
+      return lastModified;
+    }
+
+    public byte[] getContent() {
+      return content;
+    }
+
+    /**
+     * Returns gzip compressed content, or {@code null} if content does not compress well.
+     */
+    @Nullable
+    public byte[] getGzippedContent() {
+      return gzippedContent;
+    }
+
+    /**
+     * Returns the quoted strong entity tag of resource, based on content hash.
+     */
+    public String getEtag() {
+      return etag;
+    }
+
+    /**
+     * Returns the quoted strong entity tag of gzip compressed content.
+     */
+    public String getGzippedEtag() {
+      return gzippedEtag;
+    }
+
+    private int getWeight() {
+      return content.length + (gzippedContent != null ? gzippedContent.length : 0);
+    }
+  }
+}
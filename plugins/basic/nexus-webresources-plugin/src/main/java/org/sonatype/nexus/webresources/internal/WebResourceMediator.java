@@ -0,0 +1,42 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.webresources.internal;
+
+import javax.inject.Named;
+
+import org.sonatype.nexus.webresources.WebResource;
+import org.sonatype.sisu.goodies.common.ComponentSupport;
+
+import org.eclipse.sisu.BeanEntry;
+import org.eclipse.sisu.Mediator;
+
+/**
+ * Invalidates {@link WebResourceCache} when a {@link WebResource} comes or goes, as plugins are installed or removed.
+ *
+ * @since 3.0
+ */
+@Named
+public class WebResourceMediator
+    extends ComponentSupport
+    implements Mediator<Named, WebResource, WebResourceCache>
+{
+  public void add(final BeanEntry<Named, WebResource> entry, final WebResourceCache cache) {
+    log.debug("Added: {}", entry);
+    cache.invalidateAll();
+  }
+
+  public void remove(final BeanEntry<Named, WebResource> entry, final WebResourceCache cache) {
+    log.debug("Removed: {}", entry);
+    cache.invalidateAll();
+  }
+}
@@ -12,6 +12,7 @@
  */
 package org.sonatype.nexus.webresources.internal;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 
@@ -24,13 +25,16 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.sonatype.nexus.internal.DevModeResources;
 import org.sonatype.nexus.web.BaseUrlHolder;
 import org.sonatype.nexus.web.WebUtils;
 import org.sonatype.nexus.webresources.WebResource;
 import org.sonatype.nexus.webresources.WebResource.Prepareable;
 import org.sonatype.nexus.webresources.WebResourceService;
+import org.sonatype.nexus.webresources.internal.WebResourceCache.CachedWebResource;
 import org.sonatype.sisu.goodies.common.Time;
 
+import com.google.common.base.Splitter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -40,7 +44,8 @@ import static javax.servlet.http.HttpServletResponse.SC_NOT_FOUND;
 import static javax.servlet.http.HttpServletResponse.SC_NOT_MODIFIED;
 
 /**
- * Provides access to resources via configured {@link WebResourceService}.
+ * Provides access to resources via configured {@link WebResourceService}. Cacheable resources are served from
+ * {@link WebResourceCache}, with entity tags and gzip content encoding, when accepted by client.
  *
  * @since 2.8
  */
@@ -54,16 +59,20 @@ public class WebResourceServlet
 
   private final WebResourceService webResources;
 
+  private final WebResourceCache webResourceCache;
+
   private final WebUtils webUtils;
 
   private final long maxAgeSeconds;
 
   @Inject
   public WebResourceServlet(final WebResourceService webResources,
+                            final WebResourceCache webResourceCache,
                             final WebUtils webUtils,
                             final @Named("${nexus.webresources.maxAge:-30days}") Time maxAge)
   {
     this.webResources = checkNotNull(webResources);
+    this.webResourceCache = checkNotNull(webResourceCache);
     this.webUtils = checkNotNull(webUtils);
     this.maxAgeSeconds = checkNotNull(maxAge.toSeconds());
     log.info("Max-age: {} ({} seconds)", maxAge, maxAgeSeconds);
@@ -83,6 +92,17 @@ public class WebResourceServlet
       path += "index.html";
     }
 
+    // dev-mode resources may change at any time, do not cache them
+    final boolean cacheable = !DevModeResources.hasResourceLocations();
+
+    if (cacheable) {
+      CachedWebResource cached = webResourceCache.get(path);
+      if (cached != null) {
+        serveCachedResource(cached, request, response);
+        return;
+      }
+    }
+
     WebResource resource = webResources.getResource(path);
     if (resource == null) {
       // if there is an index.html for the requested path, redirect to it
@@ -97,9 +117,98 @@ public class WebResourceServlet
       return;
     }
 
+    if (cacheable) {
+      CachedWebResource cached = webResourceCache.load(path, resource);
+      if (cached != null) {
+        serveCachedResource(cached, request, response);
+        return;
+      }
+    }
+
     serveResource(resource, request, response);
   }
 
+  private void serveCachedResource(final CachedWebResource resource,
+                                   final HttpServletRequest request,
+                                   final HttpServletResponse response)
+      throws IOException
+  {
+    log.trace("Serving cached resource: {}", request.getPathInfo());
+
+    final boolean gzipped = resource.getGzippedContent() != null && acceptsGzip(request);
+
+    response.setHeader("Content-Type", resource.getContentType());
+    response.setDateHeader("Last-Modified", resource.getLastModified());
+    final String etag = gzipped ? resource.getGzippedEtag() : resource.getEtag();
+    response.setHeader("ETag", etag);
+    response.setHeader("Cache-Control", "max-age=" + maxAgeSeconds);
+    if (resource.getGzippedContent() != null) {
+      response.setHeader("Vary", "Accept-Encoding");
+    }
+
+    // handle conditional GETs, if-none-match takes precedence over if-modified-since
+    final String ifNoneMatch = request.getHeader("if-none-match");
+    final boolean notModified;
+    if (ifNoneMatch != null) {
+      notModified = matchesEtag(ifNoneMatch, etag);
+    }
+    else {
+      long ifModifiedSince = request.getDateHeader("if-modified-since");
+      notModified = ifModifiedSince > -1 && resource.getLastModified() <= ifModifiedSince;
+    }
+    if (notModified) {
+      response.setStatus(SC_NOT_MODIFIED);
+      return;
+    }
+
+    final byte[] content = gzipped ? resource.getGzippedContent() : resource.getContent();
+    if (gzipped) {
+      response.setHeader("Content-Encoding", "gzip");
+    }
+    response.setHeader("Content-Length", String.valueOf(content.length));
+    // NEXUS-5023 disable IE for sniffing into response content
+    response.setHeader("X-Content-Type-Options", "nosniff");
+    // send the content only if needed (this method will be called for HEAD requests too)
+    if ("GET".equalsIgnoreCase(request.getMethod())) {
+      webUtils.sendContent(new ByteArrayInputStream(content), response);
+    }
+  }
+
+  /**
+   * Returns {@code true} if any of the entity tags in given "If-None-Match" header value matches the entity tag of
+   * the variant being served. A client holding the other variant must get the content, as it would otherwise reuse
+   * a body of different encoding. Weak comparison is used, as allowed for "If-None-Match".
+   */
+  private boolean matchesEtag(final String ifNoneMatch, final String etag) {
+    for (String tag : Splitter.on(',').trimResults().omitEmptyStrings().split(ifNoneMatch)) {
+      if (tag.startsWith("W/")) {
+        tag = tag.substring(2);
+      }
+      if ("*".equals(tag) || etag.equals(tag)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns {@code true} if the "Accept-Encoding" request header accepts gzip (and does not refuse it with q=0).
+   */
+  private boolean acceptsGzip(final HttpServletRequest request) {
+    final String acceptEncoding = request.getHeader("accept-encoding");
+    if (acceptEncoding == null) {
+      return false;
+    }
+    for (String coding : Splitter.on(',').trimResults().omitEmptyStrings().split(acceptEncoding)) {
+      final int paramIndex = coding.indexOf(';');
+      final String name = (paramIndex > -1 ? coding.substring(0, paramIndex) : coding).trim();
+      if ("gzip".equalsIgnoreCase(name) || "x-gzip".equalsIgnoreCase(name)) {
+        return paramIndex == -1 || !coding.substring(paramIndex + 1).replace(" ", "").matches("q=0(\\.0*)?");
+      }
+    }
+    return false;
+  }
+
   private void serveResource(WebResource resource,
                              final HttpServletRequest request,
                              final HttpServletResponse response)
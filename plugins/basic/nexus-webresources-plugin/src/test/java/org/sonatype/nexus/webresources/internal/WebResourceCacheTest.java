@@ -0,0 +1,108 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.webresources.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.sonatype.nexus.webresources.WebResource;
+import org.sonatype.nexus.webresources.internal.WebResourceCache.CachedWebResource;
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+import com.google.common.base.Strings;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link WebResourceCache}.
+ */
+public class WebResourceCacheTest
+    extends TestSupport
+{
+  static final byte[] COMPRESSIBLE = Strings.repeat("var x = 1;\n", 200).getBytes(StandardCharsets.UTF_8);
+
+  private final WebResourceCache underTest = new WebResourceCache(64 * 1024, 16 * 1024);
+
+  @Test
+  public void cacheableResourceCachedWithGzipVariant() throws Exception {
+    final CachedWebResource cached = underTest.load("/app.js", resource(COMPRESSIBLE, true));
+
+    assertThat(cached, notNullValue());
+    assertThat(cached.getContent(), equalTo(COMPRESSIBLE));
+    assertThat(cached.getGzippedContent(), notNullValue());
+    assertThat(cached.getGzippedEtag(), not(equalTo(cached.getEtag())));
+    assertThat(underTest.get("/app.js"), sameInstance(cached));
+  }
+
+  @Test
+  public void incompressibleResourceHasNoGzipVariant() throws Exception {
+    final byte[] random = new byte[4096];
+    new Random(42).nextBytes(random);
+
+    final CachedWebResource cached = underTest.load("/image.png", resource(random, true));
+
+    assertThat(cached.getGzippedContent(), nullValue());
+  }
+
+  @Test
+  public void nonCacheableResourceNotCached() throws Exception {
+    assertThat(underTest.load("/state.json", resource(COMPRESSIBLE, false)), nullValue());
+    assertThat(underTest.get("/state.json"), nullValue());
+  }
+
+  @Test
+  public void tooBigResourceNotCached() throws Exception {
+    assertThat(underTest.load("/big.js", resource(new byte[32 * 1024], true)), nullValue());
+    assertThat(underTest.get("/big.js"), nullValue());
+  }
+
+  @Test
+  public void invalidatedWhenPluginResourcesChange() throws Exception {
+    underTest.load("/app.js", resource(COMPRESSIBLE, true));
+    new WebResourceBundleMediator().add(null, underTest);
+    assertThat(underTest.get("/app.js"), nullValue());
+
+    underTest.load("/app.js", resource(COMPRESSIBLE, true));
+    new WebResourceMediator().remove(null, underTest);
+    assertThat(underTest.get("/app.js"), nullValue());
+  }
+
+  static WebResource resource(final byte[] content, final boolean cacheable) throws Exception {
+    final WebResource resource = mock(WebResource.class);
+    when(resource.getPath()).thenReturn("/resource");
+    when(resource.getContentType()).thenReturn("application/javascript");
+    when(resource.getLastModified()).thenReturn(1000L);
+    when(resource.getSize()).thenReturn((long) content.length);
+    when(resource.isCacheable()).thenReturn(cacheable);
+    when(resource.getInputStream()).thenAnswer(new Answer<InputStream>()
+    {
+      @Override
+      public InputStream answer(final InvocationOnMock invocation) {
+        return new ByteArrayInputStream(content);
+      }
+    });
+    return resource;
+  }
+}
@@ -0,0 +1,137 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.webresources.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.sonatype.nexus.web.WebUtils;
+import org.sonatype.nexus.webresources.WebResource;
+import org.sonatype.nexus.webresources.WebResourceService;
+import org.sonatype.sisu.goodies.common.Time;
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+import com.google.common.io.ByteStreams;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+
+import static javax.servlet.http.HttpServletResponse.SC_NOT_MODIFIED;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link WebResourceServlet} serving cached resources.
+ */
+public class WebResourceServletTest
+    extends TestSupport
+{
+  private static final String PATH = "/static/app.js";
+
+  @Mock
+  private WebResourceService webResources;
+
+  @Mock
+  private WebUtils webUtils;
+
+  private WebResourceCache webResourceCache;
+
+  private WebResourceServlet underTest;
+
+  @Before
+  public void prepare() throws Exception {
+    final WebResource resource = WebResourceCacheTest.resource(WebResourceCacheTest.COMPRESSIBLE, true);
+    when(webResources.getResource(PATH)).thenReturn(resource);
+    webResourceCache = new WebResourceCache(64 * 1024, 16 * 1024);
+    underTest = new WebResourceServlet(webResources, webResourceCache, webUtils, Time.days(30));
+  }
+
+  @Test
+  public void gzipVariantServedWhenAccepted() throws Exception {
+    final HttpServletResponse response = get("gzip, deflate", null);
+
+    verify(response).setHeader("Content-Encoding", "gzip");
+    verify(response).setHeader("Vary", "Accept-Encoding");
+    verify(response).setHeader("ETag", webResourceCache.get(PATH).getGzippedEtag());
+    final byte[] sent = sentContent();
+    assertThat(ByteStreams.toByteArray(new GZIPInputStream(new ByteArrayInputStream(sent))),
+        equalTo(WebResourceCacheTest.COMPRESSIBLE));
+  }
+
+  @Test
+  public void plainVariantServedWhenGzipRefused() throws Exception {
+    final HttpServletResponse response = get("gzip;q=0", null);
+
+    verify(response, never()).setHeader(eq("Content-Encoding"), anyString());
+    verify(response).setHeader("ETag", webResourceCache.get(PATH).getEtag());
+    assertThat(sentContent(), equalTo(WebResourceCacheTest.COMPRESSIBLE));
+  }
+
+  @Test
+  public void matchingEtagAnsweredFromCache() throws Exception {
+    get("gzip", null);
+    final String gzippedEtag = webResourceCache.get(PATH).getGzippedEtag();
+
+    final HttpServletResponse response = get("gzip", gzippedEtag);
+
+    verify(response).setStatus(SC_NOT_MODIFIED);
+    // resource resolved only once, when loaded to cache
+    verify(webResources, times(1)).getResource(PATH);
+    verify(webUtils, times(1)).sendContent(any(InputStream.class), any(HttpServletResponse.class));
+  }
+
+  @Test
+  public void etagOfOtherVariantDoesNotMatch() throws Exception {
+    get(null, null);
+    final String plainEtag = webResourceCache.get(PATH).getEtag();
+
+    // client cached the plain variant, but now accepts gzip: gzip variant must be sent
+    final HttpServletResponse response = get("gzip", plainEtag);
+
+    verify(response, never()).setStatus(SC_NOT_MODIFIED);
+    verify(response).setHeader("Content-Encoding", "gzip");
+  }
+
+  // ==
+
+  private HttpServletResponse get(final String acceptEncoding, final String ifNoneMatch) throws Exception {
+    final HttpServletRequest request = mock(HttpServletRequest.class);
+    when(request.getPathInfo()).thenReturn(PATH);
+    when(request.getMethod()).thenReturn("GET");
+    when(request.getHeader("accept-encoding")).thenReturn(acceptEncoding);
+    when(request.getHeader("if-none-match")).thenReturn(ifNoneMatch);
+    when(request.getDateHeader("if-modified-since")).thenReturn(-1L);
+    final HttpServletResponse response = mock(HttpServletResponse.class);
+    underTest.doGet(request, response);
+    return response;
+  }
+
+  private byte[] sentContent() throws Exception {
+    final ArgumentCaptor<InputStream> content = ArgumentCaptor.forClass(InputStream.class);
+    verify(webUtils).sendContent(content.capture(), any(HttpServletResponse.class));
+    return ByteStreams.toByteArray(content.getValue());
+  }
+}
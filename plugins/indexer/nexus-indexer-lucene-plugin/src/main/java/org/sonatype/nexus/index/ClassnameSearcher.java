@@ -24,6 +24,7 @@ import org.sonatype.nexus.proxy.NoSuchRepositoryException;
 import org.apache.commons.lang.StringUtils;
 import org.apache.maven.index.ArtifactInfoFilter;
 import org.apache.maven.index.IteratorSearchResponse;
+import org.apache.maven.index.MAVEN;
 import org.apache.maven.index.SearchType;
 
 /**
@@ -74,4 +75,22 @@ public class ClassnameSearcher
         searchType, filters);
   }
 
-}
\ No newline at end of file
+  public GroupedSearchResponse groupedSearch(Map<String, String> terms, String repositoryId, String cursor,
+                                             int groupLimit, int versionLimit, int documentLimit,
+                                             SearchType searchType)
+      throws NoSuchRepositoryException
+  {
+    if (!canHandle(terms)) {
+      return GroupedSearchResponse.empty(null);
+    }
+
+    String term = terms.get(TERM_CLASSNAME);
+    if (term.endsWith(".class")) {
+      term = term.substring(0, term.length() - 6);
+    }
+
+    return m_lucene.searchQueryGrouped(m_lucene.constructQuery(MAVEN.CLASSNAMES, term, searchType), repositoryId,
+        cursor, groupLimit, versionLimit, documentLimit);
+  }
+
+}
@@ -12,6 +12,7 @@
  */
 package org.sonatype.nexus.index;
 
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
@@ -30,6 +31,9 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
@@ -40,6 +44,7 @@ import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
 
+import org.sonatype.nexus.ApplicationStatusSource;
 import org.sonatype.nexus.configuration.application.NexusConfiguration;
 import org.sonatype.nexus.maven.tasks.SnapshotRemover;
 import org.sonatype.nexus.mime.MimeSupport;
@@ -48,6 +53,7 @@ import org.sonatype.nexus.proxy.LocalStorageException;
 import org.sonatype.nexus.proxy.NoSuchRepositoryException;
 import org.sonatype.nexus.proxy.ResourceStoreRequest;
 import org.sonatype.nexus.proxy.access.Action;
+import org.sonatype.nexus.proxy.attributes.Attributes;
 import org.sonatype.nexus.proxy.attributes.inspectors.DigestCalculatingInspector;
 import org.sonatype.nexus.proxy.item.DefaultStorageFileItem;
 import org.sonatype.nexus.proxy.item.FileContentLocator;
@@ -69,6 +75,7 @@ import org.sonatype.nexus.proxy.repository.Repository;
 import org.sonatype.nexus.proxy.repository.ShadowRepository;
 import org.sonatype.nexus.proxy.storage.local.fs.DefaultFSLocalRepositoryStorage;
 import org.sonatype.nexus.proxy.utils.RepositoryStringUtils;
+import org.sonatype.nexus.threads.NexusThreadFactory;
 import org.sonatype.nexus.util.file.DirSupport;
 import org.sonatype.scheduling.TaskInterruptedException;
 import org.sonatype.scheduling.TaskUtil;
@@ -77,6 +84,8 @@ import org.sonatype.sisu.goodies.common.Throwables2;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Strings;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.index.CorruptIndexException;
 import org.apache.lucene.search.BooleanClause;
@@ -111,6 +120,7 @@ import org.apache.maven.index.artifact.VersionUtils;
 import org.apache.maven.index.context.DefaultIndexingContext;
 import org.apache.maven.index.context.DocumentFilter;
 import org.apache.maven.index.context.IndexCreator;
+import org.apache.maven.index.context.IndexUtils;
 import org.apache.maven.index.context.IndexingContext;
 import org.apache.maven.index.context.MergedIndexingContext;
 import org.apache.maven.index.context.StaticContextMemberProvider;
@@ -167,8 +177,10 @@ import org.apache.maven.index.util.IndexCreatorSorter;
  * index files directly need to acquire write, i.e. exclusive, lock. Group repository index queries need to acquire
  * shared lock on all member repositories. Most index operations use shared(), sharedSingle(), exclusive() or
  * temporary() helper methods that acquire and release appropriate lock(s). <br/>
- * Methods that return search result iterator acquire shared lock(s) on involved repositories but the caller MUST close
- * the iterator in order to release the lock(s).<br/>
+ * Searches do not hold locks. They use reference counted point-in-time snapshots of involved repository indexes, and
+ * only briefly acquire shared lock to open a fresh snapshot after the previous one was invalidated by sharedSingle()
+ * or exclusiveSingle(). Methods that return search result iterator acquire the snapshots, and the caller MUST close
+ * the iterator in order to release them.<br/>
  * Methods that return TreeNode uses special read-only IndexingContext implementation that acquires/release shared
  * locks
  * on involved repositories as part of acquireIndexSearcher()/releaseIndexSearcher() logic. Additionally, the indexing
@@ -192,6 +204,11 @@ public class DefaultIndexerManager
   private static final String ARTIFICIAL_EXCEPTION =
       "This is an artificial exception that provides caller backtrace.";
 
+  /**
+   * Size of the buffer remote index chunks are read from network with.
+   */
+  private static final int REMOTE_INDEX_BUFFER_SIZE = 64 * 1024;
+
   /**
    * The key used in working directory.
    */
@@ -300,6 +317,9 @@ public class DefaultIndexerManager
   @Inject
   private Scanner scanner;
 
+  @Inject
+  private ApplicationStatusSource applicationStatusSource;
+
   /**
    * As of 3.6.1, Lucene provides three FSDirectory implementations, all with there pros and cons.
    * <ul>
@@ -323,6 +343,41 @@ public class DefaultIndexerManager
   @Named("${nexus.indexer.locktimeout:-60}")
   private int lockTimeoutSeconds;
 
+  /**
+   * Maximum count of remote index downloads running in parallel by {@link #downloadAllIndex()}.
+   */
+  @Inject
+  @Named("${nexus.indexer.download.threads:-4}")
+  private int downloadThreads;
+
+  /**
+   * Maximum count of remote index downloads running in parallel against the same remote host.
+   */
+  @Inject
+  @Named("${nexus.indexer.download.threadsPerHost:-1}")
+  private int downloadThreadsPerHost;
+
+  /**
+   * Count of artifacts added to index at once (and hence committed together) by {@link #addItemsToIndex(Repository,
+   * Collection)}.
+   */
+  @Inject
+  @Named("${nexus.indexer.addBatchSize:-1000}")
+  private int addBatchSize;
+
+  /**
+   * When enabled, indexing contexts of repositories added while Nexus is booting are not opened right away, but on
+   * first use or once Nexus is started, whichever comes first.
+   */
+  @Inject
+  @Named("${nexus.indexer.deferContexts:-true}")
+  private boolean deferContexts;
+
+  /**
+   * Ids of repositories with deferred indexing context creation.
+   */
+  private final Set<String> deferredContexts = Sets.newConcurrentHashSet();
+
   /**
    * Locks that protect access to repository index. Item-level add/remove and search operations must acquire read
    * lock. Index-level add/remove/reindex must acquire exclusive lock.
@@ -347,6 +402,36 @@ public class DefaultIndexerManager
    */
   private final ConcurrentMap<String, Thread> deleteThreads = new ConcurrentHashMap<String, Thread>();
 
+  /**
+   * Point-in-time snapshots of repository indexes used by searches. Operations that modify a repository index
+   * invalidate its snapshot when done.
+   */
+  private final IndexSnapshots indexSnapshots = new IndexSnapshots();
+
+  /**
+   * When enabled, group repositories have a materialized index holding copies of member documents, which is used to
+   * search and publish the group instead of merging member indexes.
+   */
+  @Inject
+  @Named("${nexus.indexer.materializeGroups:-false}")
+  private boolean materializeGroups;
+
+  /**
+   * Materialized group indexes, by group repository id.
+   */
+  private final ConcurrentMap<String, MaterializedGroupIndex> materializedGroups =
+      new ConcurrentHashMap<String, MaterializedGroupIndex>();
+
+  /**
+   * Ids of group repositories whose materialized index synchronization is scheduled or running.
+   */
+  private final ConcurrentMap<String, Boolean> materializedGroupSyncs = new ConcurrentHashMap<String, Boolean>();
+
+  /**
+   * Synchronizes materialized group indexes in background, so searches do not wait for it.
+   */
+  private final ThreadPoolExecutor materializedGroupSyncExecutor = newMaterializedGroupSyncExecutor();
+
   private File workingDirectory;
 
   private File tempDirectory;
@@ -431,6 +516,21 @@ public class DefaultIndexerManager
   {
     log.info("Shutting down Nexus IndexerManager");
 
+    deferredContexts.clear();
+
+    // running synchronization is not interrupted, as an interrupt during I/O closes the channels of index directory
+    materializedGroupSyncExecutor.shutdown();
+    try {
+      if (!materializedGroupSyncExecutor.awaitTermination(1, TimeUnit.MINUTES)) {
+        log.warn("Materialized group index synchronization still running");
+      }
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+
+    indexSnapshots.invalidateAll();
+
     for (IndexingContext ctx : mavenIndexer.getIndexingContexts().values()) {
       mavenIndexer.removeIndexingContext(ctx, false);
     }
@@ -477,6 +577,12 @@ public class DefaultIndexerManager
       repositoryRegistry.getRepositoryWithFacet(repository.getId(), Repository.class);
     }
 
+    if (deferContexts && !applicationStatusSource.getSystemStatus().isNexusStarted()) {
+      log.debug("Deferring indexing context creation for repository {}", repository.getId());
+      deferredContexts.add(repository.getId());
+      return;
+    }
+
     exclusiveSingle(repository, new Runnable()
     {
       @Override
@@ -488,6 +594,50 @@ public class DefaultIndexerManager
     });
   }
 
+  public void addDeferredRepositoryIndexContexts()
+      throws IOException
+  {
+    for (String repositoryId : deferredContexts) {
+      try {
+        addDeferredRepositoryIndexContext(repositoryRegistry.getRepository(repositoryId));
+      }
+      catch (NoSuchRepositoryException e) {
+        deferredContexts.remove(repositoryId);
+      }
+    }
+  }
+
+  private void maybeAddDeferredRepositoryIndexContext(final Repository repository) {
+    if (deferredContexts.contains(repository.getId())) {
+      try {
+        addDeferredRepositoryIndexContext(repository);
+      }
+      catch (IOException e) {
+        log.warn("Could not add deferred indexing context for repository {}", repository.getId(), e);
+      }
+    }
+  }
+
+  /**
+   * Adds the deferred indexing context of given repository, if any. Deferred entry is removed before the context is
+   * added, hence this method is a no-op for all but the first caller.
+   */
+  private void addDeferredRepositoryIndexContext(final Repository repository)
+      throws IOException
+  {
+    if (deferredContexts.remove(repository.getId()) && INDEXABLE(repository)) {
+      exclusiveSingle(repository, new Runnable()
+      {
+        @Override
+        public void run(IndexingContext context)
+            throws IOException
+        {
+          addRepositoryIndexContext(repository, context);
+        }
+      });
+    }
+  }
+
   private void addRepositoryIndexContext(final Repository repository, IndexingContext oldContext)
       throws IOException
   {
@@ -506,7 +656,23 @@ public class DefaultIndexerManager
 
     final File repoRoot = getRepositoryLocalStorageAsFile(repository);
 
-    if (repository.getRepositoryKind().isFacetAvailable(GroupRepository.class)) {
+    if (repository.getRepositoryKind().isFacetAvailable(GroupRepository.class) && materializeGroups) {
+      // materialized group index, populated from members in background on first use
+      List<IndexCreator> groupIndexCreators = new ArrayList<IndexCreator>(IndexCreatorSorter.sort(indexCreators));
+      groupIndexCreators.add(new GroupMemberIndexCreator());
+      ctx = new NexusIndexingContext(getContextId(repository.getId()), // id
+          repository.getId(), // repositoryId
+          repoRoot, // repository
+          openFSDirectory(indexDirectory), // indexDirectory
+          null, // repositoryUrl
+          null, // indexUpdateUrl
+          groupIndexCreators, //
+          true, // reclaimIndex
+          false);
+      mavenIndexer.addIndexingContext(ctx);
+      materializedGroups.put(repository.getId(), new MaterializedGroupIndex(repository.getId(), indexDirectory));
+    }
+    else if (repository.getRepositoryKind().isFacetAvailable(GroupRepository.class)) {
       // this is a marker context, it is not used for anything useful
       ctx =
           mavenIndexer.addMergedIndexingContext(getContextId(repository.getId()), repository.getId(),
@@ -546,6 +712,10 @@ public class DefaultIndexerManager
   public void removeRepositoryIndexContext(final Repository repository, final boolean deleteFiles)
       throws IOException
   {
+    if (deferredContexts.remove(repository.getId())) {
+      log.debug("Dropped deferred indexing context creation for repository {}", repository.getId());
+    }
+
     Thread otherThread = deleteThreads.putIfAbsent(repository.getId(), Thread.currentThread());
     if (otherThread != null) {
       log.debug("Indexing context for repository {} is being deleted by thread {}", repository.getId(),
@@ -590,6 +760,7 @@ public class DefaultIndexerManager
       log.debug("Removing indexing context for repository {} deleteFiles={}", repository.getId(), deleteFiles);
 
       mavenIndexer.removeIndexingContext(context, deleteFiles);
+      materializedGroups.remove(repository.getId());
 
       log.debug("Removed indexing context {} for repository {}", context.getId(), repository.getId());
     }
@@ -664,6 +835,15 @@ public class DefaultIndexerManager
    * @noreference this method is public for test purposes only
    */
   public IndexingContext getRepositoryIndexContext(Repository repository) {
+    maybeAddDeferredRepositoryIndexContext(repository);
+    return getIndexingContext(repository);
+  }
+
+  /**
+   * Returns repository IndexingContext as is, without adding it if deferred. To be used while holding repository
+   * lock.
+   */
+  private IndexingContext getIndexingContext(Repository repository) {
     return mavenIndexer.getIndexingContexts().get(getContextId(repository.getId()));
   }
 
@@ -791,6 +971,93 @@ public class DefaultIndexerManager
     }
   }
 
+  public void addItemsToIndex(final Repository repository, final Collection<String> paths)
+      throws IOException
+  {
+    if (!INDEXABLE(repository) || !INSERVICE(repository) || paths.isEmpty()) {
+      return;
+    }
+
+    // artifact contexts are created from files, nothing to index otherwise (same as with single items)
+    if (!DefaultFSLocalRepositoryStorage.class.isAssignableFrom(repository.getLocalStorage().getClass())) {
+      return;
+    }
+
+    sharedSingle(repository, new Runnable()
+    {
+      @Override
+      public void run(IndexingContext context)
+          throws IOException
+      {
+        addItemsToIndex(repository, paths, context);
+      }
+    });
+  }
+
+  private void addItemsToIndex(Repository repository, Collection<String> paths, IndexingContext context)
+      throws IOException
+  {
+    final DefaultFSLocalRepositoryStorage localStorage =
+        (DefaultFSLocalRepositoryStorage) repository.getLocalStorage();
+    final List<ArtifactContext> batch = Lists.newArrayListWithCapacity(Math.min(paths.size(), addBatchSize));
+
+    for (String path : paths) {
+      // same filtering as with single items: artifacts only, hidden, signatures and hashes are not indexed
+      final Gav gav = ((MavenRepository) repository).getGavCalculator().pathToGav(path);
+      if (gav == null || gav.isSignature() || gav.isHash()) {
+        continue;
+      }
+
+      final RepositoryItemUid uid = repository.createUid(path);
+      if (uid.getBooleanAttributeValue(IsHiddenAttribute.class)) {
+        continue;
+      }
+
+      final RepositoryItemUidLock uidLock = uid.getLock();
+      uidLock.lock(Action.read);
+      try {
+        final File file = localStorage.getFileFromBase(repository, new ResourceStoreRequest(path));
+        if (!file.isFile()) {
+          continue;
+        }
+
+        final ArtifactContext ac;
+        try {
+          ac = artifactContextProducer.getArtifactContext(context, file);
+        }
+        catch (IllegalArgumentException e) {
+          // cannot create artifact context, forget it
+          continue;
+        }
+        if (ac == null) {
+          continue;
+        }
+
+        final ArtifactInfo ai = ac.getArtifactInfo();
+        if (ai.sha1 == null) {
+          // if repo has no sha1 checksum, odd nexus one
+          final Attributes attributes = repository.getAttributesHandler().getAttributeStorage().getAttributes(uid);
+          if (attributes != null) {
+            ai.sha1 = attributes.get(DigestCalculatingInspector.DIGEST_SHA1_KEY);
+          }
+        }
+        batch.add(ac);
+      }
+      finally {
+        uidLock.unlock();
+      }
+
+      if (batch.size() >= addBatchSize) {
+        getNexusIndexer().addArtifactsToIndex(batch, context);
+        batch.clear();
+      }
+    }
+
+    if (!batch.isEmpty()) {
+      getNexusIndexer().addArtifactsToIndex(batch, context);
+    }
+  }
+
   public void removeItemFromIndex(final Repository repository, final StorageItem item)
       throws IOException
   {
@@ -982,6 +1249,11 @@ public class DefaultIndexerManager
     }
 
     if (ISGROUP(repository)) {
+      // members are reindexed already
+      final MaterializedGroupIndex materializedGroup = materializedGroups.get(repository.getId());
+      if (materializedGroup != null) {
+        syncMaterializedGroupIndex(repository, materializedGroup, null);
+      }
       return;
     }
 
@@ -1082,16 +1354,23 @@ public class DefaultIndexerManager
   {
     log.debug("Downloading remote indexes for all repositories");
 
-    final List<ProxyRepository> reposes = repositoryRegistry.getRepositoriesWithFacet(ProxyRepository.class);
-    final ArrayList<IOException> exceptions = new ArrayList<IOException>();
-    for (ProxyRepository repository : reposes) {
-      try {
-        downloadRepositoryIndex(repository, false);
-      }
-      catch (IOException e) {
-        exceptions.add(e);
+    final List<ProxyRepository> reposes = new ArrayList<ProxyRepository>();
+    for (ProxyRepository repository : repositoryRegistry.getRepositoriesWithFacet(ProxyRepository.class)) {
+      if (INDEXABLE(repository) && ISPROXY(repository)
+          && repository.adaptToFacet(MavenProxyRepository.class).isDownloadRemoteIndexes()) {
+        reposes.add(repository);
       }
     }
+    final IndexDownloadScheduler scheduler = new IndexDownloadScheduler(downloadThreads, downloadThreadsPerHost);
+    final List<IOException> exceptions = scheduler.run(reposes, new IndexDownloadScheduler.Download()
+    {
+      @Override
+      public void download(ProxyRepository repository)
+          throws IOException
+      {
+        downloadRepositoryIndex(repository, false);
+      }
+    });
     if (!exceptions.isEmpty()) {
       throw Throwables2.composite(new IOException("Exception(s) happened during downloadAllIndex()"), exceptions);
     }
@@ -1236,6 +1515,7 @@ public class DefaultIndexerManager
           throws IOException
       {
         TaskUtil.checkInterruption();
+        IndexDownloadScheduler.checkCancelled();
 
         ResourceStoreRequest req = new ResourceStoreRequest(PUBLISHING_PATH_PREFIX + "/" + name);
 
@@ -1256,7 +1536,9 @@ public class DefaultIndexerManager
             throw new ItemNotFoundException(req, repository);
           }
 
-          return item.getInputStream();
+          // indexer decompresses and applies the chunk while it is being downloaded, read from network in large
+          // blocks instead of the small reads of the gzip inflater
+          return new BufferedInputStream(item.getInputStream(), REMOTE_INDEX_BUFFER_SIZE);
         }
         catch (ItemNotFoundException ex) {
           final FileNotFoundException fne = new FileNotFoundException(name + " (remote item not found)");
@@ -1435,7 +1717,7 @@ public class DefaultIndexerManager
     ForceableReentrantLock reindexLock = getReindexLock(repository);
     if (reindexLock.tryLock()) {
       try {
-        shared(repository, new Runnable()
+        final Runnable runnable = new Runnable()
         {
           @Override
           public void run(IndexingContext context)
@@ -1443,7 +1725,14 @@ public class DefaultIndexerManager
           {
             publishRepositoryIndex(repository, context);
           }
-        });
+        };
+        final MaterializedGroupIndex materializedGroup = materializedGroups.get(repository.getId());
+        if (materializedGroup != null) {
+          syncMaterializedGroupIndex(repository, materializedGroup, runnable);
+        }
+        else {
+          shared(repository, runnable);
+        }
       }
       finally {
         reindexLock.unlock();
@@ -1800,6 +2089,7 @@ public class DefaultIndexerManager
   protected void postprocessResults(Collection<ArtifactInfo> res) {
     for (Iterator<ArtifactInfo> i = res.iterator(); i.hasNext(); ) {
       ArtifactInfo ai = i.next();
+      GroupMemberIndexCreator.setMemberAsRepository(ai);
 
       if (indexArtifactFilter.filterArtifactInfo(ai)) {
         ai.context = formatContextId(ai);
@@ -1840,6 +2130,7 @@ public class DefaultIndexerManager
     filters.add(new ArtifactInfoFilter()
     {
       public boolean accepts(IndexingContext ctx, ArtifactInfo ai) {
+        GroupMemberIndexCreator.setMemberAsRepository(ai);
         return indexArtifactFilter.filterArtifactInfo(ai);
       }
     });
@@ -1865,18 +2156,7 @@ public class DefaultIndexerManager
       req.setArtifactInfoPostprocessor(new ArtifactInfoPostprocessor()
       {
         public void postprocess(IndexingContext ctx, ArtifactInfo ai) {
-          String result = ai.context;
-
-          try {
-            Repository sourceRepository = repositoryRegistry.getRepository(ai.repository);
-
-            result = sourceRepository.getName();
-          }
-          catch (NoSuchRepositoryException e) {
-            // nothing
-          }
-
-          ai.context = result;
+          setRepositoryNameAsContext(ai);
         }
       });
     }
@@ -2047,17 +2327,108 @@ public class DefaultIndexerManager
     return searchIterator(repositoryId, req);
   }
 
+  public GroupedSearchResponse searchQueryGrouped(Query query, String repositoryId, String cursor, int groupLimit,
+                                                  int versionLimit, int documentLimit)
+      throws NoSuchRepositoryException
+  {
+    List<IndexSnapshot> snapshots = acquireSearchTargetSnapshots(repositoryId);
+
+    if (snapshots == null) {
+      return GroupedSearchResponse.empty(query);
+    }
+
+    try {
+      // several repositories are searched as one, over a cached group snapshot
+      final IndexSnapshot snapshot = snapshots.size() == 1 ? snapshots.get(0)
+          : indexSnapshots.acquireGroup(repositoryId != null ? repositoryId : "*", snapshots);
+      try {
+        // hits not visible to the user are dropped while collecting, before groups are chosen and paged
+        final GAGroupingCollector collector = new GAGroupingCollector(versionLimit, documentLimit,
+            new GAGroupingCollector.HitFilter()
+            {
+              @Override
+              public boolean accepts(final int doc, final ArtifactInfo ai) {
+                if (ai.repository == null) {
+                  ai.repository = snapshot.getContext(doc).getRepositoryId();
+                }
+                return indexArtifactFilter.filterArtifactInfo(ai);
+              }
+            });
+        collector.search(snapshot.getSearcher(), query);
+
+        final List<GAGroupingCollector.Group> page = collector.page(cursor, groupLimit + 1);
+        final boolean hasMore = page.size() > groupLimit;
+        final List<GAGroupingCollector.Group> groups = hasMore ? page.subList(0, groupLimit) : page;
+
+        // only the hits of this page are loaded
+        final List<ArtifactInfo> results = new ArrayList<ArtifactInfo>();
+        for (GAGroupingCollector.Group group : groups) {
+          for (GAGroupingCollector.Hit hit : group.getHits()) {
+            final Document document = snapshot.getSearcher().doc(hit.getDoc());
+            final ArtifactInfo ai = IndexUtils.constructArtifactInfo(document, snapshot.getContext(hit.getDoc()));
+            if (ai != null) {
+              GroupMemberIndexCreator.setMemberAsRepository(ai);
+              ai.setLuceneScore(hit.getScore());
+              setRepositoryNameAsContext(ai);
+              results.add(ai);
+            }
+          }
+        }
+
+        final String nextCursor = hasMore && !groups.isEmpty()
+            ? GAGroupingCollector.encodeCursor(groups.get(groups.size() - 1)) : null;
+        return new GroupedSearchResponse(query, collector.getVisitedDocuments(),
+            collector.isDocumentLimitReached(), results, nextCursor);
+      }
+      finally {
+        if (snapshots.size() > 1) {
+          snapshot.release();
+        }
+      }
+    }
+    catch (BooleanQuery.TooManyClauses e) {
+      if (log.isDebugEnabled()) {
+        log.debug("Too many clauses exception caught:", e);
+      }
+
+      return new GroupedSearchResponse(query, -1, true, Collections.<ArtifactInfo>emptyList(), null);
+    }
+    catch (IOException e) {
+      log.error("Got I/O exception while searching for query \"" + query + "\"", e);
+
+      return GroupedSearchResponse.empty(query);
+    }
+    finally {
+      releaseSnapshots(snapshots);
+    }
+  }
+
+  private void setRepositoryNameAsContext(ArtifactInfo ai) {
+    String result = ai.context;
+
+    try {
+      Repository sourceRepository = repositoryRegistry.getRepository(ai.repository);
+
+      result = sourceRepository.getName();
+    }
+    catch (NoSuchRepositoryException e) {
+      // nothing
+    }
+
+    ai.context = result;
+  }
+
   private FlatSearchResponse searchFlat(String repositoryId, FlatSearchRequest req)
       throws NoSuchRepositoryException
   {
-    LockedIndexingContexts lockedContexts = lockSearchTargetIndexingContexts(repositoryId);
+    List<IndexSnapshot> snapshots = acquireSearchTargetSnapshots(repositoryId);
 
-    if (lockedContexts == null) {
+    if (snapshots == null) {
       return new FlatSearchResponse(req.getQuery(), 0, Collections.<ArtifactInfo>emptySet());
     }
 
     try {
-      req.getContexts().addAll(lockedContexts.contexts.values());
+      req.getContexts().addAll(snapshotContexts(snapshots));
 
       FlatSearchResponse result = mavenIndexer.searchFlat(req);
 
@@ -2079,34 +2450,34 @@ public class DefaultIndexerManager
       return new FlatSearchResponse(req.getQuery(), 0, new HashSet<ArtifactInfo>());
     }
     finally {
-      lockedContexts.lock.unlock();
+      releaseSnapshots(snapshots);
     }
   }
 
   private IteratorSearchResponse searchIterator(String repositoryId, IteratorSearchRequest req)
       throws NoSuchRepositoryException
   {
-    LockedIndexingContexts lockedContexts = lockSearchTargetIndexingContexts(repositoryId);
+    List<IndexSnapshot> snapshots = acquireSearchTargetSnapshots(repositoryId);
 
-    if (lockedContexts == null) {
+    if (snapshots == null) {
       return IteratorSearchResponse.empty(req.getQuery());
     }
 
-    // RuntimeException and ThreadDeath will leave locks locked. Not sure if there is a nice way to avoid this
+    // ThreadDeath will leave snapshots acquired, which keeps their index files open but does not block anyone
 
     try {
-      req.getContexts().addAll(lockedContexts.contexts.values());
+      req.getContexts().addAll(snapshotContexts(snapshots));
 
       IteratorSearchResponse result = mavenIndexer.searchIterator(req);
 
       Query query = result.getQuery();
       int totalHints = result.getTotalHitsCount();
-      IteratorResultSet results = new LockingIteratorResultSet(result.getResults(), lockedContexts.lock);
+      IteratorResultSet results = new SnapshotIteratorResultSet(result.getResults(), snapshots);
 
       return new IteratorSearchResponse(query, totalHints, results);
     }
     catch (BooleanQuery.TooManyClauses e) {
-      lockedContexts.lock.unlock();
+      releaseSnapshots(snapshots);
 
       if (log.isDebugEnabled()) {
         log.debug("Too many clauses exception caught:", e);
@@ -2116,14 +2487,14 @@ public class DefaultIndexerManager
       return IteratorSearchResponse.TOO_MANY_HITS_ITERATOR_SEARCH_RESPONSE;
     }
     catch (IOException e) {
-      lockedContexts.lock.unlock();
+      releaseSnapshots(snapshots);
 
       log.error("Got I/O exception while searching for query \"" + req.getQuery().toString() + "\"", e);
 
       return IteratorSearchResponse.empty(req.getQuery());
     }
     catch (RuntimeException e) {
-      lockedContexts.lock.unlock();
+      releaseSnapshots(snapshots);
 
       throw e;
     }
@@ -2268,7 +2639,7 @@ public class DefaultIndexerManager
     else {
       lock = getRepositoryLock(repository, false /* shared */);
       if (lock != null) {
-        IndexingContext context = getRepositoryIndexContext(repository);
+        IndexingContext context = getIndexingContext(repository);
         if (context != null) {
           lockedContext = new LockingIndexingContext(context, lock);
         }
@@ -2304,7 +2675,7 @@ public class DefaultIndexerManager
     Lock lock = getRepositoryLock(repository, false /* shared */);
     if (lock != null) {
       try {
-        IndexingContext ctx = getRepositoryIndexContext(repository);
+        IndexingContext ctx = getIndexingContext(repository);
         if (ctx != null) {
           runnable.run(ctx);
         }
@@ -2314,7 +2685,13 @@ public class DefaultIndexerManager
         }
       }
       finally {
-        lock.unlock();
+        try {
+          // publish changes to searches
+          indexSnapshots.invalidate(repository.getId());
+        }
+        finally {
+          lock.unlock();
+        }
       }
     }
   }
@@ -2409,11 +2786,17 @@ public class DefaultIndexerManager
     Lock lock = getRepositoryLock(repository, true /* exclusive */);
     if (lock != null) {
       try {
-        IndexingContext ctx = getRepositoryIndexContext(repository);
+        IndexingContext ctx = getIndexingContext(repository);
         runnable.run(ctx);
       }
       finally {
-        lock.unlock();
+        try {
+          // publish changes to searches, or close snapshots of removed/replaced index
+          indexSnapshots.invalidate(repository.getId());
+        }
+        finally {
+          lock.unlock();
+        }
       }
     }
   }
@@ -2423,6 +2806,9 @@ public class DefaultIndexerManager
    * Lucene index. Returns null if requested lock cannot be acquired due to timeout or interruption.
    */
   private Lock getRepositoryLock(Repository repository, boolean exclusive) {
+    // outside of the lock, as adding the context needs exclusive lock
+    maybeAddDeferredRepositoryIndexContext(repository);
+
     final String lockName = exclusive ? "exclusive" : "shared";
 
     Thread deleteThread = deleteThreads.get(repository.getId());
@@ -2483,14 +2869,19 @@ public class DefaultIndexerManager
   }
 
   /**
-   * Resolves and acquires shared lock on the specified repositoryId. If repositoryId corresponds to a group
-   * repository, locks and returns all searchable members with corresponding indexing contexts. If repositoryId is
-   * null, locks and returns all searchable repositories with corresponding indexing contexts.
+   * Resolves and acquires index snapshots of the specified repositoryId. If repositoryId corresponds to a group
+   * repository, returns snapshots of all searchable members with corresponding indexing contexts. If repositoryId is
+   * null, returns snapshots of all searchable repositories with corresponding indexing contexts. Returns null if there
+   * is nothing to search. The caller MUST release returned snapshots.
+   * <p>
+   * Current snapshot of a repository is acquired without locking. Only if there is none, a fresh snapshot is opened
+   * while briefly holding shared lock of the repository.
    */
-  private LockedIndexingContexts lockSearchTargetIndexingContexts(String repositoryId)
+  private List<IndexSnapshot> acquireSearchTargetSnapshots(String repositoryId)
       throws NoSuchRepositoryException
   {
     List<Repository> repositories = new ArrayList<Repository>();
+    Repository group = null;
     if (repositoryId != null) {
       final Repository repository = repositoryRegistry.getRepository(repositoryId);
       if (INCLUDEINSEARCH(repository)) {
@@ -2498,6 +2889,7 @@ public class DefaultIndexerManager
           Map<String, Repository> members = new HashMap<String, Repository>();
           addGroupMembers(members, (GroupRepository) repository);
           repositories.addAll(members.values());
+          group = repository;
         }
         else {
           repositories.add(repository);
@@ -2512,19 +2904,189 @@ public class DefaultIndexerManager
       }
     }
 
-    return lockIndexingContexts(repositories, null);
+    List<IndexSnapshot> snapshots = acquireSnapshots(repositories);
+
+    final MaterializedGroupIndex materializedGroup = group != null ? materializedGroups.get(group.getId()) : null;
+    if (materializedGroup != null && !snapshots.isEmpty()) {
+      IndexSnapshot groupSnapshot = acquireMaterializedGroupSnapshot(group, materializedGroup, snapshots);
+      if (groupSnapshot != null) {
+        releaseSnapshots(snapshots);
+        snapshots = Lists.newArrayList(groupSnapshot);
+      }
+    }
+
+    if (snapshots.isEmpty()) {
+      return null;
+    }
+
+    return snapshots;
   }
 
   /**
-   * Acquires shared locks on specified repositories. Repositories without indexing context are silently ignored.
-   * Returns read-only contexts that are safe to use without explicit repository index locking/unlocking.
+   * Acquires index snapshots of specified repositories, ordered by repository id. Repositories without indexing
+   * context are silently ignored.
    */
-  private LockedIndexingContexts lockIndexingContexts(Collection<Repository> repositories, String force) {
-    // requirements:
-    // - we are only interested in searchable indexing context
-    // - repositories can be added/removed asynchronously and so can change their searchable flag
-    // - we need to guarantee consistent lock order
+  private List<IndexSnapshot> acquireSnapshots(Collection<Repository> repositories) {
+    List<IndexSnapshot> snapshots = new ArrayList<IndexSnapshot>();
+    for (Repository repository : sortById(repositories)) {
+      IndexSnapshot snapshot = acquireSnapshot(repository);
+      if (snapshot != null) {
+        snapshots.add(snapshot);
+      }
+    }
+    return snapshots;
+  }
 
+  private IndexSnapshot acquireSnapshot(Repository repository) {
+    IndexSnapshot snapshot = indexSnapshots.acquire(repository.getId());
+    if (snapshot == null) {
+      Lock lock = getRepositoryLock(repository, false /* shared */);
+      if (lock == null) {
+        return null;
+      }
+      try {
+        IndexingContext context = getIndexingContext(repository);
+        if (context != null) {
+          snapshot = indexSnapshots.open(repository.getId(), context);
+        }
+      }
+      catch (IOException e) {
+        log.warn("Could not open index snapshot of repository {}", repository.getId(), e);
+      }
+      finally {
+        lock.unlock();
+      }
+    }
+    return snapshot;
+  }
+
+  /**
+   * Acquires snapshot of materialized group index, as last synchronized. If the index does not reflect acquired
+   * member snapshots, it is synchronized in background meanwhile. Returns null if the group has to be searched using
+   * member indexes, as its index was never synchronized.
+   */
+  private IndexSnapshot acquireMaterializedGroupSnapshot(final Repository repository,
+                                                         final MaterializedGroupIndex materializedGroup,
+                                                         final List<IndexSnapshot> memberSnapshots)
+  {
+    if (!materializedGroup.isCurrent(searchableSnapshots(memberSnapshots))) {
+      scheduleMaterializedGroupSync(repository, materializedGroup);
+      if (!materializedGroup.isSynced()) {
+        return null;
+      }
+    }
+
+    final IndexSnapshot snapshot = acquireSnapshot(repository);
+    if (snapshot != null && !snapshot.getContext().isSearchable()) {
+      // explicitly searched group that is not searchable by itself
+      releaseSnapshots(Collections.singletonList(snapshot));
+      return null;
+    }
+    return snapshot;
+  }
+
+  private static ThreadPoolExecutor newMaterializedGroupSyncExecutor() {
+    final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 60L, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<java.lang.Runnable>(), new NexusThreadFactory("nxindex-group", "Group index sync"));
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  /**
+   * Schedules synchronization of materialized index of the group repository, unless one is scheduled already.
+   */
+  private void scheduleMaterializedGroupSync(final Repository repository,
+                                             final MaterializedGroupIndex materializedGroup)
+  {
+    if (materializedGroupSyncs.putIfAbsent(repository.getId(), Boolean.TRUE) != null) {
+      return;
+    }
+    try {
+      materializedGroupSyncExecutor.execute(new java.lang.Runnable()
+      {
+        @Override
+        public void run() {
+          try {
+            syncMaterializedGroupIndex(repository, materializedGroup, null);
+          }
+          catch (Exception e) {
+            log.warn("Could not synchronize materialized index of group {}", repository.getId(), e);
+          }
+          finally {
+            materializedGroupSyncs.remove(repository.getId());
+          }
+        }
+      });
+    }
+    catch (RejectedExecutionException e) {
+      // shutting down
+      materializedGroupSyncs.remove(repository.getId());
+    }
+  }
+
+  /**
+   * Synchronizes materialized index of the group repository with its members, then runs the runnable (if any) on the
+   * group indexing context while still holding shared lock of the group.
+   */
+  private void syncMaterializedGroupIndex(final Repository repository, final MaterializedGroupIndex materializedGroup,
+                                          @Nullable final Runnable runnable)
+      throws IOException
+  {
+    final List<IndexSnapshot> snapshots = acquireSnapshots(
+        addGroupMembers(new HashMap<String, Repository>(), repository.adaptToFacet(GroupRepository.class)).values());
+    try {
+      final Map<String, IndexSnapshot> members = searchableSnapshots(snapshots);
+      sharedSingle(repository, new Runnable()
+      {
+        @Override
+        public void run(IndexingContext context)
+            throws IOException
+        {
+          materializedGroup.sync(context, members);
+          if (runnable != null) {
+            runnable.run(context);
+          }
+        }
+      });
+    }
+    finally {
+      releaseSnapshots(snapshots);
+    }
+  }
+
+  /**
+   * Returns snapshots of searchable repositories by repository id, as only those are searched as group members.
+   */
+  private Map<String, IndexSnapshot> searchableSnapshots(List<IndexSnapshot> snapshots) {
+    Map<String, IndexSnapshot> result = new LinkedHashMap<String, IndexSnapshot>();
+    for (IndexSnapshot snapshot : snapshots) {
+      if (snapshot.getContext().isSearchable()) {
+        result.put(snapshot.getContext().getRepositoryId(), snapshot);
+      }
+    }
+    return result;
+  }
+
+  private List<IndexingContext> snapshotContexts(List<IndexSnapshot> snapshots) {
+    List<IndexingContext> contexts = new ArrayList<IndexingContext>(snapshots.size());
+    for (IndexSnapshot snapshot : snapshots) {
+      contexts.add(new SnapshotIndexingContext(snapshot));
+    }
+    return contexts;
+  }
+
+  private void releaseSnapshots(List<IndexSnapshot> snapshots) {
+    for (IndexSnapshot snapshot : snapshots) {
+      try {
+        snapshot.release();
+      }
+      catch (IOException e) {
+        log.warn("Could not release index snapshot of repository {}", snapshot.getContext().getRepositoryId(), e);
+      }
+    }
+  }
+
+  private List<Repository> sortById(Collection<Repository> repositories) {
     ArrayList<Repository> sorted = new ArrayList<Repository>(repositories);
     if (sorted.size() > 1) {
       Collections.sort(sorted, new Comparator<Repository>()
@@ -2535,6 +3097,20 @@ public class DefaultIndexerManager
         }
       });
     }
+    return sorted;
+  }
+
+  /**
+   * Acquires shared locks on specified repositories. Repositories without indexing context are silently ignored.
+   * Returns read-only contexts that are safe to use without explicit repository index locking/unlocking.
+   */
+  private LockedIndexingContexts lockIndexingContexts(Collection<Repository> repositories, String force) {
+    // requirements:
+    // - we are only interested in searchable indexing context
+    // - repositories can be added/removed asynchronously and so can change their searchable flag
+    // - we need to guarantee consistent lock order
+
+    List<Repository> sorted = sortById(repositories);
 
     List<Lock> locks = new ArrayList<Lock>();
     Map<String, IndexingContext> contexts = new LinkedHashMap<String, IndexingContext>();
@@ -2542,7 +3118,7 @@ public class DefaultIndexerManager
       Lock lock = getRepositoryLock(repository, false /* shared */);
       if (lock != null) {
         // at this point repository index cannot be added or removed, we can safely use it
-        IndexingContext context = getRepositoryIndexContext(repository);
+        IndexingContext context = getIndexingContext(repository);
 
         if (!repository.getId().equals(force) && context == null) {
           lock.unlock();
@@ -2590,6 +3166,14 @@ public class DefaultIndexerManager
    * @noreference this method is meant for unit tests only
    */
   public IndexingContext getRepositoryIndexContext(String repositoryId) {
+    if (deferredContexts.contains(repositoryId)) {
+      try {
+        maybeAddDeferredRepositoryIndexContext(repositoryRegistry.getRepository(repositoryId));
+      }
+      catch (NoSuchRepositoryException e) {
+        deferredContexts.remove(repositoryId);
+      }
+    }
     return mavenIndexer.getIndexingContexts().get(getContextId(repositoryId));
   }
 
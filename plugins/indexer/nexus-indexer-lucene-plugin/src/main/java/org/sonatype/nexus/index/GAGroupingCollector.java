@@ -0,0 +1,421 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.index;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+import javax.annotation.Nullable;
+
+import org.sonatype.aether.util.version.GenericVersionScheme;
+import org.sonatype.aether.version.InvalidVersionSpecificationException;
+import org.sonatype.aether.version.Version;
+import org.sonatype.aether.version.VersionScheme;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.io.BaseEncoding;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.FieldCache;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Scorer;
+import org.apache.maven.index.ArtifactInfo;
+import org.apache.maven.index.artifact.VersionUtils;
+
+/**
+ * Lucene {@link Collector} that groups hits by GA while the query executes. GA and version of a hit are read from the
+ * field cache of {@link ArtifactInfo#UINFO}, so no stored document is loaded during collection. Hits rejected by the
+ * {@link HitFilter} (ie. not visible to the user) are dropped right away, so they never make it into groups, nor affect
+ * their order or paging. Each group retains only the hits of its {@code versionLimit} latest versions (plus its latest
+ * release), and collection stops once {@code documentLimit} documents were visited, which bounds the work done for
+ * broad queries. Documents are visited (roughly) in order of their document numbers, not in order of their score, so
+ * once the limit is reached, the collected groups are the ones found in the first {@code documentLimit} matching
+ * documents of the index, not necessarily the best scoring ones.
+ * <p/>
+ * Groups are ordered by their best score, then by GA. This order is stable for an unchanged index, which allows
+ * stateless paging: the cursor of a page is the position of its last group, and the next page starts after it.
+ *
+ * @since 3.0
+ */
+class GAGroupingCollector
+    extends Collector
+{
+  private static final Comparator<Group> GROUP_ORDER = new Comparator<Group>()
+  {
+    @Override
+    public int compare(final Group o1, final Group o2) {
+      final int c = Float.compare(o2.score, o1.score);
+      return c != 0 ? c : o1.key.compareTo(o2.key);
+    }
+  };
+
+  private final VersionScheme versionScheme = new GenericVersionScheme();
+
+  private final int versionLimit;
+
+  private final int documentLimit;
+
+  private final HitFilter filter;
+
+  private final Map<String, Group> groups = Maps.newHashMap();
+
+  private int visitedDocuments;
+
+  private boolean documentLimitReached;
+
+  private String[] currentUinfos;
+
+  private String[] currentMembers;
+
+  private int currentDocBase;
+
+  private Scorer scorer;
+
+  GAGroupingCollector(final int versionLimit, final int documentLimit) {
+    this(versionLimit, documentLimit, null);
+  }
+
+  GAGroupingCollector(final int versionLimit, final int documentLimit, @Nullable final HitFilter filter) {
+    this.versionLimit = Math.max(1, versionLimit);
+    this.documentLimit = documentLimit;
+    this.filter = filter;
+  }
+
+  /**
+   * Collects the hits of query. Hits are document numbers of the searcher, hence it must not be released before the
+   * hits were loaded.
+   */
+  void search(final IndexSearcher searcher, final Query query)
+      throws IOException
+  {
+    if (documentLimitReached) {
+      return;
+    }
+    try {
+      searcher.search(query, this);
+    }
+    catch (DocumentLimitReachedException e) {
+      // the remaining hits are not collected
+    }
+  }
+
+  int getVisitedDocuments() {
+    return visitedDocuments;
+  }
+
+  boolean isDocumentLimitReached() {
+    return documentLimitReached;
+  }
+
+  /**
+   * Returns at most groupLimit groups, starting after the position denoted by cursor (or from first one if cursor is
+   * {@code null}).
+   */
+  List<Group> page(final String cursor, final int groupLimit) {
+    final List<Group> ordered = Lists.newArrayList(groups.values());
+    Collections.sort(ordered, GROUP_ORDER);
+
+    int start = 0;
+    if (cursor != null) {
+      final Group after = decodeCursor(cursor);
+      while (start < ordered.size() && GROUP_ORDER.compare(ordered.get(start), after) <= 0) {
+        start++;
+      }
+    }
+    return ordered.subList(start, Math.min(ordered.size(), start + Math.max(0, groupLimit)));
+  }
+
+  /**
+   * Returns the cursor denoting the position right after the group.
+   */
+  static String encodeCursor(final Group group) {
+    return BaseEncoding.base64Url().encode((group.score + "|" + group.key).getBytes(Charsets.UTF_8));
+  }
+
+  private Group decodeCursor(final String cursor) {
+    try {
+      final String decoded = new String(BaseEncoding.base64Url().decode(cursor), Charsets.UTF_8);
+      final int separator = decoded.indexOf('|');
+      final Group group = new Group(decoded.substring(separator + 1));
+      group.score = Float.parseFloat(decoded.substring(0, separator));
+      return group;
+    }
+    catch (IllegalArgumentException | StringIndexOutOfBoundsException e) {
+      throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+    }
+  }
+
+  // == Collector
+
+  @Override
+  public void setScorer(final Scorer scorer)
+      throws IOException
+  {
+    this.scorer = scorer;
+  }
+
+  @Override
+  public void setNextReader(final IndexReader reader, final int docBase)
+      throws IOException
+  {
+    this.currentUinfos = FieldCache.DEFAULT.getStrings(reader, ArtifactInfo.UINFO);
+    this.currentMembers = filter != null
+        ? FieldCache.DEFAULT.getStrings(reader, GroupMemberIndexCreator.FLD_MEMBER.getKey())
+        : null;
+    this.currentDocBase = docBase;
+  }
+
+  @Override
+  public void collect(final int doc)
+      throws IOException
+  {
+    if (++visitedDocuments > documentLimit) {
+      visitedDocuments = documentLimit;
+      documentLimitReached = true;
+      throw new DocumentLimitReachedException();
+    }
+
+    // descriptor and group list documents have no UINFO
+    final String uinfo = currentUinfos[doc];
+    if (uinfo == null) {
+      return;
+    }
+    final int aEnd = nthIndexOf(uinfo, 2);
+    final int vEnd = nthIndexOf(uinfo, 3);
+    if (aEnd < 0) {
+      return;
+    }
+    final String key = uinfo.substring(0, aEnd).replace(ArtifactInfo.FS, ":");
+    final String version = uinfo.substring(aEnd + 1, vEnd < 0 ? uinfo.length() : vEnd);
+    if (filter != null && !filter.accepts(currentDocBase + doc, artifactInfo(uinfo, currentMembers[doc]))) {
+      return;
+    }
+
+    Group group = groups.get(key);
+    if (group == null) {
+      group = new Group(key);
+      groups.put(key, group);
+    }
+    group.add(version, new Hit(currentDocBase + doc, scorer.score()));
+  }
+
+  @Override
+  public boolean acceptsDocsOutOfOrder() {
+    return true;
+  }
+
+  /**
+   * Returns artifact info with coordinates of UINFO, and repository set to the member repository (if document is
+   * from a materialized group index).
+   */
+  private static ArtifactInfo artifactInfo(final String uinfo, @Nullable final String member) {
+    final String[] parts = uinfo.split(Pattern.quote(ArtifactInfo.FS));
+    final ArtifactInfo artifactInfo = new ArtifactInfo(member, parts[0], parts[1], parts.length > 2 ? parts[2] : null,
+        parts.length > 3 && !ArtifactInfo.NA.equals(parts[3]) ? parts[3] : null);
+    // extension stands for packaging, it maps to itself when path is calculated
+    artifactInfo.packaging = parts.length > 4 ? parts[4] : null;
+    return artifactInfo;
+  }
+
+  private static int nthIndexOf(final String uinfo, final int n) {
+    int idx = -1;
+    for (int i = 0; i < n; i++) {
+      idx = uinfo.indexOf(ArtifactInfo.FS, idx + 1);
+      if (idx < 0) {
+        return -1;
+      }
+    }
+    return idx;
+  }
+
+  private VersionKey parseVersion(final String version) {
+    try {
+      return new VersionKey(version, versionScheme.parseVersion(version));
+    }
+    catch (InvalidVersionSpecificationException e) {
+      // this actually never happens, see GenericVersionScheme imple
+      throw new IllegalStateException("Huh?", e);
+    }
+  }
+
+  // ==
+
+  /**
+   * Filter of hits, applied while collecting.
+   */
+  interface HitFilter
+  {
+    /**
+     * @param doc          the document number of the hit in the searcher.
+     * @param artifactInfo the coordinates of the hit, with repository set if known from the document (member of
+     *                     materialized group index), {@code null} otherwise.
+     */
+    boolean accepts(int doc, ArtifactInfo artifactInfo);
+  }
+
+  private static class DocumentLimitReachedException
+      extends RuntimeException
+  {
+    private DocumentLimitReachedException() {
+      super(null, null, false, false);
+    }
+  }
+
+  /**
+   * A hit, not loaded yet.
+   */
+  static class Hit
+  {
+    private final int doc;
+
+    private final float score;
+
+    private Hit(final int doc, final float score) {
+      this.doc = doc;
+      this.score = score;
+    }
+
+    int getDoc() {
+      return doc;
+    }
+
+    float getScore() {
+      return score;
+    }
+  }
+
+  /**
+   * Hits of one GA, of the retained versions only.
+   */
+  class Group
+  {
+    private final String key;
+
+    private float score = Float.NEGATIVE_INFINITY;
+
+    private final TreeMap<VersionKey, List<Hit>> versions = new TreeMap<VersionKey, List<Hit>>();
+
+    private final Map<String, VersionKey> retained = Maps.newHashMap();
+
+    private final Set<String> dropped = Sets.newHashSet();
+
+    private VersionKey latestRelease;
+
+    private Group(final String key) {
+      this.key = key;
+    }
+
+    String getKey() {
+      return key;
+    }
+
+    float getScore() {
+      return score;
+    }
+
+    /**
+     * Returns hits of retained versions, latest version first.
+     */
+    List<Hit> getHits() {
+      final List<Hit> hits = new ArrayList<Hit>();
+      for (Collection<Hit> versionHits : versions.descendingMap().values()) {
+        hits.addAll(versionHits);
+      }
+      return hits;
+    }
+
+    private void add(final String version, final Hit hit) {
+      // group score counts for dropped versions too
+      score = Math.max(score, hit.score);
+      if (dropped.contains(version)) {
+        return;
+      }
+      VersionKey versionKey = retained.get(version);
+      if (versionKey == null) {
+        versionKey = parseVersion(version);
+        retained.put(version, versionKey);
+        versions.put(versionKey, new ArrayList<Hit>(1));
+        if (!VersionUtils.isSnapshot(version) && (latestRelease == null || latestRelease.compareTo(versionKey) < 0)) {
+          latestRelease = versionKey;
+        }
+        trim();
+      }
+      final List<Hit> hits = versions.get(versionKey);
+      if (hits != null) {
+        hits.add(hit);
+      }
+    }
+
+    /**
+     * Drops lowest versions, retaining the latest versions and the latest release (if it is not one of latest ones).
+     */
+    private void trim() {
+      while (versions.size() > versionLimit) {
+        VersionKey lowest = versions.firstKey();
+        if (lowest.equals(latestRelease)) {
+          if (versions.size() == versionLimit + 1) {
+            return;
+          }
+          lowest = versions.higherKey(lowest);
+        }
+        versions.remove(lowest);
+        retained.remove(lowest.string);
+        dropped.add(lowest.string);
+      }
+    }
+  }
+
+  /**
+   * Version ordered according to Maven versioning rules, while "2" and "2.0" are distinct versions.
+   */
+  private static class VersionKey
+      implements Comparable<VersionKey>
+  {
+    private final String string;
+
+    private final Version version;
+
+    private VersionKey(final String string, final Version version) {
+      this.string = string;
+      this.version = version;
+    }
+
+    @Override
+    public int hashCode() {
+      return string.hashCode();
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+      return this == obj || (obj instanceof VersionKey && string.equals(((VersionKey) obj).string));
+    }
+
+    @Override
+    public int compareTo(final VersionKey other) {
+      final int c = version.compareTo(other.version);
+      return c != 0 ? c : string.compareTo(other.string);
+    }
+  }
+}
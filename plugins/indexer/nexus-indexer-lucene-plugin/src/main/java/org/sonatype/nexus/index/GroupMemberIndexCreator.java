@@ -0,0 +1,97 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.index;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field.Index;
+import org.apache.lucene.document.Field.Store;
+import org.apache.maven.index.ArtifactContext;
+import org.apache.maven.index.ArtifactInfo;
+import org.apache.maven.index.Field;
+import org.apache.maven.index.IndexerField;
+import org.apache.maven.index.IndexerFieldVersion;
+import org.apache.maven.index.creator.AbstractIndexCreator;
+
+/**
+ * Index creator of materialized group indexes (see {@link MaterializedGroupIndex}), handles the field holding the id
+ * of member repository a document was copied from. It is not a component, as it is used with group indexing contexts
+ * only.
+ *
+ * @since 3.0
+ */
+class GroupMemberIndexCreator
+    extends AbstractIndexCreator
+{
+  public static final String ID = "nexus-group-member";
+
+  /**
+   * Attribute of {@link ArtifactInfo} holding the member repository id, as {@link ArtifactInfo#repository} gets
+   * overwritten with the group repository id while searching.
+   */
+  public static final String MEMBER_ATTRIBUTE = "nexus.groupMember";
+
+  public static final IndexerField FLD_MEMBER = new IndexerField(
+      new Field(null, "urn:nexus#", "groupMember", "Group member repository"), IndexerFieldVersion.V3, "nxgm",
+      "Group member repository id (as keyword, stored)", Store.YES, Index.NOT_ANALYZED);
+
+  public GroupMemberIndexCreator() {
+    super(ID);
+  }
+
+  @Override
+  public void populateArtifactInfo(final ArtifactContext artifactContext) {
+    // nothing, the member is known only when copying documents
+  }
+
+  @Override
+  public void updateDocument(final ArtifactInfo artifactInfo, final Document document) {
+    final String member = artifactInfo.getAttributes().get(MEMBER_ATTRIBUTE);
+    if (member != null) {
+      document.add(FLD_MEMBER.toField(member));
+    }
+  }
+
+  @Override
+  public boolean updateArtifactInfo(final Document document, final ArtifactInfo artifactInfo) {
+    final String member = document.get(FLD_MEMBER.getKey());
+    if (member == null) {
+      return false;
+    }
+    artifactInfo.getAttributes().put(MEMBER_ATTRIBUTE, member);
+    artifactInfo.repository = member;
+    return true;
+  }
+
+  /**
+   * Sets the member repository id of an artifact info found in a materialized group index as its repository.
+   */
+  public static void setMemberAsRepository(final ArtifactInfo artifactInfo) {
+    final String member = artifactInfo.getAttributes().get(MEMBER_ATTRIBUTE);
+    if (member != null) {
+      artifactInfo.repository = member;
+    }
+  }
+
+  @Override
+  public Collection<IndexerField> getIndexerFields() {
+    return Arrays.asList(FLD_MEMBER);
+  }
+
+  @Override
+  public String toString() {
+    return ID;
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.index;
+
+import java.util.Collections;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import org.apache.lucene.search.Query;
+import org.apache.maven.index.ArtifactInfo;
+
+/**
+ * Response of a grouped search, see {@link IndexerManager#searchQueryGrouped}. Unlike {@link
+ * org.apache.maven.index.IteratorSearchResponse} it is fully loaded, and does not hold any index lock.
+ *
+ * @since 3.0
+ */
+public class GroupedSearchResponse
+{
+  private final Query query;
+
+  private final int totalHitsCount;
+
+  private final boolean documentLimitReached;
+
+  private final List<ArtifactInfo> results;
+
+  private final String nextCursor;
+
+  public GroupedSearchResponse(final Query query, final int totalHitsCount, final boolean documentLimitReached,
+                               final List<ArtifactInfo> results, @Nullable final String nextCursor)
+  {
+    this.query = query;
+    this.totalHitsCount = totalHitsCount;
+    this.documentLimitReached = documentLimitReached;
+    this.results = results;
+    this.nextCursor = nextCursor;
+  }
+
+  public static GroupedSearchResponse empty(final Query query) {
+    return new GroupedSearchResponse(query, 0, false, Collections.<ArtifactInfo>emptyList(), null);
+  }
+
+  public Query getQuery() {
+    return query;
+  }
+
+  /**
+   * The number of documents matched, or the document limit if it was reached.
+   */
+  public int getTotalHitsCount() {
+    return totalHitsCount;
+  }
+
+  /**
+   * Returns {@code true} if search stopped at the document limit, hence results cover only part of matching
+   * documents. As documents are visited in order of their document numbers, not of their score, the covered part is
+   * the one found first in the index, and better matching documents might be among the ones not visited.
+   */
+  public boolean isDocumentLimitReached() {
+    return documentLimitReached;
+  }
+
+  /**
+   * The hits of the GAs of this page, ordered by GA relevance, hits of one GA being adjacent and ordered by version
+   * descending.
+   */
+  public List<ArtifactInfo> getResults() {
+    return results;
+  }
+
+  /**
+   * The cursor to get the next page with, or {@code null} if this is the last page.
+   */
+  @Nullable
+  public String getNextCursor() {
+    return nextCursor;
+  }
+}
@@ -0,0 +1,264 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.index;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.sonatype.nexus.proxy.repository.ProxyRepository;
+import org.sonatype.nexus.threads.NexusExecutorService;
+import org.sonatype.nexus.threads.NexusThreadFactory;
+import org.sonatype.scheduling.TaskInterruptedException;
+import org.sonatype.scheduling.TaskUtil;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.base.Strings;
+import com.google.common.collect.Maps;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs remote index downloads of several proxy repositories in parallel. At most {@code threads} downloads run at
+ * once, and at most {@code threadsPerHost} of them against the same remote host, to stay polite to remotes proxied by
+ * many repositories. Downloads are started in the order of repositories, as limits allow. Time spent downloading and
+ * applying the index of each repository is logged.
+ * <p/>
+ * The calling thread waits for all downloads and checks for task cancellation meanwhile. Once cancelled, pending
+ * downloads are not started, and running ones stop at their next {@link #checkCancelled()}, which downloads call
+ * between index chunks, and the calling thread waits for them to stop. Running downloads are not interrupted, as an
+ * interrupt during I/O closes the channels of the NIOFSDirectory the index is applied to.
+ *
+ * @since 3.0
+ */
+class IndexDownloadScheduler
+{
+  /**
+   * The download of one repository index.
+   */
+  interface Download
+  {
+    void download(ProxyRepository repository)
+        throws IOException;
+  }
+
+  private static final Logger log = LoggerFactory.getLogger(IndexDownloadScheduler.class);
+
+  /**
+   * The cancellation flag of the run the download of current thread belongs to.
+   */
+  private static final ThreadLocal<AtomicBoolean> CANCELLED = new ThreadLocal<AtomicBoolean>();
+
+  private final int threads;
+
+  private final int threadsPerHost;
+
+  IndexDownloadScheduler(final int threads, final int threadsPerHost) {
+    this.threads = Math.max(1, threads);
+    this.threadsPerHost = Math.max(1, threadsPerHost);
+  }
+
+  /**
+   * Downloads indexes of all repositories, returns exceptions of failed downloads.
+   */
+  List<IOException> run(final List<ProxyRepository> repositories, final Download download) {
+    final Stopwatch stopwatch = Stopwatch.createStarted();
+    final List<IOException> exceptions = new ArrayList<IOException>();
+    if (repositories.isEmpty()) {
+      return exceptions;
+    }
+
+    final ExecutorService executor = NexusExecutorService.forCurrentSubject(Executors.newFixedThreadPool(
+        Math.min(threads, repositories.size()), new NexusThreadFactory("nxindex-download", "Index download")));
+    final CompletionService<Result> completionService = new ExecutorCompletionService<Result>(executor);
+    final LinkedList<ProxyRepository> pending = new LinkedList<ProxyRepository>(repositories);
+    final Map<String, Integer> running = Maps.newHashMap();
+    final AtomicBoolean cancelled = new AtomicBoolean();
+    int runningTotal = 0;
+    boolean completed = false;
+    try {
+      while (!pending.isEmpty() || runningTotal > 0) {
+        TaskUtil.checkInterruption();
+
+        for (Iterator<ProxyRepository> i = pending.iterator(); i.hasNext() && runningTotal < threads; ) {
+          final ProxyRepository repository = i.next();
+          final String host = getHost(repository);
+          final int runningOnHost = running.containsKey(host) ? running.get(host) : 0;
+          if (runningOnHost < threadsPerHost) {
+            i.remove();
+            running.put(host, runningOnHost + 1);
+            runningTotal++;
+            completionService.submit(new Job(repository, host, download, cancelled));
+          }
+        }
+
+        final Future<Result> done = completionService.poll(1, TimeUnit.SECONDS);
+        if (done != null) {
+          final Result result = done.get();
+          running.put(result.host, running.get(result.host) - 1);
+          runningTotal--;
+          if (result.exception != null) {
+            exceptions.add(result.exception);
+          }
+        }
+      }
+      completed = true;
+    }
+    catch (InterruptedException e) {
+      throw new TaskInterruptedException("Thread \"" + Thread.currentThread().getName() + "\" is interrupted!",
+          false);
+    }
+    catch (ExecutionException e) {
+      // jobs do not throw, so this is an Error
+      throw new IllegalStateException(e.getCause());
+    }
+    finally {
+      if (!completed) {
+        cancelled.set(true);
+      }
+      executor.shutdown();
+      awaitTermination(executor, runningTotal);
+    }
+
+    log.info("Downloaded remote indexes of {} repositories in {} ({} failed)", repositories.size(), stopwatch,
+        exceptions.size());
+    return exceptions;
+  }
+
+  /**
+   * Checks whether the run of the download executing in current thread was cancelled, throwing
+   * {@link TaskInterruptedException} if so. Does nothing outside of downloads run by this class.
+   */
+  static void checkCancelled()
+      throws TaskInterruptedException
+  {
+    final AtomicBoolean cancelled = CANCELLED.get();
+    if (cancelled != null && cancelled.get()) {
+      throw new TaskInterruptedException("Index download in thread \"" + Thread.currentThread().getName()
+          + "\" is canceled!", true);
+    }
+  }
+
+  /**
+   * Waits (uninterruptibly) for running downloads to finish or stop, so index is not updated once run returned.
+   */
+  private static void awaitTermination(final ExecutorService executor, final int runningTotal) {
+    boolean interrupted = false;
+    try {
+      while (true) {
+        try {
+          if (executor.awaitTermination(1, TimeUnit.SECONDS)) {
+            return;
+          }
+          log.info("Waiting for {} running remote index downloads to stop", runningTotal);
+        }
+        catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+    }
+    finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * Returns the remote host of repository, downloads from same host are limited together.
+   */
+  static String getHost(final ProxyRepository repository) {
+    try {
+      final String host = URI.create(Strings.nullToEmpty(repository.getRemoteUrl())).getHost();
+      if (host != null) {
+        return host.toLowerCase();
+      }
+    }
+    catch (IllegalArgumentException e) {
+      // fall through
+    }
+    // not limited with others
+    return "repository:" + repository.getId();
+  }
+
+  // ==
+
+  private static class Result
+  {
+    private final String host;
+
+    private final IOException exception;
+
+    private Result(final String host, final IOException exception) {
+      this.host = host;
+      this.exception = exception;
+    }
+  }
+
+  private static class Job
+      implements Callable<Result>
+  {
+    private final ProxyRepository repository;
+
+    private final String host;
+
+    private final Download download;
+
+    private final AtomicBoolean cancelled;
+
+    private Job(final ProxyRepository repository, final String host, final Download download,
+                final AtomicBoolean cancelled)
+    {
+      this.repository = repository;
+      this.host = host;
+      this.download = download;
+      this.cancelled = cancelled;
+    }
+
+    @Override
+    public Result call() {
+      final Stopwatch stopwatch = Stopwatch.createStarted();
+      IOException exception = null;
+      CANCELLED.set(cancelled);
+      try {
+        checkCancelled();
+        download.download(repository);
+      }
+      catch (IOException e) {
+        exception = e;
+      }
+      catch (RuntimeException e) {
+        exception = new IOException("Could not download remote index of repository " + repository.getId(), e);
+      }
+      finally {
+        CANCELLED.remove();
+      }
+      log.info("Remote index download of repository {} from {} took {}{}", repository.getId(), host, stopwatch,
+          exception != null ? " (failed)" : "");
+      return new Result(host, exception);
+    }
+  }
+}
@@ -0,0 +1,171 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.index;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.MultiReader;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.util.ReaderUtil;
+import org.apache.maven.index.context.IndexingContext;
+
+/**
+ * Reference counted point-in-time view of one repository index, or of several of them (a "group" snapshot). The view
+ * is not affected by index modifications and stays open until it is retired and the last holder released it, hence
+ * it can be searched without holding any repository lock.
+ *
+ * @since 3.0
+ */
+class IndexSnapshot
+{
+  private final IndexReader reader;
+
+  private final IndexSearcher searcher;
+
+  private final List<IndexingContext> contexts;
+
+  private final List<IndexSnapshot> members;
+
+  private final int[] starts;
+
+  private final AtomicBoolean retired = new AtomicBoolean();
+
+  private IndexSnapshot(final IndexReader reader, final IndexSearcher searcher, final List<IndexingContext> contexts,
+                        final List<IndexSnapshot> members, final int[] starts)
+  {
+    this.reader = reader;
+    this.searcher = searcher;
+    this.contexts = contexts;
+    this.members = members;
+    this.starts = starts;
+  }
+
+  /**
+   * Opens snapshot of the current state of context index. The caller must hold (at least) shared lock of the
+   * repository.
+   */
+  static IndexSnapshot open(final IndexingContext context)
+      throws IOException
+  {
+    // the reference acquired here is the one of the snapshot itself, dropped when the snapshot is retired
+    final IndexSearcher searcher = context.acquireIndexSearcher();
+    return new IndexSnapshot(searcher.getIndexReader(), searcher, Collections.singletonList(context),
+        Collections.<IndexSnapshot>emptyList(), new int[]{0});
+  }
+
+  /**
+   * Opens group snapshot over the member snapshots. The group keeps its members readers open until it is closed,
+   * the members themselves may be released right after this method returns.
+   */
+  static IndexSnapshot open(final List<IndexSnapshot> members) {
+    final IndexReader[] readers = new IndexReader[members.size()];
+    final List<IndexingContext> contexts = new ArrayList<IndexingContext>(members.size());
+    final int[] starts = new int[members.size()];
+    int maxDoc = 0;
+    for (int i = 0; i < readers.length; i++) {
+      final IndexSnapshot member = members.get(i);
+      readers[i] = member.reader;
+      contexts.add(member.getContext());
+      starts[i] = maxDoc;
+      maxDoc += member.reader.maxDoc();
+    }
+    // does not close, but increments and decrements reference count of member readers
+    final MultiReader reader = new MultiReader(readers, false);
+    return new IndexSnapshot(reader, new IndexSearcher(reader), contexts,
+        Collections.unmodifiableList(new ArrayList<IndexSnapshot>(members)), starts);
+  }
+
+  IndexSearcher getSearcher() {
+    return searcher;
+  }
+
+  IndexReader getReader() {
+    return reader;
+  }
+
+  /**
+   * Returns the context of single repository snapshot.
+   */
+  IndexingContext getContext() {
+    if (contexts.size() != 1) {
+      throw new IllegalStateException("Group snapshot has " + contexts.size() + " contexts");
+    }
+    return contexts.get(0);
+  }
+
+  /**
+   * Returns the context the document of this snapshot searcher belongs to.
+   */
+  IndexingContext getContext(final int doc) {
+    return contexts.get(ReaderUtil.subIndex(doc, starts));
+  }
+
+  /**
+   * Returns {@code true} if this snapshot is a group snapshot of exactly these member snapshots.
+   */
+  boolean hasMembers(final List<IndexSnapshot> snapshots) {
+    if (members.size() != snapshots.size()) {
+      return false;
+    }
+    for (int i = 0; i < members.size(); i++) {
+      if (members.get(i) != snapshots.get(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns {@code true} if this snapshot covers the index of the repository.
+   */
+  boolean covers(final String repositoryId) {
+    for (IndexingContext context : contexts) {
+      if (repositoryId.equals(context.getRepositoryId())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Acquires a reference to this snapshot, returns {@code false} if the snapshot is already closed. Every successful
+   * acquire must be paired with {@link #release()}.
+   */
+  boolean tryAcquire() {
+    return reader.tryIncRef();
+  }
+
+  void release()
+      throws IOException
+  {
+    // this is what SearcherManager.release does too, and it works even if the context is closed meanwhile
+    reader.decRef();
+  }
+
+  /**
+   * Drops the reference of the snapshot itself, the snapshot gets closed once all holders released it. Does nothing
+   * if already retired.
+   */
+  void retire()
+      throws IOException
+  {
+    if (retired.compareAndSet(false, true)) {
+      reader.decRef();
+    }
+  }
+}
@@ -0,0 +1,182 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.index;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
+
+import org.apache.maven.index.context.IndexingContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Current {@link IndexSnapshot}s of repository indexes, and group snapshots over them. Searches acquire the current
+ * snapshot without any locking. Index modifications invalidate the current snapshot of the repository (and the group
+ * snapshots containing it), which publishes the modification: next search opens a fresh snapshot, while searches in
+ * progress finish on the snapshot they acquired.
+ *
+ * @since 3.0
+ */
+class IndexSnapshots
+{
+  private static final Logger log = LoggerFactory.getLogger(IndexSnapshots.class);
+
+  private final ConcurrentMap<String, IndexSnapshot> snapshots = new ConcurrentHashMap<String, IndexSnapshot>();
+
+  private final ConcurrentMap<String, IndexSnapshot> groups = new ConcurrentHashMap<String, IndexSnapshot>();
+
+  /**
+   * Invalidation count per repository, used to not publish snapshots opened concurrently with an invalidation.
+   */
+  private final ConcurrentMap<String, AtomicLong> generations = new ConcurrentHashMap<String, AtomicLong>();
+
+  /**
+   * Acquires current snapshot of the repository index, or returns {@code null} if there is none.
+   */
+  @Nullable
+  IndexSnapshot acquire(final String repositoryId) {
+    final IndexSnapshot snapshot = snapshots.get(repositoryId);
+    if (snapshot != null && snapshot.tryAcquire()) {
+      return snapshot;
+    }
+    return null;
+  }
+
+  /**
+   * Opens, publishes and acquires new snapshot of the repository index. The caller must hold (at least) shared lock of
+   * the repository.
+   */
+  IndexSnapshot open(final String repositoryId, final IndexingContext context)
+      throws IOException
+  {
+    final AtomicLong generation = generation(repositoryId);
+    final long expected = generation.get();
+
+    final IndexSnapshot snapshot = IndexSnapshot.open(context);
+    snapshot.tryAcquire();
+
+    if (generation.get() == expected) {
+      final IndexSnapshot previous = snapshots.put(repositoryId, snapshot);
+      if (previous != null) {
+        previous.retire();
+      }
+      // invalidated while publishing
+      if (generation.get() != expected && snapshots.remove(repositoryId, snapshot)) {
+        snapshot.retire();
+      }
+    }
+    else {
+      // possibly stale already, used by the caller only
+      snapshot.retire();
+    }
+    return snapshot;
+  }
+
+  /**
+   * Acquires group snapshot over the acquired member snapshots. The group snapshot is cached under the key, and reused
+   * as long as the members are unchanged.
+   */
+  IndexSnapshot acquireGroup(final String key, final List<IndexSnapshot> members) {
+    final IndexSnapshot current = groups.get(key);
+    if (current != null && current.hasMembers(members) && current.tryAcquire()) {
+      return current;
+    }
+
+    final IndexSnapshot group = IndexSnapshot.open(members);
+    group.tryAcquire();
+
+    final boolean published = current == null ? groups.putIfAbsent(key, group) == null
+        : groups.replace(key, current, group);
+    if (published) {
+      if (current != null) {
+        retire(current);
+      }
+      // a member was invalidated meanwhile
+      if (!isCurrent(members) && groups.remove(key, group)) {
+        retire(group);
+      }
+    }
+    else {
+      retire(group);
+    }
+    return group;
+  }
+
+  /**
+   * Invalidates current snapshot of the repository index, and group snapshots over it.
+   */
+  void invalidate(final String repositoryId)
+      throws IOException
+  {
+    generation(repositoryId).incrementAndGet();
+    final IndexSnapshot snapshot = snapshots.remove(repositoryId);
+    if (snapshot != null) {
+      snapshot.retire();
+    }
+    for (Map.Entry<String, IndexSnapshot> entry : groups.entrySet()) {
+      if (entry.getValue().covers(repositoryId) && groups.remove(entry.getKey(), entry.getValue())) {
+        entry.getValue().retire();
+      }
+    }
+  }
+
+  void invalidateAll()
+      throws IOException
+  {
+    for (String repositoryId : snapshots.keySet()) {
+      invalidate(repositoryId);
+    }
+    for (String key : groups.keySet()) {
+      final IndexSnapshot group = groups.remove(key);
+      if (group != null) {
+        group.retire();
+      }
+    }
+  }
+
+  private AtomicLong generation(final String repositoryId) {
+    AtomicLong generation = generations.get(repositoryId);
+    if (generation == null) {
+      final AtomicLong created = new AtomicLong();
+      generation = generations.putIfAbsent(repositoryId, created);
+      if (generation == null) {
+        generation = created;
+      }
+    }
+    return generation;
+  }
+
+  private boolean isCurrent(final List<IndexSnapshot> members) {
+    for (IndexSnapshot member : members) {
+      if (snapshots.get(member.getContext().getRepositoryId()) != member) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void retire(final IndexSnapshot group) {
+    try {
+      group.retire();
+    }
+    catch (IOException e) {
+      log.warn("Could not close group index snapshot", e);
+    }
+  }
+}
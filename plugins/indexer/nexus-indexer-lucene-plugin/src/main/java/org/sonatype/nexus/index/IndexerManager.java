@@ -78,6 +78,15 @@ public interface IndexerManager
   void updateRepositoryIndexContext(String repositoryId)
       throws IOException, NoSuchRepositoryException;
 
+  /**
+   * Adds IndexContexts of repositories whose context creation was deferred while Nexus was booting. Contexts not
+   * added by this method are added on first use.
+   *
+   * @since 3.0
+   */
+  void addDeferredRepositoryIndexContexts()
+      throws IOException;
+
   // ----------------------------------------------------------------------------
   // adding/removing on the fly
   // ----------------------------------------------------------------------------
@@ -88,6 +97,14 @@ public interface IndexerManager
   void addItemToIndex(Repository repository, StorageItem item)
       throws IOException;
 
+  /**
+   * Adds items on given paths to index in a single batch.
+   *
+   * @since 3.0
+   */
+  void addItemsToIndex(Repository repository, Collection<String> paths)
+      throws IOException;
+
   /**
    * Removes single item from index.
    */
@@ -185,6 +202,22 @@ public interface IndexerManager
                                                             List<ArtifactInfoFilter> filters)
       throws NoSuchRepositoryException;
 
+  /**
+   * Searches with the query, grouping hits by GA while the query executes. Only hits of the latest versionLimit
+   * versions (and the latest release) are returned for a GA, and at most groupLimit GAs are returned, starting after
+   * the cursor of the previous page. Hits not visible to the current user are dropped while collecting. At most
+   * documentLimit matching documents are visited, in order of document numbers rather than score, so when the limit
+   * is reached, results are the GAs of the first matching documents in the index, not necessarily the best matching
+   * ones. Index is not locked once this method returns.
+   *
+   * @param cursor the cursor of the previous page, or {@code null} to get the first page.
+   * @throws IllegalArgumentException if the cursor is invalid.
+   * @since 3.0
+   */
+  GroupedSearchResponse searchQueryGrouped(Query query, String repositoryId, String cursor, int groupLimit,
+                                           int versionLimit, int documentLimit)
+      throws NoSuchRepositoryException;
+
   // ----------------------------------------------------------------------------
   // Query construction
   // ----------------------------------------------------------------------------
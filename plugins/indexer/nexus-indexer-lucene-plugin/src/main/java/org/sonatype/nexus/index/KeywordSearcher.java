@@ -22,8 +22,12 @@ import javax.inject.Singleton;
 import org.sonatype.nexus.proxy.NoSuchRepositoryException;
 
 import org.apache.commons.lang.StringUtils;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.Query;
 import org.apache.maven.index.ArtifactInfoFilter;
 import org.apache.maven.index.IteratorSearchResponse;
+import org.apache.maven.index.MAVEN;
 import org.apache.maven.index.SearchType;
 
 /**
@@ -75,4 +79,30 @@ public class KeywordSearcher
         searchType, filters);
   }
 
+  /**
+   * Searches the keyword in group and artifact IDs, like {@link IndexerManager#searchArtifactIterator(String,
+   * String, Integer, Integer, Integer, boolean, SearchType, List)} does.
+   */
+  public GroupedSearchResponse groupedSearch(Map<String, String> terms, String repositoryId, String cursor,
+                                             int groupLimit, int versionLimit, int documentLimit,
+                                             SearchType searchType)
+      throws NoSuchRepositoryException
+  {
+    if (!canHandle(terms)) {
+      return GroupedSearchResponse.empty(null);
+    }
+
+    final String term = terms.get(TERM_KEYWORD);
+    final Query q1 = m_lucene.constructQuery(MAVEN.GROUP_ID, term, searchType);
+    q1.setBoost(2.0f);
+    final Query q2 = m_lucene.constructQuery(MAVEN.ARTIFACT_ID, term, searchType);
+    q2.setBoost(2.0f);
+
+    final BooleanQuery bq = new BooleanQuery();
+    bq.add(q1, BooleanClause.Occur.SHOULD);
+    bq.add(q2, BooleanClause.Occur.SHOULD);
+
+    return m_lucene.searchQueryGrouped(bq, repositoryId, cursor, groupLimit, versionLimit, documentLimit);
+  }
+
 }
@@ -0,0 +1,377 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+import org.sonatype.nexus.util.file.DirSupport;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldSelector;
+import org.apache.lucene.document.MapFieldSelector;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermDocs;
+import org.apache.lucene.index.TermEnum;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.maven.index.ArtifactInfo;
+import org.apache.maven.index.context.IndexCreator;
+import org.apache.maven.index.context.IndexUtils;
+import org.apache.maven.index.context.IndexingContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Materialized index of a group repository: a regular index holding copies of the documents of its (searchable leaf)
+ * members, each tagged with the member repository id (see {@link GroupMemberIndexCreator}). Group searches and
+ * publishing then use a single index instead of merging members at query time.
+ * <p/>
+ * The index is synchronized with members one member at a time: only members added to the group, removed from it, or
+ * whose index changed since last synchronization are applied. A changed member is diffed document by document,
+ * streaming its UINFO terms and looking up the copies by key: only documents whose last modified timestamp in member
+ * index changed are copied again (and get a new last modified timestamp in the group), and only copies of artifacts
+ * gone from member are deleted. Artifacts that disappeared from the whole group get deletion markers, so incremental
+ * index chunks published for the group carry the actual delta only. The member index versions applied are persisted
+ * next to the group index.
+ * <p/>
+ * Synchronization is not meant to run on search path: searches use the state of last synchronization (see
+ * {@link #isSynced()}) while the index is synchronized in background.
+ *
+ * @since 3.0
+ */
+class MaterializedGroupIndex
+{
+  static final String STATE_FILE = "nexus-group-members.properties";
+
+  /**
+   * Key of a copy: member repository id and UINFO (as keyword, not stored).
+   */
+  static final String FLD_COPY_KEY = "nxgmk";
+
+  /**
+   * Last modified timestamp of the document in member index the copy was made of (stored, not indexed).
+   */
+  static final String FLD_MEMBER_LAST_MODIFIED = "nxgmm";
+
+  private static final FieldSelector LAST_MODIFIED_SELECTOR = new MapFieldSelector(ArtifactInfo.LAST_MODIFIED);
+
+  private static final FieldSelector MEMBER_LAST_MODIFIED_SELECTOR = new MapFieldSelector(FLD_MEMBER_LAST_MODIFIED);
+
+  private static final FieldSelector UINFO_SELECTOR = new MapFieldSelector(ArtifactInfo.UINFO);
+
+  private static final Logger log = LoggerFactory.getLogger(MaterializedGroupIndex.class);
+
+  private final String repositoryId;
+
+  private final File stateFile;
+
+  /**
+   * Member repository id to the version of member index applied, replaced when synchronization is done, so it is
+   * read without waiting for a running synchronization.
+   */
+  private volatile Map<String, Long> applied = ImmutableMap.of();
+
+  private volatile boolean synced;
+
+  MaterializedGroupIndex(final String repositoryId, final File indexDirectory) {
+    this.repositoryId = repositoryId;
+    this.stateFile = new File(indexDirectory, STATE_FILE);
+    load();
+  }
+
+  /**
+   * Returns {@code true} if the group index was synchronized at least once, hence it can be searched (possibly
+   * without the latest changes of members).
+   */
+  boolean isSynced() {
+    return synced;
+  }
+
+  /**
+   * Returns {@code true} if the group index reflects exactly the given member snapshots.
+   */
+  boolean isCurrent(final Map<String, IndexSnapshot> members) {
+    final Map<String, Long> applied = this.applied;
+    if (!applied.keySet().equals(members.keySet())) {
+      return false;
+    }
+    for (Map.Entry<String, IndexSnapshot> entry : members.entrySet()) {
+      if (applied.get(entry.getKey()) != entry.getValue().getReader().getVersion()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Applies the members changed since last synchronization to the group index. The caller must hold (at least)
+   * shared lock of the group repository.
+   */
+  synchronized void sync(final IndexingContext context, final Map<String, IndexSnapshot> members)
+      throws IOException
+  {
+    final Set<String> removed = Sets.newHashSet(applied.keySet());
+    removed.removeAll(members.keySet());
+    final Map<String, IndexSnapshot> changed = Maps.newTreeMap();
+    for (Map.Entry<String, IndexSnapshot> entry : members.entrySet()) {
+      final Long version = applied.get(entry.getKey());
+      if (version == null || version != entry.getValue().getReader().getVersion()) {
+        changed.put(entry.getKey(), entry.getValue());
+      }
+    }
+    if (removed.isEmpty() && changed.isEmpty()) {
+      synced = true;
+      return;
+    }
+
+    log.debug("Synchronizing materialized index of group {}, removed members {}, changed members {}", repositoryId,
+        removed, changed.keySet());
+
+    final Map<String, Long> nowApplied = Maps.newHashMap(applied);
+    final Set<String> allGroups = Sets.newHashSet(context.getAllGroups());
+    final Set<String> rootGroups = Sets.newHashSet(context.getRootGroups());
+    // UINFOs whose copy was deleted, to be checked against other members once all members are applied
+    final Set<String> dropped = Sets.newHashSet();
+    final long now = System.currentTimeMillis();
+    final IndexSearcher searcher = context.acquireIndexSearcher();
+    try {
+      // state of group before this synchronization, members only look up their own copies in it
+      final IndexReader groupReader = searcher.getIndexReader();
+      for (String member : removed) {
+        apply(context, groupReader, member, null, now, allGroups, rootGroups, dropped);
+        nowApplied.remove(member);
+      }
+      for (Map.Entry<String, IndexSnapshot> entry : changed.entrySet()) {
+        apply(context, groupReader, entry.getKey(), entry.getValue().getReader(), now, allGroups, rootGroups,
+            dropped);
+        nowApplied.put(entry.getKey(), entry.getValue().getReader().getVersion());
+      }
+    }
+    finally {
+      context.releaseIndexSearcher(searcher);
+    }
+    markDeleted(context, dropped, now);
+    context.setAllGroups(allGroups);
+    context.setRootGroups(rootGroups);
+    context.updateTimestamp(true);
+    context.commit();
+    applied = ImmutableMap.copyOf(nowApplied);
+    synced = true;
+    store();
+  }
+
+  /**
+   * Applies the documents of member reader to the copies of member, or deletes the copies if reader is null.
+   */
+  private void apply(final IndexingContext context, final IndexReader groupReader, final String member,
+                     @Nullable final IndexReader reader, final long now, final Set<String> allGroups,
+                     final Set<String> rootGroups, final Set<String> dropped)
+      throws IOException
+  {
+    final IndexWriter writer = context.getIndexWriter();
+    int copied = 0;
+    int unchanged = 0;
+    if (reader != null) {
+      final TermEnum terms = reader.terms(new Term(ArtifactInfo.UINFO, ""));
+      final TermDocs termDocs = reader.termDocs();
+      try {
+        do {
+          final Term term = terms.term();
+          if (term == null || !ArtifactInfo.UINFO.equals(term.field())) {
+            break;
+          }
+          termDocs.seek(terms);
+          if (!termDocs.next()) {
+            // deleted
+            continue;
+          }
+          final String uinfo = term.text();
+          final String key = key(member, uinfo);
+          final String lastModified = reader.document(termDocs.doc(), LAST_MODIFIED_SELECTOR)
+              .get(ArtifactInfo.LAST_MODIFIED);
+          if (lastModified != null && lastModified.equals(copyLastModified(groupReader, key))) {
+            unchanged++;
+            continue;
+          }
+          final Document document = reader.document(termDocs.doc());
+          final ArtifactInfo ai = IndexUtils.constructArtifactInfo(document, context);
+          if (ai == null) {
+            continue;
+          }
+          ai.getAttributes().put(GroupMemberIndexCreator.MEMBER_ATTRIBUTE, member);
+          writer.updateDocument(new Term(FLD_COPY_KEY, key), copy(context, ai, uinfo, key, lastModified, now));
+          copied++;
+
+          allGroups.add(ai.groupId);
+          rootGroups.add(ai.getRootGroup());
+        }
+        while (terms.next());
+      }
+      finally {
+        termDocs.close();
+        terms.close();
+      }
+    }
+
+    // copies of artifacts the member does not have anymore
+    int deleted = 0;
+    final TermDocs copies = groupReader.termDocs(new Term(GroupMemberIndexCreator.FLD_MEMBER.getKey(), member));
+    try {
+      while (copies.next()) {
+        final String uinfo = groupReader.document(copies.doc(), UINFO_SELECTOR).get(ArtifactInfo.UINFO);
+        if (uinfo != null && (reader == null || !contains(reader, uinfo))) {
+          writer.deleteDocuments(new Term(FLD_COPY_KEY, key(member, uinfo)));
+          dropped.add(uinfo);
+          deleted++;
+        }
+      }
+    }
+    finally {
+      copies.close();
+    }
+
+    log.debug("Applied member {} to materialized index of group {}: {} documents copied, {} unchanged, {} deleted",
+        member, repositoryId, copied, unchanged, deleted);
+  }
+
+  /**
+   * Adds deletion markers of dropped artifacts not present in any member anymore, which is checked against the
+   * current state of group index, including the changes of all members applied by this synchronization.
+   */
+  private void markDeleted(final IndexingContext context, final Set<String> dropped, final long now)
+      throws IOException
+  {
+    if (dropped.isEmpty()) {
+      return;
+    }
+    final IndexWriter writer = context.getIndexWriter();
+    int markers = 0;
+    final IndexReader reader = IndexReader.open(writer, true);
+    try {
+      for (String uinfo : dropped) {
+        if (!contains(reader, uinfo)) {
+          final Document marker = new Document();
+          marker.add(new Field(ArtifactInfo.DELETED, uinfo, Field.Store.YES, Field.Index.NO));
+          marker.add(new Field(ArtifactInfo.LAST_MODIFIED, Long.toString(now), Field.Store.YES, Field.Index.NO));
+          writer.addDocument(marker);
+          markers++;
+        }
+      }
+    }
+    finally {
+      reader.close();
+    }
+    log.debug("Marked {} artifacts deleted from materialized index of group {}", markers, repositoryId);
+  }
+
+  /**
+   * Creates group document of the artifact, recording the last modified timestamp of member document.
+   */
+  private Document copy(final IndexingContext context, final ArtifactInfo ai, final String uinfo, final String key,
+                        @Nullable final String memberLastModified, final long now)
+  {
+    final Document document = new Document();
+    document.add(new Field(ArtifactInfo.UINFO, uinfo, Field.Store.YES, Field.Index.NOT_ANALYZED));
+    document.add(new Field(FLD_COPY_KEY, key, Field.Store.NO, Field.Index.NOT_ANALYZED));
+    for (IndexCreator indexCreator : context.getIndexCreators()) {
+      indexCreator.updateDocument(ai, document);
+    }
+    if (memberLastModified != null) {
+      document.add(new Field(FLD_MEMBER_LAST_MODIFIED, memberLastModified, Field.Store.YES, Field.Index.NO));
+    }
+    document.add(new Field(ArtifactInfo.LAST_MODIFIED, Long.toString(now), Field.Store.YES, Field.Index.NO));
+    return document;
+  }
+
+  /**
+   * Returns the member last modified timestamp recorded in copy, or {@code null} if there is no such copy.
+   */
+  private String copyLastModified(final IndexReader groupReader, final String key)
+      throws IOException
+  {
+    final TermDocs termDocs = groupReader.termDocs(new Term(FLD_COPY_KEY, key));
+    try {
+      return termDocs.next()
+          ? groupReader.document(termDocs.doc(), MEMBER_LAST_MODIFIED_SELECTOR).get(FLD_MEMBER_LAST_MODIFIED)
+          : null;
+    }
+    finally {
+      termDocs.close();
+    }
+  }
+
+  private static boolean contains(final IndexReader reader, final String uinfo)
+      throws IOException
+  {
+    final TermDocs termDocs = reader.termDocs(new Term(ArtifactInfo.UINFO, uinfo));
+    try {
+      return termDocs.next();
+    }
+    finally {
+      termDocs.close();
+    }
+  }
+
+  private static String key(final String member, final String uinfo) {
+    return member + ArtifactInfo.FS + uinfo;
+  }
+
+  // == State
+
+  private void load() {
+    if (!stateFile.isFile()) {
+      return;
+    }
+    final Properties properties = new Properties();
+    try (InputStream in = Files.newInputStream(stateFile.toPath())) {
+      properties.load(in);
+      final Map<String, Long> loaded = Maps.newHashMap();
+      for (String member : properties.stringPropertyNames()) {
+        loaded.put(member, Long.valueOf(properties.getProperty(member)));
+      }
+      applied = ImmutableMap.copyOf(loaded);
+      synced = true;
+    }
+    catch (IOException | NumberFormatException e) {
+      // members will be applied again
+      log.warn("Could not read state of materialized index of group {}", repositoryId, e);
+    }
+  }
+
+  private void store()
+      throws IOException
+  {
+    final Properties properties = new Properties();
+    for (Map.Entry<String, Long> entry : applied.entrySet()) {
+      properties.setProperty(entry.getKey(), entry.getValue().toString());
+    }
+    DirSupport.mkdir(stateFile.getParentFile().toPath());
+    try (OutputStream out = Files.newOutputStream(stateFile.toPath())) {
+      properties.store(out, "Member index versions applied to materialized group index");
+    }
+  }
+}
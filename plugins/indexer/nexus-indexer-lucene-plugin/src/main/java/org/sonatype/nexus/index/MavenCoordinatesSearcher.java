@@ -22,7 +22,10 @@ import javax.inject.Singleton;
 import org.sonatype.nexus.proxy.NoSuchRepositoryException;
 
 import org.apache.commons.lang.StringUtils;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
 import org.apache.maven.index.ArtifactInfoFilter;
+import org.apache.maven.index.Field;
 import org.apache.maven.index.IteratorSearchResponse;
 import org.apache.maven.index.MAVEN;
 import org.apache.maven.index.SearchType;
@@ -126,4 +129,41 @@ public class MavenCoordinatesSearcher
         count, hitLimit, false, searchType, filters);
   }
 
-}
\ No newline at end of file
+  /**
+   * Terms without any of group, artifact or version are not searched grouped, as like in flat search, they would
+   * match too many documents. Terms with classifier {@link Field#NOT_PRESENT} are not searched grouped either, as
+   * that is not expressed in query.
+   */
+  public GroupedSearchResponse groupedSearch(Map<String, String> terms, String repositoryId, String cursor,
+                                             int groupLimit, int versionLimit, int documentLimit,
+                                             SearchType searchType)
+      throws NoSuchRepositoryException
+  {
+    if (!canHandle(terms)) {
+      return GroupedSearchResponse.empty(null);
+    }
+    if (StringUtils.isEmpty(terms.get(TERM_GROUP)) && StringUtils.isEmpty(terms.get(TERM_ARTIFACT))
+        && StringUtils.isEmpty(terms.get(TERM_VERSION))) {
+      return null;
+    }
+    if (Field.NOT_PRESENT.equalsIgnoreCase(terms.get(TERM_CLASSIFIER))) {
+      return null;
+    }
+
+    final BooleanQuery bq = new BooleanQuery();
+    addClause(bq, MAVEN.GROUP_ID, terms.get(TERM_GROUP), searchType);
+    addClause(bq, MAVEN.ARTIFACT_ID, terms.get(TERM_ARTIFACT), searchType);
+    addClause(bq, MAVEN.VERSION, terms.get(TERM_VERSION), searchType);
+    addClause(bq, MAVEN.PACKAGING, terms.get(TERM_PACKAGING), searchType);
+    addClause(bq, MAVEN.CLASSIFIER, terms.get(TERM_CLASSIFIER), searchType);
+
+    return m_lucene.searchQueryGrouped(bq, repositoryId, cursor, groupLimit, versionLimit, documentLimit);
+  }
+
+  private void addClause(final BooleanQuery bq, final Field field, final String term, final SearchType searchType) {
+    if (!StringUtils.isEmpty(term)) {
+      bq.add(m_lucene.constructQuery(field, term, searchType), BooleanClause.Occur.MUST);
+    }
+  }
+
+}
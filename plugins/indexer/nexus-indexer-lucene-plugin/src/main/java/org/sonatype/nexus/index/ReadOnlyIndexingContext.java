@@ -0,0 +1,226 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.store.Directory;
+import org.apache.maven.index.artifact.GavCalculator;
+import org.apache.maven.index.context.DocumentFilter;
+import org.apache.maven.index.context.IndexCreator;
+import org.apache.maven.index.context.IndexingContext;
+
+/**
+ * Read-only indexing context wrapper, operations that modify index throw UnsupportedOperationException. Subclasses
+ * define how index is accessed for reading.
+ *
+ * @since 3.0
+ */
+abstract class ReadOnlyIndexingContext
+    implements IndexingContext
+{
+  protected final IndexingContext context;
+
+  protected ReadOnlyIndexingContext(IndexingContext context) {
+    this.context = context;
+  }
+
+  @Override
+  public String getId() {
+    return context.getId();
+  }
+
+  @Override
+  public String getRepositoryId() {
+    return context.getRepositoryId();
+  }
+
+  @Override
+  public File getRepository() {
+    return context.getRepository();
+  }
+
+  @Override
+  public String getRepositoryUrl() {
+    return context.getRepositoryUrl();
+  }
+
+  @Override
+  public String getIndexUpdateUrl() {
+    return context.getIndexUpdateUrl();
+  }
+
+  @Override
+  public boolean isSearchable() {
+    return context.isSearchable();
+  }
+
+  @Override
+  public void setSearchable(boolean searchable) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public Date getTimestamp() {
+    return context.getTimestamp();
+  }
+
+  @Override
+  public void updateTimestamp()
+      throws IOException
+  {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public void updateTimestamp(boolean save)
+      throws IOException
+  {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public void updateTimestamp(boolean save, Date date)
+      throws IOException
+  {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public IndexWriter getIndexWriter()
+      throws IOException
+  {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public List<IndexCreator> getIndexCreators() {
+    return context.getIndexCreators();
+  }
+
+  @Override
+  public Analyzer getAnalyzer() {
+    return context.getAnalyzer();
+  }
+
+  @Override
+  public void commit()
+      throws IOException
+  {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public void rollback()
+      throws IOException
+  {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public void optimize()
+      throws IOException
+  {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public void close(boolean deleteFiles)
+      throws IOException
+  {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public void purge()
+      throws IOException
+  {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public void merge(Directory directory)
+      throws IOException
+  {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public void merge(Directory directory, DocumentFilter filter)
+      throws IOException
+  {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public void replace(Directory directory)
+      throws IOException
+  {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public Directory getIndexDirectory() {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public File getIndexDirectoryFile() {
+    return context.getIndexDirectoryFile();
+  }
+
+  @Override
+  public GavCalculator getGavCalculator() {
+    return context.getGavCalculator();
+  }
+
+  @Override
+  public void setAllGroups(Collection<String> groups)
+      throws IOException
+  {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public void setRootGroups(Collection<String> groups)
+      throws IOException
+  {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public void rebuildGroups()
+      throws IOException
+  {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public boolean isReceivingUpdates() {
+    return context.isReceivingUpdates();
+  }
+
+  public IndexingContext getContext() {
+    IndexingContext result = context;
+    while (result instanceof ReadOnlyIndexingContext) {
+      result = ((ReadOnlyIndexingContext) result).getContext();
+    }
+    return result;
+  }
+}
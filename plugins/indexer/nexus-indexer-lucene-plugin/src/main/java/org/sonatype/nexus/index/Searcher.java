@@ -59,4 +59,20 @@ public interface Searcher
                                             Integer count, Integer hitLimit, boolean uniqueRGA, SearchType searchType,
                                             List<ArtifactInfoFilter> filters)
       throws NoSuchRepositoryException;
+
+  /**
+   * Searches for artifacts based on available terms, grouping hits by GA within the index, see {@link
+   * IndexerManager#searchQueryGrouped(org.apache.lucene.search.Query, String, String, int, int, int)}.
+   *
+   * @param terms        search terms
+   * @param repositoryId repository id of the repository to be searched ir null if the search should be performed on
+   *                     all repositories that suports indexing
+   * @param cursor       cursor of the previous page, or null to get the first page
+   * @return search results, or null if the terms cannot be searched grouped
+   * @throws NoSuchRepositoryException - If there is no repository with specified repository id
+   * @since 3.0
+   */
+  GroupedSearchResponse groupedSearch(Map<String, String> terms, String repositoryId, String cursor, int groupLimit,
+                                      int versionLimit, int documentLimit, SearchType searchType)
+      throws NoSuchRepositoryException;
 }
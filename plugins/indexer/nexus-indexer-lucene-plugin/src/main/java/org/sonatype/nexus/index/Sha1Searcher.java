@@ -61,4 +61,14 @@ public class Sha1Searcher
     return indexerManager.searchArtifactSha1ChecksumIterator(terms.get(TERM_SHA1), repositoryId, from, count,
         hitLimit, filters);
   }
+
+  /**
+   * Checksum search hits few documents, hence it is not searched grouped.
+   */
+  public GroupedSearchResponse groupedSearch(Map<String, String> terms, String repositoryId, String cursor,
+                                             int groupLimit, int versionLimit, int documentLimit,
+                                             SearchType searchType)
+  {
+    return null;
+  }
 }
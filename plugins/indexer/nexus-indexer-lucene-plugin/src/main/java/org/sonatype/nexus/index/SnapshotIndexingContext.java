@@ -0,0 +1,73 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.index;
+
+import java.io.IOException;
+import java.util.Set;
+
+import org.apache.lucene.search.IndexSearcher;
+
+/**
+ * Read-only indexing context wrapper that searches a repository {@link IndexSnapshot}, without any locking. Group
+ * lists are not part of the snapshot, they are read from the context of the snapshot.
+ *
+ * @since 3.0
+ */
+class SnapshotIndexingContext
+    extends ReadOnlyIndexingContext
+{
+  private final IndexSnapshot snapshot;
+
+  public SnapshotIndexingContext(IndexSnapshot snapshot) {
+    super(snapshot.getContext());
+    this.snapshot = snapshot;
+  }
+
+  @Override
+  public int getSize()
+      throws IOException
+  {
+    return snapshot.getReader().numDocs();
+  }
+
+  @Override
+  public IndexSearcher acquireIndexSearcher()
+      throws IOException
+  {
+    if (!snapshot.tryAcquire()) {
+      throw new IOException("Index snapshot of repository " + getRepositoryId() + " is closed");
+    }
+    return snapshot.getSearcher();
+  }
+
+  @Override
+  public void releaseIndexSearcher(IndexSearcher s)
+      throws IOException
+  {
+    snapshot.release();
+  }
+
+  @Override
+  public Set<String> getAllGroups()
+      throws IOException
+  {
+    return context.getAllGroups();
+  }
+
+  @Override
+  public Set<String> getRootGroups()
+      throws IOException
+  {
+    return context.getRootGroups();
+  }
+}
@@ -14,26 +14,28 @@ package org.sonatype.nexus.index;
 
 import java.io.IOException;
 import java.util.Iterator;
-import java.util.concurrent.locks.Lock;
+import java.util.List;
 
 import org.apache.maven.index.ArtifactInfo;
 import org.apache.maven.index.IteratorResultSet;
 
 /**
- * IteratorResultSet wrapper that unlocks provided lock when closed.
+ * IteratorResultSet wrapper that releases provided index snapshots when closed.
+ *
+ * @since 3.0
  */
-class LockingIteratorResultSet
+class SnapshotIteratorResultSet
     implements IteratorResultSet
 {
   private final IteratorResultSet result;
 
-  private final Lock lock;
+  private final List<IndexSnapshot> snapshots;
 
   private boolean closed;
 
-  public LockingIteratorResultSet(IteratorResultSet result, Lock lock) {
+  public SnapshotIteratorResultSet(IteratorResultSet result, List<IndexSnapshot> snapshots) {
     this.result = result;
-    this.lock = lock;
+    this.snapshots = snapshots;
   }
 
   @Override
@@ -65,8 +67,10 @@ class LockingIteratorResultSet
         result.close();
       }
       finally {
-        lock.unlock();
         closed = true;
+        for (IndexSnapshot snapshot : snapshots) {
+          snapshot.release();
+        }
       }
     }
   }
@@ -20,6 +20,8 @@ import org.sonatype.nexus.events.Asynchronous;
 import org.sonatype.nexus.events.Event;
 import org.sonatype.nexus.events.EventSubscriber;
 import org.sonatype.nexus.index.IndexerManager;
+import org.sonatype.nexus.proxy.RequestContext;
+import org.sonatype.nexus.proxy.events.RepositoryItemBatchEventImported;
 import org.sonatype.nexus.proxy.events.RepositoryItemEvent;
 import org.sonatype.nexus.proxy.events.RepositoryItemEventCache;
 import org.sonatype.nexus.proxy.events.RepositoryItemEventDelete;
@@ -69,11 +71,26 @@ public class IndexerManagerEventInspector
   @Subscribe
   @AllowConcurrentEvents
   public void on(final RepositoryItemEventStore evt) {
-    if (enabled) {
+    // items of bulk imports are indexed at once, when import is finished
+    if (enabled && !Boolean.TRUE.equals(evt.getItemContext().get(RequestContext.CTX_BULK_IMPORT_FLAG))) {
       inspectForIndexerManager(evt);
     }
   }
 
+  @Subscribe
+  @AllowConcurrentEvents
+  public void on(final RepositoryItemBatchEventImported evt) {
+    final Repository repository = evt.getRepository();
+    if (enabled && repository.isIndexable()) {
+      try {
+        getIndexerManager().addItemsToIndex(repository, evt.getItemPaths());
+      }
+      catch (Exception e) {
+        log.error("Could not maintain index for repository {}!", repository.getId(), e);
+      }
+    }
+  }
+
   @Subscribe
   @AllowConcurrentEvents
   public void on(final RepositoryItemEventDelete evt) {
@@ -26,6 +26,7 @@ import javax.inject.Singleton;
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 
+import org.sonatype.nexus.index.GroupedSearchResponse;
 import org.sonatype.nexus.index.Searcher;
 import org.sonatype.nexus.proxy.NoSuchRepositoryException;
 import org.sonatype.nexus.proxy.maven.MavenRepository;
@@ -44,6 +45,7 @@ import org.sonatype.nexus.rest.model.SearchNGResponse;
 import org.sonatype.nexus.util.SystemPropertiesHelper;
 import org.sonatype.plexus.rest.resource.PathProtectionDescriptor;
 import org.sonatype.plexus.rest.resource.PlexusResourceException;
+import org.sonatype.plexus.rest.resource.StreamingPlexusResource;
 
 import com.google.common.annotations.VisibleForTesting;
 import org.apache.lucene.queryParser.ParseException;
@@ -66,6 +68,7 @@ import org.slf4j.LoggerFactory;
 @Path(SearchNGIndexPlexusResource.RESOURCE_URI)
 public class SearchNGIndexPlexusResource
     extends AbstractIndexerNexusPlexusResource
+    implements StreamingPlexusResource
 {
   public static final String ROLE_HINT = "SearchNGIndexPlexusResource";
 
@@ -134,6 +137,30 @@ public class SearchNGIndexPlexusResource
   private static final int COLLAPSE_OVERRIDE_TRESHOLD = SystemPropertiesHelper.getInteger(
       "plexus.search.ga.collapseOverrideThreshold", DEFAULT_COLLAPSE_OVERRIDE_TRESHOLD);
 
+  /**
+   * The default count of latest versions per GA delivered by grouped search.
+   */
+  private static final int DEFAULT_GROUPED_VERSION_LIMIT = 10;
+
+  /**
+   * The count of latest versions per GA delivered by grouped search, that may be overridden by users using Java
+   * System Properties, and defaults to DEFAULT_GROUPED_VERSION_LIMIT.
+   */
+  private static final int GROUPED_VERSION_LIMIT = SystemPropertiesHelper.getInteger(
+      "plexus.search.ga.grouped.versionLimit", DEFAULT_GROUPED_VERSION_LIMIT);
+
+  /**
+   * The default count of matching Lucene Documents a grouped search visits before bail out.
+   */
+  private static final int DEFAULT_GROUPED_DOCUMENT_LIMIT = 50000;
+
+  /**
+   * The count of matching Lucene Documents a grouped search visits before bail out, that may be overridden by users
+   * using Java System Properties, and defaults to DEFAULT_GROUPED_DOCUMENT_LIMIT.
+   */
+  private static final int GROUPED_DOCUMENT_LIMIT = SystemPropertiesHelper.getInteger(
+      "plexus.search.ga.grouped.documentLimit", DEFAULT_GROUPED_DOCUMENT_LIMIT);
+
   public static final String RESOURCE_URI = "/lucene/search";
 
   private Logger searchDiagnosticLogger = LoggerFactory.getLogger("search.ng.diagnostic");
@@ -183,6 +210,10 @@ public class SearchNGIndexPlexusResource
    * @param count        number of results to have returned to you.
    * @param repositoryId The repositoryId to which repository search should be narrowed. Omit if search should be
    *                     global.
+   * @param grouped      provide this param with value 'true' to have hits grouped by GA within the index, and get
+   *                     results page by page: count is the number of GAs in a page, and each response carries the
+   *                     cursor of the next page.
+   * @param cursor       the cursor of the previous response, to get the next page of a grouped search.
    */
   @Override
   @GET
@@ -240,8 +271,25 @@ public class SearchNGIndexPlexusResource
 
     boolean forceExpand = expandVersion || !collapseResults;
 
+    final String cursor = form.getFirstValue("cursor");
+    final boolean grouped = cursor != null || Boolean.valueOf(form.getFirstValue("grouped"));
+
     try {
       try {
+        if (grouped) {
+          GroupedSearchResponse groupedResult =
+              groupedSearchByTerms(terms, repositoryId, cursor, Math.min(count, GA_HIT_LIMIT), exact, searchers);
+
+          // null if searcher cannot search grouped, flat search is performed then
+          if (groupedResult != null) {
+            SearchNGResponse searchResponse = packGroupedSearchNGResponse(request, groupedResult, forceExpand);
+            searchResponse.setTotalCount(groupedResult.getTotalHitsCount());
+            searchResponse.setFrom(-1);
+            searchResponse.setCount(count == LUCENE_HIT_LIMIT ? -1 : count);
+            return searchResponse;
+          }
+        }
+
         IteratorSearchResponse searchResult =
             searchByTerms(terms, repositoryId, from, count, exact, searchers);
 
@@ -277,38 +325,73 @@ public class SearchNGIndexPlexusResource
       throws NoSuchRepositoryException, ResourceException, IOException
   {
     try {
-      Searcher searcher = null;
+      Searcher searcher = getSearcher(terms, searchers);
 
-      for (Searcher _searcher : searchers) {
-        if (_searcher.canHandle(terms)) {
-          searcher = _searcher;
-        }
-      }
+      final IteratorSearchResponse searchResponse =
+          searcher.flatIteratorSearch(terms, repositoryId, from, count, null, false, getSearchType(searcher, exact),
+              null/* filters */);
+
+      return searchResponse;
+    }
+    catch (IllegalArgumentException e) {
+      throw handleIllegalArgument(e);
+    }
+  }
+
+  @VisibleForTesting
+  /* UT */GroupedSearchResponse groupedSearchByTerms(final Map<String, String> terms, final String repositoryId,
+                                                     final String cursor, final int count, final Boolean exact,
+                                                     final List<Searcher> searchers)
+      throws NoSuchRepositoryException, ResourceException
+  {
+    try {
+      Searcher searcher = getSearcher(terms, searchers);
 
-      if (searcher == null) {
-        throw new ResourceException(Status.CLIENT_ERROR_BAD_REQUEST, "Requested search query is not supported");
+      return searcher.groupedSearch(terms, repositoryId, cursor, count, GROUPED_VERSION_LIMIT, GROUPED_DOCUMENT_LIMIT,
+          getSearchType(searcher, exact));
+    }
+    catch (IllegalArgumentException e) {
+      if (cursor != null && !(e.getCause() instanceof ParseException)) {
+        // invalid or tampered cursor
+        throw new ResourceException(Status.CLIENT_ERROR_BAD_REQUEST, e.getMessage(), e);
       }
+      throw handleIllegalArgument(e);
+    }
+  }
 
-      SearchType searchType = searcher.getDefaultSearchType();
+  private Searcher getSearcher(final Map<String, String> terms, final List<Searcher> searchers)
+      throws ResourceException
+  {
+    Searcher searcher = null;
 
-      if (exact != null) {
-        searchType = exact ? SearchType.EXACT : SearchType.SCORED;
+    for (Searcher _searcher : searchers) {
+      if (_searcher.canHandle(terms)) {
+        searcher = _searcher;
       }
+    }
 
-      final IteratorSearchResponse searchResponse =
-          searcher.flatIteratorSearch(terms, repositoryId, from, count, null, false, searchType, null/* filters */);
+    if (searcher == null) {
+      throw new ResourceException(Status.CLIENT_ERROR_BAD_REQUEST, "Requested search query is not supported");
+    }
 
-      return searchResponse;
+    return searcher;
+  }
+
+  private SearchType getSearchType(final Searcher searcher, final Boolean exact) {
+    if (exact != null) {
+      return exact ? SearchType.EXACT : SearchType.SCORED;
     }
-    catch (IllegalArgumentException e) {
-      if (e.getCause() instanceof ParseException) {
-        // NEXUS-4372: illegal query -> 400 response
-        throw new PlexusResourceException(Status.CLIENT_ERROR_BAD_REQUEST, e.getCause(),
-            getNexusErrorResponse("search", e.getCause().getMessage()));
-      }
-      else {
-        throw e;
-      }
+    return searcher.getDefaultSearchType();
+  }
+
+  private PlexusResourceException handleIllegalArgument(final IllegalArgumentException e) {
+    if (e.getCause() instanceof ParseException) {
+      // NEXUS-4372: illegal query -> 400 response
+      return new PlexusResourceException(Status.CLIENT_ERROR_BAD_REQUEST, e.getCause(),
+          getNexusErrorResponse("search", e.getCause().getMessage()));
+    }
+    else {
+      throw e;
     }
   }
 
@@ -379,47 +462,10 @@ public class SearchNGIndexPlexusResource
       }
       lastDocumentScore = ai.getLuceneScore();
 
-      final String gakey = ai.groupId + ":" + ai.artifactId;
-
-      GAHolder gaholder = gahits.get(gakey);
-      if (gaholder == null) {
-        gaholder = new GAHolder();
-        gahits.put(gakey, gaholder);
-
-      }
-
-      StringVersion version = new StringVersion(ai.version, ai.getArtifactVersion());
-
-      NexusNGArtifact versionHit = gaholder.getVersionHit(version);
-      if (versionHit == null) {
-        versionHit = new NexusNGArtifact();
-        versionHit.setGroupId(ai.groupId);
-        versionHit.setArtifactId(ai.artifactId);
-        versionHit.setVersion(ai.version);
-        versionHit.setHighlightedFragment(getMatchHighlightHtmlSnippet(ai));
-
-        gaholder.putVersionHit(version, versionHit);
-
+      if (addArtifactHit(request, gahits, ai)) {
         gavcount++;
       }
 
-      NexusNGArtifactHit repositoryHit = getRepositoryHit(versionHit, ai.repository);
-      if (repositoryHit == null) {
-        repositoryHit = new NexusNGArtifactHit();
-        repositoryHit.setRepositoryId(ai.repository);
-        versionHit.addArtifactHit(repositoryHit);
-
-        // we are adding the POM link "blindly", unless packaging is POM,
-        // since the it will be added below the "usual" way
-        if (!"pom".equals(ai.packaging)) {
-          repositoryHit.addArtifactLink(createNexusNGArtifactLink(request, ai.repository, ai.groupId,
-              ai.artifactId, ai.version, "pom", null));
-        }
-      }
-
-      repositoryHit.addArtifactLink(createNexusNGArtifactLink(request, ai.repository, ai.groupId,
-          ai.artifactId, ai.version, ai.fextension, ai.classifier));
-
       tooManyResults = false;
     }
 
@@ -435,8 +481,98 @@ public class SearchNGIndexPlexusResource
     // expand if explicitly requested or if number of unique GAV matches is less than threshold
     boolean expand = forceExpand || gavcount <= COLLAPSE_OVERRIDE_TRESHOLD;
 
-    SearchNGResponse response = new SearchNGResponse();
+    SearchNGResponse response = createSearchNGResponse(request, gahits, expand);
     response.setTooManyResults(tooManyResults || iterator.getTotalHitsCount() + 1 >= LUCENE_HIT_LIMIT);
+
+    return response;
+  }
+
+  /**
+   * Packs results of a grouped search. These are already grouped by GA and limited in count by the index, so unlike
+   * in {@link #packSearchNGResponse(Request, Map, IteratorSearchResponse, boolean)} there is no need to bail out.
+   */
+  protected SearchNGResponse packGroupedSearchNGResponse(Request request, GroupedSearchResponse groupedResult,
+                                                         boolean forceExpand)
+  {
+    // GA -> [version] -> [repository] -> [classified, extension]
+    Map<String, GAHolder> gahits = new LinkedHashMap<String, GAHolder>();
+
+    int gavcount = 0;
+
+    for (ArtifactInfo ai : groupedResult.getResults()) {
+      if (addArtifactHit(request, gahits, ai)) {
+        gavcount++;
+      }
+    }
+
+    getSearchDiagnosticLogger().debug(
+        "Query LQL \"" + groupedResult.getQuery() + "\" grouped search visited " + groupedResult.getTotalHitsCount()
+            + " records (limit reached: " + groupedResult.isDocumentLimitReached() + "), resulting in "
+            + gahits.size() + " unique GA records on this page.");
+
+    // expand if explicitly requested or if number of unique GAV matches is less than threshold
+    boolean expand = forceExpand || gavcount <= COLLAPSE_OVERRIDE_TRESHOLD;
+
+    SearchNGResponse response = createSearchNGResponse(request, gahits, expand);
+    // results cover the matching documents found first in index (not the best scoring ones), refining query helps
+    response.setTooManyResults(groupedResult.isDocumentLimitReached());
+    response.setCursor(groupedResult.getNextCursor());
+
+    return response;
+  }
+
+  /**
+   * Adds the artifact to hits of its GA, returns {@code true} if it is the first hit of its version.
+   */
+  private boolean addArtifactHit(Request request, Map<String, GAHolder> gahits, ArtifactInfo ai) {
+    boolean newVersion = false;
+
+    final String gakey = ai.groupId + ":" + ai.artifactId;
+
+    GAHolder gaholder = gahits.get(gakey);
+    if (gaholder == null) {
+      gaholder = new GAHolder();
+      gahits.put(gakey, gaholder);
+
+    }
+
+    StringVersion version = new StringVersion(ai.version, ai.getArtifactVersion());
+
+    NexusNGArtifact versionHit = gaholder.getVersionHit(version);
+    if (versionHit == null) {
+      versionHit = new NexusNGArtifact();
+      versionHit.setGroupId(ai.groupId);
+      versionHit.setArtifactId(ai.artifactId);
+      versionHit.setVersion(ai.version);
+      versionHit.setHighlightedFragment(getMatchHighlightHtmlSnippet(ai));
+
+      gaholder.putVersionHit(version, versionHit);
+
+      newVersion = true;
+    }
+
+    NexusNGArtifactHit repositoryHit = getRepositoryHit(versionHit, ai.repository);
+    if (repositoryHit == null) {
+      repositoryHit = new NexusNGArtifactHit();
+      repositoryHit.setRepositoryId(ai.repository);
+      versionHit.addArtifactHit(repositoryHit);
+
+      // we are adding the POM link "blindly", unless packaging is POM,
+      // since the it will be added below the "usual" way
+      if (!"pom".equals(ai.packaging)) {
+        repositoryHit.addArtifactLink(createNexusNGArtifactLink(request, ai.repository, ai.groupId,
+            ai.artifactId, ai.version, "pom", null));
+      }
+    }
+
+    repositoryHit.addArtifactLink(createNexusNGArtifactLink(request, ai.repository, ai.groupId,
+        ai.artifactId, ai.version, ai.fextension, ai.classifier));
+
+    return newVersion;
+  }
+
+  private SearchNGResponse createSearchNGResponse(Request request, Map<String, GAHolder> gahits, boolean expand) {
+    SearchNGResponse response = new SearchNGResponse();
     response.setCollapsed(!expand);
 
     List<NexusNGArtifact> responseData = new ArrayList<NexusNGArtifact>();
@@ -0,0 +1,65 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.index;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.codehaus.plexus.context.Context;
+import org.junit.Test;
+
+/**
+ * Tests for {@link DefaultIndexerManager#addItemsToIndex(org.sonatype.nexus.proxy.repository.Repository,
+ * java.util.Collection)}, with batch size smaller than count of added artifacts.
+ */
+public class BatchAddIndexerManagerTest
+    extends AbstractIndexerManagerTest
+{
+  private static final String BETA_5 = "/org/sonatype/nexus/nexus-indexer/1.0-beta-5-SNAPSHOT/";
+
+  @Override
+  protected void customizeContext(final Context ctx) {
+    super.customizeContext(ctx);
+    ctx.put("nexus.indexer.addBatchSize", "2");
+  }
+
+  @Test
+  public void allBatchesIndexed() throws Exception {
+    // content is copied "from behind", nothing is indexed yet
+    fillInRepo();
+    searchFor("org.sonatype.nexus", 0, snapshots.getId());
+
+    final List<String> paths = Arrays.asList(
+        BETA_5 + "nexus-indexer-1.0-beta-5-20080711.162119-2.jar",
+        BETA_5 + "nexus-indexer-1.0-beta-5-20080711.162119-2.jar.sha1",
+        BETA_5 + "nexus-indexer-1.0-beta-5-20080718.231118-50.jar",
+        BETA_5 + "nexus-indexer-1.0-beta-5-20080730.002543-149.jar",
+        BETA_5 + "nexus-indexer-1.0-beta-5-20080101.000000-1.jar",
+        BETA_5 + "nexus-indexer-1.0-beta-5-20080731.150252-163.jar",
+        BETA_5 + "maven-metadata.xml");
+    indexerManager.addItemsToIndex(snapshots, paths);
+
+    // 4 existing jars, added in 2 batches, the hash, missing jar and metadata are skipped
+    searchFor("org.sonatype.nexus", 4, snapshots.getId());
+  }
+
+  @Test
+  public void partialBatchIndexed() throws Exception {
+    fillInRepo();
+
+    indexerManager.addItemsToIndex(snapshots, Arrays.asList(
+        BETA_5 + "nexus-indexer-1.0-beta-5-20080711.162119-2.jar"));
+
+    searchFor("org.sonatype.nexus", 1, snapshots.getId());
+  }
+}
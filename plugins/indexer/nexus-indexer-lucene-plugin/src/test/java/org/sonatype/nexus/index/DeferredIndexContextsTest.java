@@ -0,0 +1,81 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.index;
+
+import org.sonatype.nexus.ApplicationStatusSource;
+import org.sonatype.nexus.SystemState;
+
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+
+/**
+ * Tests for indexing contexts of repositories added while Nexus is booting, deferred by default (see
+ * {@code nexus.indexer.deferContexts}).
+ */
+public class DeferredIndexContextsTest
+    extends AbstractIndexerManagerTest
+{
+  @Test
+  public void deferredContextAddedOnFirstUse() throws Exception {
+    addWhileBooting();
+    assertThat(hasContext(), is(false));
+
+    assertThat(indexerManager.getRepositoryIndexContext(snapshots), notNullValue());
+    assertThat(hasContext(), is(true));
+  }
+
+  @Test
+  public void deferredContextsAddedOnceStarted() throws Exception {
+    addWhileBooting();
+    assertThat(hasContext(), is(false));
+
+    indexerManager.addDeferredRepositoryIndexContexts();
+    assertThat(hasContext(), is(true));
+  }
+
+  @Test
+  public void deferredContextDroppedWithRepository() throws Exception {
+    addWhileBooting();
+    indexerManager.removeRepositoryIndexContext(snapshots, false);
+
+    indexerManager.addDeferredRepositoryIndexContexts();
+    assertThat(hasContext(), is(false));
+  }
+
+  // ==
+
+  /**
+   * Re-adds context of snapshots repository as if Nexus would be booting.
+   */
+  private void addWhileBooting() throws Exception {
+    indexerManager.removeRepositoryIndexContext(snapshots, false);
+    assertThat(hasContext(), is(false));
+
+    final ApplicationStatusSource applicationStatusSource = lookup(ApplicationStatusSource.class);
+    applicationStatusSource.getSystemStatus().setState(SystemState.STARTING);
+    try {
+      indexerManager.addRepositoryIndexContext(snapshots);
+    }
+    finally {
+      applicationStatusSource.getSystemStatus().setState(SystemState.STARTED);
+    }
+  }
+
+  private boolean hasContext() {
+    return indexerManager.getNexusIndexer().getIndexingContexts()
+        .containsKey(indexerManager.getContextId(snapshots.getId()));
+  }
+}
@@ -0,0 +1,53 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.index;
+
+import org.sonatype.nexus.ApplicationStatusSource;
+import org.sonatype.nexus.SystemState;
+
+import org.codehaus.plexus.context.Context;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+/**
+ * Tests that indexing contexts are added right away while Nexus is booting if {@code nexus.indexer.deferContexts} is
+ * disabled.
+ */
+public class EagerIndexContextsTest
+    extends AbstractIndexerManagerTest
+{
+  @Override
+  protected void customizeContext(final Context ctx) {
+    super.customizeContext(ctx);
+    ctx.put("nexus.indexer.deferContexts", "false");
+  }
+
+  @Test
+  public void contextAddedWhileBooting() throws Exception {
+    indexerManager.removeRepositoryIndexContext(snapshots, false);
+
+    final ApplicationStatusSource applicationStatusSource = lookup(ApplicationStatusSource.class);
+    applicationStatusSource.getSystemStatus().setState(SystemState.STARTING);
+    try {
+      indexerManager.addRepositoryIndexContext(snapshots);
+    }
+    finally {
+      applicationStatusSource.getSystemStatus().setState(SystemState.STARTED);
+    }
+
+    assertThat(indexerManager.getNexusIndexer().getIndexingContexts()
+        .containsKey(indexerManager.getContextId(snapshots.getId())), is(true));
+  }
+}
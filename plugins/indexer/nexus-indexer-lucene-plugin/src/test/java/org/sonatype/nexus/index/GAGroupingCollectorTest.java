@@ -0,0 +1,197 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.index;
+
+import java.util.List;
+
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+import com.google.common.collect.Lists;
+import org.apache.lucene.analysis.KeywordAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.Version;
+import org.apache.maven.index.ArtifactInfo;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+
+/**
+ * Tests for {@link GAGroupingCollector}.
+ */
+public class GAGroupingCollectorTest
+    extends TestSupport
+{
+  private RAMDirectory directory;
+
+  private IndexSearcher searcher;
+
+  @Before
+  public void prepare() throws Exception {
+    directory = new RAMDirectory();
+    final IndexWriter writer = new IndexWriter(directory,
+        new IndexWriterConfig(Version.LUCENE_36, new KeywordAnalyzer()));
+    try {
+      // descriptor-like document without UINFO
+      final Document descriptor = new Document();
+      descriptor.add(new Field("DESCRIPTOR", "NexusIndex", Field.Store.YES, Field.Index.NOT_ANALYZED));
+      writer.addDocument(descriptor);
+
+      for (String version : new String[]{"1.0", "1.1", "2.0", "2.1-SNAPSHOT", "2.2-SNAPSHOT", "2.3-SNAPSHOT"}) {
+        writer.addDocument(document("org.foo", "foo", version, "NA", "jar"));
+        writer.addDocument(document("org.foo", "foo", version, "sources", "jar"));
+      }
+      for (int i = 0; i < 10; i++) {
+        writer.addDocument(document("org.bar", "bar" + i, "1.0", "NA", "jar"));
+      }
+    }
+    finally {
+      writer.close();
+    }
+    searcher = new IndexSearcher(IndexReader.open(directory));
+  }
+
+  @After
+  public void cleanup() throws Exception {
+    if (searcher != null) {
+      searcher.getIndexReader().close();
+      searcher.close();
+    }
+  }
+
+  private Document document(final String groupId, final String artifactId, final String version,
+                            final String classifier, final String extension)
+  {
+    final Document document = new Document();
+    document.add(new Field(ArtifactInfo.UINFO,
+        groupId + "|" + artifactId + "|" + version + "|" + classifier + "|" + extension, Field.Store.YES,
+        Field.Index.NOT_ANALYZED));
+    return document;
+  }
+
+  private GAGroupingCollector collect(final int versionLimit, final int documentLimit) throws Exception {
+    final GAGroupingCollector collector = new GAGroupingCollector(versionLimit, documentLimit);
+    collector.search(searcher, new MatchAllDocsQuery());
+    return collector;
+  }
+
+  private List<String> keys(final List<GAGroupingCollector.Group> groups) {
+    final List<String> keys = Lists.newArrayList();
+    for (GAGroupingCollector.Group group : groups) {
+      keys.add(group.getKey());
+    }
+    return keys;
+  }
+
+  private List<String> versions(final GAGroupingCollector.Group group) throws Exception {
+    final List<String> versions = Lists.newArrayList();
+    for (GAGroupingCollector.Hit hit : group.getHits()) {
+      final String uinfo = searcher.doc(hit.getDoc()).get(ArtifactInfo.UINFO);
+      versions.add(uinfo.split("\\|")[2] + ":" + uinfo.split("\\|")[3]);
+    }
+    return versions;
+  }
+
+  @Test
+  public void groupsByGA() throws Exception {
+    final GAGroupingCollector underTest = collect(10, 1000);
+
+    // same score, ordered by GA
+    final List<GAGroupingCollector.Group> groups = underTest.page(null, 100);
+    assertThat(keys(groups), contains("org.bar:bar0", "org.bar:bar1", "org.bar:bar2", "org.bar:bar3",
+        "org.bar:bar4", "org.bar:bar5", "org.bar:bar6", "org.bar:bar7", "org.bar:bar8", "org.bar:bar9",
+        "org.foo:foo"));
+    assertThat(underTest.getVisitedDocuments(), is(23));
+    assertThat(underTest.isDocumentLimitReached(), is(false));
+
+    // all versions, latest first
+    assertThat(versions(groups.get(10)), contains("2.3-SNAPSHOT:NA", "2.3-SNAPSHOT:sources", "2.2-SNAPSHOT:NA",
+        "2.2-SNAPSHOT:sources", "2.1-SNAPSHOT:NA", "2.1-SNAPSHOT:sources", "2.0:NA", "2.0:sources", "1.1:NA",
+        "1.1:sources", "1.0:NA", "1.0:sources"));
+  }
+
+  @Test
+  public void retainsLatestVersionsAndLatestRelease() throws Exception {
+    final GAGroupingCollector underTest = collect(2, 1000);
+
+    final GAGroupingCollector.Group foo = underTest.page(null, 100).get(10);
+    assertThat(versions(foo), contains("2.3-SNAPSHOT:NA", "2.3-SNAPSHOT:sources", "2.2-SNAPSHOT:NA",
+        "2.2-SNAPSHOT:sources", "2.0:NA", "2.0:sources"));
+  }
+
+  @Test
+  public void paging() throws Exception {
+    final GAGroupingCollector underTest = collect(10, 1000);
+
+    final List<GAGroupingCollector.Group> first = underTest.page(null, 4);
+    assertThat(keys(first), contains("org.bar:bar0", "org.bar:bar1", "org.bar:bar2", "org.bar:bar3"));
+
+    // cursor is stateless, a new search continues from it
+    final String cursor = GAGroupingCollector.encodeCursor(first.get(3));
+    final List<GAGroupingCollector.Group> second = collect(10, 1000).page(cursor, 4);
+    assertThat(keys(second), contains("org.bar:bar4", "org.bar:bar5", "org.bar:bar6", "org.bar:bar7"));
+
+    final List<GAGroupingCollector.Group> last = underTest.page(GAGroupingCollector.encodeCursor(second.get(3)), 4);
+    assertThat(keys(last), contains("org.bar:bar8", "org.bar:bar9", "org.foo:foo"));
+
+    assertThat(underTest.page(GAGroupingCollector.encodeCursor(last.get(2)), 4), is(empty()));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void invalidCursor() throws Exception {
+    collect(10, 1000).page("not-a-cursor", 4);
+  }
+
+  @Test
+  public void rejectedHitsNotGroupedNorPaged() throws Exception {
+    final GAGroupingCollector underTest = new GAGroupingCollector(10, 1000, new GAGroupingCollector.HitFilter()
+    {
+      @Override
+      public boolean accepts(final int doc, final ArtifactInfo artifactInfo) {
+        return !"bar0".equals(artifactInfo.artifactId) && !"sources".equals(artifactInfo.classifier);
+      }
+    });
+    underTest.search(searcher, new MatchAllDocsQuery());
+
+    // page is full of visible GAs
+    final List<GAGroupingCollector.Group> first = underTest.page(null, 4);
+    assertThat(keys(first), contains("org.bar:bar1", "org.bar:bar2", "org.bar:bar3", "org.bar:bar4"));
+    final GAGroupingCollector.Group foo = underTest.page(null, 100).get(9);
+    assertThat(versions(foo), contains("2.3-SNAPSHOT:NA", "2.2-SNAPSHOT:NA", "2.1-SNAPSHOT:NA", "2.0:NA", "1.1:NA",
+        "1.0:NA"));
+    // rejected hits are still visited
+    assertThat(underTest.getVisitedDocuments(), is(23));
+  }
+
+  @Test
+  public void documentLimit() throws Exception {
+    final GAGroupingCollector underTest = collect(10, 5);
+
+    assertThat(underTest.getVisitedDocuments(), is(5));
+    assertThat(underTest.isDocumentLimitReached(), is(true));
+    // descriptor is visited but not grouped
+    assertThat(keys(underTest.page(null, 100)), contains("org.foo:foo"));
+    assertThat(underTest.page(null, 100).get(0).getHits().size(), is(4));
+  }
+}
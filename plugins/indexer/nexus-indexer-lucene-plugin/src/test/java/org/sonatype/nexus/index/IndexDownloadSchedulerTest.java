@@ -0,0 +1,217 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.index;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.sonatype.nexus.proxy.repository.ProxyRepository;
+import org.sonatype.nexus.threads.FakeAlmightySubject;
+import org.sonatype.scheduling.TaskInterruptedException;
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.apache.shiro.util.ThreadContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link IndexDownloadScheduler}.
+ */
+public class IndexDownloadSchedulerTest
+    extends TestSupport
+{
+  @Before
+  public void bindSubject() {
+    ThreadContext.bind(FakeAlmightySubject.forUserId("test"));
+  }
+
+  @After
+  public void unbindSubject() {
+    ThreadContext.remove();
+  }
+
+  private ProxyRepository repository(final String id, final String remoteUrl) {
+    final ProxyRepository repository = mock(ProxyRepository.class);
+    when(repository.getId()).thenReturn(id);
+    when(repository.getRemoteUrl()).thenReturn(remoteUrl);
+    return repository;
+  }
+
+  private List<ProxyRepository> repositories() {
+    return Lists.newArrayList(
+        repository("a1", "http://a.example.com/one/"),
+        repository("a2", "http://A.example.com/two/"),
+        repository("a3", "https://a.example.com:8443/three/"),
+        repository("b1", "http://b.example.com/one/"),
+        repository("b2", "http://b.example.com/two/"),
+        repository("c1", "http://c.example.com/"));
+  }
+
+  @Test
+  public void respectsLimits() throws Exception {
+    final AtomicInteger running = new AtomicInteger();
+    final AtomicInteger maxRunning = new AtomicInteger();
+    final Map<String, AtomicInteger> runningOnHost = Maps.newConcurrentMap();
+    final Map<String, AtomicInteger> maxRunningOnHost = Maps.newConcurrentMap();
+    final Set<String> downloaded = Sets.newConcurrentHashSet();
+    for (String host : new String[]{"a.example.com", "b.example.com", "c.example.com"}) {
+      runningOnHost.put(host, new AtomicInteger());
+      maxRunningOnHost.put(host, new AtomicInteger());
+    }
+
+    final List<IOException> exceptions = new IndexDownloadScheduler(2, 1).run(repositories(),
+        new IndexDownloadScheduler.Download()
+        {
+          @Override
+          public void download(final ProxyRepository repository) throws IOException {
+            final String host = IndexDownloadScheduler.getHost(repository);
+            max(maxRunning, running.incrementAndGet());
+            max(maxRunningOnHost.get(host), runningOnHost.get(host).incrementAndGet());
+            try {
+              Thread.sleep(50);
+            }
+            catch (InterruptedException e) {
+              throw new IOException(e);
+            }
+            finally {
+              runningOnHost.get(host).decrementAndGet();
+              running.decrementAndGet();
+            }
+            downloaded.add(repository.getId());
+          }
+        });
+
+    assertThat(exceptions, hasSize(0));
+    assertThat(downloaded, hasSize(6));
+    assertThat(maxRunning.get(), is(2));
+    for (AtomicInteger max : maxRunningOnHost.values()) {
+      assertThat(max.get(), lessThanOrEqualTo(1));
+    }
+  }
+
+  @Test
+  public void collectsFailures() throws Exception {
+    final Set<String> downloaded = Sets.newConcurrentHashSet();
+    final List<IOException> exceptions = new IndexDownloadScheduler(4, 2).run(repositories(),
+        new IndexDownloadScheduler.Download()
+        {
+          @Override
+          public void download(final ProxyRepository repository) throws IOException {
+            if ("a2".equals(repository.getId())) {
+              throw new IOException("a2");
+            }
+            if ("b1".equals(repository.getId())) {
+              throw new IllegalStateException("b1");
+            }
+            downloaded.add(repository.getId());
+          }
+        });
+
+    assertThat(exceptions, hasSize(2));
+    assertThat(downloaded, hasSize(4));
+  }
+
+  @Test
+  public void cancelledDownloadsStopBetweenChunksWithoutInterrupt() throws Exception {
+    final CountDownLatch started = new CountDownLatch(2);
+    final AtomicInteger running = new AtomicInteger();
+    final AtomicInteger interrupted = new AtomicInteger();
+    final AtomicInteger cancelled = new AtomicInteger();
+    final Thread caller = Thread.currentThread();
+    final Thread canceller = new Thread()
+    {
+      @Override
+      public void run() {
+        try {
+          started.await(5, TimeUnit.SECONDS);
+          caller.interrupt();
+        }
+        catch (InterruptedException e) {
+          // test fails, as run is not cancelled
+        }
+      }
+    };
+    canceller.start();
+    try {
+      new IndexDownloadScheduler(2, 2).run(repositories(), new IndexDownloadScheduler.Download()
+      {
+        @Override
+        public void download(final ProxyRepository repository) throws IOException {
+          running.incrementAndGet();
+          started.countDown();
+          try {
+            // applies 100 chunks
+            for (int i = 0; i < 100; i++) {
+              IndexDownloadScheduler.checkCancelled();
+              Thread.sleep(20);
+            }
+          }
+          catch (InterruptedException e) {
+            interrupted.incrementAndGet();
+            throw new IOException(e);
+          }
+          catch (TaskInterruptedException e) {
+            cancelled.incrementAndGet();
+            throw e;
+          }
+          finally {
+            running.decrementAndGet();
+          }
+        }
+      });
+      fail("Run should be cancelled");
+    }
+    catch (TaskInterruptedException e) {
+      // running downloads stopped before run returned
+      assertThat(running.get(), is(0));
+      assertThat(interrupted.get(), is(0));
+      assertThat(cancelled.get(), is(2));
+    }
+    finally {
+      canceller.join();
+      Thread.interrupted();
+    }
+  }
+
+  @Test
+  public void host() {
+    assertThat(IndexDownloadScheduler.getHost(repository("x", "http://Repo1.Maven.org/maven2/")),
+        is("repo1.maven.org"));
+    assertThat(IndexDownloadScheduler.getHost(repository("x", null)), is("repository:x"));
+    assertThat(IndexDownloadScheduler.getHost(repository("x", "not a url")), is("repository:x"));
+  }
+
+  private static void max(final AtomicInteger max, final int value) {
+    int current;
+    while ((current = max.get()) < value && !max.compareAndSet(current, value)) {
+      // retry
+    }
+  }
+}
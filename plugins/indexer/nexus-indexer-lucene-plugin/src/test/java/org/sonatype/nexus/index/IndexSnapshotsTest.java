@@ -0,0 +1,148 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.index;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+import org.apache.lucene.analysis.KeywordAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.Version;
+import org.apache.maven.index.context.IndexingContext;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link IndexSnapshots}.
+ */
+public class IndexSnapshotsTest
+    extends TestSupport
+{
+  @Mock
+  private IndexingContext foo;
+
+  @Mock
+  private IndexingContext bar;
+
+  private IndexSnapshots underTest;
+
+  @Before
+  public void prepare() throws Exception {
+    prepare(foo, "foo", 2);
+    prepare(bar, "bar", 3);
+    underTest = new IndexSnapshots();
+  }
+
+  private void prepare(final IndexingContext context, final String repositoryId, final int documents)
+      throws Exception
+  {
+    final RAMDirectory directory = new RAMDirectory();
+    final IndexWriter writer = new IndexWriter(directory,
+        new IndexWriterConfig(Version.LUCENE_36, new KeywordAnalyzer()));
+    try {
+      for (int i = 0; i < documents; i++) {
+        final Document document = new Document();
+        document.add(new Field("id", repositoryId + i, Field.Store.YES, Field.Index.NOT_ANALYZED));
+        writer.addDocument(document);
+      }
+    }
+    finally {
+      writer.close();
+    }
+    when(context.getRepositoryId()).thenReturn(repositoryId);
+    // like SearcherManager, every acquire returns a searcher over the current reader with incremented ref count
+    when(context.acquireIndexSearcher()).thenAnswer(new Answer<IndexSearcher>()
+    {
+      @Override
+      public IndexSearcher answer(final InvocationOnMock invocation) throws Throwable {
+        return new IndexSearcher(IndexReader.open(directory));
+      }
+    });
+  }
+
+  @Test
+  public void publishedUntilInvalidated() throws Exception {
+    assertThat(underTest.acquire("foo"), nullValue());
+
+    final IndexSnapshot opened = underTest.open("foo", foo);
+    final IndexSnapshot acquired = underTest.acquire("foo");
+    assertThat(acquired, sameInstance(opened));
+    acquired.release();
+
+    underTest.invalidate("foo");
+    assertThat(underTest.acquire("foo"), nullValue());
+
+    // still searchable by the holder, closed once released
+    assertThat(opened.getReader().getRefCount(), is(1));
+    assertThat(opened.getSearcher().maxDoc(), is(2));
+    opened.release();
+    assertThat(opened.getReader().getRefCount(), is(0));
+    assertThat(opened.tryAcquire(), is(false));
+  }
+
+  @Test
+  public void groupCachedWhileMembersUnchanged() throws Exception {
+    final List<IndexSnapshot> members = Arrays.asList(underTest.open("bar", bar), underTest.open("foo", foo));
+    final IndexSnapshot group = underTest.acquireGroup("*", members);
+    assertThat(group.getSearcher().maxDoc(), is(5));
+    assertThat(group.getContext(1), sameInstance(bar));
+    assertThat(group.getContext(3), sameInstance(foo));
+    group.release();
+
+    final IndexSnapshot cached = underTest.acquireGroup("*", members);
+    assertThat(cached, sameInstance(group));
+    cached.release();
+
+    underTest.invalidate("foo");
+    // group closed with its member, as nobody holds it
+    assertThat(group.getReader().getRefCount(), is(0));
+    // member still held by the caller
+    assertThat(members.get(1).getReader().getRefCount(), is(1));
+
+    final List<IndexSnapshot> changed = Arrays.asList(members.get(0), underTest.open("foo", foo));
+    final IndexSnapshot fresh = underTest.acquireGroup("*", changed);
+    assertThat(fresh, not(sameInstance(group)));
+    fresh.release();
+    for (IndexSnapshot member : members) {
+      member.release();
+    }
+    changed.get(1).release();
+  }
+
+  @Test
+  public void invalidateAll() throws Exception {
+    final IndexSnapshot snapshot = underTest.open("foo", foo);
+    snapshot.release();
+    underTest.invalidateAll();
+    assertThat(snapshot.getReader().getRefCount(), is(0));
+    assertThat(underTest.acquire("foo"), nullValue());
+  }
+}
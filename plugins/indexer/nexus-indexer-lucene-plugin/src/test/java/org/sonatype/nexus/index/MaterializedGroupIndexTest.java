@@ -0,0 +1,270 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.index;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.maven.index.ArtifactInfo;
+import org.apache.maven.index.context.DefaultIndexingContext;
+import org.apache.maven.index.context.IndexCreator;
+import org.apache.maven.index.context.IndexUtils;
+import org.apache.maven.index.context.IndexingContext;
+import org.apache.maven.index.creator.MinimalArtifactInfoIndexCreator;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.is;
+
+/**
+ * Tests for {@link MaterializedGroupIndex}.
+ */
+public class MaterializedGroupIndexTest
+    extends TestSupport
+{
+  private File stateDirectory;
+
+  private IndexingContext releases;
+
+  private IndexingContext thirdparty;
+
+  private IndexingContext group;
+
+  private List<IndexSnapshot> snapshots = Lists.newArrayList();
+
+  @Before
+  public void prepare() throws Exception {
+    stateDirectory = util.resolveFile("target/" + getClass().getSimpleName() + "/" + System.nanoTime());
+    releases = context("releases", new MinimalArtifactInfoIndexCreator());
+    thirdparty = context("thirdparty", new MinimalArtifactInfoIndexCreator());
+    group = context("public", new MinimalArtifactInfoIndexCreator(), new GroupMemberIndexCreator());
+  }
+
+  @After
+  public void cleanup() throws Exception {
+    release();
+    for (IndexingContext context : Arrays.asList(releases, thirdparty, group)) {
+      context.close(false);
+    }
+  }
+
+  private IndexingContext context(final String repositoryId, final IndexCreator... indexCreators) throws Exception {
+    return new DefaultIndexingContext(repositoryId + "-ctx", repositoryId, null, new RAMDirectory(), null, null,
+        Arrays.asList(indexCreators), true);
+  }
+
+  private void add(final IndexingContext context, final String gav, final String sha1) throws Exception {
+    final String[] coordinates = gav.split(":");
+    final ArtifactInfo ai = new ArtifactInfo(context.getRepositoryId(), coordinates[0], coordinates[1],
+        coordinates[2], null);
+    ai.packaging = "jar";
+    ai.fextension = "jar";
+    ai.sha1 = sha1;
+    final Document document = new Document();
+    document.add(new Field(ArtifactInfo.UINFO, ai.getUinfo(), Field.Store.YES, Field.Index.NOT_ANALYZED));
+    document.add(new Field(ArtifactInfo.LAST_MODIFIED, Long.toString(System.currentTimeMillis()), Field.Store.YES,
+        Field.Index.NO));
+    for (IndexCreator indexCreator : context.getIndexCreators()) {
+      indexCreator.updateDocument(ai, document);
+    }
+    context.getIndexWriter().updateDocument(new Term(ArtifactInfo.UINFO, ai.getUinfo()), document);
+    context.commit();
+  }
+
+  private void remove(final IndexingContext context, final String gav) throws Exception {
+    context.getIndexWriter().deleteDocuments(new Term(ArtifactInfo.UINFO, gav.replace(":", ArtifactInfo.FS)
+        + ArtifactInfo.FS + ArtifactInfo.NA + ArtifactInfo.FS + "jar"));
+    context.commit();
+  }
+
+  private Map<String, IndexSnapshot> members(final IndexingContext... contexts) throws Exception {
+    release();
+    final Map<String, IndexSnapshot> members = Maps.newLinkedHashMap();
+    for (IndexingContext context : contexts) {
+      final IndexSnapshot snapshot = IndexSnapshot.open(context);
+      snapshots.add(snapshot);
+      members.put(context.getRepositoryId(), snapshot);
+    }
+    return members;
+  }
+
+  private void release() throws Exception {
+    for (IndexSnapshot snapshot : snapshots) {
+      snapshot.retire();
+    }
+    snapshots.clear();
+  }
+
+  /**
+   * Returns group documents as "repository:uinfo@lastModified", and deletion markers as "deleted:uinfo".
+   */
+  private List<String> groupDocuments() throws Exception {
+    final List<String> result = Lists.newArrayList();
+    final IndexSearcher searcher = group.acquireIndexSearcher();
+    try {
+      final IndexReader reader = searcher.getIndexReader();
+      for (int i = 0; i < reader.maxDoc(); i++) {
+        if (reader.isDeleted(i)) {
+          continue;
+        }
+        final Document document = reader.document(i);
+        if (document.get(ArtifactInfo.DELETED) != null) {
+          result.add("deleted:" + document.get(ArtifactInfo.DELETED));
+        }
+        else if (document.get(ArtifactInfo.UINFO) != null) {
+          final ArtifactInfo ai = IndexUtils.constructArtifactInfo(document, group);
+          GroupMemberIndexCreator.setMemberAsRepository(ai);
+          result.add(ai.repository + ":" + ai.groupId + ":" + ai.artifactId + ":" + ai.version + "@"
+              + document.get(ArtifactInfo.LAST_MODIFIED));
+        }
+      }
+    }
+    finally {
+      group.releaseIndexSearcher(searcher);
+    }
+    return result;
+  }
+
+  private static List<String> withoutTimestamps(final List<String> documents) {
+    final List<String> result = Lists.newArrayList();
+    for (String document : documents) {
+      result.add(document.contains("@") ? document.substring(0, document.indexOf('@')) : document);
+    }
+    return result;
+  }
+
+  @Test
+  public void appliesMembers() throws Exception {
+    add(releases, "org.foo:foo:1.0", "a");
+    add(thirdparty, "org.bar:bar:1.0", "b");
+    add(thirdparty, "org.foo:foo:1.0", "a");
+
+    final MaterializedGroupIndex underTest = new MaterializedGroupIndex("public", stateDirectory);
+    final Map<String, IndexSnapshot> members = members(releases, thirdparty);
+    assertThat(underTest.isCurrent(members), is(false));
+    underTest.sync(group, members);
+    assertThat(underTest.isCurrent(members), is(true));
+
+    assertThat(withoutTimestamps(groupDocuments()), containsInAnyOrder("releases:org.foo:foo:1.0",
+        "thirdparty:org.bar:bar:1.0", "thirdparty:org.foo:foo:1.0"));
+    assertThat(group.getAllGroups(), containsInAnyOrder("org.foo", "org.bar"));
+
+    // state survives restart
+    assertThat(new MaterializedGroupIndex("public", stateDirectory).isCurrent(members), is(true));
+  }
+
+  @Test
+  public void appliesChangedMembersOnly() throws Exception {
+    add(releases, "org.foo:foo:1.0", "a");
+    add(releases, "org.foo:foo:1.1", "b");
+    add(thirdparty, "org.foo:foo:1.0", "a");
+
+    final MaterializedGroupIndex underTest = new MaterializedGroupIndex("public", stateDirectory);
+    underTest.sync(group, members(releases, thirdparty));
+    final List<String> before = groupDocuments();
+
+    Thread.sleep(10);
+    remove(releases, "org.foo:foo:1.0");
+    remove(releases, "org.foo:foo:1.1");
+    add(releases, "org.foo:foo:1.2", "c");
+    final Map<String, IndexSnapshot> members = members(releases, thirdparty);
+    assertThat(underTest.isCurrent(members), is(false));
+    underTest.sync(group, members);
+
+    final List<String> after = groupDocuments();
+    // 1.0 is still in thirdparty, its document was not touched
+    final String thirdpartyFoo = before.get(2);
+    assertThat(after.contains(thirdpartyFoo), is(true));
+    assertThat(withoutTimestamps(after), containsInAnyOrder("thirdparty:org.foo:foo:1.0",
+        "releases:org.foo:foo:1.2", "deleted:org.foo|foo|1.1|NA|jar"));
+  }
+
+  @Test
+  public void keepsLastModifiedOfUnchangedArtifacts() throws Exception {
+    add(releases, "org.foo:foo:1.0", "a");
+
+    final MaterializedGroupIndex underTest = new MaterializedGroupIndex("public", stateDirectory);
+    underTest.sync(group, members(releases));
+    final List<String> before = groupDocuments();
+
+    Thread.sleep(10);
+    add(releases, "org.foo:foo:1.1", "b");
+    underTest.sync(group, members(releases));
+
+    final List<String> after = groupDocuments();
+    assertThat(after.containsAll(before), is(true));
+    assertThat(after.size(), is(2));
+
+    // changed content gets new timestamp
+    Thread.sleep(10);
+    add(releases, "org.foo:foo:1.0", "changed");
+    underTest.sync(group, members(releases));
+    assertThat(groupDocuments().containsAll(before), is(false));
+  }
+
+  @Test
+  public void marksArtifactDroppedByAllMembersInOneSync() throws Exception {
+    add(releases, "org.foo:foo:1.0", "a");
+    add(releases, "org.foo:foo:1.1", "b");
+    add(thirdparty, "org.foo:foo:1.0", "a");
+
+    final MaterializedGroupIndex underTest = new MaterializedGroupIndex("public", stateDirectory);
+    underTest.sync(group, members(releases, thirdparty));
+
+    remove(releases, "org.foo:foo:1.0");
+    remove(thirdparty, "org.foo:foo:1.0");
+    underTest.sync(group, members(releases, thirdparty));
+
+    assertThat(withoutTimestamps(groupDocuments()), containsInAnyOrder("releases:org.foo:foo:1.1",
+        "deleted:org.foo|foo|1.0|NA|jar"));
+  }
+
+  @Test
+  public void syncedStateSurvivesRestart() throws Exception {
+    final MaterializedGroupIndex underTest = new MaterializedGroupIndex("public", stateDirectory);
+    assertThat(underTest.isSynced(), is(false));
+
+    add(releases, "org.foo:foo:1.0", "a");
+    underTest.sync(group, members(releases));
+    assertThat(underTest.isSynced(), is(true));
+    assertThat(new MaterializedGroupIndex("public", stateDirectory).isSynced(), is(true));
+  }
+
+  @Test
+  public void removesMember() throws Exception {
+    add(releases, "org.foo:foo:1.0", "a");
+    add(thirdparty, "org.bar:bar:1.0", "b");
+
+    final MaterializedGroupIndex underTest = new MaterializedGroupIndex("public", stateDirectory);
+    underTest.sync(group, members(releases, thirdparty));
+    underTest.sync(group, members(releases));
+
+    assertThat(withoutTimestamps(groupDocuments()), containsInAnyOrder("releases:org.foo:foo:1.0",
+        "deleted:org.bar|bar|1.0|NA|jar"));
+  }
+}
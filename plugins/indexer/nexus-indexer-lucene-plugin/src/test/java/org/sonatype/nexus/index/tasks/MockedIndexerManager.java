@@ -17,6 +17,7 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
+import org.sonatype.nexus.index.GroupedSearchResponse;
 import org.sonatype.nexus.index.IndexerManager;
 import org.sonatype.nexus.proxy.NoSuchRepositoryException;
 import org.sonatype.nexus.proxy.item.StorageItem;
@@ -53,6 +54,13 @@ public class MockedIndexerManager
     throw new UnsupportedOperationException();
   }
 
+  @Override
+  public void addDeferredRepositoryIndexContexts()
+      throws IOException
+  {
+    throw new UnsupportedOperationException();
+  }
+
   @Override
   public void addRepositoryIndexContext(String repositoryId)
       throws IOException, NoSuchRepositoryException
@@ -83,6 +91,14 @@ public class MockedIndexerManager
 
   }
 
+  @Override
+  public void addItemsToIndex(Repository repository, Collection<String> paths)
+      throws IOException
+  {
+    throw new UnsupportedOperationException();
+
+  }
+
   @Override
   public void removeItemFromIndex(Repository repository, StorageItem item)
       throws IOException
@@ -236,6 +252,14 @@ public class MockedIndexerManager
     throw new UnsupportedOperationException();
   }
 
+  @Override
+  public GroupedSearchResponse searchQueryGrouped(Query query, String repositoryId, String cursor, int groupLimit,
+                                                  int versionLimit, int documentLimit)
+      throws NoSuchRepositoryException
+  {
+    throw new UnsupportedOperationException();
+  }
+
   @Override
   public Query constructQuery(Field field, String query, SearchType type)
       throws IllegalArgumentException
@@ -0,0 +1,336 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.plugins.mac;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.sonatype.nexus.events.EventSubscriber;
+import org.sonatype.nexus.index.DefaultIndexerManager;
+import org.sonatype.nexus.index.IndexArtifactFilter;
+import org.sonatype.nexus.proxy.events.NexusStoppedEvent;
+import org.sonatype.nexus.proxy.events.RepositoryConfigurationUpdatedEvent;
+import org.sonatype.nexus.proxy.events.RepositoryGroupMembersChangedEvent;
+import org.sonatype.nexus.proxy.events.RepositoryRegistryEventRemove;
+import org.sonatype.nexus.proxy.repository.Repository;
+import org.sonatype.nexus.proxy.utils.RepositoryStringUtils;
+import org.sonatype.nexus.threads.NexusThreadFactory;
+import org.sonatype.sisu.goodies.common.ComponentSupport;
+
+import com.google.common.base.Strings;
+import com.google.common.eventbus.AllowConcurrentEvents;
+import com.google.common.eventbus.Subscribe;
+import com.google.common.hash.Hashing;
+import org.apache.maven.archetype.catalog.ArchetypeCatalog;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.maven.archetype.catalog.io.xpp3.ArchetypeCatalogXpp3Writer;
+import org.apache.maven.index.ArtifactInfo;
+import org.apache.maven.index.context.IndexingContext;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Caches the archetypes found in repository indexes, and their serialized archetype catalogs. Each cached catalog
+ * remembers the "fingerprint" (versions of Lucene readers) of the index it was built from. Requests check the
+ * fingerprint only, which is cheap: if index did not change, cached catalog is served, otherwise the stale catalog is
+ * served while a new one is built in background. Only the very first request of a repository waits for the search.
+ * <p>
+ * Catalogs are cached unfiltered, permission filtering is applied on cached archetypes per request. Serialized
+ * catalog is reused when filtering removed nothing, which is the common case.
+ *
+ * @since 3.0
+ */
+@Named
+@Singleton
+public class ArchetypeCatalogCache
+    extends ComponentSupport
+    implements EventSubscriber
+{
+  private final MacPlugin macPlugin;
+
+  private final DefaultIndexerManager indexerManager;
+
+  private final ConcurrentMap<String, CatalogEntry> entries = new ConcurrentHashMap<>();
+
+  private final ConcurrentMap<String, Boolean> regenerating = new ConcurrentHashMap<>();
+
+  private final ThreadPoolExecutor executor;
+
+  @Inject
+  public ArchetypeCatalogCache(final MacPlugin macPlugin, final DefaultIndexerManager indexerManager) {
+    this.macPlugin = checkNotNull(macPlugin);
+    this.indexerManager = checkNotNull(indexerManager);
+    this.executor = new ThreadPoolExecutor(1, 1, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+        new NexusThreadFactory("mac", "Archetype catalog"));
+    this.executor.allowCoreThreadTimeOut(true);
+  }
+
+  /**
+   * Returns the archetype catalog of given repository, containing archetypes accepted by given filter.
+   *
+   * @throws IOException if repository has no indexing context or index search failed.
+   */
+  public CatalogPayload getCatalog(final Repository repository, final String repositoryUrl,
+                                   final IndexArtifactFilter filter)
+      throws IOException
+  {
+    final CatalogEntry entry = getEntry(repository);
+    final List<ArtifactInfo> accepted = new ArrayList<>(entry.archetypes.size());
+    for (ArtifactInfo archetype : entry.archetypes) {
+      if (filter == null || filter.filterArtifactInfo(archetype)) {
+        accepted.add(archetype);
+      }
+    }
+    if (accepted.size() < entry.archetypes.size()) {
+      return CatalogPayload.of(DefaultMacPlugin.createCatalog(accepted, repositoryUrl));
+    }
+
+    final String key = Strings.nullToEmpty(repositoryUrl);
+    CatalogPayload payload = entry.payloads.get(key);
+    if (payload == null) {
+      payload = CatalogPayload.of(DefaultMacPlugin.createCatalog(accepted, repositoryUrl));
+      final CatalogPayload existing = entry.payloads.putIfAbsent(key, payload);
+      if (existing != null) {
+        payload = existing;
+      }
+    }
+    return payload;
+  }
+
+  public void invalidate(final String repositoryId) {
+    entries.remove(repositoryId);
+  }
+
+  public void invalidateAll() {
+    entries.clear();
+  }
+
+  // ==
+
+  @Subscribe
+  @AllowConcurrentEvents
+  public void on(final RepositoryRegistryEventRemove evt) {
+    invalidate(evt.getRepository().getId());
+  }
+
+  /**
+   * Configuration change of a member might affect the groups too (ie. made non searchable), hence all is
+   * invalidated.
+   */
+  @Subscribe
+  @AllowConcurrentEvents
+  public void on(final RepositoryConfigurationUpdatedEvent evt) {
+    invalidateAll();
+  }
+
+  @Subscribe
+  @AllowConcurrentEvents
+  public void on(final RepositoryGroupMembersChangedEvent evt) {
+    invalidateAll();
+  }
+
+  @Subscribe
+  public void on(final NexusStoppedEvent evt) {
+    executor.shutdownNow();
+    invalidateAll();
+  }
+
+  // ==
+
+  private CatalogEntry getEntry(final Repository repository)
+      throws IOException
+  {
+    final CatalogEntry entry = entries.get(repository.getId());
+    if (entry == null) {
+      return regenerate(repository);
+    }
+    if (!entry.fingerprint.equals(fingerprint(repository))) {
+      scheduleRegeneration(repository);
+    }
+    return entry;
+  }
+
+  private void scheduleRegeneration(final Repository repository) {
+    if (regenerating.putIfAbsent(repository.getId(), Boolean.TRUE) != null) {
+      return;
+    }
+    try {
+      executor.execute(new Runnable()
+      {
+        @Override
+        public void run() {
+          try {
+            regenerate(repository);
+          }
+          catch (Exception e) {
+            log.warn("Could not regenerate archetype catalog of repository {}",
+                RepositoryStringUtils.getHumanizedNameString(repository), e);
+          }
+          finally {
+            regenerating.remove(repository.getId());
+          }
+        }
+      });
+    }
+    catch (RejectedExecutionException e) {
+      // shutting down
+      regenerating.remove(repository.getId());
+    }
+  }
+
+  private CatalogEntry regenerate(final Repository repository)
+      throws IOException
+  {
+    final CatalogEntry[] result = new CatalogEntry[1];
+    indexerManager.shared(repository, new DefaultIndexerManager.Runnable()
+    {
+      @Override
+      public void run(final IndexingContext context) throws IOException {
+        final String fingerprint = fingerprint(context);
+        final List<ArtifactInfo> archetypes = macPlugin.listArchetypes(new MacRequest(repository.getId()), context);
+        result[0] = new CatalogEntry(fingerprint, archetypes);
+      }
+    });
+    if (result[0] == null) {
+      // indexer will not invoke us if context is null
+      throw new IOException("Catalog could not be generated, no IndexingContext exists!");
+    }
+    log.debug("Generated archetype catalog of repository {} with {} archetypes", repository.getId(),
+        result[0].archetypes.size());
+    entries.put(repository.getId(), result[0]);
+    return result[0];
+  }
+
+  private String fingerprint(final Repository repository)
+      throws IOException
+  {
+    final String[] result = new String[1];
+    indexerManager.shared(repository, new DefaultIndexerManager.Runnable()
+    {
+      @Override
+      public void run(final IndexingContext context) throws IOException {
+        result[0] = fingerprint(context);
+      }
+    });
+    return Strings.nullToEmpty(result[0]);
+  }
+
+  /**
+   * Returns the fingerprint of index, made of the versions of its Lucene readers, that change on every index
+   * modification (unlike timestamp and size, that might stay same on document updates).
+   */
+  private static String fingerprint(final IndexingContext context)
+      throws IOException
+  {
+    final IndexSearcher searcher = context.acquireIndexSearcher();
+    try {
+      final StringBuilder result = new StringBuilder();
+      appendVersions(searcher.getIndexReader(), result);
+      return result.toString();
+    }
+    finally {
+      context.releaseIndexSearcher(searcher);
+    }
+  }
+
+  /**
+   * Composite readers (as the one of merged group context) have no version, versions of their members are used
+   * instead.
+   */
+  private static void appendVersions(final IndexReader reader, final StringBuilder result) {
+    try {
+      result.append(reader.getVersion()).append(';');
+    }
+    catch (UnsupportedOperationException e) {
+      final IndexReader[] subReaders = reader.getSequentialSubReaders();
+      if (subReaders == null) {
+        result.append(reader.maxDoc()).append(':').append(reader.numDocs()).append(';');
+      }
+      else {
+        result.append('[');
+        for (IndexReader subReader : subReaders) {
+          appendVersions(subReader, result);
+        }
+        result.append(']');
+      }
+    }
+  }
+
+  // ==
+
+  private static final class CatalogEntry
+  {
+    private final String fingerprint;
+
+    private final List<ArtifactInfo> archetypes;
+
+    /**
+     * Serialized unfiltered catalogs, keyed by repository URL.
+     */
+    private final ConcurrentMap<String, CatalogPayload> payloads = new ConcurrentHashMap<>();
+
+    private CatalogEntry(final String fingerprint, final List<ArtifactInfo> archetypes) {
+      this.fingerprint = fingerprint;
+      this.archetypes = archetypes;
+    }
+  }
+
+  /**
+   * Serialized archetype catalog with its SHA1 digest.
+   */
+  public static final class CatalogPayload
+  {
+    private final byte[] bytes;
+
+    private final String sha1;
+
+    private CatalogPayload(final byte[] bytes) {
+      this.bytes = bytes;
+      this.sha1 = Hashing.sha1().hashBytes(bytes).toString();
+    }
+
+    static CatalogPayload of(final ArchetypeCatalog catalog)
+        throws IOException
+    {
+      final StringWriter sw = new StringWriter();
+      final ArchetypeCatalogXpp3Writer writer = new ArchetypeCatalogXpp3Writer();
+      writer.write(sw, catalog);
+      return new CatalogPayload(sw.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Returns the serialized catalog, must not be modified.
+     */
+    public byte[] getBytes() {
+      return bytes;
+    }
+
+    public String getSha1() {
+      return sha1;
+    }
+  }
+}
@@ -16,7 +16,6 @@ import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
 
-import org.sonatype.nexus.index.DefaultIndexerManager;
 import org.sonatype.nexus.index.IndexArtifactFilter;
 import org.sonatype.nexus.proxy.IllegalOperationException;
 import org.sonatype.nexus.proxy.ItemNotFoundException;
@@ -27,10 +26,6 @@ import org.sonatype.nexus.proxy.item.StorageFileItem;
 import org.sonatype.nexus.proxy.repository.Repository;
 import org.sonatype.nexus.rest.RepositoryURLBuilder;
 
-import org.apache.maven.index.ArtifactInfo;
-import org.apache.maven.index.ArtifactInfoFilter;
-import org.apache.maven.index.context.IndexingContext;
-
 import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
@@ -45,21 +40,18 @@ public class ArchetypeContentGenerator
 {
   public static final String ID = "ArchetypeContentGenerator";
 
-  private final MacPlugin macPlugin;
-
-  private final DefaultIndexerManager indexerManager;
+  private final ArchetypeCatalogCache catalogCache;
 
   private final IndexArtifactFilter indexArtifactFilter;
 
   private final RepositoryURLBuilder repositoryURLBuilder;
 
   @Inject
-  public ArchetypeContentGenerator(final MacPlugin macPlugin, final DefaultIndexerManager indexerManager,
+  public ArchetypeContentGenerator(final ArchetypeCatalogCache catalogCache,
                                    final IndexArtifactFilter indexArtifactFilter,
                                    final RepositoryURLBuilder repositoryURLBuilder)
   {
-    this.macPlugin = checkNotNull(macPlugin);
-    this.indexerManager = checkNotNull(indexerManager);
+    this.catalogCache = checkNotNull(catalogCache);
     this.indexArtifactFilter = checkNotNull(indexArtifactFilter);
     this.repositoryURLBuilder = checkNotNull(repositoryURLBuilder);
   }
@@ -73,14 +65,7 @@ public class ArchetypeContentGenerator
   public ContentLocator generateContent(Repository repository, String path, StorageFileItem item)
       throws IllegalOperationException, ItemNotFoundException, LocalStorageException
   {
-    ArtifactInfoFilter artifactInfoFilter = new ArtifactInfoFilter()
-    {
-      public boolean accepts(IndexingContext ctx, ArtifactInfo ai) {
-        return indexArtifactFilter.filterArtifactInfo(ai);
-      }
-    };
     final String exposedRepositoryContentUrl = repositoryURLBuilder.getExposedRepositoryContentUrl(repository);
-    return new ArchetypeContentLocator(repository, exposedRepositoryContentUrl, indexerManager, macPlugin,
-        artifactInfoFilter);
+    return new ArchetypeContentLocator(repository, exposedRepositoryContentUrl, catalogCache, indexArtifactFilter);
   }
 }
@@ -15,29 +15,26 @@ package org.sonatype.nexus.plugins.mac;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.StringWriter;
 
-import org.sonatype.nexus.index.DefaultIndexerManager;
+import org.sonatype.nexus.index.IndexArtifactFilter;
+import org.sonatype.nexus.plugins.mac.ArchetypeCatalogCache.CatalogPayload;
 import org.sonatype.nexus.proxy.item.AbstractContentLocator;
+import org.sonatype.nexus.proxy.item.DigestedContentLocator;
 import org.sonatype.nexus.proxy.repository.Repository;
-import org.sonatype.nexus.proxy.utils.RepositoryStringUtils;
 
-import org.apache.maven.archetype.catalog.ArchetypeCatalog;
-import org.apache.maven.archetype.catalog.io.xpp3.ArchetypeCatalogXpp3Writer;
-import org.apache.maven.index.ArtifactInfoFilter;
-import org.apache.maven.index.context.IndexingContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * A content locator to generate archetype catalog. This way, the actual work (search, archetype catalog model fillup
- * from results, converting it to string and flushing it as byte array backed stream) is postponed to very last moment,
- * when the content itself is asked for.
+ * A content locator to generate archetype catalog. This way, the actual work (getting the catalog from
+ * {@link ArchetypeCatalogCache}, filtered for current user) is postponed to very last moment, when the content itself,
+ * its length or digest is asked for.
  * 
  * @author cstamas
  */
 public class ArchetypeContentLocator
     extends AbstractContentLocator
+    implements DigestedContentLocator
 {
   private static final Logger logger = LoggerFactory.getLogger(ArchetypeContentLocator.class);
 
@@ -45,74 +42,55 @@ public class ArchetypeContentLocator
 
   private final String repositoryContentUrl;
 
-  private final DefaultIndexerManager nexusIndexer;
+  private final ArchetypeCatalogCache catalogCache;
 
-  private final MacPlugin macPlugin;
+  private final IndexArtifactFilter indexArtifactFilter;
 
-  private final ArtifactInfoFilter artifactInfoFilter;
-
-  private volatile String payload;
+  private CatalogPayload payload;
 
   public ArchetypeContentLocator(final Repository repository, final String repositoryContentUrl,
-      final DefaultIndexerManager nexusIndexer, final MacPlugin macPlugin, final ArtifactInfoFilter artifactInfoFilter)
+      final ArchetypeCatalogCache catalogCache, final IndexArtifactFilter indexArtifactFilter)
   {
     super("text/xml", true, UNKNOWN_LENGTH);
     this.repository = repository;
     this.repositoryContentUrl = repositoryContentUrl;
-    this.nexusIndexer = nexusIndexer;
-    this.macPlugin = macPlugin;
-    this.artifactInfoFilter = artifactInfoFilter;
+    this.catalogCache = catalogCache;
+    this.indexArtifactFilter = indexArtifactFilter;
   }
 
-  protected synchronized String generateCatalogPayload() throws IOException {
+  protected synchronized CatalogPayload getCatalogPayload() throws IOException {
     if (payload == null) {
-      nexusIndexer.shared(repository, new DefaultIndexerManager.Runnable()
-      {
-        @Override
-        public void run(IndexingContext context) throws IOException {
-          // XXX igorf, this is not called when context == null, but we need to generate an empty catalog
-
-          payload = generateCatalogPayload(context);
-        }
-      });
+      payload = catalogCache.getCatalog(repository, repositoryContentUrl, indexArtifactFilter);
     }
-
     return payload;
   }
 
-  private String generateCatalogPayload(IndexingContext context) throws IOException {
-    final MacRequest req = new MacRequest(repository.getId(), repositoryContentUrl, artifactInfoFilter);
-
-    // NEXUS-5216: Warn if indexing context is null (indexable=false) for given repository but continue
-    // to return the correct empty catalog
-    if (context == null) {
-      logger.info(
-          "Archetype Catalog for repository {} is not buildable as it lacks IndexingContext (indexable=false?).",
-          RepositoryStringUtils.getHumanizedNameString(repository));
+  @Override
+  public long getLength() {
+    try {
+      return getCatalogPayload().getBytes().length;
+    }
+    catch (IOException e) {
+      // will be reported when content is asked for
+      logger.debug("Catalog length not known", e);
+      return UNKNOWN_LENGTH;
     }
-
-    // get the catalog
-    final ArchetypeCatalog catalog = macPlugin.listArcherypesAsCatalog(req, context);
-    // serialize it to XML
-    final StringWriter sw = new StringWriter();
-    final ArchetypeCatalogXpp3Writer writer = new ArchetypeCatalogXpp3Writer();
-    writer.write(sw, catalog);
-    return sw.toString();
   }
 
   @Override
-  public InputStream getContent() throws IOException {
-    final String payload = generateCatalogPayload();
-    if (payload != null) {
-      return new ByteArrayInputStream(payload.getBytes("UTF-8"));
+  public String getSha1() {
+    try {
+      return getCatalogPayload().getSha1();
     }
-    else {
-      // FIXME: Related to Igor's comment in #generateCatalogPayload() method above: indexer
-      // will not invoke us if context is null, hence ugly NPE would happen without this.
-      // The new IOEx will still emit HTTP 500 Server error, but is not an unexpected NPE
-      // and will mean inconsistent state: archetype-catalog.xml exists in repo root
-      // but repo itself does not have context!
-      throw new IOException("Catalog could not be generated, no IndexingContext exists!");
+    catch (IOException e) {
+      // will be reported when content is asked for
+      logger.debug("Catalog digest not known", e);
+      return null;
     }
   }
+
+  @Override
+  public InputStream getContent() throws IOException {
+    return new ByteArrayInputStream(getCatalogPayload().getBytes());
+  }
 }
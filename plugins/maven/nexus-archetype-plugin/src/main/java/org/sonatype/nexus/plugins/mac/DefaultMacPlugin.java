@@ -13,7 +13,9 @@
 package org.sonatype.nexus.plugins.mac;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -48,9 +50,9 @@ public class DefaultMacPlugin
   }
 
   /**
-   * Lists available archatypes for given request.
+   * Searches available archatypes for given request.
    */
-  protected IteratorSearchResponse listArchetypes(final MacRequest request, final IndexingContext ctx)
+  protected IteratorSearchResponse searchArchetypes(final MacRequest request, final IndexingContext ctx)
       throws IOException
   {
     // construct the query: we search for artifacts having packing "maven-archetype" exactly and nothing else
@@ -84,28 +86,18 @@ public class DefaultMacPlugin
     return indexer.searchIterator(sreq);
   }
 
-  public ArchetypeCatalog listArcherypesAsCatalog(final MacRequest request, final IndexingContext ctx)
+  @Override
+  public List<ArtifactInfo> listArchetypes(final MacRequest request, final IndexingContext ctx)
       throws IOException
   {
-    final IteratorSearchResponse infos = listArchetypes(request, ctx);
+    final IteratorSearchResponse infos = searchArchetypes(request, ctx);
 
     try {
-      final ArchetypeCatalog catalog = new ArchetypeCatalog();
-      Archetype archetype = null;
-      // fill it in
+      final List<ArtifactInfo> result = new ArrayList<ArtifactInfo>();
       for (ArtifactInfo info : infos) {
-        archetype = new Archetype();
-        archetype.setGroupId(info.groupId);
-        archetype.setArtifactId(info.artifactId);
-        archetype.setVersion(info.version);
-        archetype.setDescription(info.description);
-
-        if (StringUtils.isNotEmpty(request.getRepositoryUrl())) {
-          archetype.setRepository(request.getRepositoryUrl());
-        }
-        catalog.addArchetype(archetype);
+        result.add(info);
       }
-      return catalog;
+      return result;
     }
     finally {
       if (infos != null) {
@@ -114,6 +106,35 @@ public class DefaultMacPlugin
     }
   }
 
+  @Override
+  public ArchetypeCatalog listArcherypesAsCatalog(final MacRequest request, final IndexingContext ctx)
+      throws IOException
+  {
+    return createCatalog(listArchetypes(request, ctx), request.getRepositoryUrl());
+  }
+
+  /**
+   * Creates archetype catalog out of given archetype artifacts, with repository URL set if given.
+   */
+  static ArchetypeCatalog createCatalog(final Iterable<ArtifactInfo> infos, final String repositoryUrl) {
+    final ArchetypeCatalog catalog = new ArchetypeCatalog();
+    Archetype archetype = null;
+    // fill it in
+    for (ArtifactInfo info : infos) {
+      archetype = new Archetype();
+      archetype.setGroupId(info.groupId);
+      archetype.setArtifactId(info.artifactId);
+      archetype.setVersion(info.version);
+      archetype.setDescription(info.description);
+
+      if (StringUtils.isNotEmpty(repositoryUrl)) {
+        archetype.setRepository(repositoryUrl);
+      }
+      catalog.addArchetype(archetype);
+    }
+    return catalog;
+  }
+
   // ==
 
   /**
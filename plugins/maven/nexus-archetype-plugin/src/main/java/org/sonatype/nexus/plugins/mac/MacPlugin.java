@@ -13,8 +13,10 @@
 package org.sonatype.nexus.plugins.mac;
 
 import java.io.IOException;
+import java.util.List;
 
 import org.apache.maven.archetype.catalog.ArchetypeCatalog;
+import org.apache.maven.index.ArtifactInfo;
 import org.apache.maven.index.context.IndexingContext;
 
 /**
@@ -24,6 +26,15 @@ import org.apache.maven.index.context.IndexingContext;
  */
 public interface MacPlugin
 {
+  /**
+   * Returns the archetype artifacts for given request and sourced from given indexing context, in the order they
+   * should appear in archetype catalog.
+   *
+   * @since 3.0
+   */
+  List<ArtifactInfo> listArchetypes(MacRequest request, IndexingContext ctx)
+      throws IOException;
+
   /**
    * Returns the archetype catalog for given request and sourced from given indexing context.
    */
@@ -0,0 +1,166 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.plugins.mac;
+
+import java.nio.charset.StandardCharsets;
+
+import org.sonatype.nexus.index.DefaultIndexerManager;
+import org.sonatype.nexus.index.IndexArtifactFilter;
+import org.sonatype.nexus.plugins.mac.ArchetypeCatalogCache.CatalogPayload;
+import org.sonatype.nexus.proxy.events.RepositoryRegistryEventRemove;
+import org.sonatype.nexus.proxy.registry.RepositoryRegistry;
+import org.sonatype.nexus.proxy.repository.Repository;
+
+import org.apache.maven.index.ArtifactContext;
+import org.apache.maven.index.ArtifactInfo;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link ArchetypeCatalogCache}, using real index of test repository.
+ */
+public class ArchetypeCatalogCacheTest
+    extends AbstractMacPluginTest
+{
+  private Repository repository;
+
+  private ArchetypeCatalogCache underTest;
+
+  private void prepare() throws Exception {
+    context = nexusIndexer.addIndexingContext("test-default", "test", repoDir, indexLuceneDir, null, null,
+        DEFAULT_CREATORS);
+    nexusIndexer.scan(context);
+
+    repository = mock(Repository.class);
+    when(repository.getId()).thenReturn("test");
+    final DefaultIndexerManager indexerManager = mock(DefaultIndexerManager.class);
+    doAnswer(new Answer<Void>()
+    {
+      @Override
+      public Void answer(final InvocationOnMock invocation) throws Throwable {
+        ((DefaultIndexerManager.Runnable) invocation.getArguments()[1]).run(context);
+        return null;
+      }
+    }).when(indexerManager).shared(eq(repository), any(DefaultIndexerManager.Runnable.class));
+    underTest = new ArchetypeCatalogCache(macPlugin, indexerManager);
+  }
+
+  private void unprepare() throws Exception {
+    nexusIndexer.removeIndexingContext(context, false);
+  }
+
+  @Test
+  public void cachedCatalogServedWhileIndexUnchanged() throws Exception {
+    prepare();
+    try {
+      final CatalogPayload payload = underTest.getCatalog(repository, "http://localhost/test/", null);
+      assertThat(content(payload), containsString("<artifactId>pojo-archetype</artifactId>"));
+      assertThat(underTest.getCatalog(repository, "http://localhost/test/", null), sameInstance(payload));
+    }
+    finally {
+      unprepare();
+    }
+  }
+
+  @Test
+  public void catalogRebuiltWhenIndexChangesWithSameSize() throws Exception {
+    prepare();
+    try {
+      addArchetype("First description");
+      underTest.getCatalog(repository, null, null);
+      awaitCatalogContaining("First description");
+
+      // document is replaced, index size stays same
+      final int size = context.getSize();
+      addArchetype("Second description");
+      assertThat(context.getSize(), equalTo(size));
+
+      // stale catalog might be served while catalog is rebuilt in background
+      underTest.getCatalog(repository, null, null);
+      awaitCatalogContaining("Second description");
+    }
+    finally {
+      unprepare();
+    }
+  }
+
+  @Test
+  public void filteredCatalogNotShared() throws Exception {
+    prepare();
+    try {
+      final IndexArtifactFilter rejectAll = mock(IndexArtifactFilter.class);
+      when(rejectAll.filterArtifactInfo(any(ArtifactInfo.class))).thenReturn(false);
+
+      final CatalogPayload filtered = underTest.getCatalog(repository, null, rejectAll);
+      assertThat(content(filtered), not(containsString("pojo-archetype")));
+      final CatalogPayload unfiltered = underTest.getCatalog(repository, null, null);
+      assertThat(content(unfiltered), containsString("pojo-archetype"));
+      assertThat(unfiltered.getSha1(), not(equalTo(filtered.getSha1())));
+    }
+    finally {
+      unprepare();
+    }
+  }
+
+  @Test
+  public void catalogDroppedOnRepositoryRemoval() throws Exception {
+    prepare();
+    try {
+      final CatalogPayload payload = underTest.getCatalog(repository, null, null);
+      underTest.on(new RepositoryRegistryEventRemove(mock(RepositoryRegistry.class), repository));
+      final CatalogPayload rebuilt = underTest.getCatalog(repository, null, null);
+      assertThat(rebuilt, not(sameInstance(payload)));
+      assertThat(rebuilt.getSha1(), equalTo(payload.getSha1()));
+    }
+    finally {
+      unprepare();
+    }
+  }
+
+  // ==
+
+  private void addArchetype(final String description) throws Exception {
+    final ArtifactInfo artifactInfo = new ArtifactInfo(context.getRepositoryId(), "org.sonatype.nexus.plugins",
+        "nexus-archetype-plugin", "1.0", null);
+    artifactInfo.packaging = "maven-archetype";
+    artifactInfo.description = description;
+    nexusIndexer.addArtifactToIndex(new ArtifactContext(null, null, null, artifactInfo, artifactInfo.calculateGav()),
+        context);
+  }
+
+  private void awaitCatalogContaining(final String text) throws Exception {
+    final long deadline = System.currentTimeMillis() + 10000L;
+    String content = content(underTest.getCatalog(repository, null, null));
+    while (!content.contains(text) && System.currentTimeMillis() < deadline) {
+      Thread.sleep(50L);
+      content = content(underTest.getCatalog(repository, null, null));
+    }
+    assertThat(content, containsString(text));
+  }
+
+  private String content(final CatalogPayload payload) {
+    return new String(payload.getBytes(), StandardCharsets.UTF_8);
+  }
+}
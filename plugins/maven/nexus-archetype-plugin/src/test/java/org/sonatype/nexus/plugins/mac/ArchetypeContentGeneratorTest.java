@@ -112,7 +112,8 @@ public class ArchetypeContentGeneratorTest
     prepareNexusIndexer(nexusIndexer, repository); // indexerManager creates context for it
     try {
       final ArchetypeContentGenerator archetypeContentGenerator =
-          new ArchetypeContentGenerator(lookup(MacPlugin.class), (DefaultIndexerManager) indexerManager,
+          new ArchetypeContentGenerator(
+              new ArchetypeCatalogCache(lookup(MacPlugin.class), (DefaultIndexerManager) indexerManager),
               mock(IndexArtifactFilter.class), mock(RepositoryURLBuilder.class));
       final StorageFileItem item = mock(StorageFileItem.class);
       final ArchetypeContentLocator archetypeContentLocator =
@@ -56,6 +56,7 @@ public class MacPluginTest
       assertThat("We have at least 3 Lucene documents in there for 3 artifacts!", context.getSize() >= 6);
       // repo has only 1 archetype
       assertThat("Catalog not exact!", catalog.getArchetypes(), hasSize(1));
+      assertThat(macPlugin.listArchetypes(request, context), hasSize(1));
       // add one archetype
       ArtifactInfo artifactInfo =
           new ArtifactInfo(context.getRepositoryId(), "org.sonatype.nexus.plugins", "nexus-archetype-plugin", "1.0",
@@ -0,0 +1,70 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.plexus.rest.representation;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import com.thoughtworks.xstream.XStream;
+import com.thoughtworks.xstream.XStreamException;
+import org.restlet.data.CharacterSet;
+import org.restlet.data.MediaType;
+import org.restlet.resource.OutputRepresentation;
+
+/**
+ * A representation powered by XStream, that marshals the payload directly into the response stream while it is
+ * written, instead of building the whole document as String (and bytes) first, as {@link XStreamRepresentation}
+ * does. The written document is identical, but it has no known size, and as marshalling happens while response is
+ * being sent, marshalling errors cannot be reported with an error status anymore.
+ *
+ * @since 3.0
+ */
+public class XStreamOutputRepresentation
+    extends OutputRepresentation
+{
+  private static final int BUFFER_SIZE = 8192;
+
+  private final XStream xstream;
+
+  private final Object payload;
+
+  public XStreamOutputRepresentation(XStream xstream, Object payload, MediaType mt) {
+    super(mt);
+
+    setCharacterSet(CharacterSet.UTF_8);
+
+    this.xstream = xstream;
+    this.payload = payload;
+  }
+
+  public Object getPayload() {
+    return payload;
+  }
+
+  @Override
+  public void write(OutputStream outputStream)
+      throws IOException
+  {
+    final Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, "UTF-8"), BUFFER_SIZE);
+    try {
+      xstream.toXML(payload, writer);
+    }
+    catch (XStreamException e) {
+      throw new IOException("Cannot marshal " + payload.getClass().getName(), e);
+    }
+    writer.flush();
+  }
+}
@@ -22,6 +22,7 @@ import java.util.List;
 
 import org.sonatype.plexus.rest.PlexusRestletApplicationBridge;
 import org.sonatype.plexus.rest.representation.InputStreamRepresentation;
+import org.sonatype.plexus.rest.representation.XStreamOutputRepresentation;
 import org.sonatype.plexus.rest.representation.XStreamRepresentation;
 import org.sonatype.sisu.goodies.common.Loggers;
 
@@ -96,15 +97,8 @@ public class RestletResource
           || MediaType.TEXT_HTML.equals(variant.getMediaType(), true)) {
         String text = (variant instanceof Representation) ? ((Representation) variant).getText() : "";
 
-        XStream xstream;
-        if (MediaType.APPLICATION_JSON.equals(variant.getMediaType(), true)
-            || MediaType.TEXT_HTML.equals(variant.getMediaType(), true)) {
-          xstream = (XStream) getContext().getAttributes().get(PlexusRestletApplicationBridge.JSON_XSTREAM);
-        }
-        else if (MediaType.APPLICATION_XML.equals(variant.getMediaType(), true)) {
-          xstream = (XStream) getContext().getAttributes().get(PlexusRestletApplicationBridge.XML_XSTREAM);
-        }
-        else {
+        XStream xstream = getXStream(variant.getMediaType());
+        if (xstream == null) {
           return null;
         }
 
@@ -131,6 +125,23 @@ public class RestletResource
     }
   }
 
+  /**
+   * Returns the XStream instance for given media type, or {@code null} if media type is not supported.
+   *
+   * @since 3.0
+   */
+  protected XStream getXStream(MediaType mediaType) {
+    if (MediaType.APPLICATION_JSON.equals(mediaType, true) || MediaType.TEXT_HTML.equals(mediaType, true)) {
+      return (XStream) getContext().getAttributes().get(PlexusRestletApplicationBridge.JSON_XSTREAM);
+    }
+    else if (MediaType.APPLICATION_XML.equals(mediaType, true)) {
+      return (XStream) getContext().getAttributes().get(PlexusRestletApplicationBridge.XML_XSTREAM);
+    }
+    else {
+      return null;
+    }
+  }
+
   protected Representation serialize(Variant variant, Object payload)
       throws ResourceException
   {
@@ -138,6 +149,17 @@ public class RestletResource
       return null;
     }
 
+    if (delegate instanceof StreamingPlexusResource && Method.GET.equals(getRequest().getMethod())) {
+      XStream xstream = getXStream(variant.getMediaType());
+
+      if (xstream == null) {
+        throw new ResourceException(Status.CLIENT_ERROR_NOT_ACCEPTABLE, "The requested mediaType='"
+            + variant.getMediaType() + "' is unsupported!");
+      }
+
+      return new XStreamOutputRepresentation(xstream, payload, variant.getMediaType());
+    }
+
     XStreamRepresentation result = createRepresentation(variant);
 
     if (result == null) {
@@ -0,0 +1,28 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.plexus.rest.resource;
+
+import org.sonatype.plexus.rest.representation.XStreamOutputRepresentation;
+
+/**
+ * Marker for {@link PlexusResource}s with large GET responses: objects they return from
+ * {@link PlexusResource#get(org.restlet.Context, org.restlet.data.Request, org.restlet.data.Response,
+ * org.restlet.resource.Variant)} are marshalled straight into the response stream using
+ * {@link XStreamOutputRepresentation}, instead of being serialized into a String first.
+ *
+ * @since 3.0
+ */
+public interface StreamingPlexusResource
+    extends PlexusResource
+{
+}
@@ -0,0 +1,156 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.plexus.rest.representation;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.sonatype.plexus.rest.dto.Two;
+import org.sonatype.plexus.rest.xstream.json.JsonOrgHierarchicalStreamDriver;
+import org.sonatype.plexus.rest.xstream.xml.LookAheadXppDriver;
+import org.sonatype.sisu.goodies.common.Loggers;
+
+import com.thoughtworks.xstream.XStream;
+import org.codehaus.plexus.PlexusTestCase;
+import org.restlet.data.MediaType;
+import org.restlet.resource.Representation;
+import org.slf4j.Logger;
+
+/**
+ * Compares {@link XStreamOutputRepresentation} with {@link XStreamRepresentation}: written documents must be
+ * identical, while memory allocated by both is logged for comparison.
+ */
+public class XStreamOutputRepresentationTest
+    extends PlexusTestCase
+{
+  private final Logger log = Loggers.getLogger(getClass());
+
+  private List<Two> payload;
+
+  protected void setUp()
+      throws Exception
+  {
+    super.setUp();
+
+    payload = new ArrayList<Two>();
+    for (int i = 0; i < 5000; i++) {
+      Two two = new Two();
+      two.setOneValue("org.sonatype.nexus:nexus-core:3.0." + i);
+      two.setTwoValue("http://localhost:8081/nexus/content/repositories/releases/org/sonatype/nexus/nexus-core/3.0."
+          + i + "/nexus-core-3.0." + i + ".jar");
+      payload.add(two);
+    }
+  }
+
+  public void testJsonIsIdentical()
+      throws Exception
+  {
+    assertIdentical(new XStream(new JsonOrgHierarchicalStreamDriver()), MediaType.APPLICATION_JSON);
+  }
+
+  public void testXmlIsIdentical()
+      throws Exception
+  {
+    assertIdentical(new XStream(new LookAheadXppDriver()), MediaType.APPLICATION_XML);
+  }
+
+  public void testAllocationBenchmark()
+      throws Exception
+  {
+    for (XStream xstream : Arrays.asList(new XStream(new JsonOrgHierarchicalStreamDriver()),
+        new XStream(new LookAheadXppDriver()))) {
+      // warm up
+      for (int i = 0; i < 5; i++) {
+        buffered(xstream).write(new NullOutputStream());
+        streamed(xstream).write(new NullOutputStream());
+      }
+
+      final long buffered = allocatedBytes(xstream, false);
+      final long streamed = allocatedBytes(xstream, true);
+      if (buffered < 0 || streamed < 0) {
+        log.info("Thread allocation measurement not supported by this JVM");
+        return;
+      }
+
+      log.info("{} entries: {} KiB allocated buffered, {} KiB allocated streamed", payload.size(), buffered / 1024,
+          streamed / 1024);
+    }
+  }
+
+  // ==
+
+  private void assertIdentical(XStream xstream, MediaType mediaType)
+      throws IOException
+  {
+    final XStreamRepresentation buffered = new XStreamRepresentation(xstream, "", mediaType);
+    buffered.setPayload(payload);
+    final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+    buffered.write(expected);
+
+    final ByteArrayOutputStream actual = new ByteArrayOutputStream();
+    new XStreamOutputRepresentation(xstream, payload, mediaType).write(actual);
+
+    assertTrue(expected.size() > 0);
+    assertTrue(Arrays.equals(expected.toByteArray(), actual.toByteArray()));
+  }
+
+  private Representation buffered(XStream xstream) {
+    final XStreamRepresentation representation = new XStreamRepresentation(xstream, "", MediaType.APPLICATION_JSON);
+    representation.setPayload(payload);
+    return representation;
+  }
+
+  private Representation streamed(XStream xstream) {
+    return new XStreamOutputRepresentation(xstream, payload, MediaType.APPLICATION_JSON);
+  }
+
+  /**
+   * Returns bytes allocated by this thread while serializing and writing the payload, or -1 if not supported.
+   */
+  private long allocatedBytes(XStream xstream, boolean streaming)
+      throws IOException
+  {
+    final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+    if (!(threadMXBean instanceof com.sun.management.ThreadMXBean)) {
+      return -1;
+    }
+    final com.sun.management.ThreadMXBean sunThreadMXBean = (com.sun.management.ThreadMXBean) threadMXBean;
+    if (!sunThreadMXBean.isThreadAllocatedMemorySupported() || !sunThreadMXBean.isThreadAllocatedMemoryEnabled()) {
+      return -1;
+    }
+    final long threadId = Thread.currentThread().getId();
+    final long before = sunThreadMXBean.getThreadAllocatedBytes(threadId);
+    (streaming ? streamed(xstream) : buffered(xstream)).write(new NullOutputStream());
+    return sunThreadMXBean.getThreadAllocatedBytes(threadId) - before;
+  }
+
+  private static class NullOutputStream
+      extends OutputStream
+  {
+    @Override
+    public void write(int b) {
+      // nop
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+      // nop
+    }
+  }
+}
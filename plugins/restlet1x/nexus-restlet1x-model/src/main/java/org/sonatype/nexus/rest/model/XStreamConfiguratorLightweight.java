@@ -92,6 +92,8 @@ public class XStreamConfiguratorLightweight
     xstream.alias("project", Model.class);
 
     xstream.processAnnotations(ArtifactResolveResourceResponse.class);
+    xstream.processAnnotations(ArtifactResolveBatchRequest.class);
+    xstream.processAnnotations(ArtifactResolveBatchResponse.class);
     xstream.processAnnotations(GlobalConfigurationListResourceResponse.class);
     xstream.processAnnotations(GlobalConfigurationResourceResponse.class);
     xstream.processAnnotations(RepositoryStatusListResourceResponse.class);
@@ -137,6 +139,12 @@ public class XStreamConfiguratorLightweight
     xstream.registerLocalConverter(RepositoryListResourceResponse.class, "data", new AliasingListConverter(
         RepositoryListResource.class, "repositories-item"));
 
+    xstream.registerLocalConverter(ArtifactResolveBatchRequest.class, "data", new AliasingListConverter(
+        ArtifactResolveCoordinate.class, "artifact-coordinate"));
+
+    xstream.registerLocalConverter(ArtifactResolveBatchResponse.class, "data", new AliasingListConverter(
+        ArtifactResolveBatchResult.class, "artifact-resolution-result"));
+
     xstream.registerLocalConverter(NexusRepositoryTypeListResourceResponse.class, "data",
         new AliasingListConverter(NexusRepositoryTypeListResource.class, "repositoryType"));
 
@@ -64,6 +64,7 @@ import org.sonatype.nexus.security.filter.authc.NexusHttpAuthenticationFilter;
 import org.sonatype.nexus.web.BaseUrlHolder;
 import org.sonatype.nexus.web.Constants;
 import org.sonatype.plexus.rest.representation.VelocityRepresentation;
+import org.sonatype.plexus.rest.resource.StreamingPlexusResource;
 import org.sonatype.security.SecuritySystem;
 
 import com.google.common.annotations.VisibleForTesting;
@@ -99,6 +100,7 @@ import static org.sonatype.nexus.proxy.ItemNotFoundException.reasonFor;
  */
 public abstract class AbstractResourceStoreContentPlexusResource
     extends AbstractNexusPlexusResource
+    implements StreamingPlexusResource
 {
   public static final String IS_DESCRIBE_PARAMETER = "describe";
 
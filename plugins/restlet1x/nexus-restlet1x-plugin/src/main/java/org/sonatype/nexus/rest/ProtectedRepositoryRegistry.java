@@ -57,6 +57,10 @@ public class ProtectedRepositoryRegistry
     return this.defaultRepositoryRegistry.getGroupsOfRepository(repository);
   }
 
+  public List<GroupRepository> getTransitiveGroupsOfRepository(Repository repository) {
+    return this.defaultRepositoryRegistry.getTransitiveGroupsOfRepository(repository);
+  }
+
   public List<Repository> getRepositories() {
     return this.filterRepositoriesList(this.defaultRepositoryRegistry.getRepositories());
   }
@@ -28,6 +28,7 @@ import org.sonatype.nexus.proxy.NoSuchResourceStoreException;
 import org.sonatype.nexus.proxy.RemoteStorageTransportOverloadedException;
 import org.sonatype.nexus.proxy.RepositoryNotAvailableException;
 import org.sonatype.nexus.proxy.StorageException;
+import org.sonatype.nexus.proxy.attributes.inspectors.DigestCalculatingInspector;
 import org.sonatype.nexus.proxy.access.AccessManager;
 import org.sonatype.nexus.proxy.item.StorageFileItem;
 import org.sonatype.nexus.proxy.maven.ArtifactStoreHelper;
@@ -41,6 +42,7 @@ import org.sonatype.nexus.rest.AbstractNexusPlexusResource;
 import org.sonatype.nexus.rest.AbstractResourceStoreContentPlexusResource;
 import org.sonatype.nexus.rest.StorageFileItemRepresentation;
 import org.sonatype.nexus.rest.model.ArtifactCoordinate;
+import org.sonatype.nexus.rest.model.ArtifactResolveResource;
 import org.sonatype.security.SecuritySystem;
 
 import org.apache.commons.fileupload.FileItem;
@@ -133,6 +135,51 @@ public abstract class AbstractArtifactPlexusResource
     return result;
   }
 
+  /**
+   * Creates the resolution details of given resolved artifact. The {@code resolvedFile} is {@code null} if artifact
+   * was not retrieved, in which case it is not reported as present locally.
+   */
+  protected ArtifactResolveResource createArtifactResolveResource(final MavenRepository mavenRepository,
+                                                                  final Gav resolvedGav,
+                                                                  final StorageFileItem resolvedFile)
+  {
+    ArtifactResolveResource resource = new ArtifactResolveResource();
+
+    resource.setPresentLocally(resolvedFile != null);
+
+    if (resolvedFile != null) {
+      resource.setSha1(resolvedFile.getRepositoryItemAttributes().get(DigestCalculatingInspector.DIGEST_SHA1_KEY));
+    }
+
+    resource.setGroupId(resolvedGav.getGroupId());
+
+    resource.setArtifactId(resolvedGav.getArtifactId());
+
+    resource.setVersion(resolvedGav.getVersion());
+
+    resource.setClassifier(resolvedGav.getClassifier());
+
+    resource.setExtension(resolvedGav.getExtension());
+
+    resource.setFileName(resolvedGav.getName());
+
+    resource.setRepositoryPath(mavenRepository.getGavCalculator().gavToPath(resolvedGav));
+
+    resource.setSnapshot(resolvedGav.isSnapshot());
+
+    if (resource.isSnapshot()) {
+      resource.setBaseVersion(resolvedGav.getBaseVersion());
+
+      if (resolvedGav.getSnapshotBuildNumber() != null) {
+        resource.setSnapshotBuildNumber(resolvedGav.getSnapshotBuildNumber());
+
+        resource.setSnapshotTimeStamp(resolvedGav.getSnapshotTimeStamp());
+      }
+    }
+
+    return resource;
+  }
+
   protected Model getPom(Variant variant, Request request, Response response)
       throws ResourceException
   {
@@ -0,0 +1,156 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.rest.artifact;
+
+import java.util.List;
+
+import javax.inject.Named;
+import javax.inject.Singleton;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+
+import org.sonatype.nexus.proxy.maven.ArtifactStoreRequest;
+import org.sonatype.nexus.proxy.maven.MavenRepository;
+import org.sonatype.nexus.proxy.maven.gav.Gav;
+import org.sonatype.nexus.rest.model.ArtifactResolveBatchRequest;
+import org.sonatype.nexus.rest.model.ArtifactResolveBatchResponse;
+import org.sonatype.nexus.rest.model.ArtifactResolveBatchResult;
+import org.sonatype.nexus.rest.model.ArtifactResolveCoordinate;
+import org.sonatype.nexus.rest.model.ArtifactResolveResource;
+import org.sonatype.nexus.util.SystemPropertiesHelper;
+import org.sonatype.plexus.rest.resource.PathProtectionDescriptor;
+
+import org.apache.commons.lang.StringUtils;
+import org.restlet.Context;
+import org.restlet.data.Request;
+import org.restlet.data.Response;
+import org.restlet.data.Status;
+import org.restlet.resource.ResourceException;
+
+/**
+ * Resolves versions of several artifacts in one request. Unlike {@link ArtifactResolvePlexusResource}, artifacts are
+ * never retrieved, only their metadata is consulted, hence "presentLocally" and "sha1" of results are not populated.
+ * Results are returned in request order, a failing coordinate does not fail the whole batch.
+ *
+ * @since 3.0
+ */
+@Named
+@Singleton
+@Path(ArtifactResolveBatchPlexusResource.RESOURCE_URI)
+@Produces({"application/xml", "application/json"})
+@Consumes({"application/xml", "application/json"})
+public class ArtifactResolveBatchPlexusResource
+    extends AbstractArtifactPlexusResource
+{
+  public static final String RESOURCE_URI = "/artifact/maven/resolve/batch";
+
+  private static final int MAX_BATCH_SIZE = SystemPropertiesHelper.getInteger(
+      ArtifactResolveBatchPlexusResource.class.getName() + ".maxBatchSize", 1000);
+
+  public ArtifactResolveBatchPlexusResource() {
+    this.setModifiable(true);
+  }
+
+  @Override
+  public Object getPayloadInstance() {
+    return new ArtifactResolveBatchRequest();
+  }
+
+  @Override
+  public String getResourceUri() {
+    return RESOURCE_URI;
+  }
+
+  @Override
+  public PathProtectionDescriptor getResourceProtection() {
+    return new PathProtectionDescriptor(getResourceUri(), "authcBasic,perms[nexus:artifact]");
+  }
+
+  /**
+   * Resolve versions of the artifacts identified by coordinates given. Versions "LATEST", "RELEASE" and snapshot
+   * versions ("1.0-SNAPSHOT") are supported, as with single artifact resolution.
+   */
+  @Override
+  @POST
+  public ArtifactResolveBatchResponse post(Context context, Request request, Response response, Object payload)
+      throws ResourceException
+  {
+    ArtifactResolveBatchRequest batchRequest = (ArtifactResolveBatchRequest) payload;
+
+    if (batchRequest == null) {
+      throw new ResourceException(Status.CLIENT_ERROR_BAD_REQUEST, "No coordinates given!");
+    }
+
+    List<ArtifactResolveCoordinate> coordinates = batchRequest.getData();
+
+    if (coordinates.size() > MAX_BATCH_SIZE) {
+      throw new ResourceException(Status.CLIENT_ERROR_BAD_REQUEST,
+          "Too many coordinates given, at most " + MAX_BATCH_SIZE + " allowed per request!");
+    }
+
+    ArtifactResolveBatchResponse result = new ArtifactResolveBatchResponse();
+
+    for (int i = 0; i < coordinates.size(); i++) {
+      ArtifactResolveBatchResult entry = new ArtifactResolveBatchResult();
+
+      entry.setIndex(i);
+
+      try {
+        entry.setData(resolve(request, coordinates.get(i)));
+      }
+      catch (ResourceException e) {
+        entry.setError(e.getStatus().getDescription());
+      }
+      catch (Exception e) {
+        getLogger().debug("Could not resolve coordinate " + i, e);
+
+        entry.setError(e.getMessage());
+      }
+
+      result.addData(entry);
+    }
+
+    return result;
+  }
+
+  private ArtifactResolveResource resolve(Request request, ArtifactResolveCoordinate coordinate)
+      throws Exception
+  {
+    if (coordinate.getGroupId() == null || coordinate.getArtifactId() == null || coordinate.getVersion() == null
+        || coordinate.getRepositoryId() == null) {
+      throw new ResourceException(Status.CLIENT_ERROR_BAD_REQUEST,
+          "At least following coordinates have to be given: groupId, artifactId, version, repositoryId!");
+    }
+
+    // default the packaging
+    String packaging = coordinate.getPackaging();
+
+    if (StringUtils.isBlank(packaging)) {
+      packaging = "jar";
+    }
+
+    ArtifactStoreRequest gavRequest =
+        getResourceStoreRequest(request, false, false, coordinate.getRepositoryId(), coordinate.getGroupId(),
+            coordinate.getArtifactId(), coordinate.getVersion(), packaging, coordinate.getClassifier(),
+            coordinate.getExtension());
+
+    MavenRepository mavenRepository = getMavenRepository(coordinate.getRepositoryId());
+
+    // not returning null, will throw INFEx instead
+    Gav resolvedGav = mavenRepository.getArtifactStoreHelper().resolveArtifact(gavRequest);
+
+    return createArtifactResolveResource(mavenRepository, resolvedGav, null);
+  }
+}
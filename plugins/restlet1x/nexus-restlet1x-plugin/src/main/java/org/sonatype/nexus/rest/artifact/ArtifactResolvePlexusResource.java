@@ -18,7 +18,6 @@ import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 
-import org.sonatype.nexus.proxy.attributes.inspectors.DigestCalculatingInspector;
 import org.sonatype.nexus.proxy.item.StorageFileItem;
 import org.sonatype.nexus.proxy.maven.ArtifactStoreHelper;
 import org.sonatype.nexus.proxy.maven.ArtifactStoreRequest;
@@ -126,47 +125,13 @@ public class ArtifactResolvePlexusResource
       // not returning null, will throw INFEx instead
       final Gav resolvedGav = helper.resolveArtifact(gavRequest);
 
-      String repositoryPath = mavenRepository.getGavCalculator().gavToPath(resolvedGav);
-
       StorageFileItem resolvedFile = null;
 
       if (!isLocalOnly) {
         resolvedFile = helper.retrieveArtifact(gavRequest);
       }
 
-      ArtifactResolveResource resource = new ArtifactResolveResource();
-
-      resource.setPresentLocally(resolvedFile != null);
-
-      if (resolvedFile != null) {
-        resource.setSha1(resolvedFile.getRepositoryItemAttributes().get(DigestCalculatingInspector.DIGEST_SHA1_KEY));
-      }
-
-      resource.setGroupId(resolvedGav.getGroupId());
-
-      resource.setArtifactId(resolvedGav.getArtifactId());
-
-      resource.setVersion(resolvedGav.getVersion());
-
-      resource.setClassifier(resolvedGav.getClassifier());
-
-      resource.setExtension(resolvedGav.getExtension());
-
-      resource.setFileName(resolvedGav.getName());
-
-      resource.setRepositoryPath(repositoryPath);
-
-      resource.setSnapshot(resolvedGav.isSnapshot());
-
-      if (resource.isSnapshot()) {
-        resource.setBaseVersion(resolvedGav.getBaseVersion());
-
-        if (resolvedGav.getSnapshotBuildNumber() != null) {
-          resource.setSnapshotBuildNumber(resolvedGav.getSnapshotBuildNumber());
-
-          resource.setSnapshotTimeStamp(resolvedGav.getSnapshotTimeStamp());
-        }
-      }
+      ArtifactResolveResource resource = createArtifactResolveResource(mavenRepository, resolvedGav, resolvedFile);
 
       ArtifactResolveResourceResponse result = new ArtifactResolveResourceResponse();
 
@@ -31,6 +31,7 @@ import org.sonatype.nexus.rest.model.RepositoryGroupResource;
 import org.sonatype.nexus.rest.model.RepositoryGroupResourceResponse;
 import org.sonatype.plexus.rest.resource.PathProtectionDescriptor;
 import org.sonatype.plexus.rest.resource.PlexusResourceException;
+import org.sonatype.plexus.rest.resource.StreamingPlexusResource;
 
 import org.restlet.Context;
 import org.restlet.data.Request;
@@ -52,6 +53,7 @@ import org.restlet.resource.Variant;
 @Consumes({"application/xml", "application/json"})
 public class RepositoryGroupListPlexusResource
     extends AbstractRepositoryGroupPlexusResource
+    implements StreamingPlexusResource
 {
   public static final String RESOURCE_URI = "/repo_groups";
 
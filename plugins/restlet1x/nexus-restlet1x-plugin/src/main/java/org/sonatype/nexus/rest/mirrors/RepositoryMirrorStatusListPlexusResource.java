@@ -0,0 +1,114 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.rest.mirrors;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+
+import org.sonatype.nexus.proxy.NoSuchRepositoryException;
+import org.sonatype.nexus.proxy.mirror.MirrorScheduler;
+import org.sonatype.nexus.proxy.mirror.MirrorStatistics;
+import org.sonatype.nexus.rest.model.MirrorStatusResource;
+import org.sonatype.nexus.rest.model.MirrorStatusResourceListResponse;
+import org.sonatype.plexus.rest.resource.PathProtectionDescriptor;
+
+import org.restlet.Context;
+import org.restlet.data.Request;
+import org.restlet.data.Response;
+import org.restlet.data.Status;
+import org.restlet.resource.ResourceException;
+import org.restlet.resource.Variant;
+
+/**
+ * Resource exposing the ranking of remote URLs (mirrors and canonical URL) of a proxy repository, as maintained by
+ * {@link MirrorScheduler}, preferred first.
+ *
+ * @since 3.0
+ */
+@Named
+@Singleton
+@Path(RepositoryMirrorStatusListPlexusResource.RESOURCE_URI)
+@Produces({"application/xml", "application/json"})
+public class RepositoryMirrorStatusListPlexusResource
+    extends AbstractRepositoryMirrorPlexusResource
+{
+  public static final String RESOURCE_URI = "/repository_mirrors_status/{" + REPOSITORY_ID_KEY + "}";
+
+  private final MirrorScheduler mirrorScheduler;
+
+  @Inject
+  public RepositoryMirrorStatusListPlexusResource(final MirrorScheduler mirrorScheduler) {
+    this.mirrorScheduler = mirrorScheduler;
+    setModifiable(false);
+  }
+
+  @Override
+  public Object getPayloadInstance() {
+    return null;
+  }
+
+  @Override
+  public PathProtectionDescriptor getResourceProtection() {
+    return new PathProtectionDescriptor("/repository_mirrors_status/*",
+        "authcBasic,perms[nexus:repositorymirrorsstatus]");
+  }
+
+  @Override
+  public String getResourceUri() {
+    return RESOURCE_URI;
+  }
+
+  /**
+   * Get the ranking of remote URLs for the selected repository, preferred first.
+   *
+   * @param repositoryId The repository to retrieve the mirror ranking for.
+   */
+  @Override
+  @GET
+  public MirrorStatusResourceListResponse get(Context context, Request request, Response response, Variant variant)
+      throws ResourceException
+  {
+    MirrorStatusResourceListResponse dto = new MirrorStatusResourceListResponse();
+
+    // Hack to get the object created, so response contains the 'data'
+    // element even if no mirrors used yet
+    dto.getData();
+
+    try {
+      // validate the repository exists and caller may see it
+      String repositoryId = getRepositoryRegistry().getRepository(getRepositoryId(request)).getId();
+
+      long now = System.currentTimeMillis();
+      for (MirrorStatistics statistics : mirrorScheduler.getRanking(repositoryId)) {
+        MirrorStatusResource resource = new MirrorStatusResource();
+        resource.setId(statistics.getUrl());
+        resource.setUrl(statistics.getUrl());
+        resource.setStatus(statistics.isEjected(now) ? "Ejected" : "Available");
+        resource.setLatency(statistics.getLatency());
+        resource.setThroughput(statistics.getThroughput());
+        resource.setErrorPercentage((int) Math.round(statistics.getErrorRate() * 100));
+        dto.addData(resource);
+      }
+    }
+    catch (NoSuchRepositoryException e) {
+      throw new ResourceException(Status.CLIENT_ERROR_BAD_REQUEST, "Invalid repository id "
+          + getRepositoryId(request), e);
+    }
+
+    return dto;
+  }
+}
@@ -47,6 +47,7 @@ import org.sonatype.nexus.templates.repository.DefaultRepositoryTemplateProvider
 import org.sonatype.nexus.templates.repository.ManuallyConfiguredRepositoryTemplate;
 import org.sonatype.plexus.rest.resource.PathProtectionDescriptor;
 import org.sonatype.plexus.rest.resource.PlexusResourceException;
+import org.sonatype.plexus.rest.resource.StreamingPlexusResource;
 
 import org.apache.commons.lang.StringUtils;
 import org.codehaus.plexus.util.xml.Xpp3Dom;
@@ -69,6 +70,7 @@ import org.restlet.resource.Variant;
 @Consumes({"application/xml", "application/json"})
 public class RepositoryListPlexusResource
     extends AbstractRepositoryPlexusResource
+    implements StreamingPlexusResource
 {
   public static final String RESOURCE_URI = "/repositories";
 
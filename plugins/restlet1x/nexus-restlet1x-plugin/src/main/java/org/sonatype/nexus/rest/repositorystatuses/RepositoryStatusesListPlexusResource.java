@@ -28,6 +28,7 @@ import org.sonatype.nexus.rest.model.RepositoryStatusListResourceResponse;
 import org.sonatype.nexus.rest.model.RepositoryStatusResource;
 import org.sonatype.nexus.rest.repositories.AbstractRepositoryPlexusResource;
 import org.sonatype.plexus.rest.resource.PathProtectionDescriptor;
+import org.sonatype.plexus.rest.resource.StreamingPlexusResource;
 
 import org.restlet.Context;
 import org.restlet.data.Request;
@@ -41,6 +42,7 @@ import org.restlet.resource.Variant;
 @Produces({"application/xml", "application/json"})
 public class RepositoryStatusesListPlexusResource
     extends AbstractRepositoryPlexusResource
+    implements StreamingPlexusResource
 {
   public static final String RESOURCE_URI = "/repository_statuses";
 
@@ -0,0 +1,95 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.yum.internal;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.util.Set;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Sets;
+import org.codehaus.plexus.util.xml.XmlStreamReader;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+import org.codehaus.plexus.util.xml.Xpp3DomBuilder;
+import org.codehaus.plexus.util.xml.Xpp3DomWriter;
+import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
+
+/**
+ * Merges package groups ({@code comps.xml}) of yum repositories, for {@link MetadataMerger}. Same as packages, a
+ * group, category or environment of an id comes from the first member having it, and other elements (as
+ * {@code langpacks}) from the first member having an element of that name.
+ *
+ * @since 3.0
+ */
+class CompsMerger
+{
+  /**
+   * Type of uncompressed package groups data, as in {@code repomd.xml}.
+   */
+  static final String TYPE = "group";
+
+  /**
+   * Type of gzipped package groups data, as in {@code repomd.xml}.
+   */
+  static final String GZ_TYPE = "group_gz";
+
+  private static final String HEADER = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+      + "<!DOCTYPE comps PUBLIC \"-//Red Hat, Inc.//DTD Comps info//EN\" \"comps.dtd\">\n";
+
+  private final Xpp3Dom comps = new Xpp3Dom("comps");
+
+  private final Set<String> keys = Sets.newHashSet();
+
+  private boolean empty = true;
+
+  /**
+   * Adds package groups of a member, members being added in order of precedence.
+   */
+  void add(final InputStream in)
+      throws IOException
+  {
+    final Xpp3Dom dom;
+    try {
+      dom = Xpp3DomBuilder.build(new XmlStreamReader(in));
+    }
+    catch (XmlPullParserException e) {
+      throw new IOException("Could not parse package groups", e);
+    }
+    for (Xpp3Dom element : dom.getChildren()) {
+      final Xpp3Dom id = element.getChild("id");
+      if (keys.add(id == null ? element.getName() : element.getName() + ":" + id.getValue())) {
+        comps.addChild(element);
+      }
+    }
+    empty = false;
+  }
+
+  /**
+   * @return {@code true} if no member package groups were added
+   */
+  boolean isEmpty() {
+    return empty;
+  }
+
+  /**
+   * @return the merged {@code comps.xml}
+   */
+  byte[] toBytes() {
+    final StringWriter out = new StringWriter();
+    out.write(HEADER);
+    Xpp3DomWriter.write(out, comps);
+    out.write('\n');
+    return out.toString().getBytes(Charsets.UTF_8);
+  }
+}
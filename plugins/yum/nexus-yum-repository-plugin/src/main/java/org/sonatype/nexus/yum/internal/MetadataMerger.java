@@ -0,0 +1,676 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.yum.internal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.sonatype.nexus.threads.NexusExecutorService;
+import org.sonatype.nexus.threads.NexusThreadFactory;
+import org.sonatype.nexus.util.file.DirSupport;
+import org.sonatype.nexus.yum.Yum;
+import org.sonatype.nexus.yum.YumRegistry;
+import org.sonatype.scheduling.TaskInterruptedException;
+import org.sonatype.scheduling.TaskUtil;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Joiner;
+import com.google.common.base.Objects;
+import com.google.common.base.Stopwatch;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.BaseEncoding;
+import com.google.common.io.CountingOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Merges yum metadata ({@code primary}, {@code filelists}, {@code other} and package groups) of group members, in
+ * Java, as a replacement of {@code mergerepo}. Members are given in order of precedence and, same as
+ * {@code mergerepo}, packages of a member are left out when a preceding member has packages of same name and arch.
+ * <p/>
+ * Packages of each member are streamed out of its metadata files with StAX (see {@link PackageCopier}) into gzipped
+ * fragments kept in a work directory, along with the {@code repomd.xml} checksums they were created from. A member
+ * whose checksums (and left out packages) did not change since previous merge is not read again. Members are
+ * processed in parallel. Merged files are the concatenation of member fragments, as gzip allows multiple members in one
+ * file, so no package is decompressed to produce them. Only package names and archs of all members are held in memory.
+ * <p/>
+ * Merged files are written under checksum prefixed names, and referenced by a {@code repomd.xml} that is atomically
+ * moved in place, so clients never see a partially merged repository. Files referenced by the previous
+ * {@code repomd.xml} are kept until next merge, so clients that fetched it just before the move can still get them,
+ * and other files the new {@code repomd.xml} does not reference are deleted. Package groups ({@code comps.xml}) are
+ * small, and are merged in memory by {@link CompsMerger}. Unlike {@code mergerepo}, no sqlite databases are created
+ * (yum falls back to XML metadata).
+ *
+ * @since 3.0
+ */
+@Named
+@Singleton
+public class MetadataMerger
+{
+  private static final Logger log = LoggerFactory.getLogger(MetadataMerger.class);
+
+  private static final String MERGE_DIR_PREFIX = ".merge-";
+
+  private static final String STATE_FILE = "state.properties";
+
+  private static final String KEYS_FILE = "keys.txt";
+
+  private static final String CHECKSUM_TYPE = "sha256";
+
+  private final YumRegistry yumRegistry;
+
+  private final int threads;
+
+  @Inject
+  public MetadataMerger(final YumRegistry yumRegistry,
+                        final @Named("${nexus.yum.merge.threads:-4}") int threads)
+  {
+    this.yumRegistry = checkNotNull(yumRegistry);
+    this.threads = Math.max(1, threads);
+  }
+
+  /**
+   * Merges metadata of members into {@code repodata} directory of repository.
+   *
+   * @param repositoryId id of (group) repository metadata is merged for
+   * @param baseDir      base directory of repository
+   * @param members      base directories of members by member id, in order of precedence. Each is expected to
+   *                     contain {@code repodata/repomd.xml} and metadata files it references
+   */
+  public void merge(final String repositoryId, final File baseDir, final Map<String, File> members)
+      throws IOException
+  {
+    final Stopwatch stopwatch = Stopwatch.createStarted();
+    final File workDir = new File(yumRegistry.getTemporaryDirectory(), MERGE_DIR_PREFIX + repositoryId);
+    DirSupport.mkdir(workDir);
+
+    final List<Member> states = Lists.newArrayList();
+    for (Map.Entry<String, File> entry : members.entrySet()) {
+      states.add(new Member(entry.getKey(), entry.getValue(), new File(workDir, entry.getKey())));
+    }
+
+    final ExecutorService executor = NexusExecutorService.forCurrentSubject(Executors.newFixedThreadPool(
+        Math.min(threads, states.size() + 1), new NexusThreadFactory("yum-merge", "Yum metadata merge")));
+    try {
+      final List<Callable<Void>> prepares = Lists.newArrayList();
+      for (final Member member : states) {
+        prepares.add(new Callable<Void>()
+        {
+          @Override
+          public Void call() throws IOException {
+            member.prepare();
+            return null;
+          }
+        });
+      }
+      invokeAll(executor, prepares);
+
+      // same as mergerepo, packages of a name and arch come from first member having them
+      final Set<String> preceding = Sets.newHashSet();
+      for (Member member : states) {
+        member.exclude(preceding);
+        preceding.addAll(member.keys);
+        member.keys = null;
+      }
+      preceding.clear();
+
+      final List<Callable<Void>> builds = Lists.newArrayList();
+      for (final Member member : states) {
+        builds.add(new Callable<Void>()
+        {
+          @Override
+          public Void call() throws IOException {
+            member.build();
+            return null;
+          }
+        });
+      }
+      invokeAll(executor, builds);
+
+      final File repodata = new File(baseDir, Yum.PATH_OF_REPODATA);
+      final String revision = revision(states);
+      final Properties mergeState = load(new File(workDir, STATE_FILE));
+      int rebuilt = 0;
+      for (Member member : states) {
+        rebuilt += member.rebuilt ? 1 : 0;
+      }
+      if (rebuilt == 0 && revision.equals(mergeState.getProperty("revision"))
+          && new File(repodata, Yum.NAME_OF_REPOMD_XML).isFile()) {
+        log.debug("Yum metadata of {} is up to date", repositoryId);
+      }
+      else {
+        DirSupport.mkdir(repodata);
+        final List<Callable<DataFile>> writes = Lists.newArrayList();
+        for (final MetadataType type : MetadataType.values()) {
+          writes.add(new Callable<DataFile>()
+          {
+            @Override
+            public DataFile call() throws IOException {
+              return writeMerged(repodata, type, states);
+            }
+          });
+        }
+        final List<DataFile> dataFiles = invokeAll(executor, writes);
+        dataFiles.addAll(writeComps(repodata, states));
+        writeRepoMD(repodata, dataFiles);
+
+        mergeState.setProperty("revision", revision);
+        store(mergeState, new File(workDir, STATE_FILE));
+      }
+      deleteObsoleteMembers(workDir, members.keySet());
+
+      log.info("Merged Yum metadata of {} out of {} members ({} changed) in {}", repositoryId, states.size(),
+          rebuilt, stopwatch);
+    }
+    finally {
+      executor.shutdownNow();
+    }
+  }
+
+  // ==
+
+  /**
+   * Writes merged file of given type, as the concatenation of gzipped header, member fragments and footer.
+   */
+  private DataFile writeMerged(final File repodata, final MetadataType type, final List<Member> members)
+      throws IOException
+  {
+    int packages = 0;
+    long openSize = 0;
+    for (Member member : members) {
+      packages += member.packages(type);
+      openSize += member.openSize(type);
+    }
+
+    final File tmp = new File(repodata, "." + type.type + ".xml.gz.tmp");
+    final MessageDigest digest = messageDigest();
+    final CountingOutputStream counting;
+    try (OutputStream out = new DigestOutputStream(new FileOutputStream(tmp), digest)) {
+      counting = new CountingOutputStream(out);
+      openSize += gzip(counting, type.header(packages));
+      for (Member member : members) {
+        Files.copy(member.fragment(type).toPath(), counting);
+      }
+      openSize += gzip(counting, type.footer());
+    }
+
+    final String checksum = BaseEncoding.base16().lowerCase().encode(digest.digest());
+    final String name = checksum + "-" + type.type + ".xml.gz";
+    Files.move(tmp.toPath(), new File(repodata, name).toPath(), StandardCopyOption.REPLACE_EXISTING);
+    return new DataFile(type.type, name, checksum, counting.getCount(), openSize);
+  }
+
+  /**
+   * Writes merged package groups, uncompressed and gzipped same as createrepo, if any member has package groups.
+   */
+  private List<DataFile> writeComps(final File repodata, final List<Member> members)
+      throws IOException
+  {
+    final CompsMerger comps = new CompsMerger();
+    for (Member member : members) {
+      final File compsFile = member.compsFile();
+      if (compsFile != null) {
+        try (InputStream in = open(compsFile)) {
+          comps.add(in);
+        }
+      }
+    }
+    if (comps.isEmpty()) {
+      return Collections.emptyList();
+    }
+
+    final byte[] xml = comps.toBytes();
+    final ByteArrayOutputStream gz = new ByteArrayOutputStream();
+    try (GZIPOutputStream gzip = new GZIPOutputStream(gz)) {
+      gzip.write(xml);
+    }
+    return Lists.newArrayList(
+        writeData(repodata, CompsMerger.TYPE, "comps.xml", xml, xml.length),
+        writeData(repodata, CompsMerger.GZ_TYPE, "comps.xml.gz", gz.toByteArray(), xml.length)
+    );
+  }
+
+  /**
+   * Writes data file under its checksum prefixed name.
+   */
+  private DataFile writeData(final File repodata, final String type, final String suffix, final byte[] content,
+                             final long openSize)
+      throws IOException
+  {
+    final String checksum = BaseEncoding.base16().lowerCase().encode(messageDigest().digest(content));
+    final String name = checksum + "-" + suffix;
+    final File tmp = new File(repodata, "." + suffix + ".tmp");
+    Files.write(tmp.toPath(), content);
+    Files.move(tmp.toPath(), new File(repodata, name).toPath(), StandardCopyOption.REPLACE_EXISTING);
+    return new DataFile(type, name, checksum, content.length, openSize);
+  }
+
+  /**
+   * Writes content as a separate gzip member, returns its uncompressed size.
+   */
+  private static long gzip(final OutputStream out, final String content)
+      throws IOException
+  {
+    final byte[] bytes = content.getBytes(Charsets.UTF_8);
+    final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+      gzip.write(bytes);
+    }
+    compressed.writeTo(out);
+    return bytes.length;
+  }
+
+  /**
+   * Writes {@code repomd.xml} referencing the merged files, moves it atomically in place, then deletes files
+   * referenced neither by it nor by the previous one.
+   */
+  private void writeRepoMD(final File repodata, final List<DataFile> dataFiles)
+      throws IOException
+  {
+    final long timestamp = System.currentTimeMillis() / 1000;
+    final StringBuilder repomd = new StringBuilder();
+    repomd.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+    repomd.append("<repomd xmlns=\"http://linux.duke.edu/metadata/repo\" xmlns:rpm=\"")
+        .append(MetadataType.RPM_NAMESPACE).append("\">\n");
+    repomd.append("  <revision>").append(timestamp).append("</revision>\n");
+    final File repomdFile = new File(repodata, Yum.NAME_OF_REPOMD_XML);
+    final Set<String> names = referencedNames(repomdFile);
+    names.add(Yum.NAME_OF_REPOMD_XML);
+    for (DataFile dataFile : dataFiles) {
+      names.add(dataFile.name);
+      repomd.append("  <data type=\"").append(dataFile.type).append("\">\n");
+      repomd.append("    <checksum type=\"").append(CHECKSUM_TYPE).append("\">").append(dataFile.checksum)
+          .append("</checksum>\n");
+      repomd.append("    <location href=\"").append(Yum.PATH_OF_REPODATA).append('/').append(dataFile.name)
+          .append("\"/>\n");
+      repomd.append("    <timestamp>").append(timestamp).append("</timestamp>\n");
+      repomd.append("    <size>").append(dataFile.size).append("</size>\n");
+      repomd.append("    <open-size>").append(dataFile.openSize).append("</open-size>\n");
+      repomd.append("  </data>\n");
+    }
+    repomd.append("</repomd>\n");
+
+    final File tmp = new File(repodata, "." + Yum.NAME_OF_REPOMD_XML + ".tmp");
+    Files.write(tmp.toPath(), repomd.toString().getBytes(Charsets.UTF_8));
+    Files.move(tmp.toPath(), repomdFile.toPath(), StandardCopyOption.ATOMIC_MOVE,
+        StandardCopyOption.REPLACE_EXISTING);
+
+    final File[] files = repodata.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        if (!names.contains(file.getName())) {
+          log.trace("Deleting obsolete {}", file);
+          DirSupport.deleteIfExists(file.toPath());
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns names of files in {@code repodata} referenced by given {@code repomd.xml}, if it exists.
+   */
+  private Set<String> referencedNames(final File repomdFile) {
+    final Set<String> names = Sets.newHashSet();
+    if (repomdFile.isFile()) {
+      try (InputStream in = new FileInputStream(repomdFile)) {
+        for (String location : new RepoMD(in).getLocations()) {
+          names.add(location.substring(location.lastIndexOf('/') + 1));
+        }
+      }
+      catch (IOException | RuntimeException e) {
+        log.warn("Could not read previous {}, its files will be deleted", repomdFile, e);
+      }
+    }
+    return names;
+  }
+
+  private void deleteObsoleteMembers(final File workDir, final Set<String> memberIds)
+      throws IOException
+  {
+    final File[] dirs = workDir.listFiles();
+    if (dirs != null) {
+      for (File dir : dirs) {
+        if (dir.isDirectory() && !memberIds.contains(dir.getName())) {
+          DirSupport.deleteIfExists(dir.toPath());
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns a digest of merge inputs, which are member fingerprints and their order.
+   */
+  private static String revision(final List<Member> members) {
+    final Hasher hasher = Hashing.sha1().newHasher();
+    for (Member member : members) {
+      hasher.putString(member.id, Charsets.UTF_8).putString(member.fingerprint, Charsets.UTF_8)
+          .putString(member.excludedDigest, Charsets.UTF_8);
+    }
+    return hasher.hash().toString();
+  }
+
+  /**
+   * Runs tasks in parallel, checking for task cancellation meanwhile.
+   */
+  private static <T> List<T> invokeAll(final ExecutorService executor, final List<Callable<T>> tasks)
+      throws IOException
+  {
+    final List<Future<T>> futures = Lists.newArrayList();
+    for (Callable<T> task : tasks) {
+      futures.add(executor.submit(task));
+    }
+    final List<T> results = Lists.newArrayList();
+    try {
+      for (Future<T> future : futures) {
+        while (!future.isDone()) {
+          TaskUtil.checkInterruption();
+          try {
+            future.get(1, TimeUnit.SECONDS);
+          }
+          catch (TimeoutException e) {
+            // check for interruption again
+          }
+        }
+        results.add(future.get());
+      }
+      return results;
+    }
+    catch (InterruptedException e) {
+      throw new TaskInterruptedException("Thread \"" + Thread.currentThread().getName() + "\" is interrupted!",
+          false);
+    }
+    catch (ExecutionException e) {
+      Throwables.propagateIfInstanceOf(e.getCause(), IOException.class);
+      throw Throwables.propagate(e.getCause());
+    }
+    finally {
+      for (Future<T> future : futures) {
+        future.cancel(true);
+      }
+    }
+  }
+
+  private static MessageDigest messageDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    }
+    catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static Properties load(final File file)
+      throws IOException
+  {
+    final Properties properties = new Properties();
+    if (file.isFile()) {
+      try (InputStream in = new FileInputStream(file)) {
+        properties.load(in);
+      }
+    }
+    return properties;
+  }
+
+  private static void store(final Properties properties, final File file)
+      throws IOException
+  {
+    final File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+    try (OutputStream out = new FileOutputStream(tmp)) {
+      properties.store(out, null);
+    }
+    Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  private static InputStream open(final File file)
+      throws IOException
+  {
+    final InputStream in = new BufferedInputStream(new FileInputStream(file), 64 * 1024);
+    if (file.getName().endsWith(".gz")) {
+      return new GZIPInputStream(in, 64 * 1024);
+    }
+    return in;
+  }
+
+  // ==
+
+  private static class DataFile
+  {
+    private final String type;
+
+    private final String name;
+
+    private final String checksum;
+
+    private final long size;
+
+    private final long openSize;
+
+    private DataFile(final String type, final String name, final String checksum, final long size,
+                     final long openSize)
+    {
+      this.type = type;
+      this.name = name;
+      this.checksum = checksum;
+      this.size = size;
+      this.openSize = openSize;
+    }
+  }
+
+  /**
+   * Metadata of one member, with its fragments and their state in work directory.
+   */
+  private static class Member
+  {
+    private final String id;
+
+    private final File baseDir;
+
+    private final File workDir;
+
+    private Properties state;
+
+    private RepoMD repoMD;
+
+    private String fingerprint;
+
+    private boolean changed;
+
+    private Set<String> keys;
+
+    private Set<String> excluded;
+
+    private String excludedDigest;
+
+    private boolean rebuilt;
+
+    private Member(final String id, final File baseDir, final File workDir) {
+      this.id = id;
+      this.baseDir = baseDir;
+      this.workDir = workDir;
+    }
+
+    /**
+     * Reads checksums of member metadata, and the keys of its packages unless they did not change.
+     */
+    private void prepare()
+        throws IOException
+    {
+      DirSupport.mkdir(workDir);
+      try (InputStream in = new FileInputStream(new File(baseDir, Yum.PATH_OF_REPOMD_XML))) {
+        repoMD = new RepoMD(in);
+      }
+      final List<String> checksums = Lists.newArrayList();
+      for (MetadataType type : MetadataType.values()) {
+        if (repoMD.getLocation(type.type) == null) {
+          throw new IOException("Yum metadata of " + id + " has no " + type.type + " data");
+        }
+        checksums.add(type.type + "=" + Objects.firstNonNull(repoMD.getChecksum(type.type),
+            Long.toString(metadataFile(type).lastModified())));
+      }
+      final String compsType = compsType();
+      if (compsType != null) {
+        checksums.add(compsType + "=" + Objects.firstNonNull(repoMD.getChecksum(compsType),
+            Long.toString(compsFile().lastModified())));
+      }
+      fingerprint = Joiner.on(',').join(checksums);
+      state = load(new File(workDir, STATE_FILE));
+
+      final File keysFile = new File(workDir, KEYS_FILE);
+      changed = !fingerprint.equals(state.getProperty("fingerprint")) || !keysFile.isFile();
+      if (changed) {
+        try (InputStream in = open(metadataFile(MetadataType.PRIMARY))) {
+          keys = PackageCopier.readKeys(in);
+        }
+        Files.write(keysFile.toPath(), new TreeSet<String>(keys), Charsets.UTF_8);
+      }
+      else {
+        keys = Sets.newHashSet();
+        try (BufferedReader reader = new BufferedReader(
+            new InputStreamReader(new FileInputStream(keysFile), Charsets.UTF_8))) {
+          for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+            keys.add(line);
+          }
+        }
+      }
+    }
+
+    /**
+     * Excludes packages having same key as packages of preceding members.
+     */
+    private void exclude(final Set<String> preceding) {
+      excluded = Sets.newHashSet(Sets.intersection(keys, preceding));
+      final Hasher hasher = Hashing.sha1().newHasher();
+      for (String key : new TreeSet<String>(excluded)) {
+        hasher.putString(key, Charsets.UTF_8).putChar('\n');
+      }
+      excludedDigest = hasher.hash().toString();
+    }
+
+    /**
+     * Streams packages of member metadata into fragments, unless fragments of same metadata and exclusions exist.
+     */
+    private void build()
+        throws IOException
+    {
+      rebuilt = changed || !excludedDigest.equals(state.getProperty("excluded"));
+      for (MetadataType type : MetadataType.values()) {
+        rebuilt = rebuilt || !fragment(type).isFile() || state.getProperty(type.type + ".packages") == null;
+      }
+      if (!rebuilt) {
+        log.debug("Reusing Yum metadata of member {}", id);
+        return;
+      }
+
+      final Stopwatch stopwatch = Stopwatch.createStarted();
+      // fragments are not valid until state is stored
+      final File stateFile = new File(workDir, STATE_FILE);
+      DirSupport.deleteIfExists(stateFile.toPath());
+      state = new Properties();
+      for (MetadataType type : MetadataType.values()) {
+        final File tmp = new File(workDir, type.type + ".tmp");
+        final int packages;
+        final CountingOutputStream counting;
+        try (InputStream in = open(metadataFile(type));
+             OutputStream out = new GZIPOutputStream(new FileOutputStream(tmp), 64 * 1024)) {
+          counting = new CountingOutputStream(out);
+          final Writer writer = new OutputStreamWriter(counting, Charsets.UTF_8);
+          packages = PackageCopier.copy(in, type, excluded, writer);
+          writer.flush();
+        }
+        Files.move(tmp.toPath(), fragment(type).toPath(), StandardCopyOption.REPLACE_EXISTING);
+        state.setProperty(type.type + ".packages", Integer.toString(packages));
+        state.setProperty(type.type + ".openSize", Long.toString(counting.getCount()));
+      }
+      state.setProperty("fingerprint", fingerprint);
+      state.setProperty("excluded", excludedDigest);
+      store(state, stateFile);
+
+      log.debug("Streamed Yum metadata of member {} ({} packages, {} excluded) in {}", id,
+          state.getProperty(MetadataType.PRIMARY.type + ".packages"), excluded.size(), stopwatch);
+    }
+
+    private File metadataFile(final MetadataType type) {
+      return new File(baseDir, repoMD.getLocation(type.type));
+    }
+
+    /**
+     * Returns type of package groups data of member, preferably uncompressed, or {@code null} if member has none.
+     */
+    private String compsType() {
+      if (repoMD.getLocation(CompsMerger.TYPE) != null) {
+        return CompsMerger.TYPE;
+      }
+      return repoMD.getLocation(CompsMerger.GZ_TYPE) != null ? CompsMerger.GZ_TYPE : null;
+    }
+
+    /**
+     * Returns package groups file of member, or {@code null} if member has none.
+     */
+    private File compsFile() {
+      final String compsType = compsType();
+      return compsType == null ? null : new File(baseDir, repoMD.getLocation(compsType));
+    }
+
+    private File fragment(final MetadataType type) {
+      return new File(workDir, type.type + ".xml.gz");
+    }
+
+    private int packages(final MetadataType type) {
+      return Integer.parseInt(state.getProperty(type.type + ".packages"));
+    }
+
+    private long openSize(final MetadataType type) {
+      return Long.parseLong(state.getProperty(type.type + ".openSize"));
+    }
+  }
+}
@@ -0,0 +1,56 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.yum.internal;
+
+/**
+ * Yum metadata files listing packages, as merged by {@link MetadataMerger}.
+ *
+ * @since 3.0
+ */
+enum MetadataType
+{
+  PRIMARY("primary", "metadata", "http://linux.duke.edu/metadata/common"),
+
+  FILELISTS("filelists", "filelists", "http://linux.duke.edu/metadata/filelists"),
+
+  OTHER("other", "otherdata", "http://linux.duke.edu/metadata/other");
+
+  static final String RPM_NAMESPACE = "http://linux.duke.edu/metadata/rpm";
+
+  /**
+   * Type of data as in {@code repomd.xml}.
+   */
+  final String type;
+
+  final String rootElement;
+
+  final String namespace;
+
+  MetadataType(final String type, final String rootElement, final String namespace) {
+    this.type = type;
+    this.rootElement = rootElement;
+    this.namespace = namespace;
+  }
+
+  /**
+   * Returns the document up to (including) the start tag of root element, as written by createrepo.
+   */
+  String header(final int packages) {
+    return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<" + rootElement + " xmlns=\"" + namespace + "\""
+        + (this == PRIMARY ? " xmlns:rpm=\"" + RPM_NAMESPACE + "\"" : "") + " packages=\"" + packages + "\">\n";
+  }
+
+  String footer() {
+    return "</" + rootElement + ">\n";
+  }
+}
@@ -0,0 +1,315 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.yum.internal;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Set;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.Sets;
+
+/**
+ * Streams {@code <package>} elements out of yum metadata files with StAX. Only one package is held in memory at a
+ * time, whatever the size of metadata file is.
+ * <p/>
+ * Packages are written as fragments to be embedded into a document of same {@link MetadataType}: elements of type
+ * namespace are unprefixed, elements of {@link MetadataType#RPM_NAMESPACE} use "rpm" prefix, and both are expected to
+ * be declared by the enclosing root element. Other namespaces are declared on elements using them.
+ *
+ * @since 3.0
+ */
+final class PackageCopier
+{
+  private static final XMLInputFactory inputFactory;
+
+  static {
+    inputFactory = XMLInputFactory.newInstance();
+    inputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+    inputFactory.setProperty(XMLInputFactory.IS_COALESCING, true);
+    inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+  }
+
+  private PackageCopier() {
+    // no instances
+  }
+
+  /**
+   * Returns the keys ("name.arch") of packages listed by a primary metadata file.
+   */
+  static Set<String> readKeys(final InputStream primary)
+      throws IOException
+  {
+    final Set<String> keys = Sets.newHashSet();
+    final XMLStreamReader reader = createReader(primary);
+    try {
+      String name = null;
+      String arch = null;
+      int depth = 0;
+      while (reader.hasNext()) {
+        final int event = reader.next();
+        if (event == XMLStreamConstants.START_ELEMENT) {
+          depth++;
+          // root is at depth 1, packages at 2, their name and arch at 3
+          if (depth == 3 && MetadataType.PRIMARY.namespace.equals(reader.getNamespaceURI())) {
+            if ("name".equals(reader.getLocalName())) {
+              name = reader.getElementText();
+              depth--;
+            }
+            else if ("arch".equals(reader.getLocalName())) {
+              arch = reader.getElementText();
+              depth--;
+            }
+          }
+        }
+        else if (event == XMLStreamConstants.END_ELEMENT) {
+          if (depth == 2 && isPackage(reader, MetadataType.PRIMARY)) {
+            keys.add(key(name, arch));
+            name = null;
+            arch = null;
+          }
+          depth--;
+        }
+      }
+      return keys;
+    }
+    catch (XMLStreamException e) {
+      throw new IOException("Could not read primary metadata", e);
+    }
+    finally {
+      close(reader);
+    }
+  }
+
+  /**
+   * Copies packages of a metadata file to out, except the ones whose key is in excluded set. Each package is followed
+   * by a new line.
+   *
+   * @return number of packages copied
+   */
+  static int copy(final InputStream in, final MetadataType type, final Set<String> excluded, final Writer out)
+      throws IOException
+  {
+    final XMLStreamReader reader = createReader(in);
+    try {
+      final StringBuilder buffer = new StringBuilder();
+      int count = 0;
+      while (reader.hasNext()) {
+        if (reader.next() == XMLStreamConstants.START_ELEMENT && isPackage(reader, type)) {
+          buffer.setLength(0);
+          final String key = copyPackage(reader, type, buffer);
+          if (!excluded.contains(key)) {
+            out.append(buffer).append('\n');
+            count++;
+          }
+        }
+      }
+      return count;
+    }
+    catch (XMLStreamException e) {
+      throw new IOException("Could not read " + type.type + " metadata", e);
+    }
+    finally {
+      close(reader);
+    }
+  }
+
+  static String key(final String name, final String arch) {
+    return name + "." + arch;
+  }
+
+  // ==
+
+  /**
+   * Copies the package element reader is positioned at, and returns its key. Primary lists name and arch as child
+   * elements, while filelists and other as attributes of package element.
+   */
+  private static String copyPackage(final XMLStreamReader reader, final MetadataType type, final StringBuilder out)
+      throws XMLStreamException
+  {
+    String name = reader.getAttributeValue(null, "name");
+    String arch = reader.getAttributeValue(null, "arch");
+    StringBuilder text = null;
+
+    final Deque<String> names = new ArrayDeque<String>();
+    boolean startTagOpen = false;
+    int event = XMLStreamConstants.START_ELEMENT;
+    do {
+      switch (event) {
+        case XMLStreamConstants.START_ELEMENT:
+          if (startTagOpen) {
+            out.append('>');
+          }
+          names.push(writeStartTag(reader, type, out));
+          startTagOpen = true;
+          if (type == MetadataType.PRIMARY && names.size() == 2 && type.namespace.equals(reader.getNamespaceURI())
+              && ("name".equals(reader.getLocalName()) || "arch".equals(reader.getLocalName()))) {
+            text = new StringBuilder();
+          }
+          break;
+        case XMLStreamConstants.CHARACTERS:
+        case XMLStreamConstants.CDATA:
+        case XMLStreamConstants.SPACE:
+          if (startTagOpen) {
+            out.append('>');
+            startTagOpen = false;
+          }
+          escape(out, reader.getText(), false);
+          if (text != null) {
+            text.append(reader.getText());
+          }
+          break;
+        case XMLStreamConstants.END_ELEMENT:
+          final String qName = names.pop();
+          if (startTagOpen) {
+            out.append("/>");
+            startTagOpen = false;
+          }
+          else {
+            out.append("</").append(qName).append('>');
+          }
+          if (text != null) {
+            if ("name".equals(reader.getLocalName())) {
+              name = text.toString();
+            }
+            else {
+              arch = text.toString();
+            }
+            text = null;
+          }
+          break;
+        default:
+          // comments and processing instructions are not copied
+      }
+      if (names.isEmpty()) {
+        break;
+      }
+      event = reader.next();
+    }
+    while (true);
+
+    return key(name, arch);
+  }
+
+  /**
+   * Writes start tag of current element, without closing it, and returns its qualified name.
+   */
+  private static String writeStartTag(final XMLStreamReader reader, final MetadataType type, final StringBuilder out) {
+    final Set<String> declared = Sets.newHashSet();
+    final StringBuilder declarations = new StringBuilder();
+
+    final String qName = qualify(reader.getNamespaceURI(), reader.getPrefix(), reader.getLocalName(), type,
+        declared, declarations);
+    final StringBuilder attributes = new StringBuilder();
+    for (int i = 0; i < reader.getAttributeCount(); i++) {
+      final String namespace = reader.getAttributeNamespace(i);
+      final String attributeName = Strings.isNullOrEmpty(namespace)
+          ? reader.getAttributeLocalName(i)
+          : qualify(namespace, reader.getAttributePrefix(i), reader.getAttributeLocalName(i), type, declared,
+              declarations);
+      attributes.append(' ').append(attributeName).append("=\"");
+      escape(attributes, reader.getAttributeValue(i), true);
+      attributes.append('"');
+    }
+
+    out.append('<').append(qName).append(declarations).append(attributes);
+    return qName;
+  }
+
+  private static String qualify(final String namespace, final String prefix, final String localName,
+                                final MetadataType type, final Set<String> declared, final StringBuilder declarations)
+  {
+    if (Strings.isNullOrEmpty(namespace) || type.namespace.equals(namespace)) {
+      return localName;
+    }
+    if (MetadataType.RPM_NAMESPACE.equals(namespace)) {
+      return "rpm:" + localName;
+    }
+    if (XMLConstants.XML_NS_URI.equals(namespace)) {
+      return "xml:" + localName;
+    }
+    // foreign namespace, declared where used as the source declaration may be out of copied fragment
+    final String foreignPrefix = Strings.isNullOrEmpty(prefix) ? "ns" + Math.abs(namespace.hashCode()) : prefix;
+    if (declared.add(foreignPrefix)) {
+      declarations.append(" xmlns:").append(foreignPrefix).append("=\"");
+      escape(declarations, namespace, true);
+      declarations.append('"');
+    }
+    return foreignPrefix + ":" + localName;
+  }
+
+  private static void escape(final StringBuilder out, final String value, final boolean attribute) {
+    for (int i = 0; i < value.length(); i++) {
+      final char c = value.charAt(i);
+      switch (c) {
+        case '&':
+          out.append("&amp;");
+          break;
+        case '<':
+          out.append("&lt;");
+          break;
+        case '>':
+          out.append("&gt;");
+          break;
+        case '"':
+          out.append(attribute ? "&quot;" : "\"");
+          break;
+        case '\t':
+          out.append(attribute ? "&#9;" : "\t");
+          break;
+        case '\n':
+          out.append(attribute ? "&#10;" : "\n");
+          break;
+        case '\r':
+          out.append("&#13;");
+          break;
+        default:
+          out.append(c);
+      }
+    }
+  }
+
+  private static boolean isPackage(final XMLStreamReader reader, final MetadataType type) {
+    return "package".equals(reader.getLocalName()) && type.namespace.equals(reader.getNamespaceURI());
+  }
+
+  private static XMLStreamReader createReader(final InputStream in)
+      throws IOException
+  {
+    try {
+      return inputFactory.createXMLStreamReader(in);
+    }
+    catch (XMLStreamException e) {
+      throw new IOException("Could not read metadata", e);
+    }
+  }
+
+  private static void close(final XMLStreamReader reader) {
+    try {
+      reader.close();
+    }
+    catch (XMLStreamException e) {
+      // ignore
+    }
+  }
+}
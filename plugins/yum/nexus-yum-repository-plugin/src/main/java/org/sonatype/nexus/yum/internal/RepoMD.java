@@ -28,15 +28,16 @@ import org.codehaus.plexus.util.xml.Xpp3DomBuilder;
 public class RepoMD
 {
 
-  private final Map<String, String> locations;
+  private final Map<String, String> locations = Maps.newHashMap();
+
+  private final Map<String, String> checksums = Maps.newHashMap();
 
   public RepoMD(final InputStream in) {
-    locations = parse(in);
+    parse(in);
   }
 
-  private static Map<String, String> parse(final InputStream in) {
+  private void parse(final InputStream in) {
     try {
-      final Map<String, String> locations = Maps.newHashMap();
       final Xpp3Dom dom = Xpp3DomBuilder.build(new XmlStreamReader(in));
 
       for (final Xpp3Dom data : dom.getChildren("data")) {
@@ -45,8 +46,12 @@ public class RepoMD
         final String href = location.getAttribute("href");
 
         locations.put(type, href);
+
+        final Xpp3Dom checksum = data.getChild("checksum");
+        if (checksum != null) {
+          checksums.put(type, checksum.getAttribute("type") + ":" + checksum.getValue());
+        }
       }
-      return locations;
     }
     catch (Exception e) {
       throw Throwables.propagate(e);
@@ -57,4 +62,21 @@ public class RepoMD
     return locations.values();
   }
 
+  /**
+   * @return location (relative to repository root) of metadata file of given type, or {@code null} if not present
+   * @since 3.0
+   */
+  public String getLocation(final String type) {
+    return locations.get(type);
+  }
+
+  /**
+   * @return checksum of metadata file of given type, prefixed by checksum type (as "sha256:..."), or {@code null} if
+   *         not present
+   * @since 3.0
+   */
+  public String getChecksum(final String type) {
+    return checksums.get(type);
+  }
+
 }
@@ -20,9 +20,11 @@ import java.io.IOException;
 import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 import java.util.TreeMap;
 
 import org.slf4j.Logger;
@@ -45,6 +47,8 @@ public class RpmListWriter
 
   private static final int POSITION_AFTER_SLASH = 1;
 
+  private static final String SCAN_CACHE_SUFFIX = ".scan";
+
   private static final Logger LOG = LoggerFactory.getLogger(RpmListWriter.class);
 
   private final File rpmListFile;
@@ -63,6 +67,8 @@ public class RpmListWriter
 
   private final RpmScanner scanner;
 
+  private final File scanCacheFile;
+
   public RpmListWriter(final File baseRpmDir,
                        final String addedFiles,
                        final String version,
@@ -79,6 +85,7 @@ public class RpmListWriter
     this.fileFactory = fileFactory;
     this.scanner = scanner;
     this.rpmListFile = fileFactory.getRpmListFile();
+    this.scanCacheFile = new File(rpmListFile.getParentFile(), rpmListFile.getName() + SCAN_CACHE_SUFFIX);
   }
 
   public File writeList()
@@ -128,17 +135,18 @@ public class RpmListWriter
   private void addNewlyAddedRpmFileToList(List<String> fileList)
       throws IOException
   {
+    final Set<String> listed = new HashSet<String>(fileList);
     final String[] filenames = addedFiles.split(pathSeparator);
     for (String filename : filenames) {
-      filename = addFileToList(fileList, filename);
+      filename = addFileToList(fileList, listed, filename);
     }
   }
 
-  private String addFileToList(List<String> fileList, String filename) {
+  private String addFileToList(List<String> fileList, Set<String> listed, String filename) {
     final int startPosition = filename.startsWith("/") ? POSITION_AFTER_SLASH : 0;
     filename = filename.substring(startPosition);
 
-    if (!fileList.contains(filename)) {
+    if (listed.add(filename)) {
       fileList.add(filename);
       LOG.debug("Added rpm {} to file list.", filename);
     }
@@ -151,13 +159,13 @@ public class RpmListWriter
   private List<String> pruneToExistingRpms()
       throws IOException
   {
-    List<String> files = readRpmFileList();
-    for (int i = 0; i < files.size(); i++) {
-      if (!new File(baseRpmDir, files.get(i)).exists()) {
-        LOG.debug("Removed {} from rpm list.", files.get(i));
-        files.remove(i);
-        i--;
-
+    List<String> files = new ArrayList<String>();
+    for (String file : readRpmFileList()) {
+      if (new File(baseRpmDir, file).exists()) {
+        files.add(file);
+      }
+      else {
+        LOG.debug("Removed {} from rpm list.", file);
       }
     }
     return files;
@@ -212,7 +220,7 @@ public class RpmListWriter
       rewriteFileList(getSortedFilteredFileList());
     }
     else {
-      writeRpmFileList(getRelativeFilenames(scanner.scan(baseRpmDir)), rpmListFile);
+      writeRpmFileList(getRelativeFilenames(scanner.scan(baseRpmDir, scanCacheFile)), rpmListFile);
     }
   }
 
@@ -244,7 +252,7 @@ public class RpmListWriter
 
     Map<String, String> fileMap = new TreeMap<String, String>();
 
-    for (File file : scanner.scan(baseRpmDir)) {
+    for (File file : scanner.scan(baseRpmDir, scanCacheFile)) {
       File parentFile = file.getParentFile();
       if (matchesRequestedVersion(parentFile)) {
         String parentDir = getRelativePath(baseRpmDir, parentFile);
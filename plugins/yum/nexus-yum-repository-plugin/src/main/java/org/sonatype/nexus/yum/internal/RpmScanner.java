@@ -12,23 +12,48 @@
  */
 package org.sonatype.nexus.yum.internal;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
 
-import org.sonatype.sisu.resource.scanner.Scanner;
-import org.sonatype.sisu.resource.scanner.helper.ListenerSupport;
-
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import org.apache.commons.io.FilenameUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import static com.google.common.base.Preconditions.checkNotNull;
 import static java.io.File.separator;
 
 /**
+ * Scans a directory tree for RPMs. Directories are listed in parallel, by {@code nexus.yum.scan.threads} threads.
+ * <p/>
+ * A scan can be given a cache file, where listings of scanned directories are persisted along with their last
+ * modified time. Next scan does not list a directory again unless its last modified time changed (which happens when
+ * entries are added or removed), so rescanning a large repository after a few RPMs were deployed or deleted lists only
+ * the directories touched. Directories modified too close to previous scan are listed anyway, as their changes may not
+ * be reflected by their last modified time due to file system timestamp resolution.
+ *
  * @since yum 3.0
  */
 @Named
@@ -36,28 +61,54 @@ import static java.io.File.separator;
 public class RpmScanner
 {
 
-  private final Scanner scanner;
+  private static final Logger log = LoggerFactory.getLogger(RpmScanner.class);
+
+  private static final int CACHE_FORMAT = 1;
+
+  /**
+   * Coarsest last modified time resolution of common file systems.
+   */
+  private static final long TIMESTAMP_RESOLUTION = 2000;
+
+  private final int threads;
 
   @Inject
-  public RpmScanner(final @Named("serial") Scanner scanner) {
-    this.scanner = checkNotNull(scanner);
+  public RpmScanner(final @Named("${nexus.yum.scan.threads:-4}") int threads) {
+    this.threads = Math.max(1, threads);
   }
 
   public Set<File> scan(final File baseDir) {
-    final Set<File> rpms = Sets.newHashSet();
+    return scan(baseDir, null);
+  }
 
-    scanner.scan(baseDir, new ListenerSupport()
-    {
-      @Override
-      public void onFile(final File file) {
-        if ("rpm".equalsIgnoreCase(FilenameUtils.getExtension(file.getName()))
-            && !getRelativePath(baseDir, file).startsWith(".")) {
-          rpms.add(file);
-        }
+  /**
+   * Scans base directory for RPMs, reusing (and updating) directory listings persisted in cache file, if given.
+   *
+   * @since 3.0
+   */
+  public Set<File> scan(final File baseDir, @Nullable final File cacheFile) {
+    final Stopwatch stopwatch = Stopwatch.createStarted();
+    final long scanStarted = System.currentTimeMillis();
+    final Cache previous = cacheFile == null ? null : readCache(baseDir, cacheFile);
+    final Map<String, Listing> listings = new ConcurrentHashMap<String, Listing>();
+    final Set<File> rpms = Collections.newSetFromMap(new ConcurrentHashMap<File, Boolean>());
+
+    if (baseDir.isDirectory()) {
+      final ForkJoinPool pool = new ForkJoinPool(threads);
+      try {
+        pool.invoke(new ScanDirectory(baseDir, "", previous, listings, rpms));
       }
-    });
+      finally {
+        pool.shutdownNow();
+      }
+    }
 
-    return rpms;
+    if (cacheFile != null) {
+      writeCache(baseDir, cacheFile, new Cache(scanStarted, listings));
+    }
+    log.debug("Scanned {} for RPMs in {}: {} directories ({} listed), {} RPMs", baseDir, stopwatch, listings.size(),
+        previous == null ? listings.size() : listings.size() - previous.reused(listings), rpms.size());
+    return Sets.newHashSet(rpms);
   }
 
   static String getRelativePath(final File baseDir, final File file) {
@@ -69,4 +120,189 @@ public class RpmScanner
     return filePath;
   }
 
+  // ==
+
+  private static class ScanDirectory
+      extends RecursiveAction
+  {
+    private final File dir;
+
+    private final String path;
+
+    private final Cache previous;
+
+    private final Map<String, Listing> listings;
+
+    private final Set<File> rpms;
+
+    private ScanDirectory(final File dir, final String path, final Cache previous, final Map<String, Listing> listings,
+                          final Set<File> rpms)
+    {
+      this.dir = dir;
+      this.path = path;
+      this.previous = previous;
+      this.listings = listings;
+      this.rpms = rpms;
+    }
+
+    @Override
+    protected void compute() {
+      final long lastModified = dir.lastModified();
+      Listing listing = previous == null ? null : previous.get(path, lastModified);
+      if (listing == null) {
+        listing = list(lastModified);
+      }
+      listings.put(path, listing);
+
+      for (String rpm : listing.rpms) {
+        rpms.add(new File(dir, rpm));
+      }
+      final List<ScanDirectory> subdirs = new ArrayList<ScanDirectory>(listing.dirs.size());
+      for (String name : listing.dirs) {
+        subdirs.add(new ScanDirectory(new File(dir, name), path + name + "/", previous, listings, rpms));
+      }
+      invokeAll(subdirs);
+    }
+
+    private Listing list(final long lastModified) {
+      final List<String> dirs = new ArrayList<String>();
+      final List<String> rpms = new ArrayList<String>();
+      final File[] files = dir.listFiles();
+      if (files != null) {
+        for (File file : files) {
+          // hidden entries of base dir (as .nexus or .index) are not scanned
+          if (path.isEmpty() && file.getName().startsWith(".")) {
+            continue;
+          }
+          if (file.isDirectory()) {
+            dirs.add(file.getName());
+          }
+          else if ("rpm".equalsIgnoreCase(FilenameUtils.getExtension(file.getName()))) {
+            rpms.add(file.getName());
+          }
+        }
+      }
+      return new Listing(lastModified, dirs, rpms);
+    }
+  }
+
+  /**
+   * Entries of a directory, at given last modified time of directory.
+   */
+  private static class Listing
+  {
+    private final long lastModified;
+
+    private final List<String> dirs;
+
+    private final List<String> rpms;
+
+    private Listing(final long lastModified, final List<String> dirs, final List<String> rpms) {
+      this.lastModified = lastModified;
+      this.dirs = dirs;
+      this.rpms = rpms;
+    }
+  }
+
+  private static class Cache
+  {
+    private final long scanStarted;
+
+    private final Map<String, Listing> listings;
+
+    private Cache(final long scanStarted, final Map<String, Listing> listings) {
+      this.scanStarted = scanStarted;
+      this.listings = listings;
+    }
+
+    /**
+     * Returns listing of directory, if still valid.
+     */
+    private Listing get(final String path, final long lastModified) {
+      final Listing listing = listings.get(path);
+      if (listing != null && listing.lastModified == lastModified
+          && lastModified < scanStarted - TIMESTAMP_RESOLUTION) {
+        return listing;
+      }
+      return null;
+    }
+
+    private int reused(final Map<String, Listing> current) {
+      int reused = 0;
+      for (Map.Entry<String, Listing> entry : current.entrySet()) {
+        if (listings.get(entry.getKey()) == entry.getValue()) {
+          reused++;
+        }
+      }
+      return reused;
+    }
+  }
+
+  private static Cache readCache(final File baseDir, final File cacheFile) {
+    if (!cacheFile.isFile()) {
+      return null;
+    }
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)))) {
+      if (in.readInt() != CACHE_FORMAT || !baseDir.getAbsolutePath().equals(in.readUTF())) {
+        return null;
+      }
+      final long scanStarted = in.readLong();
+      final int size = in.readInt();
+      final Map<String, Listing> listings = Maps.newHashMapWithExpectedSize(size);
+      for (int i = 0; i < size; i++) {
+        final String path = in.readUTF();
+        final long lastModified = in.readLong();
+        listings.put(path, new Listing(lastModified, readNames(in), readNames(in)));
+      }
+      return new Cache(scanStarted, listings);
+    }
+    catch (IOException e) {
+      log.warn("Could not read RPM scan cache {}, scanning all directories", cacheFile,
+          log.isDebugEnabled() ? e : null);
+      return null;
+    }
+  }
+
+  private static void writeCache(final File baseDir, final File cacheFile, final Cache cache) {
+    final File tmp = new File(cacheFile.getParentFile(), cacheFile.getName() + ".tmp");
+    try {
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+        out.writeInt(CACHE_FORMAT);
+        out.writeUTF(baseDir.getAbsolutePath());
+        out.writeLong(cache.scanStarted);
+        out.writeInt(cache.listings.size());
+        for (Map.Entry<String, Listing> entry : cache.listings.entrySet()) {
+          out.writeUTF(entry.getKey());
+          out.writeLong(entry.getValue().lastModified);
+          writeNames(out, entry.getValue().dirs);
+          writeNames(out, entry.getValue().rpms);
+        }
+      }
+      Files.move(tmp.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+    catch (IOException e) {
+      log.warn("Could not write RPM scan cache {}", cacheFile, log.isDebugEnabled() ? e : null);
+    }
+  }
+
+  private static List<String> readNames(final DataInputStream in)
+      throws IOException
+  {
+    final int size = in.readInt();
+    final List<String> names = new ArrayList<String>(size);
+    for (int i = 0; i < size; i++) {
+      names.add(in.readUTF());
+    }
+    return names;
+  }
+
+  private static void writeNames(final DataOutputStream out, final List<String> names)
+      throws IOException
+  {
+    out.writeInt(names.size());
+    for (String name : names) {
+      out.writeUTF(name);
+    }
+  }
+
 }
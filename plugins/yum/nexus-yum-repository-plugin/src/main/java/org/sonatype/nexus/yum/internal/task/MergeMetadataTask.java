@@ -18,7 +18,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URISyntaxException;
-import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -36,6 +37,7 @@ import org.sonatype.nexus.proxy.repository.Repository;
 import org.sonatype.nexus.scheduling.AbstractNexusTask;
 import org.sonatype.nexus.scheduling.NexusScheduler;
 import org.sonatype.nexus.yum.YumRepository;
+import org.sonatype.nexus.yum.internal.MetadataMerger;
 import org.sonatype.nexus.yum.internal.RepoMD;
 import org.sonatype.nexus.yum.internal.RepositoryUtils;
 import org.sonatype.nexus.yum.internal.YumRepositoryImpl;
@@ -52,6 +54,9 @@ import static org.sonatype.nexus.yum.Yum.PATH_OF_REPOMD_XML;
 import static org.sonatype.scheduling.TaskState.RUNNING;
 
 /**
+ * Merges Yum metadata of group members into group repository, with {@link MetadataMerger}, or with 'mergerepo'
+ * command line tool if {@code nexus.yum.merge.mergerepo} is set to {@code true}.
+ *
  * @since yum 3.0
  */
 @Named(MergeMetadataTask.ID)
@@ -69,12 +74,20 @@ public class MergeMetadataTask
 
   private final CommandLineExecutor commandLineExecutor;
 
+  private final MetadataMerger metadataMerger;
+
+  private final boolean useMergerepo;
+
   @Inject
   public MergeMetadataTask(final EventBus eventBus,
-                           final CommandLineExecutor commandLineExecutor)
+                           final CommandLineExecutor commandLineExecutor,
+                           final MetadataMerger metadataMerger,
+                           final @Named("${nexus.yum.merge.mergerepo:-false}") boolean useMergerepo)
   {
     super(eventBus, null);
     this.commandLineExecutor = checkNotNull(commandLineExecutor);
+    this.metadataMerger = checkNotNull(metadataMerger);
+    this.useMergerepo = useMergerepo;
   }
 
   public void setGroupRepository(final GroupRepository groupRepository) {
@@ -86,17 +99,24 @@ public class MergeMetadataTask
       throws Exception
   {
     if (isValidRepository()) {
-      deleteYumTempDirs();
+      if (useMergerepo) {
+        deleteYumTempDirs();
+      }
 
       final File repoBaseDir = RepositoryUtils.getBaseDir(groupRepository);
       RepositoryItemUid groupRepoMdUid = groupRepository.createUid("/" + PATH_OF_REPOMD_XML);
       try {
         groupRepoMdUid.getLock().lock(Action.update);
 
-        final List<File> memberReposBaseDirs = getBaseDirsOfMemberRepositories();
+        final Map<String, File> memberReposBaseDirs = getBaseDirsOfMemberRepositories();
         if (memberReposBaseDirs.size() > 1) {
           log.debug("Merging repository group '{}' out of {}", groupRepository.getId(), memberReposBaseDirs);
-          commandLineExecutor.exec(buildCommand(repoBaseDir, memberReposBaseDirs));
+          if (useMergerepo) {
+            commandLineExecutor.exec(buildCommand(repoBaseDir, memberReposBaseDirs.values()));
+          }
+          else {
+            metadataMerger.merge(groupRepository.getId(), repoBaseDir, memberReposBaseDirs);
+          }
           log.debug("Group repository '{}' merged", groupRepository.getId());
         }
         else {
@@ -112,17 +132,22 @@ public class MergeMetadataTask
         groupRepoMdUid.getLock().unlock();
       }
 
-      deleteYumTempDirs();
+      if (useMergerepo) {
+        deleteYumTempDirs();
+      }
 
       return new YumRepositoryImpl(repoBaseDir, groupRepository.getId(), null);
     }
     return null;
   }
 
-  private List<File> getBaseDirsOfMemberRepositories()
+  /**
+   * Returns base directories of members having Yum metadata, by member id, in members order.
+   */
+  private Map<String, File> getBaseDirsOfMemberRepositories()
       throws Exception
   {
-    final List<File> baseDirs = new ArrayList<File>();
+    final Map<String, File> baseDirs = new LinkedHashMap<String, File>();
     for (final Repository memberRepository : groupRepository.getMemberRepositories()) {
       log.trace("Looking up latest Yum metadata in {} member of {}", memberRepository.getId(), groupRepository.getId());
       StorageItem repomdItem = null;
@@ -146,7 +171,7 @@ public class MergeMetadataTask
           }
         }
         // all metadata files are available by now so lets use it
-        baseDirs.add(RepositoryUtils.getBaseDir(memberRepository));
+        baseDirs.put(memberRepository.getId(), RepositoryUtils.getBaseDir(memberRepository));
       }
     }
     return baseDirs;
@@ -216,7 +241,7 @@ public class MergeMetadataTask
     return groupRepository != null && !groupRepository.getMemberRepositories().isEmpty();
   }
 
-  private String buildCommand(File repoBaseDir, List<File> memberRepoBaseDirs)
+  private String buildCommand(File repoBaseDir, Collection<File> memberRepoBaseDirs)
       throws MalformedURLException, URISyntaxException
   {
     final StringBuilder repos = new StringBuilder();
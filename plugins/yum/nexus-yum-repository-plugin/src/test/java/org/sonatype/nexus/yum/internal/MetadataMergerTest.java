@@ -0,0 +1,233 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.yum.internal;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.sonatype.nexus.yum.YumRegistry;
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Sets;
+import com.google.common.io.ByteStreams;
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestName;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link MetadataMerger}.
+ */
+public class MetadataMergerTest
+    extends TestSupport
+{
+  @Rule
+  public final TestName testName = new TestName();
+
+  private File baseDir;
+
+  private File group;
+
+  private MetadataMerger underTest;
+
+  @Before
+  public void prepare() throws Exception {
+    baseDir = util.resolveFile("target/metadata-merger/" + testName.getMethodName());
+    FileUtils.deleteDirectory(baseDir);
+    group = new File(baseDir, "group");
+
+    final YumRegistry yumRegistry = mock(YumRegistry.class);
+    when(yumRegistry.getTemporaryDirectory()).thenReturn(new File(baseDir, "tmp"));
+    underTest = new MetadataMerger(yumRegistry, 2);
+  }
+
+  @Test
+  public void mergesMembersInOrderOfPrecedence() throws Exception {
+    final Map<String, File> members = new LinkedHashMap<String, File>();
+    members.put("a", member("a", "1", pkg("foo", "x86_64", "1.0"), pkg("bar", "noarch", "1.0")));
+    members.put("b", member("b", "1", pkg("foo", "x86_64", "2.0"), pkg("baz", "noarch", "1.0")));
+
+    underTest.merge("group", group, members);
+
+    final String primary = read(MetadataType.PRIMARY);
+    assertThat(primary, containsString("packages=\"3\""));
+    assertThat(primary, containsString("<version ver=\"1.0\"/>"));
+    assertThat(primary, containsString("<name>baz</name>"));
+    assertThat(primary, containsString("<rpm:entry name=\"libc &amp; co\"/>"));
+    // foo.x86_64 of b is left out, as a has it
+    assertThat(primary, not(containsString("<version ver=\"2.0\"/>")));
+
+    final String filelists = read(MetadataType.FILELISTS);
+    assertThat(filelists, containsString("packages=\"3\""));
+    assertThat(filelists, containsString("<file>/usr/bin/baz</file>"));
+    assertThat(filelists, not(containsString("ver=\"2.0\"")));
+
+    final String other = read(MetadataType.OTHER);
+    assertThat(other, containsString("packages=\"3\""));
+    assertThat(other, containsString("<changelog>bar 1.0</changelog>"));
+  }
+
+  @Test
+  public void skipsUnchangedMembers() throws Exception {
+    final Map<String, File> members = new LinkedHashMap<String, File>();
+    members.put("a", member("a", "1", pkg("foo", "x86_64", "1.0")));
+    members.put("b", member("b", "1", pkg("bar", "noarch", "1.0")));
+    underTest.merge("group", group, members);
+
+    // a is not read again as its repomd.xml checksums are unchanged
+    FileUtils.deleteQuietly(new File(members.get("a"), "repodata/primary.xml.gz"));
+    members.put("b", member("b", "2", pkg("bar", "noarch", "2.0")));
+    underTest.merge("group", group, members);
+
+    final String primary = read(MetadataType.PRIMARY);
+    assertThat(primary, containsString("packages=\"2\""));
+    assertThat(primary, containsString("<name>foo</name>"));
+    assertThat(primary, containsString("<version ver=\"2.0\"/>"));
+    assertThat(primary, not(containsString("<arch>noarch</arch>\n  <version ver=\"1.0\"/>")));
+
+    // merged files of previous generation are kept until next merge, older ones are deleted
+    final Set<String> previous = Sets.newHashSet(new File(group, "repodata").list());
+    assertThat(previous.size(), is(7));
+    members.put("b", member("b", "3", pkg("bar", "noarch", "3.0")));
+    underTest.merge("group", group, members);
+    final Set<String> current = Sets.newHashSet(new File(group, "repodata").list());
+    assertThat(current.size(), is(7));
+    assertThat(Sets.intersection(previous, current).size(), is(4));
+  }
+
+  @Test
+  public void mergesPackageGroups() throws Exception {
+    final Map<String, File> members = new LinkedHashMap<String, File>();
+    members.put("a", comps(member("a", "1", pkg("foo", "x86_64", "1.0")),
+        "<group><id>core</id><name>Core of a</name></group><category><id>base</id></category>"));
+    members.put("b", comps(member("b", "1", pkg("bar", "noarch", "1.0")),
+        "<group><id>core</id><name>Core of b</name></group><group><id>extra</id><name>Extra &amp; co</name></group>"));
+    members.put("c", member("c", "1", pkg("baz", "noarch", "1.0")));
+
+    underTest.merge("group", group, members);
+
+    final String comps = read(CompsMerger.TYPE);
+    assertThat(comps, containsString("<name>Core of a</name>"));
+    assertThat(comps, containsString("<id>base</id>"));
+    assertThat(comps, containsString("<name>Extra &amp; co</name>"));
+    // core group of b is left out, as a has it
+    assertThat(comps, not(containsString("Core of b")));
+    assertThat(read(CompsMerger.GZ_TYPE), is(comps));
+  }
+
+  // ==
+
+  private String pkg(final String name, final String arch, final String version) {
+    return name + "|" + arch + "|" + version;
+  }
+
+  /**
+   * Writes yum metadata of a member listing given packages, checksums in repomd.xml being derived from revision.
+   */
+  private File member(final String id, final String revision, final String... packages) throws IOException {
+    final File member = new File(baseDir, id);
+    final StringBuilder primary = new StringBuilder();
+    final StringBuilder filelists = new StringBuilder();
+    final StringBuilder other = new StringBuilder();
+    for (String pkg : packages) {
+      final String[] nav = pkg.split("\\|");
+      primary.append("<package type=\"rpm\">\n  <name>").append(nav[0]).append("</name>\n  <arch>").append(nav[1])
+          .append("</arch>\n  <version ver=\"").append(nav[2]).append("\"/>\n  <format>\n    <rpm:requires>")
+          .append("<rpm:entry name=\"libc &amp; co\"/></rpm:requires>\n  </format>\n</package>\n");
+      filelists.append("<package pkgid=\"").append(pkg).append("\" name=\"").append(nav[0]).append("\" arch=\"")
+          .append(nav[1]).append("\"><version ver=\"").append(nav[2]).append("\"/><file>/usr/bin/")
+          .append(nav[0]).append("</file></package>\n");
+      other.append("<package pkgid=\"").append(pkg).append("\" name=\"").append(nav[0]).append("\" arch=\"")
+          .append(nav[1]).append("\"><changelog>").append(nav[0]).append(' ').append(nav[2])
+          .append("</changelog></package>\n");
+    }
+    write(new File(member, "repodata/primary.xml.gz"), MetadataType.PRIMARY.header(packages.length)
+        + primary + MetadataType.PRIMARY.footer());
+    write(new File(member, "repodata/filelists.xml.gz"), MetadataType.FILELISTS.header(packages.length)
+        + filelists + MetadataType.FILELISTS.footer());
+    write(new File(member, "repodata/other.xml.gz"), MetadataType.OTHER.header(packages.length)
+        + other + MetadataType.OTHER.footer());
+
+    final StringBuilder repomd = new StringBuilder("<repomd xmlns=\"http://linux.duke.edu/metadata/repo\">\n");
+    for (MetadataType type : MetadataType.values()) {
+      repomd.append("<data type=\"").append(type.type).append("\"><location href=\"repodata/").append(type.type)
+          .append(".xml.gz\"/><checksum type=\"sha\">").append(type.type).append(revision)
+          .append("</checksum></data>\n");
+    }
+    repomd.append("</repomd>\n");
+    FileUtils.write(new File(member, "repodata/repomd.xml"), repomd, Charsets.UTF_8);
+    return member;
+  }
+
+  /**
+   * Writes package groups of a member, and references them from its repomd.xml.
+   */
+  private File comps(final File member, final String groups) throws IOException {
+    FileUtils.write(new File(member, "repodata/comps.xml"), "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<comps>"
+        + groups + "</comps>\n", Charsets.UTF_8);
+    final File repomd = new File(member, "repodata/repomd.xml");
+    FileUtils.write(repomd, FileUtils.readFileToString(repomd, Charsets.UTF_8).replace("</repomd>",
+        "<data type=\"group\"><location href=\"repodata/comps.xml\"/></data>\n</repomd>"), Charsets.UTF_8);
+    return member;
+  }
+
+  private void write(final File file, final String content) throws IOException {
+    file.getParentFile().mkdirs();
+    try (OutputStream out = new GZIPOutputStream(new FileOutputStream(file))) {
+      out.write(content.getBytes(Charsets.UTF_8));
+    }
+  }
+
+  /**
+   * Reads merged file of given type, as referenced by group repomd.xml.
+   */
+  private String read(final MetadataType type) throws IOException {
+    return read(type.type);
+  }
+
+  private String read(final String type) throws IOException {
+    final RepoMD repomd;
+    try (InputStream in = new FileInputStream(new File(group, "repodata/repomd.xml"))) {
+      repomd = new RepoMD(in);
+    }
+    final String location = repomd.getLocation(type);
+    InputStream in = new FileInputStream(new File(group, location));
+    try {
+      if (location.endsWith(".gz")) {
+        in = new GZIPInputStream(in);
+      }
+      return new String(ByteStreams.toByteArray(in), Charsets.UTF_8);
+    }
+    finally {
+      in.close();
+    }
+  }
+}
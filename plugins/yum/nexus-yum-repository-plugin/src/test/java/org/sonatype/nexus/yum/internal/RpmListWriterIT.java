@@ -17,7 +17,6 @@ import java.io.IOException;
 
 import org.sonatype.nexus.yum.internal.support.YumNexusTestSupport;
 import org.sonatype.sisu.litmus.testsupport.hamcrest.FileMatchers;
-import org.sonatype.sisu.resource.scanner.scanners.SerialScanner;
 
 import org.junit.Test;
 
@@ -73,7 +72,7 @@ public class RpmListWriterIT
         true,
         false,
         listFileFactory(writeRpmListFile(rpmsDir(), NO_VERSION)),
-        new RpmScanner(new SerialScanner())
+        new RpmScanner(2)
     ).writeList();
 
     assertThat(rpmListFile, FileMatchers.containsOnly("is24-tomcat-mysql-jdbc-5.1.15-2.1082.noarch.rpm\n"));
@@ -90,7 +89,7 @@ public class RpmListWriterIT
         true,
         false,
         listFileFactory(writeRpmListFile(rpmsDir(), NO_VERSION)),
-        new RpmScanner(new SerialScanner())
+        new RpmScanner(2)
     ).writeList();
     assertThat(rpmListFile, FileMatchers.containsOnly(osIndependent(FILE_CONTENT)));
   }
@@ -116,7 +115,7 @@ public class RpmListWriterIT
         true,
         false,
         listFileFactory(writeRpmListFile(rpmsDir(), NO_VERSION)),
-        new RpmScanner(new SerialScanner())
+        new RpmScanner(2)
     ).writeList();
     assertThat(rpmListFile, FileMatchers.containsOnly(osIndependent(FILE_CONTENT)));
   }
@@ -133,7 +132,7 @@ public class RpmListWriterIT
         false,
         false,
         listFileFactory(writeRpmListFile(rpmsDir(), NO_VERSION)),
-        new RpmScanner(new SerialScanner())
+        new RpmScanner(2)
     ).writeList();
 
     assertThat(rpmListFile, FileMatchers.contains(NEW_RPM1, NEW_RPM2));
@@ -152,7 +151,7 @@ public class RpmListWriterIT
         NO_SINGLE_RPM_PER_DIRECTORY,
         false,
         listFileFactory(rpmListFile),
-        new RpmScanner(new SerialScanner())
+        new RpmScanner(2)
     ).writeList();
 
     return rpmListFile;
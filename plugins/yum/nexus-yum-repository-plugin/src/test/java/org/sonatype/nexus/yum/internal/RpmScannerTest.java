@@ -0,0 +1,123 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2007-2014 Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.yum.internal;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.sonatype.sisu.litmus.testsupport.TestSupport;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestName;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+
+/**
+ * Tests for {@link RpmScanner}.
+ */
+public class RpmScannerTest
+    extends TestSupport
+{
+  @Rule
+  public final TestName testName = new TestName();
+
+  private File baseDir;
+
+  private File cacheFile;
+
+  private RpmScanner underTest;
+
+  @Before
+  public void prepare() throws Exception {
+    final File dir = util.resolveFile("target/rpm-scanner/" + testName.getMethodName());
+    FileUtils.deleteDirectory(dir);
+    baseDir = new File(dir, "repo");
+    cacheFile = new File(dir, "scan-cache");
+    underTest = new RpmScanner(2);
+
+    touch("foo/1.0/foo-1.0.noarch.rpm");
+    touch("foo/1.0/foo-1.0.pom");
+    touch("foo/2.0/foo-2.0.noarch.RPM");
+    touch("bar/baz/1.0/baz-1.0.x86_64.rpm");
+    touch(".nexus/trash/foo-0.9.noarch.rpm");
+  }
+
+  @Test
+  public void scansRpms() {
+    assertThat(underTest.scan(baseDir), containsInAnyOrder(
+        file("foo/1.0/foo-1.0.noarch.rpm"), file("foo/2.0/foo-2.0.noarch.RPM"), file("bar/baz/1.0/baz-1.0.x86_64.rpm")
+    ));
+  }
+
+  @Test
+  public void reusesListingsOfUnmodifiedDirectories() throws Exception {
+    final long past = System.currentTimeMillis() - 60000;
+    setLastModified(baseDir, past);
+    underTest.scan(baseDir, cacheFile);
+
+    // an unmodified directory is not listed again, even if its (faked) content changed
+    touch("foo/1.0/foo-1.0-1.noarch.rpm");
+    new File(baseDir, "foo/1.0").setLastModified(past);
+    // while a modified one is
+    touch("bar/baz/1.1/baz-1.1.x86_64.rpm");
+
+    assertThat(underTest.scan(baseDir, cacheFile), containsInAnyOrder(
+        file("foo/1.0/foo-1.0.noarch.rpm"), file("foo/2.0/foo-2.0.noarch.RPM"), file("bar/baz/1.0/baz-1.0.x86_64.rpm"),
+        file("bar/baz/1.1/baz-1.1.x86_64.rpm")
+    ));
+
+    // without cache, all directories are listed
+    assertThat(underTest.scan(baseDir), containsInAnyOrder(
+        file("foo/1.0/foo-1.0.noarch.rpm"), file("foo/1.0/foo-1.0-1.noarch.rpm"), file("foo/2.0/foo-2.0.noarch.RPM"),
+        file("bar/baz/1.0/baz-1.0.x86_64.rpm"), file("bar/baz/1.1/baz-1.1.x86_64.rpm")
+    ));
+  }
+
+  @Test
+  public void listsDirectoriesModifiedDuringPreviousScan() throws Exception {
+    underTest.scan(baseDir, cacheFile);
+
+    // modified within timestamp resolution of previous scan, so listed again despite unchanged last modified
+    final long lastModified = new File(baseDir, "foo/1.0").lastModified();
+    touch("foo/1.0/foo-1.0-1.noarch.rpm");
+    new File(baseDir, "foo/1.0").setLastModified(lastModified);
+
+    assertThat(underTest.scan(baseDir, cacheFile), containsInAnyOrder(
+        file("foo/1.0/foo-1.0.noarch.rpm"), file("foo/1.0/foo-1.0-1.noarch.rpm"), file("foo/2.0/foo-2.0.noarch.RPM"),
+        file("bar/baz/1.0/baz-1.0.x86_64.rpm")
+    ));
+  }
+
+  // ==
+
+  private File file(final String path) {
+    return new File(baseDir, path);
+  }
+
+  private void touch(final String path) throws IOException {
+    FileUtils.touch(file(path));
+  }
+
+  private void setLastModified(final File dir, final long lastModified) {
+    for (File child : dir.listFiles()) {
+      if (child.isDirectory()) {
+        setLastModified(child, lastModified);
+      }
+    }
+    dir.setLastModified(lastModified);
+  }
+}